@@ -17,24 +17,45 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
-/** Tiny fixed-concurrency load generator: prints throughput and latency percentiles. */
+/**
+ * Tiny load generator: prints throughput and latency percentiles.
+ *
+ * <p>By default each thread sends its next request as soon as the previous one is answered
+ * (closed loop). When the server stalls, so does the generator, and the requests it would have
+ * sent meanwhile are never timed ("coordinated omission"): the raw percentiles then look better
+ * than what users see. The {@code corrected_us} line adds those requests back, assuming one was
+ * due every median latency, as HdrHistogram's {@code recordValueWithExpectedInterval} does.
+ * With {@code rate=N}, requests are instead sent on a fixed schedule of N per second and timed
+ * from when they were due, which needs no correction as long as the threads keep up.</p>
+ */
 public class LoadGen {
     public static void main(String[] args) throws Exception {
         String url = args[0];
         int warmup = Integer.parseInt(args[1]);
         int requests = Integer.parseInt(args[2]);
         int threads = Integer.parseInt(args[3]);
+        boolean expectDecorated = true;
+        double rate = 0;
+        for (int i = 4; i < args.length; i++) {
+            if ("nocheck".equals(args[i])) {
+                expectDecorated = false;
+            } else if (args[i].startsWith("rate=")) {
+                rate = Double.parseDouble(args[i].substring("rate=".length()));
+            } else {
+                System.err.println("unknown option: " + args[i]);
+                System.exit(1);
+            }
+        }
 
         HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
         HttpRequest req = HttpRequest.newBuilder(URI.create(url)).GET().build();
 
-        boolean expectDecorated = args.length < 5 || !"nocheck".equals(args[4]);
         // sanity: the response must actually be decorated (unless baseline)
         String body = client.send(req, HttpResponse.BodyHandlers.ofString()).body();
         if (expectDecorated && (!body.contains("DECORATOR-MARKER") || !body.contains("BODY-MARKER"))) {
@@ -42,41 +63,56 @@ public class LoadGen {
             System.exit(2);
         }
 
-        run(client, req, warmup, threads, null);
-        long[] latencies = new long[requests];
+        run(client, req, warmup, threads, 0);
         long start = System.nanoTime();
-        run(client, req, requests, threads, latencies);
+        Histogram latencies = run(client, req, requests, threads, rate);
         long totalNanos = System.nanoTime() - start;
 
-        Arrays.sort(latencies);
         double seconds = totalNanos / 1e9;
         System.out.printf("requests=%d threads=%d seconds=%.2f throughput=%.0f req/s%n",
                 requests, threads, seconds, requests / seconds);
-        System.out.printf("latency_us p50=%d p90=%d p99=%d max=%d%n",
-                latencies[requests / 2] / 1000, latencies[(int) (requests * 0.9)] / 1000,
-                latencies[(int) (requests * 0.99)] / 1000, latencies[requests - 1] / 1000);
+        if (rate > 0) {
+            System.out.println("latency_us " + latencies.summary() + " (timed from schedule)");
+            if (seconds > requests / rate * 1.05) {
+                System.out.printf("WARNING: fell behind the rate of %.0f req/s; add threads or lower it%n", rate);
+            }
+        } else {
+            long interval = latencies.percentile(50);
+            System.out.println("latency_us " + latencies.summary());
+            System.out.println("corrected_us " + latencies.corrected(interval).summary()
+                    + " (expected interval " + interval / 1000 + " us)");
+        }
     }
 
-    private static void run(HttpClient client, HttpRequest req, int total, int threads, long[] latencies)
+    private static Histogram run(HttpClient client, HttpRequest req, int total, int threads, double rate)
             throws Exception {
         ExecutorService pool = Executors.newFixedThreadPool(threads);
         AtomicInteger next = new AtomicInteger();
         CountDownLatch done = new CountDownLatch(threads);
+        Histogram[] histograms = new Histogram[threads];
+        long start = System.nanoTime();
         for (int t = 0; t < threads; t++) {
+            Histogram histogram = histograms[t] = new Histogram();
             pool.execute(() -> {
                 try {
                     int i;
                     while ((i = next.getAndIncrement()) < total) {
                         long begin = System.nanoTime();
+                        if (rate > 0) {
+                            // Time from when the request was due, not from when it could be sent.
+                            long due = start + (long) (i * 1e9 / rate);
+                            while (begin < due) {
+                                LockSupport.parkNanos(due - begin);
+                                begin = System.nanoTime();
+                            }
+                            begin = due;
+                        }
                         HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString());
-                        long elapsed = System.nanoTime() - begin;
+                        histogram.record(System.nanoTime() - begin);
                         if (resp.statusCode() != 200 || resp.body().length() < 50) {
                             System.err.println("bad response: " + resp.statusCode());
                             System.exit(3);
                         }
-                        if (latencies != null) {
-                            latencies[i] = elapsed;
-                        }
                     }
                 } catch (Exception e) {
                     e.printStackTrace();
@@ -88,5 +124,100 @@ public class LoadGen {
         }
         done.await();
         pool.shutdown();
+        Histogram all = new Histogram();
+        for (Histogram histogram : histograms) {
+            all.add(histogram);
+        }
+        return all;
+    }
+
+    /**
+     * Log-linear latency histogram in the style of HdrHistogram: values (in nanoseconds) are
+     * kept to three significant digits over the whole range, in a fixed amount of memory.
+     */
+    static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 11;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int HALF = SUB_BUCKETS / 2;
+
+        private final long[] counts = new long[SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF];
+        private long total;
+        private long max;
+
+        void record(long value) {
+            record(value, 1);
+        }
+
+        private void record(long value, long count) {
+            counts[index(Math.max(value, 0))] += count;
+            total += count;
+            max = Math.max(max, value);
+        }
+
+        void add(Histogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+
+        /**
+         * @return a copy in which every value longer than the interval is followed by the
+         *         values the requests that were due meanwhile would have seen.
+         */
+        Histogram corrected(long expectedInterval) {
+            Histogram corrected = new Histogram();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    continue;
+                }
+                long value = highestEquivalentValue(i);
+                corrected.record(value, counts[i]);
+                if (expectedInterval > 0) {
+                    for (long missed = value - expectedInterval; missed >= expectedInterval; missed -= expectedInterval) {
+                        corrected.record(missed, counts[i]);
+                    }
+                }
+            }
+            // Bucket bounds may exceed the largest value actually recorded.
+            corrected.max = max;
+            return corrected;
+        }
+
+        long percentile(double percentile) {
+            long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(highestEquivalentValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        String summary() {
+            return String.format("p50=%d p90=%d p99=%d p99.9=%d max=%d",
+                    percentile(50) / 1000, percentile(90) / 1000, percentile(99) / 1000,
+                    percentile(99.9) / 1000, max / 1000);
+        }
+
+        private static int index(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+            return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >> shift) - HALF;
+        }
+
+        private static long highestEquivalentValue(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = (index - SUB_BUCKETS) / HALF + 1;
+            long lowest = (long) ((index - SUB_BUCKETS) % HALF + HALF) << shift;
+            return lowest + (1L << shift) - 1;
+        }
     }
 }
@@ -15,11 +15,18 @@
  */
 package bench;
 
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.server.ResponseStatusException;
 
 @SpringBootApplication
 public class BenchApp {
@@ -29,6 +36,22 @@ public class BenchApp {
 
     @Controller
     static class BenchController {
+        /** Rendered size of one row of the page.html table, in bytes. */
+        private static final int ROW_BYTES = 333;
+
+        /** Rows to render per page size; 5m is a stress case, not a typical page. */
+        private static final Map<String, List<Integer>> ROWS = Map.of(
+                "4k", rows(4 * 1024),
+                "64k", rows(64 * 1024),
+                "1m", rows(1024 * 1024),
+                "5m", rows(5 * 1024 * 1024));
+
+        /** Decorator(s) named in the page's meta tag per scenario; a list is applied as a chain. */
+        private static final Map<String, String> DECORATORS = Map.of(
+                "static", "main.html",
+                "jsp", "main.jsp",
+                "chained", "main.html,outer.html");
+
         @GetMapping("/bench")
         public String bench(Model model) {
             model.addAttribute("n", "World");
@@ -46,5 +69,28 @@ public class BenchApp {
             model.addAttribute("n", "World");
             return "bench-large";
         }
+
+        /**
+         * A page of about the given size (4k, 64k, 1m or 5m) decorated by the given
+         * scenario's decorator (static, jsp or chained), e.g. {@code /page/64k/jsp}.
+         * The page is rendered by Thymeleaf in every scenario, so only the decorator
+         * differs between scenarios of the same size.
+         */
+        @GetMapping("/page/{size}/{scenario}")
+        public String page(@PathVariable String size, @PathVariable String scenario, Model model) {
+            List<Integer> rows = ROWS.get(size);
+            String decorator = DECORATORS.get(scenario);
+            if (rows == null || decorator == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+            model.addAttribute("n", "World");
+            model.addAttribute("decorator", decorator);
+            model.addAttribute("rows", rows);
+            return "page";
+        }
+
+        private static List<Integer> rows(int bytes) {
+            return IntStream.range(0, bytes / ROW_BYTES).boxed().toList();
+        }
     }
 }
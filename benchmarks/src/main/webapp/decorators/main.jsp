@@ -0,0 +1,9 @@
+<%@ page contentType="text/html;charset=UTF-8" %>
+<html>
+<head><title><sitemesh:write property='title'/> - site</title></head>
+<body>
+<header>DECORATOR-MARKER <%= request.getLocale() %></header>
+<main><sitemesh:write property='body'/></main>
+<footer>footer</footer>
+</body>
+</html>
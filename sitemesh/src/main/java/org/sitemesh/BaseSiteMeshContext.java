@@ -18,8 +18,10 @@ package org.sitemesh;
 
 import org.sitemesh.content.Content;
 import org.sitemesh.content.ContentProcessor;
+import org.sitemesh.jfr.SiteMeshDecorateEvent;
+import org.sitemesh.jfr.SiteMeshDecoratorDispatchEvent;
+import org.sitemesh.webapp.contentfilter.io.SegmentedCharBuffer;
 
-import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.nio.CharBuffer;
@@ -45,6 +47,10 @@ public abstract class BaseSiteMeshContext implements SiteMeshContext {
 
     private int lastDecoratedLength;
 
+    private SiteMeshMetrics metrics = SiteMeshMetrics.NONE;
+
+    private SizeEstimates decoratorSizeEstimates;
+
     /**
      * @param contentProcessor the {@link ContentProcessor} used to process decorated output.
      */
@@ -90,6 +96,43 @@ public abstract class BaseSiteMeshContext implements SiteMeshContext {
         return lastDecoratedLength;
     }
 
+    /**
+     * Size the buffer each decorator renders into from what the same decorator produced
+     * before, rather than from the {@link #setSizeHint(int) size hint}. The estimates are
+     * updated with every decorator rendered, so they should be shared by the contexts of
+     * all requests.
+     *
+     * @param decoratorSizeEstimates estimates by decorator path; null always uses the size hint.
+     */
+    public void setDecoratorSizeEstimates(SizeEstimates decoratorSizeEstimates) {
+        this.decoratorSizeEstimates = decoratorSizeEstimates;
+    }
+
+    /**
+     * @return the estimates decorator buffers are sized from, or null if there are none.
+     * @see #setDecoratorSizeEstimates(SizeEstimates)
+     */
+    public SizeEstimates getDecoratorSizeEstimates() {
+        return decoratorSizeEstimates;
+    }
+
+    /**
+     * Record how long rendering and parsing each decorator takes
+     * ({@link SiteMeshMetrics.Phase#DECORATE} and {@link SiteMeshMetrics.Phase#REPARSE}).
+     *
+     * @param metrics the metrics to record to; null records nothing.
+     */
+    public void setMetrics(SiteMeshMetrics metrics) {
+        this.metrics = metrics != null ? metrics : SiteMeshMetrics.NONE;
+    }
+
+    /**
+     * @return the metrics decorating is recorded to, never null.
+     */
+    public SiteMeshMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Write the given {@link Content}, merged into the named decorator, to the output.
      * Implementations define how the decorator is located and rendered.
@@ -106,20 +149,36 @@ public abstract class BaseSiteMeshContext implements SiteMeshContext {
             return null;
         }
 
-        class CharBufferWriter extends CharArrayWriter {
-            CharBufferWriter(int initialSize) {
-                super(initialSize);
-            }
-
-            public CharBuffer toCharBuffer() {
-                return CharBuffer.wrap(this.buf, 0, this.count);
-            }
-        }
-        CharBufferWriter out = new CharBufferWriter(sizeHint);
+        SiteMeshDecorateEvent decorateEvent = new SiteMeshDecorateEvent();
+        SiteMeshDecoratorDispatchEvent dispatchEvent = new SiteMeshDecoratorDispatchEvent();
+        decorateEvent.begin();
+        dispatchEvent.begin();
+        boolean timed = metrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        SizeEstimate sizeEstimate = decoratorSizeEstimates != null ? decoratorSizeEstimates.get(decoratorName) : null;
+        int initialSize = sizeEstimate != null && sizeEstimate.getEstimate() > 0 ? sizeEstimate.getEstimate() : sizeHint;
+        // Takes no lock on write (unlike CharArrayWriter), so rendering a decorator never
+        // holds a monitor, and does not copy what was written so far when it grows.
+        SegmentedCharBuffer out = new SegmentedCharBuffer(initialSize);
         decorate(decoratorName, content, out);
 
         CharBuffer decorated = out.toCharBuffer();
         lastDecoratedLength = decorated.remaining();
+        if (sizeEstimate != null) {
+            sizeEstimate.record(lastDecoratedLength);
+        }
+        if (dispatchEvent.isEnabled() && dispatchEvent.shouldCommit()) {
+            dispatchEvent.path = getPath();
+            dispatchEvent.decoratorPath = decoratorName;
+            dispatchEvent.outputLength = lastDecoratedLength;
+            dispatchEvent.commit();
+        }
+        if (timed) {
+            long decoratedAt = System.nanoTime();
+            metrics.recordPhase(SiteMeshMetrics.Phase.DECORATE, getPath(), decoratorName,
+                    decoratedAt - start, lastDecoratedLength);
+            start = decoratedAt;
+        }
 
         Content lastContent = currentContent;
         currentContent = content;
@@ -127,6 +186,16 @@ public abstract class BaseSiteMeshContext implements SiteMeshContext {
             return contentProcessor.build(decorated, this);
         } finally {
             currentContent = lastContent;
+            if (timed) {
+                metrics.recordPhase(SiteMeshMetrics.Phase.REPARSE, getPath(), decoratorName,
+                        System.nanoTime() - start, lastDecoratedLength);
+            }
+            if (decorateEvent.isEnabled() && decorateEvent.shouldCommit()) {
+                decorateEvent.path = getPath();
+                decorateEvent.decoratorPath = decoratorName;
+                decorateEvent.outputLength = lastDecoratedLength;
+                decorateEvent.commit();
+            }
         }
     }
 
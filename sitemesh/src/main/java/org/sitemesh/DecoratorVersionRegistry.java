@@ -0,0 +1,366 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh;
+
+import jakarta.servlet.ServletContext;
+
+import org.sitemesh.offline.directory.Directory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the sources behind the decorators in use, so that changes to them can be detected
+ * at runtime without a restart.
+ *
+ * <p>Each decorator path is {@link #track(String) tracked} the first time it is applied, and
+ * its modification stamp read from a {@link StampSource} - the files or resources of the web
+ * application ({@link #forServletContext(ServletContext)}), or a {@link Directory} for offline
+ * generation ({@link #forDirectory(Directory)}). A background thread then checks the stamps at
+ * a fixed interval. When any changed, the {@link #getGeneration() generation} is bumped and the
+ * {@link Listener}s are told which decorators changed, so they can drop whatever they cached or
+ * compiled from them.</p>
+ *
+ * <p>The tracked state is an immutable snapshot that is replaced as a whole, so readers on
+ * request threads never lock, and never see a partially applied check.</p>
+ *
+ * @see org.sitemesh.webapp.contentfilter.ETagGenerator#ETagGenerator(String, DecoratorVersionRegistry)
+ * @see org.sitemesh.builder.BaseSiteMeshFilterBuilder#setDecoratorChangeDetection(long)
+ */
+public class DecoratorVersionRegistry {
+
+    /** Interval between checks used when none is specified, in milliseconds. */
+    public static final long DEFAULT_CHECK_INTERVAL_MILLIS = 2000;
+
+    /**
+     * Upper bound on the number of tracked decorator paths, in case decorator paths are
+     * derived from request data. Further paths are still decorated, but not tracked.
+     */
+    public static final int MAX_TRACKED_PATHS = 1024;
+
+    private static final Logger logger = Logger.getLogger(DecoratorVersionRegistry.class.getName());
+
+    /**
+     * Provides the modification stamps of decorator sources.
+     */
+    public interface StampSource {
+        /**
+         * @param decoratorPath Path of the decorator, as passed to
+         *                      {@link SiteMeshContext#decorate(String, org.sitemesh.content.Content)}.
+         * @return A value that changes whenever the decorator source changes (typically its
+         *         last-modified time), or -1 if the decorator has no source that can be checked
+         *         (e.g. it is rendered by a servlet).
+         * @throws IOException If the source cannot be checked.
+         */
+        long getStamp(String decoratorPath) throws IOException;
+    }
+
+    /**
+     * Notified when the sources of tracked decorators change.
+     */
+    public interface Listener {
+        /**
+         * Called on the checking thread after the new stamps are visible.
+         *
+         * @param changedPaths The decorator paths whose sources changed.
+         */
+        void decoratorsChanged(Set<String> changedPaths);
+    }
+
+    private final long checkIntervalMillis;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.<String, Long>emptyMap(), 0);
+    private volatile StampSource source;
+    private ScheduledExecutorService checker;
+    private int starts;
+    private boolean overflowLogged;
+
+    /**
+     * Check for changes every {@link #DEFAULT_CHECK_INTERVAL_MILLIS} milliseconds.
+     */
+    public DecoratorVersionRegistry() {
+        this(DEFAULT_CHECK_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param checkIntervalMillis Milliseconds between checks, or 0 to only check when the
+     *                            application calls {@link #checkNow()} itself.
+     */
+    public DecoratorVersionRegistry(long checkIntervalMillis) {
+        if (checkIntervalMillis < 0) {
+            throw new IllegalArgumentException("checkIntervalMillis cannot be negative");
+        }
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    /**
+     * Start reading stamps from the given source, checking them in the background if an
+     * interval was given. Calling this again switches to the new source; each call must be
+     * matched by a call to {@link #stop()}, so a registry can be shared between filters.
+     *
+     * @param source Provides the stamps of decorator sources.
+     */
+    public void start(StampSource source) {
+        if (source == null) {
+            throw new IllegalArgumentException("source cannot be null");
+        }
+        updateLock.lock();
+        try {
+            this.source = source;
+            starts++;
+            if (checker == null && checkIntervalMillis > 0) {
+                checker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "sitemesh-decorator-watcher");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                checker.scheduleWithFixedDelay(new Runnable() {
+                    public void run() {
+                        try {
+                            checkNow();
+                        } catch (RuntimeException e) {
+                            logger.log(Level.WARNING, "Could not check decorators for changes", e);
+                        }
+                    }
+                }, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Stop checking in the background, once every {@link #start(StampSource)} has been
+     * matched by a call to this. Tracked stamps are kept.
+     */
+    public void stop() {
+        updateLock.lock();
+        try {
+            if (starts > 0) {
+                starts--;
+            }
+            if (starts == 0 && checker != null) {
+                checker.shutdownNow();
+                checker = null;
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Start tracking a decorator path, recording the current stamp of its source. Cheap
+     * (and lock free) for paths that are already tracked. Does nothing before
+     * {@link #start(StampSource)}.
+     *
+     * @param decoratorPath Path of the decorator about to be applied.
+     */
+    public void track(String decoratorPath) {
+        StampSource source = this.source;
+        if (source == null || decoratorPath == null || snapshot.stamps.containsKey(decoratorPath)) {
+            return;
+        }
+        updateLock.lock();
+        try {
+            Snapshot current = snapshot;
+            if (current.stamps.containsKey(decoratorPath)) {
+                return;
+            }
+            if (current.stamps.size() >= MAX_TRACKED_PATHS) {
+                if (!overflowLogged) {
+                    overflowLogged = true;
+                    logger.warning("More than " + MAX_TRACKED_PATHS
+                            + " decorator paths in use; changes to further decorators are not detected");
+                }
+                return;
+            }
+            Map<String, Long> stamps = new HashMap<String, Long>(current.stamps);
+            stamps.put(decoratorPath, stampOf(source, decoratorPath));
+            snapshot = new Snapshot(stamps, current.generation);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Check the sources of all tracked decorators now, notifying the listeners if any changed.
+     *
+     * @return The decorator paths whose sources changed (empty if none did).
+     */
+    public Set<String> checkNow() {
+        StampSource source = this.source;
+        if (source == null) {
+            return Collections.emptySet();
+        }
+        Set<String> changed = new LinkedHashSet<String>();
+        updateLock.lock();
+        try {
+            Snapshot current = snapshot;
+            Map<String, Long> stamps = new HashMap<String, Long>(current.stamps);
+            for (Map.Entry<String, Long> entry : stamps.entrySet()) {
+                long stamp = stampOf(source, entry.getKey());
+                if (stamp != entry.getValue()) {
+                    entry.setValue(stamp);
+                    changed.add(entry.getKey());
+                }
+            }
+            if (changed.isEmpty()) {
+                return changed;
+            }
+            snapshot = new Snapshot(stamps, current.generation + 1);
+        } finally {
+            updateLock.unlock();
+        }
+
+        changed = Collections.unmodifiableSet(changed);
+        logger.info("Decorators changed: " + changed);
+        for (Listener listener : listeners) {
+            try {
+                listener.decoratorsChanged(changed);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Decorator change listener failed", e);
+            }
+        }
+        return changed;
+    }
+
+    private static long stampOf(StampSource source, String decoratorPath) {
+        try {
+            return source.getStamp(decoratorPath);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Could not check decorator " + decoratorPath, e);
+            return -1;
+        }
+    }
+
+    /**
+     * @param listener Notified when the sources of tracked decorators change.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener A listener previously passed to {@link #addListener(Listener)}.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return A number that increases every time the source of a tracked decorator changes.
+     */
+    public long getGeneration() {
+        return snapshot.generation;
+    }
+
+    /**
+     * @param decoratorPath Path of a decorator.
+     * @return The stamp of its source when last checked, or -1 if it is not tracked or
+     *         has no checkable source.
+     */
+    public long getStamp(String decoratorPath) {
+        Long stamp = snapshot.stamps.get(decoratorPath);
+        return stamp == null ? -1 : stamp;
+    }
+
+    /**
+     * @return The newest stamp of all tracked decorators - for the provided sources, the
+     *         time the most recently modified decorator was modified - or -1 if none is known.
+     */
+    public long getLastModified() {
+        return snapshot.lastModified;
+    }
+
+    /**
+     * Read stamps from the files (or other resources) of a web application: the file's
+     * last-modified time where the decorator is a file on disk, otherwise the
+     * last-modified time reported for the resource's URL.
+     *
+     * @param servletContext The web application's context.
+     * @return A source for decorators served from the web application.
+     */
+    public static StampSource forServletContext(final ServletContext servletContext) {
+        return new StampSource() {
+            public long getStamp(String decoratorPath) throws IOException {
+                String realPath = servletContext.getRealPath(decoratorPath);
+                if (realPath != null) {
+                    File file = new File(realPath);
+                    if (file.isFile()) {
+                        return file.lastModified();
+                    }
+                }
+                URL resource = servletContext.getResource(decoratorPath);
+                if (resource == null) {
+                    return -1; // Not a static resource (e.g. a servlet or controller).
+                }
+                long lastModified = resource.openConnection().getLastModified();
+                return lastModified == 0 ? -1 : lastModified;
+            }
+        };
+    }
+
+    /**
+     * Read stamps from a {@link Directory}, as used for offline generation.
+     *
+     * @param directory The directory decorators are loaded from.
+     * @return A source for decorators loaded from the directory.
+     * @see Directory#getLastModified(String)
+     */
+    public static StampSource forDirectory(final Directory directory) {
+        return new StampSource() {
+            public long getStamp(String decoratorPath) throws IOException {
+                return directory.getLastModified(decoratorPath);
+            }
+        };
+    }
+
+    private static final class Snapshot {
+        final Map<String, Long> stamps;
+        final long generation;
+        final long lastModified;
+
+        Snapshot(Map<String, Long> stamps, long generation) {
+            this.stamps = stamps;
+            this.generation = generation;
+            long newest = -1;
+            for (long stamp : stamps.values()) {
+                newest = Math.max(newest, stamp);
+            }
+            this.lastModified = newest;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link SiteMeshMetrics} that aggregates the recorded phases in memory: per phase, and per
+ * decorator for {@link Phase#DECORATE}, with {@link LogHistogram histograms} of the times and
+ * lengths, and counts each {@link Outcome}. Useful in tests, and as a starting point for
+ * exposing the numbers elsewhere.
+ *
+ * <p>Recording does not lock. Up to {@link #MAX_TRACKED_DECORATORS} decorators are tracked
+ * individually; the phase totals include all of them.</p>
+ */
+public class InMemorySiteMeshMetrics implements SiteMeshMetrics {
+
+    /** Maximum number of decorators tracked individually. */
+    public static final int MAX_TRACKED_DECORATORS = 1024;
+
+    private final Map<Phase, Stats> phases = new EnumMap<Phase, Stats>(Phase.class);
+    private final Map<String, Stats> decorators = new ConcurrentHashMap<String, Stats>();
+    private final Map<Outcome, LongAdder> outcomes = new EnumMap<Outcome, LongAdder>(Outcome.class);
+
+    public InMemorySiteMeshMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Stats());
+        }
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, new LongAdder());
+        }
+    }
+
+    public boolean isEnabled() {
+        return true;
+    }
+
+    public void recordPhase(Phase phase, String path, String decoratorPath, long nanos, long length) {
+        phases.get(phase).record(nanos, length);
+        if (phase == Phase.DECORATE && decoratorPath != null) {
+            Stats stats = decorators.get(decoratorPath);
+            if (stats == null) {
+                if (decorators.size() >= MAX_TRACKED_DECORATORS) {
+                    return;
+                }
+                Stats created = new Stats();
+                stats = decorators.putIfAbsent(decoratorPath, created);
+                if (stats == null) {
+                    stats = created;
+                    decoratorTracked(decoratorPath);
+                }
+            }
+            stats.record(nanos, length);
+        }
+    }
+
+    @Override
+    public void recordOutcome(Outcome outcome, String path) {
+        outcomes.get(outcome).increment();
+    }
+
+    /**
+     * Called the first time a decorator is tracked individually (and again after
+     * {@link #reset()}), so subclasses can expose it elsewhere. Does nothing by default.
+     *
+     * @param decoratorPath Path of the decorator.
+     */
+    protected void decoratorTracked(String decoratorPath) {
+    }
+
+    /**
+     * @param phase The phase.
+     * @return Aggregated timings of the phase.
+     */
+    public Stats getStats(Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * @param decoratorPath Path of the decorator.
+     * @return Aggregated timings of rendering the decorator ({@link Phase#DECORATE}), or null
+     *         if it was not rendered (or not tracked).
+     */
+    public Stats getDecoratorStats(String decoratorPath) {
+        return decorators.get(decoratorPath);
+    }
+
+    /**
+     * @return Paths of the decorators tracked individually.
+     */
+    public Set<String> getDecoratorPaths() {
+        return Collections.unmodifiableSet(decorators.keySet());
+    }
+
+    /**
+     * @param outcome The outcome.
+     * @return How many requests had the outcome.
+     */
+    public long getOutcomeCount(Outcome outcome) {
+        return outcomes.get(outcome).sum();
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        for (Stats stats : phases.values()) {
+            stats.reset();
+        }
+        decorators.clear();
+        for (LongAdder count : outcomes.values()) {
+            count.reset();
+        }
+    }
+
+    /**
+     * Aggregated timings of a phase. Values read while phases are being recorded may be
+     * slightly out of step with each other.
+     */
+    public static class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder totalLength = new LongAdder();
+        private final LogHistogram nanosHistogram = new LogHistogram();
+        private final LogHistogram lengthHistogram = new LogHistogram();
+
+        void record(long nanos, long length) {
+            count.increment();
+            totalNanos.add(nanos);
+            nanosHistogram.record(nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+            if (length >= 0) {
+                totalLength.add(length);
+                lengthHistogram.record(length);
+            }
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            totalLength.reset();
+            nanosHistogram.reset();
+            lengthHistogram.reset();
+        }
+
+        /**
+         * @return How many times the phase was recorded.
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return Total time spent in the phase, in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * @return Longest time spent in the phase at once, in nanoseconds.
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * @return Average time spent in the phase, in nanoseconds, or 0 if it was never recorded.
+         */
+        public long getMeanNanos() {
+            long n = getCount();
+            return n == 0 ? 0 : getTotalNanos() / n;
+        }
+
+        /**
+         * @return Total number of characters the phase handled.
+         */
+        public long getTotalLength() {
+            return totalLength.sum();
+        }
+
+        /**
+         * @param percentile Share of the recordings, between 0 and 1 (e.g. 0.99).
+         * @return Time within which the given share of the recordings completed, in
+         *         nanoseconds (see {@link LogHistogram#getPercentile(double)}).
+         */
+        public long getNanosPercentile(double percentile) {
+            return nanosHistogram.getPercentile(percentile);
+        }
+
+        /**
+         * @return Distribution of the times spent in the phase, in nanoseconds.
+         */
+        public LogHistogram getNanosHistogram() {
+            return nanosHistogram;
+        }
+
+        /**
+         * @return Distribution of the number of characters the phase handled, for the
+         *         recordings where it was known.
+         */
+        public LogHistogram getLengthHistogram() {
+            return lengthHistogram;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh;
+
+import java.io.IOException;
+
+/**
+ * Listener told how long each phase of decorating a page took, and how much content it
+ * handled.
+ *
+ * <p>Phases are timed only if {@link #isEnabled()} returns true, so {@link #NONE} (the
+ * default) costs a single check per phase. Implementations are called concurrently from
+ * request threads and must be thread-safe; they should return quickly, as they are called
+ * while the response is being produced. See {@link InMemorySiteMeshMetrics} for an
+ * implementation that aggregates the timings in memory.</p>
+ */
+public interface SiteMeshMetrics {
+
+    /**
+     * The phases of decorating a page, in the order they run. {@link #DECORATE} and
+     * {@link #REPARSE} run once per decorator applied.
+     */
+    enum Phase {
+        /** Rendering the page into the buffer. */
+        BUFFER,
+        /** Parsing the buffered page ({@link org.sitemesh.content.ContentProcessor#build}). */
+        BUILD,
+        /** Selecting the decorators ({@link DecoratorSelector#selectDecoratorPaths}). */
+        SELECT,
+        /** Rendering a decorator, merging the page into it. */
+        DECORATE,
+        /** Parsing the output of a decorator. */
+        REPARSE,
+        /** Writing the decorated page to the response. */
+        WRITE
+    }
+
+    /**
+     * What happened to a request the filter (or view) saw.
+     */
+    enum Outcome {
+        /** The page was decorated. */
+        DECORATED,
+        /** The page was buffered, but not decorated (e.g. no decorator was selected). */
+        UNDECORATED,
+        /** The request was passed through without being buffered. */
+        PASSED_THROUGH,
+        /** Buffering was abandoned, typically for a content type or status code that is not decorated. */
+        ABORTED,
+        /** The decorated page was served from a {@link org.sitemesh.webapp.contentfilter.ResponseCache}. */
+        CACHED
+    }
+
+    /**
+     * Metrics that are never enabled, and record nothing.
+     */
+    SiteMeshMetrics NONE = new SiteMeshMetrics() {
+        public boolean isEnabled() {
+            return false;
+        }
+
+        public void recordPhase(Phase phase, String path, String decoratorPath, long nanos, long length) {
+        }
+    };
+
+    /**
+     * @return Whether phases are timed and recorded at all.
+     */
+    boolean isEnabled();
+
+    /**
+     * Record a completed phase.
+     *
+     * @param phase The phase that completed.
+     * @param path Path of the page being decorated, or null if not known.
+     * @param decoratorPath Path of the decorator, for {@link Phase#DECORATE} and
+     *                      {@link Phase#REPARSE}; otherwise null.
+     * @param nanos How long the phase took, in nanoseconds.
+     * @param length Number of characters the phase produced (or, for {@link Phase#BUILD},
+     *               parsed), or -1 if not applicable or not known.
+     */
+    void recordPhase(Phase phase, String path, String decoratorPath, long nanos, long length);
+
+    /**
+     * Record what happened to a request. Only called if {@link #isEnabled()}. Does nothing by
+     * default.
+     *
+     * @param outcome What happened to the request.
+     * @param path Path of the request, or null if not known.
+     */
+    default void recordOutcome(Outcome outcome, String path) {
+    }
+
+    /**
+     * {@link Appendable} that counts the characters appended to another, to measure the
+     * {@link Phase#WRITE} phase.
+     */
+    final class CountingAppendable implements Appendable {
+        private final Appendable out;
+        private long count;
+
+        /**
+         * @param out Where to append to.
+         */
+        public CountingAppendable(Appendable out) {
+            this.out = out;
+        }
+
+        public Appendable append(CharSequence csq) throws IOException {
+            CharSequence value = csq != null ? csq : "null";
+            out.append(value);
+            count += value.length();
+            return this;
+        }
+
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            out.append(csq != null ? csq : "null", start, end);
+            count += end - start;
+            return this;
+        }
+
+        public Appendable append(char c) throws IOException {
+            out.append(c);
+            count++;
+            return this;
+        }
+
+        /**
+         * @return Number of characters appended so far.
+         */
+        public long getCount() {
+            return count;
+        }
+    }
+}
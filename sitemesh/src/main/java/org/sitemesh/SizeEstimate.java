@@ -0,0 +1,163 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Estimate of how long something SiteMesh buffers (a page, or the output of a decorator)
+ * usually is, used to size the buffer up front.
+ *
+ * <p>The lengths seen so far are kept in a small histogram: every power of two is split into
+ * eight buckets, so the estimate is at most 12.5% above a length actually seen. The estimate
+ * is the given percentile of the lengths (by default the 90th), so a page whose length varies
+ * a lot - a paginated list, search results - is sized for its long renders rather than for
+ * its last one, without giving a single outlier the last word. Every {@link #DECAY_INTERVAL}
+ * lengths, all counts are halved, so the estimate follows a page whose length changes over
+ * time.</p>
+ *
+ * <p>Finding the percentile walks the whole histogram, so it is only redone every
+ * {@link #RECOMPUTE_INTERVAL} lengths, or straight away for a length the estimate is too
+ * small for (a buffer that is too small costs a copy; one that is too large only memory).</p>
+ *
+ * <p>Recording does not lock. Concurrent recordings may race with the decay and skew a count
+ * slightly, which only makes one buffer a little too large or too small.</p>
+ */
+public class SizeEstimate {
+
+    /** Percentile buffers are sized at when none is specified. */
+    public static final double DEFAULT_PERCENTILE = 0.9;
+
+    /** Number of lengths recorded between halving all counts. */
+    public static final int DECAY_INTERVAL = 64;
+
+    /** Number of lengths recorded between recomputing the estimate, unless one exceeds it. */
+    public static final int RECOMPUTE_INTERVAL = 8;
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Enough for any positive int: the highest exponent is 30.
+    private static final int BUCKETS = SUB_BUCKETS + (31 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final double percentile;
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKETS);
+    private final AtomicInteger recorded = new AtomicInteger();
+    private volatile int estimate;
+
+    /**
+     * Size at the {@link #DEFAULT_PERCENTILE}.
+     */
+    public SizeEstimate() {
+        this(DEFAULT_PERCENTILE);
+    }
+
+    /**
+     * @param percentile Share of the lengths the estimate should be large enough for, greater
+     *                   than 0 and at most 1 (e.g. 0.9 for the 90th percentile).
+     */
+    public SizeEstimate(double percentile) {
+        this.percentile = checkPercentile(percentile);
+    }
+
+    /**
+     * Fold a length into the estimate.
+     *
+     * @param length Length just observed, in characters. Ignored if not positive.
+     */
+    public void record(int length) {
+        if (length <= 0) {
+            return;
+        }
+        counts.incrementAndGet(bucketOf(length));
+        int count = recorded.incrementAndGet();
+        if ((count & (DECAY_INTERVAL - 1)) == 0) {
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts.get(i) > 0) {
+                    counts.getAndUpdate(i, value -> value >> 1);
+                }
+            }
+        }
+        // DECAY_INTERVAL is a multiple of RECOMPUTE_INTERVAL, so a decay is always followed by a recompute.
+        if ((count & (RECOMPUTE_INTERVAL - 1)) == 0 || length > estimate) {
+            estimate = computeEstimate();
+        }
+    }
+
+    /**
+     * @return The estimated length, in characters, or 0 if nothing was recorded yet.
+     */
+    public int getEstimate() {
+        return estimate;
+    }
+
+    /**
+     * @return The percentile the estimate is taken at.
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    private int computeEstimate() {
+        // Walk a snapshot: a decay halving the live counts between totalling and walking them
+        // would leave the rank out of reach, and the estimate at the largest possible length.
+        int[] snapshot = new int[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            // Everything decayed away; keep the last estimate rather than start from nothing.
+            return estimate;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    static int bucketOf(int length) {
+        if (length < SUB_BUCKETS) {
+            return length;
+        }
+        int exponent = 31 - Integer.numberOfLeadingZeros(length);
+        int subBucket = (length >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static int upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (int) Math.min(Integer.MAX_VALUE, ((subBucket + 1) << shift) - 1);
+    }
+
+    static double checkPercentile(double percentile) {
+        if (!(percentile > 0 && percentile <= 1)) {
+            throw new IllegalArgumentException("percentile must be greater than 0 and at most 1: " + percentile);
+        }
+        return percentile;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link SizeEstimate}s by name, such as one per decorator path, shared by every request.
+ *
+ * <p>Names come from a fixed set in every normal application, so the {@link #MAX_TRACKED}
+ * cap is never reached; it only stops an application that synthesizes unbounded names from
+ * growing the map without limit. Beyond the cap, buffers are sized as if nothing was
+ * known.</p>
+ */
+public class SizeEstimates {
+
+    /** Maximum number of names tracked. */
+    public static final int MAX_TRACKED = 2048;
+
+    private final double percentile;
+    private final Map<String, SizeEstimate> estimates = new ConcurrentHashMap<String, SizeEstimate>();
+
+    /**
+     * Size at the {@link SizeEstimate#DEFAULT_PERCENTILE}.
+     */
+    public SizeEstimates() {
+        this(SizeEstimate.DEFAULT_PERCENTILE);
+    }
+
+    /**
+     * @param percentile Share of the lengths each estimate should be large enough for, greater
+     *                   than 0 and at most 1 (e.g. 0.9 for the 90th percentile).
+     */
+    public SizeEstimates(double percentile) {
+        this.percentile = SizeEstimate.checkPercentile(percentile);
+    }
+
+    /**
+     * @param name Name of the estimate, e.g. a decorator path.
+     * @return The estimate for the name, created on first use, or null if the name is null or
+     *         the cap has been reached.
+     */
+    public SizeEstimate get(String name) {
+        if (name == null) {
+            return null;
+        }
+        SizeEstimate existing = estimates.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        if (estimates.size() >= MAX_TRACKED) {
+            return null;
+        }
+        return estimates.computeIfAbsent(name, key -> new SizeEstimate(percentile));
+    }
+
+    /**
+     * @return The percentile the estimates are taken at.
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * @return A read-only, live view of the estimates by name.
+     */
+    public Map<String, SizeEstimate> asMap() {
+        return Collections.unmodifiableMap(estimates);
+    }
+
+    /**
+     * Forget all estimates.
+     */
+    public void clear() {
+        estimates.clear();
+    }
+}
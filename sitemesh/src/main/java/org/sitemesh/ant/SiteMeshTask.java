@@ -18,6 +18,7 @@ package org.sitemesh.ant;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
 import org.apache.tools.ant.taskdefs.MatchingTask;
 import org.apache.tools.ant.types.FileSet;
 import org.sitemesh.builder.SiteMeshOfflineBuilder;
@@ -28,7 +29,8 @@ import org.sitemesh.offline.SiteMeshOffline;
 import org.w3c.dom.Element;
 
 import java.io.File;
-import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Vector;
 import java.util.List;
 import java.util.LinkedList;
@@ -51,6 +53,16 @@ public class SiteMeshTask extends MatchingTask {
 
     private File srcdir;
 
+    /**
+     * How many files are processed at the same time.
+     */
+    private int threads = 1;
+
+    /**
+     * Whether the build fails when a file cannot be processed.
+     */
+    private boolean failonerror = true;
+
     /**
      * The files to decorate with SiteMesh.
      */
@@ -102,22 +114,29 @@ public class SiteMeshTask extends MatchingTask {
     /**
      * Processes the FileSet to decorate all of the provided files.
      *
+     * <p>A file that cannot be processed is logged and the others are still processed; the
+     * build fails afterwards, unless failonerror is false.</p>
+     *
      * @param filesets The set of files to be processed.
      * @throws BuildException When there's a problem decorating the files.
      */
     protected void processFileSet(List<FileSet> filesets) {
+        int failed = 0;
         for (FileSet fileset : filesets) {
             DirectoryScanner directoryScanner = fileset.getDirectoryScanner(getProject());
             directoryScanner.setBasedir(fileset.getDir(getProject()));
-            for (String path : directoryScanner.getIncludedFiles()) {
-                SiteMeshOffline siteMeshOffline = createSiteMeshOffline(fileset);
-                try {
-                    log("Processing '" + path + "'");
-                    siteMeshOffline.process(path);
-                } catch (IOException ioe) {
-                    throw new BuildException(ioe);
-                }
+            String[] paths = directoryScanner.getIncludedFiles();
+            log("Processing " + paths.length + " files from " + fileset.getDir(getProject())
+                    + (threads > 1 ? " with " + threads + " threads" : ""));
+            SiteMeshOffline siteMeshOffline = createSiteMeshOffline(fileset);
+            Map<String, Exception> failures = siteMeshOffline.processAll(Arrays.asList(paths), threads);
+            for (Map.Entry<String, Exception> failure : failures.entrySet()) {
+                log("Could not process '" + failure.getKey() + "': " + failure.getValue(), Project.MSG_ERR);
             }
+            failed += failures.size();
+        }
+        if (failed > 0 && failonerror) {
+            throw new BuildException(failed + " files could not be processed");
         }
     }
 
@@ -235,6 +254,29 @@ public class SiteMeshTask extends MatchingTask {
         this.srcdir = srcDir;
     }
 
+    /**
+     * Number of files to process at the same time. Defaults to 1.
+     *
+     * @param threads The number of threads, at least 1.
+     * @throws BuildException If threads is less than 1.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new BuildException("threads must be at least 1");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Whether the build fails if a file cannot be processed, once all the others have been.
+     * Defaults to true.
+     *
+     * @param failonerror false to only log the files that could not be processed.
+     */
+    public void setFailonerror(boolean failonerror) {
+        this.failonerror = failonerror;
+    }
+
     /**
      * Optional path to SiteMesh XML config file.
      *
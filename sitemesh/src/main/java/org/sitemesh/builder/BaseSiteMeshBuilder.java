@@ -24,10 +24,13 @@ import org.sitemesh.content.ContentProcessor;
 import org.sitemesh.DecoratorSelector;
 import org.sitemesh.SiteMeshContext;
 import org.sitemesh.config.MetaTagBasedDecoratorSelector;
+import org.sitemesh.config.PathBasedContentProcessor;
 import org.sitemesh.config.PathBasedDecoratorSelector;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Common functionality for {@link BaseSiteMeshFilterBuilder} and
@@ -47,6 +50,7 @@ public abstract class BaseSiteMeshBuilder
         <BUILDER extends BaseSiteMeshBuilder, CONTEXT extends SiteMeshContext, RESULT> {
 
     private List<TagRuleBundle> tagRuleBundles = new ArrayList<>();
+    private Map<String, List<TagRuleBundle>> tagRuleBundleProfiles = new LinkedHashMap<>();
     private ContentProcessor customContentProcessor;
 
     private PathBasedDecoratorSelector<CONTEXT> pathBasedDecoratorSelector
@@ -198,6 +202,44 @@ public abstract class BaseSiteMeshBuilder
         return self();
     }
 
+    /**
+     * Install additional TagRuleBundles only for content paths matching a pattern, on top of
+     * the common TagRuleBundles. Use this to keep expensive bundles (e.g. for legacy markup)
+     * away from the rest of the site. Calling this again for the same pattern adds to its
+     * bundles.
+     *
+     * <p>If several profile patterns match a path, only the most specific one applies (see
+     * {@link org.sitemesh.config.PathMapper}).</p>
+     *
+     * <p>Note: If {@link #setCustomContentProcessor(ContentProcessor)} is called,
+     * any TagRuleBundles are ignored, as they are only used by the default ContentProcessor
+     * implementation.</p>
+     *
+     * @param contentPath the content path pattern the bundles apply to.
+     * @param bundles the additional TagRuleBundles.
+     * @return this builder instance, for method chaining.
+     * @see PathBasedContentProcessor
+     */
+    public BUILDER addTagRuleBundleProfile(String contentPath, TagRuleBundle... bundles) {
+        return addTagRuleBundleProfile(contentPath, List.of(bundles));
+    }
+
+    /**
+     * Install additional TagRuleBundles only for content paths matching a pattern. See
+     * {@link #addTagRuleBundleProfile(String, TagRuleBundle...)}.
+     *
+     * @param contentPath the content path pattern the bundles apply to.
+     * @param bundles the additional TagRuleBundles.
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER addTagRuleBundleProfile(String contentPath, Iterable<TagRuleBundle> bundles) {
+        List<TagRuleBundle> profile = tagRuleBundleProfiles.computeIfAbsent(contentPath, path -> new ArrayList<>());
+        for (TagRuleBundle bundle : bundles) {
+            profile.add(bundle);
+        }
+        return self();
+    }
+
     /**
      * Set the {@link ContentProcessor}. If called, this will override
      * any calls to {@link #addTagRuleBundle(TagRuleBundle)}.
@@ -214,15 +256,25 @@ public abstract class BaseSiteMeshBuilder
      * Get configured {@link ContentProcessor}.
      *
      * @return the custom ContentProcessor if one was set, otherwise a
-     *         {@link TagBasedContentProcessor} built from the TagRuleBundles.
+     *         {@link TagBasedContentProcessor} built from the TagRuleBundles (wrapped in a
+     *         {@link PathBasedContentProcessor} if any profiles were added).
      */
     public ContentProcessor getContentProcessor() {
-        if (customContentProcessor == null) {
-            TagRuleBundle[] bundlesAsArray = tagRuleBundles.toArray(TagRuleBundle[]::new);
-            return new TagBasedContentProcessor(bundlesAsArray);
-        } else {
+        if (customContentProcessor != null) {
             return customContentProcessor;
         }
+        TagRuleBundle[] bundlesAsArray = tagRuleBundles.toArray(TagRuleBundle[]::new);
+        ContentProcessor common = new TagBasedContentProcessor(bundlesAsArray);
+        if (tagRuleBundleProfiles.isEmpty()) {
+            return common;
+        }
+        PathBasedContentProcessor processor = new PathBasedContentProcessor(common);
+        for (Map.Entry<String, List<TagRuleBundle>> profile : tagRuleBundleProfiles.entrySet()) {
+            List<TagRuleBundle> bundles = new ArrayList<>(tagRuleBundles);
+            bundles.addAll(profile.getValue());
+            processor.put(profile.getKey(), new TagBasedContentProcessor(bundles.toArray(TagRuleBundle[]::new)));
+        }
+        return processor;
     }
 
     // --------------------------------------------------------------
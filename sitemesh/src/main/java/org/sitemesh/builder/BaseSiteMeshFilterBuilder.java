@@ -16,17 +16,30 @@
 
 package org.sitemesh.builder;
 
+import org.sitemesh.DecoratorVersionRegistry;
+import org.sitemesh.SiteMeshMetrics;
 import org.sitemesh.config.PathMapper;
+import org.sitemesh.webapp.DecoratorSource;
 import org.sitemesh.webapp.DispatchMode;
+import org.sitemesh.webapp.SiteMeshWarmup;
+import org.sitemesh.webapp.StaticDecoratorSource;
 import org.sitemesh.webapp.WebAppContext;
+import org.sitemesh.webapp.contentfilter.AsyncDecorator;
 import org.sitemesh.webapp.contentfilter.BasicSelector;
+import org.sitemesh.webapp.contentfilter.ETagGenerator;
+import org.sitemesh.webapp.contentfilter.NonBlockingWriter;
+import org.sitemesh.webapp.contentfilter.RequestExclusions;
+import org.sitemesh.webapp.contentfilter.ResponseCache;
 import org.sitemesh.webapp.contentfilter.Selector;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.Filter;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
 
 /**
  * Functionality for building a {@link org.sitemesh.webapp.SiteMeshFilter}.
@@ -48,9 +61,21 @@ public abstract class BaseSiteMeshFilterBuilder<BUILDER extends BaseSiteMeshBuil
     private Collection<String> mimeTypes;
 
     private PathMapper<Boolean> excludesMapper = new PathMapper<Boolean>();
+    private final List<String> excludedExtensions = new ArrayList<String>();
+    private final List<String> excludedPrefixes = new ArrayList<String>();
+    private final Set<DispatcherType> excludedDispatcherTypes = EnumSet.noneOf(DispatcherType.class);
     private Selector customSelector;
     private boolean includeErrorPages;
     private DispatchMode dispatchMode;
+    private ResponseCache responseCache;
+    private ETagGenerator eTagGenerator;
+    private boolean customETagGenerator;
+    private DecoratorVersionRegistry decoratorVersionRegistry;
+    private DecoratorSource decoratorSource;
+    private NonBlockingWriter nonBlockingWriter;
+    private AsyncDecorator asyncDecorator;
+    private SiteMeshWarmup warmup;
+    private SiteMeshMetrics metrics;
 
     /**
      * Create the SiteMesh Filter.
@@ -88,6 +113,75 @@ public abstract class BaseSiteMeshFilterBuilder<BUILDER extends BaseSiteMeshBuil
         return self();
     }
 
+    /**
+     * Pass requests whose URI ends with one of the given extensions straight through, before
+     * the request path is computed or the response is wrapped. Matched ignoring case.
+     *
+     * <p>Unlike {@link #addExcludedPath(String)}, this cannot be overridden by a more specific
+     * decorator path.</p>
+     *
+     * @param extensions the extensions to exclude, such as <code>.css</code> (the leading dot is optional).
+     * @return this builder instance, for method chaining.
+     * @see RequestExclusions
+     * @see RequestExclusions#STATIC_ASSET_EXTENSIONS
+     */
+    public BUILDER addExcludedExtensions(String... extensions) {
+        return addExcludedExtensions(List.of(extensions));
+    }
+
+    /**
+     * See {@link #addExcludedExtensions(String...)}.
+     *
+     * @param extensions the extensions to exclude.
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER addExcludedExtensions(Collection<String> extensions) {
+        excludedExtensions.addAll(extensions);
+        return self();
+    }
+
+    /**
+     * Pass requests whose URI (after the context path) starts with the given prefix straight
+     * through, before the request path is computed or the response is wrapped.
+     *
+     * <p>Unlike {@link #addExcludedPath(String)}, this cannot be overridden by a more specific
+     * decorator path.</p>
+     *
+     * @param prefix the URI prefix to exclude, such as <code>/assets/</code>.
+     * @return this builder instance, for method chaining.
+     * @see RequestExclusions
+     */
+    public BUILDER addExcludedPrefix(String prefix) {
+        excludedPrefixes.add(prefix);
+        return self();
+    }
+
+    /**
+     * Pass requests dispatched with one of the given types (e.g. {@link DispatcherType#INCLUDE})
+     * straight through, for filters mapped to more dispatcher types than should be decorated.
+     *
+     * @param dispatcherTypes the dispatcher types to exclude.
+     * @return this builder instance, for method chaining.
+     * @see RequestExclusions
+     */
+    public BUILDER addExcludedDispatcherTypes(DispatcherType... dispatcherTypes) {
+        excludedDispatcherTypes.addAll(List.of(dispatcherTypes));
+        return self();
+    }
+
+    /**
+     * Get the {@link RequestExclusions} built from the excluded extensions, prefixes and
+     * dispatcher types.
+     *
+     * @return the RequestExclusions, or <code>null</code> if nothing is excluded this way.
+     */
+    public RequestExclusions getRequestExclusions() {
+        if (excludedExtensions.isEmpty() && excludedPrefixes.isEmpty() && excludedDispatcherTypes.isEmpty()) {
+            return null;
+        }
+        return new RequestExclusions(excludedExtensions, excludedPrefixes, excludedDispatcherTypes);
+    }
+
     // --------------------------------------------------------------
     // Selector setup.
 
@@ -195,4 +289,314 @@ public abstract class BaseSiteMeshFilterBuilder<BUILDER extends BaseSiteMeshBuil
         return dispatchMode;
     }
 
+    // --------------------------------------------------------------
+    // Response caching.
+
+    /**
+     * Cache decorated pages for a short time, serving repeated requests for the same
+     * path, query and vary headers without re-rendering or re-decorating them. Concurrent
+     * requests for a page that is not cached yet wait for a single render. Disabled by
+     * default.
+     *
+     * <p>Only suitable for pages that are the same for every visitor sharing the cache key
+     * (typically anonymous traffic). See {@link ResponseCache}.</p>
+     *
+     * @param ttlMillis how long (in milliseconds) a decorated page is served from the cache.
+     * @param maxEntries maximum number of pages held before the least recently used one is evicted.
+     * @param varyHeaders names of request headers whose values the cached page depends on
+     *                    (e.g. <code>Accept-Language</code>).
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER setResponseCache(long ttlMillis, int maxEntries, String... varyHeaders) {
+        return setResponseCache(new ResponseCache(ttlMillis, maxEntries, varyHeaders));
+    }
+
+    /**
+     * Set a custom {@link ResponseCache}, or <code>null</code> to disable response caching
+     * (the default).
+     *
+     * @param responseCache the ResponseCache to use.
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+        return self();
+    }
+
+    /**
+     * The configured {@link ResponseCache}.
+     *
+     * @return the ResponseCache, or <code>null</code> if responses are not cached.
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    // --------------------------------------------------------------
+    // Conditional GET.
+
+    /**
+     * Send strong ETags with decorated pages and answer matching <code>If-None-Match</code>
+     * requests with 304 (Not Modified). Tags combine the page's own validator (or a hash
+     * of the decorated page) with a decorator version that changes whenever the application
+     * restarts, or (with {@link #setDecoratorChangeDetection(long)}) a decorator changes.
+     * Disabled by default.
+     *
+     * @param eTags whether to send ETags.
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER setETags(boolean eTags) {
+        this.eTagGenerator = eTags ? new ETagGenerator(decoratorVersionRegistry) : null;
+        this.customETagGenerator = false;
+        return self();
+    }
+
+    /**
+     * Set a custom {@link ETagGenerator} (e.g. with an explicit decorator version), or
+     * <code>null</code> to send no ETags (the default).
+     *
+     * @param eTagGenerator the ETagGenerator to use.
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER setETagGenerator(ETagGenerator eTagGenerator) {
+        this.eTagGenerator = eTagGenerator;
+        this.customETagGenerator = true;
+        return self();
+    }
+
+    /**
+     * The configured {@link ETagGenerator}.
+     *
+     * @return the ETagGenerator, or <code>null</code> if no ETags are sent.
+     */
+    public ETagGenerator getETagGenerator() {
+        return eTagGenerator;
+    }
+
+    // --------------------------------------------------------------
+    // Decorator changes.
+
+    /**
+     * Watch the decorators in use for changes, checking the web application's files at the
+     * given interval. When a decorator changes, ETags (see {@link #setETags(boolean)}) change
+     * with it and the {@link ResponseCache} is cleared. Disabled by default.
+     *
+     * <p>To check only on demand, pass a {@link DecoratorVersionRegistry} created with an
+     * interval of 0 to {@link #setDecoratorVersionRegistry(DecoratorVersionRegistry)} and call
+     * {@link DecoratorVersionRegistry#checkNow()} on it, e.g. after a deployment.</p>
+     *
+     * @param checkIntervalMillis milliseconds between checks, or a negative value to disable.
+     * @return this builder instance, for method chaining.
+     * @throws IllegalArgumentException if checkIntervalMillis is 0, as nothing would ever check.
+     * @see DecoratorVersionRegistry
+     */
+    public BUILDER setDecoratorChangeDetection(long checkIntervalMillis) {
+        if (checkIntervalMillis == 0) {
+            throw new IllegalArgumentException("checkIntervalMillis must be positive, or negative to disable");
+        }
+        return setDecoratorVersionRegistry(checkIntervalMillis < 0 ? null
+                : new DecoratorVersionRegistry(checkIntervalMillis));
+    }
+
+    /**
+     * Detect decorator changes using a custom {@link DecoratorVersionRegistry}, or
+     * <code>null</code> to disable change detection (the default).
+     *
+     * @param decoratorVersionRegistry the registry to track decorators with.
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER setDecoratorVersionRegistry(DecoratorVersionRegistry decoratorVersionRegistry) {
+        this.decoratorVersionRegistry = decoratorVersionRegistry;
+        if (eTagGenerator != null && !customETagGenerator) {
+            eTagGenerator = new ETagGenerator(decoratorVersionRegistry);
+        }
+        return self();
+    }
+
+    /**
+     * The configured {@link DecoratorVersionRegistry}.
+     *
+     * @return the DecoratorVersionRegistry, or <code>null</code> if decorator changes are not detected.
+     */
+    public DecoratorVersionRegistry getDecoratorVersionRegistry() {
+        return decoratorVersionRegistry;
+    }
+
+    /**
+     * Read static decorator files (<code>.html</code> and <code>.htm</code>) directly from the
+     * web application, once, instead of dispatching a request to the container's default
+     * servlet for every decorated page. Other decorators are dispatched to as before. Disabled
+     * by default.
+     *
+     * @param staticDecorators whether to read static decorators directly.
+     * @return this builder instance, for method chaining.
+     * @see StaticDecoratorSource
+     */
+    public BUILDER setStaticDecorators(boolean staticDecorators) {
+        return setDecoratorSource(staticDecorators ? new StaticDecoratorSource() : null);
+    }
+
+    /**
+     * Render decorators with a custom {@link DecoratorSource} where it can, or
+     * <code>null</code> to always dispatch to them (the default).
+     *
+     * @param decoratorSource the DecoratorSource to use.
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER setDecoratorSource(DecoratorSource decoratorSource) {
+        this.decoratorSource = decoratorSource;
+        return self();
+    }
+
+    /**
+     * The configured {@link DecoratorSource}.
+     *
+     * @return the DecoratorSource, or <code>null</code> if decorators are always dispatched to.
+     */
+    public DecoratorSource getDecoratorSource() {
+        return decoratorSource;
+    }
+
+    // --------------------------------------------------------------
+    // Warmup.
+
+    /**
+     * Warm up the filter when it is initialized: build the path matching structures, load the
+     * decorators that can be loaded without a request, and run the given number of synthetic
+     * parse and decorate cycles. The filter only takes requests once this completed. Disabled
+     * by default.
+     *
+     * @param iterations number of synthetic cycles to run, or a negative value to disable warmup.
+     * @return this builder instance, for method chaining.
+     * @see SiteMeshWarmup
+     */
+    public BUILDER setWarmupIterations(int iterations) {
+        return setWarmup(iterations < 0 ? null : new SiteMeshWarmup(iterations));
+    }
+
+    /**
+     * Warm up the filter with a custom {@link SiteMeshWarmup}, or <code>null</code> to
+     * start cold (the default).
+     *
+     * @param warmup the warmup to run when the filter is initialized.
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER setWarmup(SiteMeshWarmup warmup) {
+        this.warmup = warmup;
+        return self();
+    }
+
+    /**
+     * The configured {@link SiteMeshWarmup}.
+     *
+     * @return the SiteMeshWarmup, or <code>null</code> if the filter starts cold.
+     */
+    public SiteMeshWarmup getWarmup() {
+        return warmup;
+    }
+
+    // --------------------------------------------------------------
+    // Output.
+
+    /**
+     * Write decorated pages of at least the given length using Servlet non-blocking IO,
+     * releasing the request thread while the bytes drain to slow clients. Only applies to
+     * requests that support async processing. Disabled by default.
+     *
+     * @param minimumLength minimum page length (in bytes) to write without blocking, or
+     *                      a negative value to always use blocking IO.
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER setNonBlockingWriteThreshold(int minimumLength) {
+        return setNonBlockingWriteThreshold(minimumLength, NonBlockingWriter.DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Write decorated pages of at least the given length using Servlet non-blocking IO, giving
+     * clients the given time to read them. See {@link #setNonBlockingWriteThreshold(int)}.
+     *
+     * @param minimumLength minimum page length (in bytes) to write without blocking, or
+     *                      a negative value to always use blocking IO.
+     * @param timeoutMillis how long (in milliseconds) a client is given to read a page before
+     *                      writing it is abandoned.
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER setNonBlockingWriteThreshold(int minimumLength, long timeoutMillis) {
+        this.nonBlockingWriter = minimumLength < 0 ? null : new NonBlockingWriter(minimumLength, timeoutMillis);
+        return self();
+    }
+
+    /**
+     * The configured {@link NonBlockingWriter}.
+     *
+     * @return the NonBlockingWriter, or <code>null</code> if pages are written with blocking IO.
+     */
+    public NonBlockingWriter getNonBlockingWriter() {
+        return nonBlockingWriter;
+    }
+
+    // --------------------------------------------------------------
+    // Async requests.
+
+    /**
+     * Decorate async requests on a separate executor (virtual threads where available) once
+     * the application completes them, completing the request only after the decorated page
+     * is written. Disabled by default, in which case async requests are decorated once the
+     * container has completed them.
+     *
+     * @param asyncDecoration whether to decorate async requests on an executor.
+     * @return this builder instance, for method chaining.
+     * @see AsyncDecorator
+     */
+    public BUILDER setAsyncDecoration(boolean asyncDecoration) {
+        this.asyncDecorator = asyncDecoration ? new AsyncDecorator() : null;
+        return self();
+    }
+
+    /**
+     * Decorate async requests using a custom {@link AsyncDecorator}, e.g. one
+     * running on an application-managed executor.
+     *
+     * @param asyncDecorator the decorator to use, or <code>null</code> to disable async decoration.
+     * @return this builder instance, for method chaining.
+     */
+    public BUILDER setAsyncDecorator(AsyncDecorator asyncDecorator) {
+        this.asyncDecorator = asyncDecorator;
+        return self();
+    }
+
+    /**
+     * The configured {@link AsyncDecorator}.
+     *
+     * @return the AsyncDecorator, or <code>null</code> if async requests are decorated once completed.
+     */
+    public AsyncDecorator getAsyncDecorator() {
+        return asyncDecorator;
+    }
+
+    // --------------------------------------------------------------
+    // Metrics.
+
+    /**
+     * Record how long each phase of decorating a page takes (buffering, parsing, selecting and
+     * rendering the decorators, writing). Nothing is recorded by default.
+     *
+     * @param metrics the metrics to record to, or <code>null</code> to record nothing.
+     * @return this builder instance, for method chaining.
+     * @see SiteMeshMetrics
+     */
+    public BUILDER setMetrics(SiteMeshMetrics metrics) {
+        this.metrics = metrics;
+        return self();
+    }
+
+    /**
+     * The configured {@link SiteMeshMetrics}.
+     *
+     * @return the SiteMeshMetrics, or <code>null</code> if nothing is recorded.
+     */
+    public SiteMeshMetrics getMetrics() {
+        return metrics;
+    }
+
 }
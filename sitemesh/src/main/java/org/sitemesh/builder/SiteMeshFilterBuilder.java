@@ -75,7 +75,17 @@ public class SiteMeshFilterBuilder
                 getContentProcessor(),
                 getDecoratorSelector(),
                 isIncludeErrorPages(),
-                getDispatchMode());
+                getDispatchMode(),
+                new SiteMeshFilter.Options()
+                        .setResponseCache(getResponseCache())
+                        .setETagGenerator(getETagGenerator())
+                        .setNonBlockingWriter(getNonBlockingWriter())
+                        .setAsyncDecorator(getAsyncDecorator())
+                        .setDecoratorVersionRegistry(getDecoratorVersionRegistry())
+                        .setDecoratorSource(getDecoratorSource())
+                        .setWarmup(getWarmup())
+                        .setRequestExclusions(getRequestExclusions())
+                        .setMetrics(getMetrics()));
     }
 
 }
@@ -39,6 +39,12 @@ import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -98,6 +104,10 @@ import java.util.logging.Logger;
  * <p>The default configuration path of <code>/WEB-INF/sitemesh3.xml</code> can be changed by
  * adding a <code>configFile</code> init-param to the filter.</p>
  *
+ * <p>Changes to the config file are picked up by a background thread, which checks the file's
+ * timestamp every few seconds and swaps in a newly built filter when it changed. Requests never
+ * wait for the check, and keep being served by the previous filter until the new one is ready.</p>
+ *
  * <h2>Reference</h2>
  *
  * <p><b><code>decoratorMappings</code></b>: A list of mappings of path patterns to decorators.
@@ -117,6 +127,11 @@ import java.util.logging.Logger;
  * Note: The <code>contentProcessor</code> and <code>tagRuleBundles</code> are mutually exclusive
  * - you should not set them both.</p>
  *
+ * <p><b><code>tagRuleBundleProfiles</code></b> (optional): A list of mappings of path patterns to the
+ * <i>names</i> of {@link org.sitemesh.content.tagrules.TagRuleBundle}s installed only for content
+ * matching the pattern, on top of the other bundles. Entries are formatted as for
+ * <code>decoratorMappings</code>, e.g. <code>/legacy/*=com.acme.LegacyBundle|com.acme.OfficeBundle</code>.</p>
+ *
  * <p><b><code>contentProcessor</code></b> (optional): The <i>name</i> of the
  * {@link org.sitemesh.content.ContentProcessor} to use.
  * Note: The <code>contentProcessor</code> and <code>tagRuleBundles</code> are mutually exclusive
@@ -125,11 +140,40 @@ import java.util.logging.Logger;
  * <p><b><code>exclude</code></b> (optional): A list of path patterns to exclude from
  * decoration, separated by whitespace or commas. e.g. <code>/javadoc/*, somepage.html, *.jsp</code></p>
  *
+ * <p><b><code>excludeExtensions</code></b> (optional): A list of extensions of request URIs that
+ * are passed straight through, before the request path is computed or the response wrapped,
+ * separated by whitespace or commas. e.g. <code>.css, .js, .png</code>. Unlike
+ * <code>exclude</code>, these cannot be overridden by a more specific decorator mapping.
+ * Can also be set with <code>&lt;exclude-extension&gt;</code> elements in the XML config file.
+ * See {@link org.sitemesh.webapp.contentfilter.RequestExclusions}.</p>
+ *
+ * <p><b><code>excludePrefixes</code></b> (optional): As <code>excludeExtensions</code>, for
+ * request URIs (after the context path) starting with one of the listed prefixes.
+ * e.g. <code>/assets/, /webjars/</code>
+ * (<code>&lt;exclude-prefix&gt;</code> in the XML config file)</p>
+ *
+ * <p><b><code>excludeDispatcherTypes</code></b> (optional): A list of
+ * {@link jakarta.servlet.DispatcherType}s that are never decorated. e.g. <code>include, async</code>
+ * (<code>&lt;exclude-dispatcher-type&gt;</code> in the XML config file)</p>
+ *
  * <p><b><code>dispatchMode</code></b> (optional): How the decorator is dispatched -
  * <code>include</code>, <code>forward</code>, or <code>detect</code>. Defaults to
  * <code>detect</code> (use <code>include</code> on Tomcat 11+, <code>forward</code>
  * elsewhere). See {@link org.sitemesh.webapp.DispatchMode}.</p>
  *
+ * <p><b><code>autoReload</code></b> (optional): Whether the XML config file is watched for changes
+ * and reloaded. Defaults to <code>true</code>.</p>
+ *
+ * <p><b><code>autoReloadInterval</code></b> (optional): How often, in seconds, the XML config
+ * file is checked for changes when <code>autoReload</code> is enabled. Defaults to
+ * <code>2</code>.</p>
+ *
+ * <p><b><code>warmupIterations</code></b> (optional): Warm up the filter when it is initialized
+ * (and when a changed config is reloaded, before it is used), running this many synthetic parse
+ * and decorate cycles. Disabled if not set. Can also be set with a
+ * <code>&lt;warmup-iterations&gt;</code> element in the XML config file.
+ * See {@link org.sitemesh.webapp.SiteMeshWarmup}.</p>
+ *
  * <p>Where a <i>name</i> is used, this means the fully qualified class name, which must
  * have a default constructor.</p>
  *
@@ -150,14 +194,16 @@ public class ConfigurableSiteMeshFilter implements Filter {
     private FilterConfig filterConfig;
     private Map<String,String> configProperties;
     private boolean autoReload;
+    private ScheduledExecutorService reloader;
 
     // Fields that may change during the lifecycle of the Filter (if enableReload==true).
-    // Modifications of these should be synchronized on configLock (below).
+    // Modifications of these should be made holding configLock (below).
     private volatile Filter filter;
     private volatile long timestampOfXmlFileAtLastLoad;
 
-    // See above.
-    private final Object configLock = new Object();
+    // See above. A ReentrantLock rather than a monitor, so that setting up a filter - which
+    // reads files and may block - never pins a virtual thread to its carrier.
+    private final ReentrantLock configLock = new ReentrantLock();
 
     /** Name of the init-param used to specify the XML config file location. */
     public static final String CONFIG_FILE_PARAM = "configFile";
@@ -171,14 +217,27 @@ public class ConfigurableSiteMeshFilter implements Filter {
     /** Whether auto reloading is enabled if the {@link #AUTO_RELOAD_PARAM} init-param is not set. */
     public static final boolean AUTO_RELOAD_DEFAULT = true;
 
+    /** Name of the init-param used to set how often (in seconds) the config file is checked for changes. */
+    public static final String AUTO_RELOAD_INTERVAL_PARAM = "autoReloadInterval";
+
+    /** Seconds between checks for changes if the {@link #AUTO_RELOAD_INTERVAL_PARAM} init-param is not set. */
+    public static final int AUTO_RELOAD_INTERVAL_DEFAULT = 2;
+
     public void init(FilterConfig filterConfig) throws ServletException {
         this.filterConfig = filterConfig;
         configProperties = getConfigProperties(filterConfig);
         autoReload = getAutoReload();
         logger.config("Auto reloading " + (autoReload ? "enabled" : "disabled"));
 
-        synchronized (configLock) {
+        configLock.lock();
+        try {
             deployNewFilter(setup());
+        } finally {
+            configLock.unlock();
+        }
+
+        if (autoReload) {
+            startReloader(getAutoReloadInterval());
         }
 
         initialized = true;
@@ -188,15 +247,21 @@ public class ConfigurableSiteMeshFilter implements Filter {
         if (!initialized) {
             throw new ServletException(getClass().getName() + ".init(FilterConfig) was not called");
         }
-        reloadIfNecessary();
         filter.doFilter(servletRequest, servletResponse, filterChain);
     }
 
     public void destroy() {
-        synchronized (configLock) {
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+        }
+        configLock.lock();
+        try {
             if (filter != null) {
                 filter.destroy();
             }
+        } finally {
+            configLock.unlock();
         }
     }
 
@@ -274,6 +339,25 @@ public class ConfigurableSiteMeshFilter implements Filter {
         }
     }
 
+    /**
+     * How often the config file should be checked for changes, if auto reloading is enabled.
+     *
+     * @return the number of seconds between checks.
+     */
+    protected int getAutoReloadInterval() {
+        String interval = configProperties.get(AUTO_RELOAD_INTERVAL_PARAM);
+        if (interval == null || interval.isEmpty()) {
+            return AUTO_RELOAD_INTERVAL_DEFAULT;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(interval));
+        } catch (NumberFormatException e) {
+            logger.warning("Invalid " + AUTO_RELOAD_INTERVAL_PARAM + " '" + interval + "', using "
+                    + AUTO_RELOAD_INTERVAL_DEFAULT + " seconds");
+            return AUTO_RELOAD_INTERVAL_DEFAULT;
+        }
+    }
+
     /**
      * Gets the SiteMesh XML config file name.
      * Looks for a 'config' property in the Filter init-params.
@@ -383,24 +467,47 @@ public class ConfigurableSiteMeshFilter implements Filter {
 
     /**
      * Rebuild and redeploy the underlying filter if auto reloading is enabled and the
-     * config file has changed.
+     * config file has changed. Called periodically from a background thread, never from
+     * request threads.
      *
      * @throws ServletException if the new configuration cannot be loaded.
      */
     protected void reloadIfNecessary() throws ServletException {
-        // TODO: Allow finer grained control of reload strategies:
-        // - don't check file timestamp on every single request (once per N seconds).
-        // - periodically check in background, instead of blocking request threads.
-
         if (autoReload && reloadRequired()) {
-            synchronized (configLock) { // Double check lock for performance (works in JDK5+, with volatile items).
+            configLock.lock(); // Double check lock for performance (works in JDK5+, with volatile items).
+            try {
                 if (reloadRequired()) {
+                    long start = System.nanoTime();
                     deployNewFilter(setup());
+                    logger.info("Reloaded SiteMesh 3 config in "
+                            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
                 }
+            } finally {
+                configLock.unlock();
             }
         }
     }
 
+    private void startReloader(int intervalSeconds) {
+        reloader = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "sitemesh-config-reloader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        reloader.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    reloadIfNecessary();
+                } catch (Exception e) {
+                    // Keep serving with the previous filter. The failed file is not retried until it changes again.
+                    logger.log(Level.SEVERE, "Could not reload SiteMesh 3 config, keeping the previous configuration", e);
+                }
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
     /**
      * Initialize and switch to a new underlying filter, destroying the old one (if any).
      *
@@ -426,6 +533,16 @@ public class ConfigurableSiteMeshFilter implements Filter {
         return ((SiteMeshFilter) filter).getContentProcessor();
     }
 
+    /**
+     * Whether the deployed filter has finished warming up, for readiness checks.
+     *
+     * @return true once the filter is initialized and warm (or not warmed up at all).
+     */
+    public boolean isWarmedUp() {
+        Filter current = filter;
+        return initialized && (!(current instanceof SiteMeshFilter) || ((SiteMeshFilter) current).isWarmedUp());
+    }
+
     /**
      * @return the {@link DecoratorSelector} used by the deployed filter.
      */
@@ -41,9 +41,16 @@ public interface ObjectFactory {
      * Default implementation of {@link ObjectFactory} that treats the object
      * name as a class name, loading it from the current ClassLoader and instantiating
      * with the default constructor.
+     *
+     * <p>The built-in tag rule bundles and decorator selectors are created without
+     * reflection (see {@link RegistryObjectFactory#BUILT_INS}).</p>
      */
     public static class Default implements ObjectFactory {
         public Object create(String name) {
+            Object builtIn = RegistryObjectFactory.createBuiltIn(name);
+            if (builtIn != null) {
+                return builtIn;
+            }
             try {
                 Class<?> cls = Class.forName(name);
                 return cls.getDeclaredConstructor().newInstance();
@@ -0,0 +1,122 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.config;
+
+import org.sitemesh.SiteMeshContext;
+import org.sitemesh.content.Content;
+import org.sitemesh.content.ContentProcessor;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * {@link ContentProcessor} that delegates to a different processor (profile) depending on
+ * the {@link SiteMeshContext#getPath() path} of the content, so that expensive tag rules are
+ * only run for the parts of a site that need them. <h2>Example</h2>
+ *
+ * <pre>
+ * ContentProcessor processor = new PathBasedContentProcessor(
+ * &nbsp;        new TagBasedContentProcessor(new CoreHtmlTagRuleBundle(), new DecoratorTagRuleBundle()))
+ * &nbsp;    .put("/legacy/*", new TagBasedContentProcessor(new CoreHtmlTagRuleBundle(),
+ * &nbsp;        new DecoratorTagRuleBundle(), new DivExtractingTagRuleBundle()))
+ * </pre>
+ *
+ * <p>Paths are matched as by {@link PathMapper}: if several profile patterns match a path,
+ * only the most specific one is used. Paths matching no pattern use the default processor.
+ * Decorators are processed with the profile of the page they decorate. The processor chosen
+ * for each path is remembered in a bounded {@link PathResolutionCache}, which is cleared
+ * whenever the profiles change through this processor.</p>
+ *
+ * @see org.sitemesh.builder.BaseSiteMeshBuilder#addTagRuleBundleProfile(String, org.sitemesh.content.tagrules.TagRuleBundle...)
+ */
+public class PathBasedContentProcessor implements ContentProcessor {
+
+    private final ContentProcessor defaultProcessor;
+
+    private final PathMapper<ContentProcessor> pathMapper = new PathMapper<ContentProcessor>();
+
+    private final PathResolutionCache<ContentProcessor> resolved = new PathResolutionCache<ContentProcessor>();
+
+    /**
+     * @param defaultProcessor processor used for paths matching no profile
+     */
+    public PathBasedContentProcessor(ContentProcessor defaultProcessor) {
+        if (defaultProcessor == null) {
+            throw new IllegalArgumentException("defaultProcessor cannot be null");
+        }
+        this.defaultProcessor = defaultProcessor;
+    }
+
+    /**
+     * Map a content path pattern to a processor.
+     *
+     * @param contentPath path pattern to match (see {@link PathMapper})
+     * @param processor processor to use for content matching the pattern
+     * @return this instance, to allow method chaining
+     */
+    public PathBasedContentProcessor put(String contentPath, ContentProcessor processor) {
+        pathMapper.put(contentPath, processor);
+        resolved.clear();
+        return this;
+    }
+
+    public Content build(CharBuffer data, SiteMeshContext context) throws IOException {
+        return selectProcessor(context.getPath()).build(data, context);
+    }
+
+    /**
+     * Select the processor for a path.
+     *
+     * @param path path of the content to process
+     * @return the processor of the most specific matching profile, or the default processor
+     */
+    public ContentProcessor selectProcessor(String path) {
+        ContentProcessor result = resolved.get(path);
+        if (result == null) {
+            ContentProcessor mapped = pathMapper.get(path);
+            result = mapped == null ? defaultProcessor : mapped;
+            resolved.put(path, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return processor used for paths matching no profile
+     */
+    public ContentProcessor getDefaultProcessor() {
+        return defaultProcessor;
+    }
+
+    /**
+     * Returns path mapper in use. Mappings added to it directly rather than through
+     * {@link #put(String, ContentProcessor)} are only seen once {@link #clearResolutionCache()}
+     * is called.
+     *
+     * @return path mapper in use
+     */
+    public PathMapper<ContentProcessor> getPathMapper() {
+        return pathMapper;
+    }
+
+    /**
+     * Forget the processors cached per path, e.g. after changing the {@link #getPathMapper()
+     * path mapper} directly.
+     */
+    public void clearResolutionCache() {
+        resolved.clear();
+    }
+}
@@ -21,7 +21,8 @@ import org.sitemesh.SiteMeshContext;
 import org.sitemesh.content.Content;
 
 import java.io.IOException;
-import java.util.stream.Stream;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * {@link DecoratorSelector} implementation that selects a decorator based on the
@@ -33,6 +34,11 @@ import java.util.stream.Stream;
  * &nbsp;    .put("/admin/*", "/decorators/admin.html")
  * &nbsp;    .put("/thingy", "/decorators/thingy.html")
  * </pre>
+ *
+ * <p>The decorators selected for each path are remembered in a bounded
+ * {@link PathResolutionCache}, which is cleared whenever the mappings or prefix change
+ * through this selector. Subclasses that override {@link #convertPaths(String[])} are
+ * not cached, as their conversion may depend on more than the path.</p>
  * 
  * @author Joe Walnes
  * @see PathMapper
@@ -43,6 +49,11 @@ public class PathBasedDecoratorSelector<C extends SiteMeshContext> implements De
 
     private final PathMapper<String[]> pathMapper = new PathMapper<String[]>();
 
+    // Immutable lists, so that callers changing the arrays they are given cannot corrupt the cache.
+    private final PathResolutionCache<List<String>> resolved = new PathResolutionCache<List<String>>();
+
+    private final boolean cacheResolutions = !overridesConvertPaths(getClass());
+
     /** Prefix prepended to every decorator path returned by this selector. */
     protected String prefix = "";
 
@@ -54,6 +65,7 @@ public class PathBasedDecoratorSelector<C extends SiteMeshContext> implements De
      */
     public PathBasedDecoratorSelector setPrefix(String prefix) {
         this.prefix = prefix == null? "" : prefix;
+        resolved.clear();
         return this;
     }
 
@@ -66,12 +78,45 @@ public class PathBasedDecoratorSelector<C extends SiteMeshContext> implements De
      */
     public PathBasedDecoratorSelector put(String contentPath, String... decoratorPaths) {
         pathMapper.put(contentPath, decoratorPaths);
+        resolved.clear();
         return this;
     }
 
     public String[] selectDecoratorPaths(Content content, C siteMeshContext) throws IOException {
-        String[] result = pathMapper.get(siteMeshContext.getPath());
-        return convertPaths(result == null ? EMPTY : result);
+        return selectDecoratorPaths(siteMeshContext.getPath());
+    }
+
+    /**
+     * Select the decorators mapped to a path, with the prefix applied. Results are cached
+     * per path; each call returns a new array.
+     *
+     * @param path path of the content to decorate
+     * @return decorator paths to apply (empty if none are mapped)
+     */
+    public String[] selectDecoratorPaths(String path) {
+        if (!cacheResolutions) {
+            String[] mapped = pathMapper.get(path);
+            return convertPaths(mapped == null ? EMPTY : mapped);
+        }
+        List<String> result = resolved.get(path);
+        if (result == null) {
+            String[] mapped = pathMapper.get(path);
+            result = List.of(convertPaths(mapped == null ? EMPTY : mapped));
+            resolved.put(path, result);
+        }
+        return result.toArray(EMPTY);
+    }
+
+    private static boolean overridesConvertPaths(Class<?> type) {
+        for (Class<?> current = type; current != PathBasedDecoratorSelector.class; current = current.getSuperclass()) {
+            try {
+                current.getDeclaredMethod("convertPaths", String[].class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Keep looking in the superclass.
+            }
+        }
+        return false;
     }
 
     /**
@@ -81,18 +126,33 @@ public class PathBasedDecoratorSelector<C extends SiteMeshContext> implements De
      * @return converted paths
      */
     protected String[] convertPaths(String[] paths) {
-        return Stream.of(paths)
-                .filter(path -> !path.trim().isEmpty())
-                .map(path -> "%s%s".formatted(prefix, path.trim()))
-                .toArray(String[]::new);
+        String[] result = new String[paths.length];
+        int count = 0;
+        for (String path : paths) {
+            String trimmed = path.trim();
+            if (!trimmed.isEmpty()) {
+                result[count++] = prefix.isEmpty() ? trimmed : prefix + trimmed;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
     }
 
     /**
-     * Returns path mapper in use.
+     * Returns path mapper in use. Mappings added to it directly rather than through
+     * {@link #put(String, String...)} are only seen once {@link #clearResolutionCache()}
+     * is called.
      * 
      * @return path mapper in use
      */
     public PathMapper<String[]> getPathMapper() {
         return pathMapper;
     }
+
+    /**
+     * Forget the decorators cached per path, e.g. after changing the {@link #getPathMapper()
+     * path mapper} directly.
+     */
+    public void clearResolutionCache() {
+        resolved.clear();
+    }
 }
@@ -16,7 +16,10 @@
 
 package org.sitemesh.config;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -41,6 +44,11 @@ import java.util.Set;
  * result2 = pm.get("/mydir/otherdir/admin/myfile.html"); // returns five;<br>
  * </code></blockquote>
  *
+ * <p>If several wildcard patterns match, the longest one wins (and of equally long ones, the
+ * one added first). Wildcard patterns are compiled into an automaton on the first lookup after
+ * they change, so a lookup takes time proportional to the length of the path, however many
+ * patterns there are, and does not allocate.</p>
+ *
  * @author Joe Walnes
  * @author Mike Cannon-Brookes
  * @author Hani Suleiman
@@ -51,13 +59,14 @@ public class PathMapper<T> {
     /** Patterns that match all paths (used as fallbacks when no other pattern matches). */
     public static final Set<String> DEFAULT_KEYS = Set.of("*", "**", "/*", "/**");
 
+    /** {@link #DEFAULT_KEYS} in iteration order, so looking them up does not allocate an iterator. */
+    private static final String[] DEFAULT_KEY_ORDER = DEFAULT_KEYS.toArray(new String[0]);
+
     private final Map<String, T> mappings = new HashMap<String, T>();
-    /**
-     * Pre-computed char[] for each complex (wildcard) pattern. Avoids
-     * {@code pattern.toCharArray()} on every match attempt and lets
-     * {@link #findComplexKey(String)} iterate only the complex patterns.
-     */
-    private final Map<String, char[]> complexPatternChars = new HashMap<String, char[]>();
+    /** Complex (wildcard) patterns, in the order they were first added. */
+    private final List<String> complexPatterns = new ArrayList<String>();
+    /** Compiled from {@link #complexPatterns} on demand; reset whenever they change. */
+    private volatile PathMatchAutomaton automaton;
 
     /**
      * Add a key and appropriate matching pattern.
@@ -66,9 +75,9 @@ public class PathMapper<T> {
      */
     public void put(String pattern, T value) {
         if (value != null) {
-            mappings.put(pattern, value);
-            if (isComplexKey(pattern)) {
-                complexPatternChars.put(pattern, pattern.toCharArray());
+            if (mappings.put(pattern, value) == null && isComplexKey(pattern)) {
+                complexPatterns.add(pattern);
+                automaton = null;
             }
         }
     }
@@ -100,6 +109,13 @@ public class PathMapper<T> {
         return result;
     }
 
+    /**
+     * @return All patterns added, in no particular order (a read-only view).
+     */
+    public Set<String> getPatterns() {
+        return Collections.unmodifiableSet(mappings.keySet());
+    }
+
     /** Check if path matches exact pattern ( /blah/blah.jsp ). */
     private String findExactKey(String path) {
         if (mappings.containsKey(path)) return path;
@@ -107,19 +123,14 @@ public class PathMapper<T> {
     }
 
     private String findComplexKey(String path) {
-        if (complexPatternChars.isEmpty()) return null;
-        char[] strArr = path.toCharArray();
-        String result = null;
-        for (Map.Entry<String, char[]> entry : complexPatternChars.entrySet()) {
-            if (match(entry.getValue(), strArr, true)) {
-                String key = entry.getKey();
-                if (result == null || key.length() > result.length()) {
-                    // longest key wins
-                    result = key;
-                }
-            }
+        if (complexPatterns.isEmpty()) return null;
+        PathMatchAutomaton current = automaton;
+        if (current == null) {
+            // Racing threads compile equivalent automata, so a lost update is harmless.
+            current = new PathMatchAutomaton(new ArrayList<String>(complexPatterns));
+            automaton = current;
         }
-        return result;
+        return current.find(path);
     }
 
     /**
@@ -142,158 +153,12 @@ public class PathMapper<T> {
 
     /** Look for root pattern ( / ). */
     private String findDefaultKey() {
-        for (String defaultKey : DEFAULT_KEYS) {
+        for (String defaultKey : DEFAULT_KEY_ORDER) {
             if (mappings.containsKey(defaultKey)) return defaultKey;
         }
         return null;
     }
 
-    private static boolean match(char[] patArr, char[] strArr, boolean isCaseSensitive) {
-        int patIdxStart = 0;
-        int patIdxEnd = patArr.length - 1;
-        int strIdxStart = 0;
-        int strIdxEnd = strArr.length - 1;
-        char ch;
-
-        boolean containsStar = false;
-        for (int i = 0; i < patArr.length; i++) {
-            if (patArr[i] == '*') {
-                containsStar = true;
-                break;
-            }
-        }
-
-        if (!containsStar) {
-            // No '*'s, so we make a shortcut
-            if (patIdxEnd != strIdxEnd) {
-                return false; // Pattern and string do not have the same size
-            }
-            for (int i = 0; i <= patIdxEnd; i++) {
-                ch = patArr[i];
-                if (ch != '?') {
-                    if (isCaseSensitive && ch != strArr[i]) {
-                        return false; // Character mismatch
-                    }
-                    if (!isCaseSensitive && Character.toUpperCase(ch) !=
-                            Character.toUpperCase(strArr[i])) {
-                        return false; // Character mismatch
-                    }
-                }
-            }
-            return true; // String matches against pattern
-        }
-
-        if (patIdxEnd == 0) {
-            return true; // Pattern contains only '*', which matches anything
-        }
-
-        // Process characters before first star
-        while ((ch = patArr[patIdxStart]) != '*' && strIdxStart <= strIdxEnd) {
-            if (ch != '?') {
-                if (isCaseSensitive && ch != strArr[strIdxStart]) {
-                    return false; // Character mismatch
-                }
-                if (!isCaseSensitive && Character.toUpperCase(ch) !=
-                        Character.toUpperCase(strArr[strIdxStart])) {
-                    return false; // Character mismatch
-                }
-            }
-            patIdxStart++;
-            strIdxStart++;
-        }
-        if (strIdxStart > strIdxEnd) {
-            // All characters in the string are used. Check if only '*'s are
-            // left in the pattern. If so, we succeeded. Otherwise failure.
-            for (int i = patIdxStart; i <= patIdxEnd; i++) {
-                if (patArr[i] != '*') {
-                    return false;
-                }
-            }
-            return true;
-        }
-
-        // Process characters after last star
-        while ((ch = patArr[patIdxEnd]) != '*' && strIdxStart <= strIdxEnd) {
-            if (ch != '?') {
-                if (isCaseSensitive && ch != strArr[strIdxEnd]) {
-                    return false; // Character mismatch
-                }
-                if (!isCaseSensitive && Character.toUpperCase(ch) !=
-                        Character.toUpperCase(strArr[strIdxEnd])) {
-                    return false; // Character mismatch
-                }
-            }
-            patIdxEnd--;
-            strIdxEnd--;
-        }
-        if (strIdxStart > strIdxEnd) {
-            // All characters in the string are used. Check if only '*'s are
-            // left in the pattern. If so, we succeeded. Otherwise failure.
-            for (int i = patIdxStart; i <= patIdxEnd; i++) {
-                if (patArr[i] != '*') {
-                    return false;
-                }
-            }
-            return true;
-        }
-
-        // process pattern between stars. padIdxStart and patIdxEnd point
-        // always to a '*'.
-        while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd) {
-            int patIdxTmp = -1;
-            for (int i = patIdxStart + 1; i <= patIdxEnd; i++) {
-                if (patArr[i] == '*') {
-                    patIdxTmp = i;
-                    break;
-                }
-            }
-            if (patIdxTmp == patIdxStart + 1) {
-                // Two stars next to each other, skip the first one.
-                patIdxStart++;
-                continue;
-            }
-            // Find the pattern between padIdxStart & padIdxTmp in str between
-            // strIdxStart & strIdxEnd
-            int patLength = (patIdxTmp - patIdxStart - 1);
-            int strLength = (strIdxEnd - strIdxStart + 1);
-            int foundIdx = -1;
-            strLoop:
-            for (int i = 0; i <= strLength - patLength; i++) {
-                for (int j = 0; j < patLength; j++) {
-                    ch = patArr[patIdxStart + j + 1];
-                    if (ch != '?') {
-                        if (isCaseSensitive && ch != strArr[strIdxStart + i + j]) {
-                            continue strLoop;
-                        }
-                        if (!isCaseSensitive && Character.toUpperCase(ch) !=
-                                Character.toUpperCase(strArr[strIdxStart + i + j])) {
-                            continue strLoop;
-                        }
-                    }
-                }
-
-                foundIdx = strIdxStart + i;
-                break;
-            }
-
-            if (foundIdx == -1) {
-                return false;
-            }
-
-            patIdxStart = patIdxTmp;
-            strIdxStart = foundIdx + patLength;
-        }
-
-        // All characters in the string are used. Check if only '*'s are left
-        // in the pattern. If so, we succeeded. Otherwise failure.
-        for (int i = patIdxStart; i <= patIdxEnd; i++) {
-            if (patArr[i] != '*') {
-                return false;
-            }
-        }
-        return true;
-    }
-
     /**
      * Whether the first pattern is more specific than the second one.
      * Exact patterns are more specific than complex patterns and 
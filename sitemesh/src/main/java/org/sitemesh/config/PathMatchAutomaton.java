@@ -0,0 +1,322 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Matches a path against all complex (wildcard) patterns of a {@link PathMapper} at once,
+ * returning the longest matching pattern.
+ *
+ * <p>The patterns are compiled into a trie-shaped NFA ({@code *} matches any sequence of
+ * characters, {@code ?} any single character, as in {@link PathMapper}), which is turned into
+ * a DFA lazily: each DFA state is created the first time a path reaches it, and remembered.
+ * Once warmed up, a lookup is one array read per path character and allocates nothing.</p>
+ *
+ * <p>Characters are mapped to classes first - one per literal character used in any pattern,
+ * plus one for all other characters - so the transition tables stay small whatever
+ * characters appear in paths.</p>
+ *
+ * <p>Instances are immutable apart from the DFA cache, and safe for concurrent lookups.</p>
+ */
+final class PathMatchAutomaton {
+
+    /**
+     * Upper bound on the number of remembered DFA states. Pathological pattern sets (many
+     * stars) can have exponentially many; beyond this, further states are computed per lookup.
+     */
+    static final int MAX_DFA_STATES = 4096;
+
+    private static final int OTHER_CLASS = 0;
+
+    // NFA, flattened. Node 0 is the root.
+    private final char[][] literalChars;
+    private final int[][] literalTargets;
+    private final int[] anyTarget;
+    private final int[] starTarget;
+    private final boolean[] selfLoop;
+    private final String[] acceptedPattern;
+    private final int[] acceptedOrder;
+
+    // Character classes.
+    private final int[] asciiClasses = new int[128];
+    private final char[] nonAsciiChars;
+    private final int[] nonAsciiClasses;
+    private final char[] classChars;
+
+    private final ConcurrentHashMap<NodeSet, DfaState> dfaStates = new ConcurrentHashMap<NodeSet, DfaState>();
+    private final DfaState start;
+
+    /**
+     * @param patterns The complex patterns, in the order they were added (earlier patterns
+     *                 win ties between equally long matching patterns).
+     */
+    PathMatchAutomaton(List<String> patterns) {
+        // Build the trie.
+        List<TrieNode> nodes = new ArrayList<TrieNode>();
+        TrieNode root = new TrieNode(nodes, false);
+        TreeSet<Character> alphabet = new TreeSet<Character>();
+        for (int order = 0; order < patterns.size(); order++) {
+            String pattern = patterns.get(order);
+            TrieNode node = root;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '*') {
+                    if (!node.selfLoop) { // Consecutive stars match the same as one.
+                        if (node.star == null) {
+                            node.star = new TrieNode(nodes, true);
+                        }
+                        node = node.star;
+                    }
+                } else if (c == '?') {
+                    if (node.any == null) {
+                        node.any = new TrieNode(nodes, false);
+                    }
+                    node = node.any;
+                } else {
+                    alphabet.add(c);
+                    TrieNode next = node.literals.get(c);
+                    if (next == null) {
+                        next = new TrieNode(nodes, false);
+                        node.literals.put(c, next);
+                    }
+                    node = next;
+                }
+            }
+            // Patterns differing only in repeated stars end on the same node.
+            if (node.pattern == null || pattern.length() > node.pattern.length()) {
+                node.pattern = pattern;
+                node.order = order;
+            }
+        }
+
+        // Number the character classes.
+        classChars = new char[alphabet.size() + 1];
+        int nonAsciiCount = alphabet.tailSet((char) 128).size();
+        nonAsciiChars = new char[nonAsciiCount];
+        nonAsciiClasses = new int[nonAsciiCount];
+        int classCount = 1;
+        int nonAsciiIndex = 0;
+        for (char c : alphabet) { // Sorted, so nonAsciiChars can be binary searched.
+            classChars[classCount] = c;
+            if (c < 128) {
+                asciiClasses[c] = classCount;
+            } else {
+                nonAsciiChars[nonAsciiIndex] = c;
+                nonAsciiClasses[nonAsciiIndex++] = classCount;
+            }
+            classCount++;
+        }
+
+        // Flatten the trie.
+        int size = nodes.size();
+        literalChars = new char[size][];
+        literalTargets = new int[size][];
+        anyTarget = new int[size];
+        starTarget = new int[size];
+        selfLoop = new boolean[size];
+        acceptedPattern = new String[size];
+        acceptedOrder = new int[size];
+        for (TrieNode node : nodes) {
+            int id = node.id;
+            literalChars[id] = new char[node.literals.size()];
+            literalTargets[id] = new int[node.literals.size()];
+            int i = 0;
+            for (Map.Entry<Character, TrieNode> entry : node.literals.entrySet()) {
+                literalChars[id][i] = entry.getKey();
+                literalTargets[id][i] = entry.getValue().id;
+                i++;
+            }
+            anyTarget[id] = node.any == null ? -1 : node.any.id;
+            starTarget[id] = node.star == null ? -1 : node.star.id;
+            selfLoop[id] = node.selfLoop;
+            acceptedPattern[id] = node.pattern;
+            acceptedOrder[id] = node.order;
+        }
+
+        boolean[] included = new boolean[size];
+        int[] members = new int[size];
+        int count = addClosure(0, included, members, 0);
+        start = intern(new NodeSet(sorted(members, count)), classCount, true);
+    }
+
+    /**
+     * @param path The path to match.
+     * @return The longest complex pattern matching the whole path, or null if none match.
+     */
+    String find(String path) {
+        DfaState state = start;
+        for (int i = 0, length = path.length(); i < length; i++) {
+            if (state.dead) {
+                return null;
+            }
+            int characterClass = characterClass(path.charAt(i));
+            DfaState next = state.next[characterClass];
+            if (next == null) {
+                next = transition(state, characterClass);
+            }
+            state = next;
+        }
+        return state.accepted;
+    }
+
+    private int characterClass(char c) {
+        if (c < 128) {
+            return asciiClasses[c];
+        }
+        int index = Arrays.binarySearch(nonAsciiChars, c);
+        return index < 0 ? OTHER_CLASS : nonAsciiClasses[index];
+    }
+
+    private DfaState transition(DfaState state, int characterClass) {
+        int size = anyTarget.length;
+        boolean[] included = new boolean[size];
+        int[] members = new int[size];
+        int count = 0;
+        for (int node : state.nodes.members) {
+            if (characterClass != OTHER_CLASS) {
+                int index = Arrays.binarySearch(literalChars[node], classChars[characterClass]);
+                if (index >= 0) {
+                    count = addClosure(literalTargets[node][index], included, members, count);
+                }
+            }
+            if (anyTarget[node] != -1) {
+                count = addClosure(anyTarget[node], included, members, count);
+            }
+            if (selfLoop[node]) {
+                count = addClosure(node, included, members, count);
+            }
+        }
+        boolean remember = dfaStates.size() < MAX_DFA_STATES;
+        DfaState next = intern(new NodeSet(sorted(members, count)), state.next.length, remember);
+        if (remember) {
+            // Racing threads compute equal states, so a lost update is harmless.
+            state.next[characterClass] = next;
+        }
+        return next;
+    }
+
+    /**
+     * Add a node, and the star nodes reachable from it without consuming a character.
+     */
+    private int addClosure(int node, boolean[] included, int[] members, int count) {
+        while (node != -1 && !included[node]) {
+            included[node] = true;
+            members[count++] = node;
+            node = starTarget[node];
+        }
+        return count;
+    }
+
+    private static int[] sorted(int[] members, int count) {
+        int[] result = Arrays.copyOf(members, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private DfaState intern(NodeSet nodes, int classCount, boolean remember) {
+        DfaState state = dfaStates.get(nodes);
+        if (state == null) {
+            state = new DfaState(nodes, classCount, accepted(nodes.members));
+            if (remember) {
+                DfaState existing = dfaStates.putIfAbsent(nodes, state);
+                if (existing != null) {
+                    state = existing;
+                }
+            }
+        }
+        return state;
+    }
+
+    private String accepted(int[] members) {
+        String result = null;
+        int resultOrder = Integer.MAX_VALUE;
+        for (int node : members) {
+            String pattern = acceptedPattern[node];
+            if (pattern != null && (result == null || pattern.length() > result.length()
+                    || (pattern.length() == result.length() && acceptedOrder[node] < resultOrder))) {
+                // Longest key wins.
+                result = pattern;
+                resultOrder = acceptedOrder[node];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Number of DFA states created so far (for tests).
+     */
+    int getDfaStateCount() {
+        return dfaStates.size();
+    }
+
+    private static final class TrieNode {
+        final int id;
+        final boolean selfLoop;
+        final TreeMap<Character, TrieNode> literals = new TreeMap<Character, TrieNode>();
+        TrieNode any;
+        TrieNode star;
+        String pattern;
+        int order;
+
+        TrieNode(List<TrieNode> nodes, boolean selfLoop) {
+            this.id = nodes.size();
+            this.selfLoop = selfLoop;
+            nodes.add(this);
+        }
+    }
+
+    private static final class NodeSet {
+        final int[] members;
+        final int hash;
+
+        NodeSet(int[] members) {
+            this.members = members;
+            this.hash = Arrays.hashCode(members);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof NodeSet && Arrays.equals(members, ((NodeSet) other).members);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class DfaState {
+        final NodeSet nodes;
+        final String accepted;
+        final boolean dead;
+        final DfaState[] next;
+
+        DfaState(NodeSet nodes, int classCount, String accepted) {
+            this.nodes = nodes;
+            this.accepted = accepted;
+            this.dead = nodes.members.length == 0;
+            this.next = new DfaState[classCount];
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.config;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, least-recently-used cache of values resolved from request paths (such as the
+ * decorators mapped to a path), so repeated requests for the same path skip the resolution.
+ *
+ * <p>Entries are spread over independently locked stripes by the hash of the path, so
+ * concurrent requests rarely contend. Each stripe evicts its own least recently used entry
+ * once it holds its share of the maximum, so eviction order is only approximately LRU across
+ * the whole cache.</p>
+ *
+ * <p>The cache holds no reference to the configuration the values were resolved from, so it
+ * must be {@link #clear() cleared} whenever that changes. Caches owned by a filter are
+ * discarded along with it when the configuration is reloaded.</p>
+ *
+ * @param <V> Type of the resolved values.
+ */
+public class PathResolutionCache<V> {
+
+    /** Maximum number of entries used when none is specified. */
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private static final int STRIPES = 16;
+
+    /** Caches smaller than this use a single stripe, i.e. exact LRU eviction. */
+    private static final int MIN_STRIPED_ENTRIES = STRIPES * 16;
+
+    private final List<Stripe<V>> stripes;
+
+    /**
+     * Create a cache holding up to {@link #DEFAULT_MAX_ENTRIES} paths.
+     */
+    public PathResolutionCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries Maximum number of paths to hold. Must be positive.
+     */
+    public PathResolutionCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        int stripeCount = maxEntries < MIN_STRIPED_ENTRIES ? 1 : STRIPES;
+        int perStripe = (maxEntries + stripeCount - 1) / stripeCount;
+        stripes = new ArrayList<Stripe<V>>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.add(new Stripe<V>(perStripe));
+        }
+    }
+
+    private Stripe<V> stripeFor(String path) {
+        int hash = path.hashCode();
+        return stripes.get((hash ^ (hash >>> 16)) & (stripes.size() - 1));
+    }
+
+    /**
+     * @param path The request path.
+     * @return The value resolved for the path, or null if it is not cached.
+     */
+    public V get(String path) {
+        if (path == null) {
+            return null;
+        }
+        Stripe<V> stripe = stripeFor(path);
+        stripe.lock.lock();
+        try {
+            return stripe.entries.get(path);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * @param path  The request path. Null paths are not cached.
+     * @param value The value resolved for the path. Must not be null.
+     */
+    public void put(String path, V value) {
+        if (path == null) {
+            return;
+        }
+        Stripe<V> stripe = stripeFor(path);
+        stripe.lock.lock();
+        try {
+            stripe.put(path, value);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * @param path The request path whose value is no longer valid.
+     */
+    public void remove(String path) {
+        if (path == null) {
+            return;
+        }
+        Stripe<V> stripe = stripeFor(path);
+        stripe.lock.lock();
+        try {
+            stripe.entries.remove(path);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all entries, e.g. because the mappings they were resolved from changed.
+     */
+    public void clear() {
+        for (Stripe<V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.entries.clear();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return The number of cached paths.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.entries.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private static final class Stripe<V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, V> entries = new LinkedHashMap<String, V>(16, 0.75f, true); // Access order.
+        private final int maxEntries;
+
+        Stripe(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * Store an entry, evicting the least recently used one if the stripe is full.
+         * Call with the lock held.
+         */
+        void put(String path, V value) {
+            entries.put(path, value);
+            if (entries.size() > maxEntries) {
+                Iterator<String> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+}
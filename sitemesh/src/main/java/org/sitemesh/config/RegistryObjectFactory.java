@@ -0,0 +1,143 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.config;
+
+import org.sitemesh.content.tagrules.decorate.DecoratorTagRuleBundle;
+import org.sitemesh.content.tagrules.html.CoreHtmlTagRuleBundle;
+import org.sitemesh.content.tagrules.html.DivExtractingTagRuleBundle;
+import org.sitemesh.content.tagrules.html.Sm2TagRuleBundle;
+import org.sitemesh.content.tagrules.msoffice.MsOfficeTagRuleBundle;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * {@link ObjectFactory} that creates objects from registered constructors rather than by
+ * reflection, so configuration naming them works in a GraalVM native image and at startup
+ * does not pay for class loading by name.
+ *
+ * <p>The built-in tag rule bundles and decorator selectors ({@link #BUILT_INS}) are always
+ * registered. Other classes can be {@link #register(Class, Supplier) registered} by the
+ * application. Names that are not registered are passed to the fallback factory, if any, or
+ * rejected - without a fallback, no reflection is used at all.</p>
+ *
+ * <pre>
+ * ObjectFactory objectFactory = new RegistryObjectFactory()
+ * &nbsp;    .register(LegacyTagRuleBundle.class, LegacyTagRuleBundle::new);
+ * </pre>
+ *
+ * <p>{@link ObjectFactory.Default} looks up the built-ins here too, before falling back to
+ * reflection.</p>
+ */
+public class RegistryObjectFactory implements ObjectFactory {
+
+    /**
+     * Constructors of the built-in tag rule bundles and decorator selectors, by fully
+     * qualified class name.
+     */
+    public static final Map<String, Supplier<?>> BUILT_INS;
+
+    static {
+        Map<String, Supplier<?>> builtIns = new LinkedHashMap<String, Supplier<?>>();
+        builtIns.put(CoreHtmlTagRuleBundle.class.getName(), CoreHtmlTagRuleBundle::new);
+        builtIns.put(DecoratorTagRuleBundle.class.getName(), DecoratorTagRuleBundle::new);
+        builtIns.put(DivExtractingTagRuleBundle.class.getName(), DivExtractingTagRuleBundle::new);
+        builtIns.put(Sm2TagRuleBundle.class.getName(), Sm2TagRuleBundle::new);
+        builtIns.put(MsOfficeTagRuleBundle.class.getName(), MsOfficeTagRuleBundle::new);
+        builtIns.put(PathBasedDecoratorSelector.class.getName(), PathBasedDecoratorSelector::new);
+        builtIns.put(MetaTagBasedDecoratorSelector.class.getName(), MetaTagBasedDecoratorSelector::new);
+        builtIns.put(RequestAttributeDecoratorSelector.class.getName(), RequestAttributeDecoratorSelector::new);
+        BUILT_INS = Collections.unmodifiableMap(builtIns);
+    }
+
+    private final Map<String, Supplier<?>> constructors = new LinkedHashMap<String, Supplier<?>>(BUILT_INS);
+    private final ObjectFactory fallback;
+
+    /**
+     * Create a factory for the built-ins and registered classes only, never using reflection.
+     */
+    public RegistryObjectFactory() {
+        this(null);
+    }
+
+    /**
+     * @param fallback factory for names that are not registered, or null to reject them
+     */
+    public RegistryObjectFactory(ObjectFactory fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Register the constructor of a class, under its fully qualified name.
+     *
+     * @param type class created by the constructor
+     * @param constructor creates a new instance on every call
+     * @param <T> type of the created objects
+     * @return this instance, to allow method chaining
+     */
+    public <T> RegistryObjectFactory register(Class<T> type, Supplier<? extends T> constructor) {
+        return register(type.getName(), constructor);
+    }
+
+    /**
+     * Register a constructor under a name.
+     *
+     * @param name name used in the configuration (typically a fully qualified class name)
+     * @param constructor creates a new instance on every call
+     * @return this instance, to allow method chaining
+     */
+    public RegistryObjectFactory register(String name, Supplier<?> constructor) {
+        if (constructor == null) {
+            throw new IllegalArgumentException("constructor cannot be null");
+        }
+        constructors.put(name, constructor);
+        return this;
+    }
+
+    public Object create(String name) throws IllegalArgumentException {
+        Supplier<?> constructor = constructors.get(name.trim());
+        if (constructor != null) {
+            return constructor.get();
+        }
+        if (fallback != null) {
+            return fallback.create(name);
+        }
+        throw new IllegalArgumentException("Could not instantiate " + name
+                + ": not registered with " + getClass().getSimpleName());
+    }
+
+    /**
+     * @return the registered names, including the built-ins
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(constructors.keySet());
+    }
+
+    /**
+     * Create a built-in object without reflection.
+     *
+     * @param name fully qualified class name
+     * @return a new instance, or null if the name is not one of the {@link #BUILT_INS}
+     */
+    static Object createBuiltIn(String name) {
+        Supplier<?> constructor = BUILT_INS.get(name.trim());
+        return constructor != null ? constructor.get() : null;
+    }
+}
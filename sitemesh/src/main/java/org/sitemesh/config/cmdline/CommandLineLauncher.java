@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.FileNotFoundException;
 import java.nio.CharBuffer;
+import java.util.Map;
 
 /**
  * Simple command line launcher for SiteMesh Offline website generator.
@@ -49,6 +50,9 @@ public class CommandLineLauncher {
     /** Path (relative to the source directory) of the XML configuration file used if none is specified. */
     public static final String CONFIG_FILE_DEFAULT = "/WEB-INF/sitemesh3.xml";
 
+    /** Name of the command line parameter used to specify how many files are processed at the same time. */
+    public static final String THREADS_PARAM = "threads";
+
     // TODO: File include/exclude patterns.
     // TODO: Straight copy of non-decoratable resources.
 
@@ -92,10 +96,21 @@ public class CommandLineLauncher {
                         .configureOffline(builder);
             }
 
-            // Process files
+            // Process files. A file that fails does not stop the others.
+            String threads = args.getProperties().get(THREADS_PARAM);
             SiteMeshOffline siteMeshOffline = builder.create();
-            for (String fileName : args.getRemaining()) {
-                siteMeshOffline.process(fileName);
+            Map<String, Exception> failures = siteMeshOffline.processAll(
+                    args.getRemaining(), threads == null ? 1 : Integer.parseInt(threads));
+            if (!failures.isEmpty()) {
+                for (Map.Entry<String, Exception> failure : failures.entrySet()) {
+                    System.err.println("ERROR: " + failure.getKey() + ": " + failure.getValue().getMessage());
+                    if (System.getProperty("fullStackTrace", "false").equals("true")) {
+                        failure.getValue().printStackTrace();
+                    }
+                }
+                System.err.println(failures.size() + " of " + args.getRemaining().size()
+                        + " files could not be processed.");
+                System.exit(-1);
             }
         } catch (Exception e) {
             System.err.println("-------------------------------------------------------------------------------");
@@ -123,7 +138,7 @@ public class CommandLineLauncher {
             "SiteMesh Offline Generator\n" +
             "\n" +
             "{sitemesh.exe} \\\n" +
-            "  -src SOURCE_DIR -dest DEST_DIR [-config CONFIG_FILE] FILES...\n" +
+            "  -src SOURCE_DIR -dest DEST_DIR [-config CONFIG_FILE] [-threads N] FILES...\n" +
             "\n" +
             "Copy FILES from SOURCE_DIR to DEST_DIR applying SiteMesh decorators on the \n" +
             "way.\n" +
@@ -142,6 +157,9 @@ public class CommandLineLauncher {
             "          Each entry should consiste of pattern=decorator, separated by\n" +
             "          commas. If multiple decorators are required, they should be\n" +
             "          delimited with a pipe | char.\n" +
+            "  -threads:\n" +
+            "          (optional) Number of files to process at the same time. Defaults\n" +
+            "          to 1. Files that fail are reported, and the others still processed.\n" +
             "  FILES...:\n" +
             "          Files to apply decorators too. These are filenames relative to\n" +
             "          SOURCE_DIR.\n" +
@@ -32,6 +32,8 @@ public class PropertiesConfigurator {
     public static final String TAG_RULE_BUNDLES_PARAM = "tagRuleBundles";
     /** Property name for the custom {@link ContentProcessor} class name. */
     public static final String CONTENT_PROCESSOR_PARAM = "contentProcessor";
+    /** Property name for the mappings of path patterns to additional TagRuleBundle class names. */
+    public static final String TAG_RULE_BUNDLE_PROFILES_PARAM = "tagRuleBundleProfiles";
     /** Property name for the mappings of path patterns to decorators. */
     public static final String DECORATOR_MAPPINGS_PARAM = "decoratorMappings";
 
@@ -62,6 +64,14 @@ public class PropertiesConfigurator {
             builder.addTagRuleBundle((TagRuleBundle) objectFactory.create(ruleSetName));
         }
 
+        // TagRuleBundle profiles
+        Map<String, String[]> profiles = properties.getStringMultiMap(TAG_RULE_BUNDLE_PROFILES_PARAM);
+        for (Map.Entry<String, String[]> entry : profiles.entrySet()) {
+            for (String ruleSetName : entry.getValue()) {
+                builder.addTagRuleBundleProfile(entry.getKey(), (TagRuleBundle) objectFactory.create(ruleSetName));
+            }
+        }
+
         // Custom ContentProcessor
         String contentProcessorName = properties.getString(CONTENT_PROCESSOR_PARAM);
         if (contentProcessorName != null) {
@@ -21,8 +21,11 @@ import org.sitemesh.builder.BaseSiteMeshFilterBuilder;
 import org.sitemesh.config.ObjectFactory;
 import org.sitemesh.webapp.DispatchMode;
 
+import java.util.Locale;
 import java.util.Map;
 
+import jakarta.servlet.DispatcherType;
+
 /**
  * Configures a SiteMeshFilterBuilder from string key/value pairs. The keys are:
  *
@@ -43,6 +46,11 @@ import java.util.Map;
  * Note: The <code>contentProcessor</code> and <code>tagRuleBundles</code> are mutually exclusive
  * - you should not set them both.</p>
  *
+ * <p><b><code>tagRuleBundleProfiles</code></b> (optional): A list of mappings of path patterns to the
+ * <i>names</i> of {@link org.sitemesh.content.tagrules.TagRuleBundle}s installed only for content
+ * matching the pattern, on top of the other bundles. Entries are formatted as for
+ * <code>decoratorMappings</code>, e.g. <code>/legacy/*=com.acme.LegacyBundle|com.acme.OfficeBundle</code>.</p>
+ *
  * <p><b><code>contentProcessor</code></b> (optional): The <i>name</i> of the
  * {@link org.sitemesh.content.ContentProcessor} to use.
  * Note: The <code>contentProcessor</code> and <code>tagRuleBundles</code> are mutually exclusive
@@ -51,11 +59,28 @@ import java.util.Map;
  * <p><b><code>exclude</code></b> (optional): A list of path patterns to exclude from
  * decoration, separated by whitespace or commas. e.g. <code>/javadoc/*, somepage.html, *.jsp</code></p>
  *
+ * <p><b><code>excludeExtensions</code></b> (optional): A list of extensions of request URIs that
+ * are passed straight through, before the request path is computed or the response wrapped,
+ * separated by whitespace or commas. e.g. <code>.css, .js, .png</code>. Unlike
+ * <code>exclude</code>, these cannot be overridden by a more specific decorator mapping.
+ * See {@link org.sitemesh.webapp.contentfilter.RequestExclusions}.</p>
+ *
+ * <p><b><code>excludePrefixes</code></b> (optional): As <code>excludeExtensions</code>, for
+ * request URIs (after the context path) starting with one of the listed prefixes.
+ * e.g. <code>/assets/, /webjars/</code></p>
+ *
+ * <p><b><code>excludeDispatcherTypes</code></b> (optional): A list of
+ * {@link jakarta.servlet.DispatcherType}s that are never decorated. e.g. <code>include, async</code></p>
+ *
  * <p><b><code>dispatchMode</code></b> (optional): How the decorator is dispatched -
  * <code>include</code>, <code>forward</code>, or <code>detect</code>. Defaults to
  * <code>detect</code> (use <code>include</code> on Tomcat 11+, <code>forward</code>
  * elsewhere). See {@link org.sitemesh.webapp.DispatchMode}.</p>
  *
+ * <p><b><code>warmupIterations</code></b> (optional): Warm up the filter when it is initialized,
+ * running this many synthetic parse and decorate cycles. Disabled if not set.
+ * See {@link org.sitemesh.webapp.SiteMeshWarmup}.</p>
+ *
  * <p>Where a <i>name</i> is used, this typically means the fully qualified class name, which must
  * have a default constructor. However, a custom {@link org.sitemesh.config.ObjectFactory} implementation (passed into
  * the {@link #PropertiesFilterConfigurator(ObjectFactory, Map)} constructor may change the behavior of this
@@ -72,6 +97,12 @@ public class PropertiesFilterConfigurator extends PropertiesConfigurator {
     // Property names.
     /** Property name for the list of path patterns excluded from decoration. */
     public static final String EXCLUDE_PARAM = "exclude";
+    /** Property name for the list of request URI extensions passed through before any other check. */
+    public static final String EXCLUDE_EXTENSIONS_PARAM = "excludeExtensions";
+    /** Property name for the list of request URI prefixes passed through before any other check. */
+    public static final String EXCLUDE_PREFIXES_PARAM = "excludePrefixes";
+    /** Property name for the list of dispatcher types that are never decorated. */
+    public static final String EXCLUDE_DISPATCHER_TYPES_PARAM = "excludeDispatcherTypes";
     /** Property name for the list of mime-types that should be decorated. */
     public static final String MIME_TYPES_PARAM = "mimeTypes";
     /** Property name for whether error pages should be decorated. */
@@ -80,6 +111,8 @@ public class PropertiesFilterConfigurator extends PropertiesConfigurator {
     public static final String DISPATCH_MODE_PARAM = "dispatchMode";
     /** Property name for the custom {@link DecoratorSelector} class name. */
     public static final String DECORATOR_SELECTOR = "decoratorSelector";
+    /** Property name for the number of synthetic warmup cycles run when the filter is initialized. */
+    public static final String WARMUP_ITERATIONS_PARAM = "warmupIterations";
 
     private final PropertiesParser properties;
 
@@ -116,6 +149,12 @@ public class PropertiesFilterConfigurator extends PropertiesConfigurator {
             builder.setDispatchMode(DispatchMode.fromString(dispatchModeString, DispatchMode.DETECT));
         }
 
+        // Warmup
+        String warmupIterations = properties.getString(WARMUP_ITERATIONS_PARAM);
+        if (warmupIterations != null && !warmupIterations.isEmpty()) {
+            builder.setWarmupIterations(Integer.parseInt(warmupIterations.trim()));
+        }
+
         // decorator selector
         String decoratorSelector = properties.getString(DECORATOR_SELECTOR);
         if (decoratorSelector != null) {
@@ -127,6 +166,13 @@ public class PropertiesFilterConfigurator extends PropertiesConfigurator {
         for (String exclude : excludes) {
             builder.addExcludedPath(exclude);
         }
+        builder.addExcludedExtensions(properties.getStringArray(EXCLUDE_EXTENSIONS_PARAM));
+        for (String prefix : properties.getStringArray(EXCLUDE_PREFIXES_PARAM)) {
+            builder.addExcludedPrefix(prefix);
+        }
+        for (String dispatcherType : properties.getStringArray(EXCLUDE_DISPATCHER_TYPES_PARAM)) {
+            builder.addExcludedDispatcherTypes(DispatcherType.valueOf(dispatcherType.trim().toUpperCase(Locale.ROOT)));
+        }
 
         // Mime-types
         String[] mimeTypes = properties.getStringArray(MIME_TYPES_PARAM);
@@ -27,8 +27,8 @@ import java.util.ArrayList;
 
 /**
  * Configures a SiteMesh builder from an XML config file (typically <code>/WEB-INF/sitemesh3.xml</code>),
- * applying the settings common to all builder types (tag rule bundles, content processor
- * and decorator mappings).
+ * applying the settings common to all builder types (tag rule bundles and their per-path
+ * profiles, content processor and decorator mappings).
  *
  * @author Joe Walnes
  */
@@ -63,6 +63,17 @@ public class XmlConfigurator {
             }
         }
 
+        // TagRuleBundle profiles
+        for (Xml profile : xml.child("content-processor").children("profile")) {
+            String path = profile.attribute("path");
+            for (Xml tagRuleBundle : profile.children("tag-rule-bundle")) {
+                String tagRuleBundleName = tagRuleBundle.attribute("class");
+                if (path != null && tagRuleBundleName != null) {
+                    builder.addTagRuleBundleProfile(path, (TagRuleBundle) objectFactory.create(tagRuleBundleName));
+                }
+            }
+        }
+
         // Custom ContentProcessor
         String contentProcessorName = xml.child("content-processor").attribute("class");
         if (contentProcessorName != null) {
@@ -22,13 +22,15 @@ import org.sitemesh.config.ObjectFactory;
 import org.sitemesh.webapp.DispatchMode;
 import org.w3c.dom.Element;
 
+import jakarta.servlet.DispatcherType;
+
 import java.util.List;
 import java.util.ArrayList;
 
 /**
  * Configures a SiteMeshFilterBuilder from an XML config file, adding the filter
  * specific settings (decorator selector, decorator prefix, error page inclusion,
- * dispatch mode, excludes and mime-types) to the common configuration applied
+ * dispatch mode, warmup, excludes, request exclusions and mime-types) to the common configuration applied
  * by {@link XmlConfigurator}.
  *
  * @author Joe Walnes
@@ -82,6 +84,12 @@ public class XmlFilterConfigurator extends XmlConfigurator {
             builder.setDispatchMode(DispatchMode.fromString(dispatchModeString, DispatchMode.DETECT));
         }
 
+        // Warmup
+        String warmupIterations = xml.child("warmup-iterations").text();
+        if (warmupIterations != null) {
+            builder.setWarmupIterations(Integer.parseInt(warmupIterations.trim()));
+        }
+
         // Excludes
         for (Xml mapping : xml.children("mapping")) {
             String path = mapping.child("path").text(mapping.attribute("path", "/*"));
@@ -89,6 +97,15 @@ public class XmlFilterConfigurator extends XmlConfigurator {
                 builder.addExcludedPath(path);
             }
         }
+        for (Xml extension : xml.children("exclude-extension")) {
+            builder.addExcludedExtensions(extension.text().trim());
+        }
+        for (Xml prefix : xml.children("exclude-prefix")) {
+            builder.addExcludedPrefix(prefix.text().trim());
+        }
+        for (Xml dispatcherType : xml.children("exclude-dispatcher-type")) {
+            builder.addExcludedDispatcherTypes(DispatcherType.valueOf(dispatcherType.text().trim().toUpperCase()));
+        }
 
         // Mime-types
         List<Xml> mimeTypeTags = xml.children("mime-type");
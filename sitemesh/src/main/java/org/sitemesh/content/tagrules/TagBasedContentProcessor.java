@@ -20,6 +20,7 @@ import org.sitemesh.SiteMeshContext;
 import org.sitemesh.content.Content;
 import org.sitemesh.content.ContentProcessor;
 import org.sitemesh.content.memory.InMemoryContent;
+import org.sitemesh.jfr.SiteMeshParseEvent;
 import org.sitemesh.tagprocessor.TagProcessor;
 
 import java.io.IOException;
@@ -43,6 +44,11 @@ public class TagBasedContentProcessor implements ContentProcessor {
     }
 
     public Content build(CharBuffer data, SiteMeshContext siteMeshContext) throws IOException {
+        SiteMeshParseEvent event = new SiteMeshParseEvent();
+        if (event.isEnabled()) {
+            event.inputLength = data.remaining();
+            event.begin();
+        }
         Content content = new InMemoryContent();
         content.getData().setValue(data);
 
@@ -61,6 +67,12 @@ public class TagBasedContentProcessor implements ContentProcessor {
         for (TagRuleBundle tagRuleBundle : tagRuleBundles) {
             tagRuleBundle.cleanUp(processor.defaultState(), content.getExtractedProperties(), siteMeshContext);
         }
+        if (event.isEnabled() && event.shouldCommit()) {
+            event.path = siteMeshContext != null ? siteMeshContext.getPath() : null;
+            event.outputLength = processor.getDefaultBufferContents().length();
+            event.ruleBundleCount = tagRuleBundles.length;
+            event.commit();
+        }
         return content;
     }
 
@@ -0,0 +1,46 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for rendering a decorator (typically by dispatching a request to it),
+ * with the page merged into it. Part of a {@link SiteMeshDecorateEvent}.
+ */
+@Name("org.sitemesh.SiteMeshDecoratorDispatch")
+@Label("SiteMesh Decorator Dispatch")
+@Category("SiteMesh")
+@Description("Rendering of a decorator, with the page merged into it")
+public class SiteMeshDecoratorDispatchEvent extends Event {
+
+    @Label("Path")
+    @Description("Path of the page being decorated")
+    public String path;
+
+    @Label("Decorator Path")
+    @Description("Path of the decorator")
+    public String decoratorPath;
+
+    @Label("Output Length")
+    @Description("Characters the decorator rendered")
+    public long outputLength;
+}
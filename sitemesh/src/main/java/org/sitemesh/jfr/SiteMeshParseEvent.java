@@ -0,0 +1,50 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for parsing a page, or the output of a decorator, with a
+ * {@link org.sitemesh.content.tagrules.TagBasedContentProcessor}.
+ */
+@Name("org.sitemesh.SiteMeshParse")
+@Label("SiteMesh Parse")
+@Category("SiteMesh")
+@Description("Parsing of a page or of decorator output by a TagBasedContentProcessor")
+public class SiteMeshParseEvent extends Event {
+
+    @Label("Path")
+    @Description("Path of the page being decorated")
+    public String path;
+
+    @Label("Input Length")
+    @Description("Characters parsed")
+    public long inputLength;
+
+    @Label("Output Length")
+    @Description("Characters left in the body after the rules extracted their properties")
+    public long outputLength;
+
+    @Label("Rule Bundles")
+    @Description("Number of tag rule bundles applied")
+    public int ruleBundleCount;
+}
@@ -23,6 +23,8 @@ import org.sitemesh.offline.directory.Directory;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * SiteMesh {@link org.sitemesh.SiteMeshContext} implementation specifically for use
@@ -41,6 +43,7 @@ public class OfflineContext extends BaseSiteMeshContext {
 
     private final Directory baseDirectory;
     private final String path;
+    private final ConcurrentMap<String, CharBuffer> decorators;
 
     /**
      * @param contentProcessor processor used to parse content and decorators
@@ -48,8 +51,22 @@ public class OfflineContext extends BaseSiteMeshContext {
      * @param path path of the page being processed (a leading "/" is added if missing)
      */
     public OfflineContext(ContentProcessor contentProcessor, Directory baseDirectory, String path) {
+        this(contentProcessor, baseDirectory, path, null);
+    }
+
+    /**
+     * @param contentProcessor processor used to parse content and decorators
+     * @param baseDirectory directory the decorators are loaded from
+     * @param path path of the page being processed (a leading "/" is added if missing)
+     * @param decorators decorators already loaded, by path, shared with the contexts of other
+     *                   pages (decorators loaded by this context are added to it); or null to
+     *                   load each decorator every time it is used
+     */
+    public OfflineContext(ContentProcessor contentProcessor, Directory baseDirectory, String path,
+                          ConcurrentMap<String, CharBuffer> decorators) {
         super(contentProcessor);
         this.baseDirectory = baseDirectory;
+        this.decorators = decorators;
         if (!path.startsWith("/")) {
             path = "/" + path;
         }
@@ -62,7 +79,18 @@ public class OfflineContext extends BaseSiteMeshContext {
 
     @Override
     protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
-        out.append(baseDirectory.load(decoratorPath));
+        if (decorators == null) {
+            out.append(baseDirectory.load(decoratorPath));
+            return;
+        }
+        CharBuffer decorator = decorators.get(decoratorPath);
+        if (decorator == null) {
+            // Another thread may load the same decorator meanwhile; either copy will do.
+            decorator = baseDirectory.load(decoratorPath).asReadOnlyBuffer();
+            decorators.put(decoratorPath, decorator);
+        }
+        // A view of its own, as the shared buffer's position must not move.
+        out.append(decorator.duplicate());
     }
 
 }
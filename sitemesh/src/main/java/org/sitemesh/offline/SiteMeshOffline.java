@@ -23,6 +23,16 @@ import org.sitemesh.offline.directory.Directory;
 
 import java.io.IOException;
 import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Tools for applying decorators to offline web pages (static content).
@@ -39,6 +49,9 @@ import java.nio.CharBuffer;
  *
  * siteMeshOffline.process("somecontent.html");
  * siteMeshOffline.process("morecontent.html");
+ *
+ * // Or many files at once, 8 at a time:
+ * Map&lt;String, Exception&gt; failures = siteMeshOffline.processAll(paths, 8);
  * </pre>
  *
  * @author Joe Walnes
@@ -93,8 +106,63 @@ public class SiteMeshOffline {
      * @throws IOException if the file cannot be read, processed or written
      */
     public void process(String path) throws IOException {
+        process(path, null);
+    }
+
+    /**
+     * Process many files, as {@link #process(String)} does, several at a time.
+     *
+     * <p>A file that cannot be processed does not stop the others: why it failed is returned
+     * instead of thrown. Each decorator is loaded once per call and shared by the threads, so
+     * changes to decorators during the call are not picked up.</p>
+     *
+     * @param paths paths of the files (in the source directory) to process
+     * @param parallelism how many files to process at the same time, in a {@link ForkJoinPool}
+     *                    of that many threads; 1 processes them one after the other on the
+     *                    calling thread
+     * @return the exception each file that could not be processed failed with, by path;
+     *         empty if all files were processed
+     * @throws IllegalArgumentException if parallelism is less than 1
+     */
+    public SortedMap<String, Exception> processAll(Collection<String> paths, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, was " + parallelism);
+        }
+        ConcurrentMap<String, CharBuffer> decorators = new ConcurrentHashMap<String, CharBuffer>();
+        Map<String, Exception> failures = new ConcurrentHashMap<String, Exception>();
+        if (parallelism == 1) {
+            for (String path : paths) {
+                processReportingFailure(path, decorators, failures);
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(paths.size());
+                for (String path : paths) {
+                    tasks.add(pool.submit(() -> processReportingFailure(path, decorators, failures)));
+                }
+                for (ForkJoinTask<?> task : tasks) {
+                    task.join();
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return new TreeMap<String, Exception>(failures);
+    }
+
+    private void processReportingFailure(String path, ConcurrentMap<String, CharBuffer> decorators,
+                                         Map<String, Exception> failures) {
+        try {
+            process(path, decorators);
+        } catch (IOException | RuntimeException e) {
+            failures.put(path, e);
+        }
+    }
+
+    private void process(String path, ConcurrentMap<String, CharBuffer> decorators) throws IOException {
         CharBuffer input = sourceDirectory.load(path);
-        CharBuffer output = processContent(path, input);
+        CharBuffer output = processContent(path, input, decorators);
         destinationDirectory.save(path, output);
     }
 
@@ -111,7 +179,12 @@ public class SiteMeshOffline {
      * @throws IOException if the content cannot be processed
      */
     public CharBuffer processContent(String path, CharBuffer original) throws IOException {
-        OfflineContext context = new OfflineContext(contentProcessor, sourceDirectory, path);
+        return processContent(path, original, null);
+    }
+
+    private CharBuffer processContent(String path, CharBuffer original, ConcurrentMap<String, CharBuffer> decorators)
+            throws IOException {
+        OfflineContext context = new OfflineContext(contentProcessor, sourceDirectory, path, decorators);
 
         // Process data into a Content object.
         Content content = contentProcessor.build(original, context);
@@ -90,4 +90,18 @@ public interface Directory {
      */
     void copy(String path, Directory destinationDirectory, String destinationPath) throws IOException;
 
+    /**
+     * Get the time a file was last modified, e.g. to detect changes to decorators.
+     *
+     * <p>The default implementation cannot tell, and returns -1.</p>
+     *
+     * @param path path of file (relative to the Directory)
+     * @return last modified time in milliseconds since the epoch, or -1 if unknown
+     * @throws IOException if the file cannot be checked
+     * @see org.sitemesh.DecoratorVersionRegistry#forDirectory(Directory)
+     */
+    default long getLastModified(String path) throws IOException {
+        return -1;
+    }
+
 }
@@ -25,14 +25,19 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.CharBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
-import java.util.LinkedList;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 import java.util.zip.CheckedInputStream;
 import java.util.zip.CRC32;
 
@@ -92,7 +97,8 @@ public class FileSystemDirectory implements Directory {
             }
         }
 
-        file.getParentFile().mkdirs();
+        // Unlike File.mkdirs(), does not fail when another thread creates the same directories.
+        Files.createDirectories(file.getParentFile().toPath());
         Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), encoding));
         try {
             out.append(contents);
@@ -101,24 +107,35 @@ public class FileSystemDirectory implements Directory {
         }
     }
 
+    public long getLastModified(String path) {
+        File file = getFileByPath(path);
+        return file.isFile() ? file.lastModified() : -1;
+    }
+
     public List<String> listAllFilePaths() throws IOException {
-        List<String> result = new LinkedList<String>();
-        listAllFilePaths("", result);
+        Path root = rootDir.toPath();
+        List<String> result = new ArrayList<String>();
+        if (!Files.exists(root)) {
+            return result;
+        }
+        try (Stream<Path> paths = Files.walk(root, FileVisitOption.FOLLOW_LINKS)) {
+            paths.filter(path -> Files.isRegularFile(path) && Files.isReadable(path))
+                    .forEach(path -> result.add(toRelativePath(root, path)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
         return result;
     }
 
-    private void listAllFilePaths(String path, List<String> result) {
-        File file = getFileByPath(path);
-        if (file.isDirectory()) {
-            for (String child : file.list()) {
-                String childPath = (path.length() == 0)
-                        ? child : path + "/" + child;
-                listAllFilePaths(childPath, result);
+    private static String toRelativePath(Path root, Path path) {
+        StringBuilder result = new StringBuilder();
+        for (Path name : root.relativize(path)) {
+            if (result.length() > 0) {
+                result.append('/');
             }
+            result.append(name);
         }
-        if (file.isFile() && file.canRead()) {
-            result.add(path);
-        }
+        return result.toString();
     }
 
     public void load(String path, WritableByteChannel channelToWriteTo) throws IOException {
@@ -142,7 +159,7 @@ public class FileSystemDirectory implements Directory {
         File tempFile = getFileByPath(path + ".tmp");
         File finalFile = getFileByPath(path);
         boolean requiresTempFile = finalFile.exists();
-        finalFile.getParentFile().mkdirs();
+        Files.createDirectories(finalFile.getParentFile().toPath());
         FileChannel destinationChannel = new FileOutputStream(requiresTempFile ? tempFile : finalFile).getChannel();
         try {
             destinationChannel.transferFrom(channelToReadFrom, 0, length);
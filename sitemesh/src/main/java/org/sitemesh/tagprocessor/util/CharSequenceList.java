@@ -73,8 +73,11 @@ public class CharSequenceList implements CharSequenceBuffer {
     }
 
     public int length() {
-        // TODO
-        throw new UnsupportedOperationException();
+        int length = 0;
+        for (CharSequence charSequence : list) {
+            length += charSequence.length();
+        }
+        return length;
     }
 
     public char charAt(int index) {
@@ -0,0 +1,65 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp;
+
+import jakarta.servlet.ServletContext;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * Renders decorators without dispatching a request to them, for decorators that do not
+ * need the servlet container to be rendered (such as static HTML files).
+ *
+ * <p>{@link WebAppContext} asks its source first, and only dispatches to the decorator
+ * through the {@link jakarta.servlet.RequestDispatcher} if the source declines.</p>
+ *
+ * @see StaticDecoratorSource
+ * @see org.sitemesh.builder.BaseSiteMeshFilterBuilder#setDecoratorSource(DecoratorSource)
+ */
+public interface DecoratorSource {
+
+    /**
+     * Write the unprocessed output of a decorator, if this source can provide it.
+     *
+     * @param decoratorPath Path of the decorator.
+     * @param context The context of the current request.
+     * @param out Destination to write the decorator output to.
+     * @return true if the decorator was written, false if it should be dispatched to instead
+     *         (in which case nothing may have been written).
+     * @throws IOException If the decorator cannot be read.
+     */
+    boolean write(String decoratorPath, WebAppContext context, Writer out) throws IOException;
+
+    /**
+     * Load a decorator ahead of the first request for it, if this source can provide it
+     * without a request. Used when warming up (see {@link SiteMeshWarmup}).
+     *
+     * <p>This implementation loads nothing.</p>
+     *
+     * @param decoratorPath Path of the decorator.
+     * @param servletContext The web application the decorator belongs to.
+     * @param encoding Character encoding to decode the decorator with.
+     * @return The unprocessed decorator text, or null if it is rendered on each request.
+     * @throws IOException If the decorator cannot be read.
+     */
+    default CharBuffer preload(String decoratorPath, ServletContext servletContext, String encoding)
+            throws IOException {
+        return null;
+    }
+}
@@ -19,8 +19,10 @@ package org.sitemesh.webapp;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.CharBuffer;
+import java.util.Set;
 
 import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
@@ -28,12 +30,24 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.sitemesh.DecoratorSelector;
+import org.sitemesh.DecoratorVersionRegistry;
+import org.sitemesh.SiteMeshMetrics;
+import org.sitemesh.SizeEstimates;
 import org.sitemesh.config.MetaTagBasedDecoratorSelector;
 import org.sitemesh.config.PathBasedDecoratorSelector;
 import org.sitemesh.config.PathMapper;
+import org.sitemesh.config.PathResolutionCache;
 import org.sitemesh.content.Content;
 import org.sitemesh.content.ContentProcessor;
+import org.sitemesh.jfr.SiteMeshWriteEvent;
+import org.sitemesh.webapp.contentfilter.AsyncDecorator;
+import org.sitemesh.webapp.contentfilter.BasicSelector;
 import org.sitemesh.webapp.contentfilter.ContentBufferingFilter;
+import org.sitemesh.webapp.contentfilter.DecorationPlan;
+import org.sitemesh.webapp.contentfilter.ETagGenerator;
+import org.sitemesh.webapp.contentfilter.NonBlockingWriter;
+import org.sitemesh.webapp.contentfilter.RequestExclusions;
+import org.sitemesh.webapp.contentfilter.ResponseCache;
 import org.sitemesh.webapp.contentfilter.ResponseMetaData;
 import org.sitemesh.webapp.contentfilter.Selector;
 
@@ -51,6 +65,18 @@ import org.sitemesh.webapp.contentfilter.Selector;
  * <p>For an easy to configure implementation, use
  * {@link org.sitemesh.config.ConfigurableSiteMeshFilter}.</p>
  *
+ * <p>Whether a path is decorated at all is decided from the decorator and exclusion mappings
+ * once, and remembered in a bounded {@link PathResolutionCache}, when the {@link Selector} is
+ * a plain {@link BasicSelector}. The mappings are therefore expected to stay fixed for the
+ * lifetime of the filter; {@link org.sitemesh.config.ConfigurableSiteMeshFilter} creates a
+ * new filter when its configuration is reloaded. The decision, along with the length of the
+ * last page buffered for the path, is also kept in the request's {@link DecorationPlan}, so
+ * nested dispatches of the request reuse it.</p>
+ *
+ * <p>Before any of that, requests can be passed through on their raw URI and dispatcher type
+ * alone with {@link RequestExclusions}, which is the cheapest way to leave static assets
+ * alone.</p>
+ *
  * @author Joe Walnes
  * @author Scott Farquhar
  */
@@ -60,6 +86,13 @@ public class SiteMeshFilter extends ContentBufferingFilter {
     private final DecoratorSelector<WebAppContext> decoratorSelector;
     private final boolean includeErrorPages;
     private final DispatchMode dispatchMode;
+    private final PathResolutionCache<PathDecision> decisionsByPath;
+    private final SizeEstimates decoratorSizeEstimates = new SizeEstimates();
+    private final DecoratorVersionRegistry decoratorVersions;
+    private final DecoratorSource decoratorSource;
+    private final SiteMeshWarmup warmup;
+    private final RequestExclusions requestExclusions;
+    private DecoratorVersionRegistry.Listener responseCacheInvalidator;
 
     /**
      * Equivalent to {@link #SiteMeshFilter(Selector, ContentProcessor,
@@ -92,7 +125,26 @@ public class SiteMeshFilter extends ContentBufferingFilter {
                           ContentProcessor contentProcessor,
                           DecoratorSelector<WebAppContext> decoratorSelector, boolean includeErrorPages,
                           DispatchMode dispatchMode) {
-        super(selector);
+        this(selector, contentProcessor, decoratorSelector, includeErrorPages, dispatchMode, new Options());
+    }
+
+    /**
+     * @param selector Provides the rules for whether SiteMesh should be
+     *                 used for a specific request. For a basic implementation, use
+     *                 {@link org.sitemesh.webapp.contentfilter.BasicSelector}.
+     * @param contentProcessor Processor used to parse the content into properties.
+     * @param decoratorSelector Selects the decorator path(s) to apply to the content.
+     * @param includeErrorPages Whether error pages should be decorated too.
+     * @param dispatchMode How decorators are dispatched (include vs forward).
+     *                 See {@link DispatchMode}.
+     * @param options Optional collaborators, such as a {@link ResponseCache}. May not be null.
+     *                 {@link org.sitemesh.builder.SiteMeshFilterBuilder} fills these in.
+     */
+    public SiteMeshFilter(Selector selector,
+                          ContentProcessor contentProcessor,
+                          DecoratorSelector<WebAppContext> decoratorSelector, boolean includeErrorPages,
+                          DispatchMode dispatchMode, Options options) {
+        super(selector, options);
         if (contentProcessor == null) {
             throw new IllegalArgumentException("contentProcessor cannot be null");
         }
@@ -103,6 +155,14 @@ public class SiteMeshFilter extends ContentBufferingFilter {
         this.decoratorSelector = decoratorSelector;
         this.includeErrorPages = includeErrorPages;
         this.dispatchMode = dispatchMode != null ? dispatchMode : DispatchMode.DETECT;
+        this.decoratorVersions = options.getDecoratorVersionRegistry();
+        this.decoratorSource = options.getDecoratorSource();
+        this.warmup = options.getWarmup();
+        RequestExclusions requestExclusions = options.getRequestExclusions();
+        this.requestExclusions = requestExclusions != null && !requestExclusions.isEmpty() ? requestExclusions : null;
+        // Other selectors may exclude requests on more than their path.
+        this.decisionsByPath = selector.getClass() == BasicSelector.class
+                ? new PathResolutionCache<PathDecision>() : null;
     }
 
     /**
@@ -115,13 +175,36 @@ public class SiteMeshFilter extends ContentBufferingFilter {
                                   ResponseMetaData metaData)
             throws IOException, ServletException {
         WebAppContext context = createContext(contentType, request, response, metaData);
+        SiteMeshMetrics metrics = getMetrics();
+        boolean timed = metrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        int pageLength = buffer.remaining();
         Content content = contentProcessor.build(buffer, context);
+        if (timed) {
+            start = record(metrics, SiteMeshMetrics.Phase.BUILD, context, start, pageLength);
+        }
         if (content == null) {
             return false;
         }
 
         String[] decoratorPaths = decoratorSelector.selectDecoratorPaths(content, context);
+        if (timed) {
+            start = record(metrics, SiteMeshMetrics.Phase.SELECT, context, start, -1);
+        }
+        DecorationPlan plan = DecorationPlan.get(request);
+        if (plan != null) {
+            plan.setDecoratorPaths(decoratorPaths);
+            if (decisionsByPath != null && plan.getPath() != null) {
+                PathDecision decision = decisionsByPath.get(plan.getPath());
+                if (decision != null) {
+                    decision.pageLength = pageLength;
+                }
+            }
+        }
         for (String decoratorPath : decoratorPaths) {
+            if (decoratorVersions != null) {
+                decoratorVersions.track(decoratorPath);
+            }
             content = context.decorate(decoratorPath, content);
         }
 
@@ -134,39 +217,160 @@ public class SiteMeshFilter extends ContentBufferingFilter {
         if (response.containsHeader("Content-Length")) {
             response.setContentLength(-1);
         }
+        SiteMeshWriteEvent writeEvent = new SiteMeshWriteEvent();
+        writeEvent.begin();
+        if (timed) {
+            start = System.nanoTime();
+        }
+        Appendable out;
         try {
-            content.getData().writeValueTo(response.getWriter());
+            out = response.getWriter();
         } catch (IllegalStateException ise) {  // If getOutputStream() has already been called
-            content.getData().writeValueTo(new PrintStream(response.getOutputStream()));
+            out = new PrintStream(response.getOutputStream());
+        }
+        if (timed || writeEvent.isEnabled()) {
+            SiteMeshMetrics.CountingAppendable counter = new SiteMeshMetrics.CountingAppendable(out);
+            content.getData().writeValueTo(counter);
+            if (timed) {
+                record(metrics, SiteMeshMetrics.Phase.WRITE, context, start, counter.getCount());
+            }
+            if (writeEvent.shouldCommit()) {
+                writeEvent.path = context.getPath();
+                writeEvent.outputLength = counter.getCount();
+                writeEvent.commit();
+            }
+        } else {
+            content.getData().writeValueTo(out);
         }
         return true;
     }
 
+    /**
+     * Record a phase that started at <code>start</code> and ended now.
+     *
+     * @return When the phase ended.
+     */
+    private static long record(SiteMeshMetrics metrics, SiteMeshMetrics.Phase phase, WebAppContext context,
+                               long start, long length) {
+        long end = System.nanoTime();
+        metrics.recordPhase(phase, context.getPath(), null, end - start, length);
+        return end;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        super.init(filterConfig);
+        if (decoratorVersions != null) {
+            decoratorVersions.start(DecoratorVersionRegistry.forServletContext(filterConfig.getServletContext()));
+            final ResponseCache responseCache = getResponseCache();
+            if (responseCache != null) {
+                // Cached pages were decorated with the old decorators.
+                responseCacheInvalidator = new DecoratorVersionRegistry.Listener() {
+                    public void decoratorsChanged(Set<String> changedPaths) {
+                        responseCache.clear();
+                    }
+                };
+                decoratorVersions.addListener(responseCacheInvalidator);
+            }
+            if (decoratorSource instanceof DecoratorVersionRegistry.Listener) {
+                decoratorVersions.addListener((DecoratorVersionRegistry.Listener) decoratorSource);
+            }
+        }
+        if (warmup != null) {
+            warmup.warmUp(this, filterConfig.getServletContext());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (decoratorVersions != null) {
+            decoratorVersions.stop();
+            if (responseCacheInvalidator != null) {
+                decoratorVersions.removeListener(responseCacheInvalidator);
+                responseCacheInvalidator = null;
+            }
+            if (decoratorSource instanceof DecoratorVersionRegistry.Listener) {
+                decoratorVersions.removeListener((DecoratorVersionRegistry.Listener) decoratorSource);
+            }
+        }
+        super.destroy();
+    }
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException,
             ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        if (requestExclusions != null && requestExclusions.isExcluded(httpRequest)) {
+            if (getMetrics().isEnabled()) {
+                getMetrics().recordOutcome(SiteMeshMetrics.Outcome.PASSED_THROUGH, httpRequest.getRequestURI());
+            }
+            filterChain.doFilter(request, response);
+            return;
+        }
+        DecorationPlan plan = DecorationPlan.forRequest(httpRequest);
+        // Only a plain BasicSelector decides on the path alone, so nested dispatches can reuse it.
+        Boolean passThrough = decisionsByPath != null ? plan.getPassThrough() : null;
+        if (passThrough == null) {
+            String path = plan.resolvePath(httpRequest);
+            PathDecision decision = decisionsByPath != null ? decisionsByPath.get(path) : null;
+            if (decision == null) {
+                decision = new PathDecision(shouldPassThrough(path, httpRequest));
+                if (decisionsByPath != null) {
+                    decisionsByPath.put(path, decision);
+                }
+            }
+            passThrough = decision.passThrough;
+            plan.setPassThrough(passThrough);
+            plan.setBufferSizeHint(decision.pageLength);
+        }
+        if (passThrough) {
+            if (getMetrics().isEnabled()) {
+                getMetrics().recordOutcome(SiteMeshMetrics.Outcome.PASSED_THROUGH, plan.getPath());
+            }
+            filterChain.doFilter(request, response);
+            return;
+        }
+        super.doFilter(request, response, filterChain);
+    }
+
+    /**
+     * Decide from the decorator and exclusion mappings whether a request is left alone
+     * without being buffered.
+     */
+    private boolean shouldPassThrough(String path, HttpServletRequest request) {
         String decoratorPattern = null;
         if (decoratorSelector instanceof PathBasedDecoratorSelector) {
             PathBasedDecoratorSelector<WebAppContext> pbds = (PathBasedDecoratorSelector<WebAppContext>) decoratorSelector;
-            decoratorPattern = pbds.getPathMapper().getPatternInUse(WebAppContext.getRequestPath((HttpServletRequest) request));
+            decoratorPattern = pbds.getPathMapper().getPatternInUse(path);
         }
 
         // if no decorator pattern and not using a MetaTagBasedDecoratorSelector or RequestAttributeDecoratorSelector, no need to process content.
         if (decoratorPattern == null && !(decoratorSelector instanceof MetaTagBasedDecoratorSelector)) {
-            filterChain.doFilter(request, response);
-            return;
+            return true;
         }
 
-        String exclusionPattern = getSelector().excludePatternInUse((HttpServletRequest) request);
+        String exclusionPattern = getSelector().excludePatternInUse(request);
         if (exclusionPattern != null) {
             // Ability to override exclusion by more specific pattern
             if (decoratorPattern == null || // MetaTag should not be able to override exclusion rule.
                     PathMapper.isMoreSpecific(exclusionPattern, decoratorPattern)) {
-                filterChain.doFilter(request, response);
-                return;
+                return true;
             }
         }
-        super.doFilter(request, response, filterChain);
+        return false;
+    }
+
+    /**
+     * Forget the pass-through decisions remembered per path. Only needed if the decorator
+     * or exclusion mappings are changed after the filter was created.
+     */
+    public void clearResolutionCache() {
+        if (decisionsByPath != null) {
+            decisionsByPath.clear();
+        }
+        if (decoratorSelector instanceof PathBasedDecoratorSelector) {
+            ((PathBasedDecoratorSelector<WebAppContext>) decoratorSelector).clearResolutionCache();
+        }
     }
     
     
@@ -182,8 +386,20 @@ public class SiteMeshFilter extends ContentBufferingFilter {
      */
     protected WebAppContext createContext(String contentType, HttpServletRequest request,
                                           HttpServletResponse response, ResponseMetaData metaData) {
-        return new WebAppContext(contentType, request, response,
+        WebAppContext context = new WebAppContext(contentType, request, response,
                 getFilterConfig().getServletContext(), contentProcessor, metaData, includeErrorPages, dispatchMode);
+        context.setDecoratorSource(decoratorSource);
+        context.setMetrics(getMetrics());
+        context.setDecoratorSizeEstimates(decoratorSizeEstimates);
+        return context;
+    }
+
+    /**
+     * @return How long the output of each decorator usually is, used to size the buffer it
+     *         is rendered into.
+     */
+    public SizeEstimates getDecoratorSizeEstimates() {
+        return decoratorSizeEstimates;
     }
 
     /**
@@ -193,10 +409,172 @@ public class SiteMeshFilter extends ContentBufferingFilter {
         return contentProcessor;
     }
 
+    /**
+     * @return The {@link DecoratorSource} passed to the constructor, or null.
+     */
+    public DecoratorSource getDecoratorSource() {
+        return decoratorSource;
+    }
+
+    /**
+     * @return The {@link SiteMeshWarmup} passed to the constructor, or null.
+     */
+    public SiteMeshWarmup getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * Whether the filter is warm, for readiness checks.
+     *
+     * @return true once warming up has completed, or if the filter is not warmed up at all.
+     */
+    public boolean isWarmedUp() {
+        return warmup == null || warmup.isComplete();
+    }
+
+    /**
+     * @return The {@link RequestExclusions} passed to the constructor, or null if there are none.
+     */
+    public RequestExclusions getRequestExclusions() {
+        return requestExclusions;
+    }
+
+    /**
+     * @return The {@link DecoratorVersionRegistry} passed to the constructor, or null.
+     */
+    public DecoratorVersionRegistry getDecoratorVersionRegistry() {
+        return decoratorVersions;
+    }
+
     /**
      * @return The {@link DecoratorSelector} passed to the constructor.
      */
     public DecoratorSelector<WebAppContext> getDecoratorSelector() {
         return decoratorSelector;
     }
+
+    /**
+     * What is remembered per path: whether it is passed through, and the length of the last
+     * page buffered for it, used to size the buffer of the next one.
+     */
+    private static final class PathDecision {
+        final boolean passThrough;
+        volatile int pageLength;
+
+        PathDecision(boolean passThrough) {
+            this.passThrough = passThrough;
+        }
+    }
+    /**
+     * Optional collaborators of a {@link SiteMeshFilter}, passed to its constructor. Anything
+     * left unset is disabled.
+     */
+    public static class Options extends ContentBufferingFilter.Options {
+
+        private DecoratorVersionRegistry decoratorVersionRegistry;
+        private DecoratorSource decoratorSource;
+        private SiteMeshWarmup warmup;
+        private RequestExclusions requestExclusions;
+
+        @Override
+        public Options setResponseCache(ResponseCache responseCache) {
+            super.setResponseCache(responseCache);
+            return this;
+        }
+
+        @Override
+        public Options setETagGenerator(ETagGenerator eTagGenerator) {
+            super.setETagGenerator(eTagGenerator);
+            return this;
+        }
+
+        @Override
+        public Options setNonBlockingWriter(NonBlockingWriter nonBlockingWriter) {
+            super.setNonBlockingWriter(nonBlockingWriter);
+            return this;
+        }
+
+        @Override
+        public Options setAsyncDecorator(AsyncDecorator asyncDecorator) {
+            super.setAsyncDecorator(asyncDecorator);
+            return this;
+        }
+
+        @Override
+        public Options setMetrics(SiteMeshMetrics metrics) {
+            super.setMetrics(metrics);
+            return this;
+        }
+
+        /**
+         * @param decoratorVersionRegistry Tracks the decorators applied by the filter, watching the
+         *                 web application's resources for changes to them once the filter is
+         *                 initialized, or null to not detect decorator changes.
+         *                 See {@link DecoratorVersionRegistry}.
+         * @return this, for method chaining.
+         */
+        public Options setDecoratorVersionRegistry(DecoratorVersionRegistry decoratorVersionRegistry) {
+            this.decoratorVersionRegistry = decoratorVersionRegistry;
+            return this;
+        }
+
+        /**
+         * @return The decorator version registry, or null.
+         */
+        public DecoratorVersionRegistry getDecoratorVersionRegistry() {
+            return decoratorVersionRegistry;
+        }
+
+        /**
+         * @param decoratorSource Renders decorators without dispatching a request to them where it
+         *                 can, or null to always dispatch. See {@link DecoratorSource}.
+         * @return this, for method chaining.
+         */
+        public Options setDecoratorSource(DecoratorSource decoratorSource) {
+            this.decoratorSource = decoratorSource;
+            return this;
+        }
+
+        /**
+         * @return The decorator source, or null.
+         */
+        public DecoratorSource getDecoratorSource() {
+            return decoratorSource;
+        }
+
+        /**
+         * @param warmup Warms up the filter when it is initialized, or null to start cold.
+         *                 See {@link SiteMeshWarmup}.
+         * @return this, for method chaining.
+         */
+        public Options setWarmup(SiteMeshWarmup warmup) {
+            this.warmup = warmup;
+            return this;
+        }
+
+        /**
+         * @return The warmup, or null.
+         */
+        public SiteMeshWarmup getWarmup() {
+            return warmup;
+        }
+
+        /**
+         * @param requestExclusions Requests (such as static assets) passed straight through before
+         *                 their path is even computed, or null to check every request against the
+         *                 mappings. See {@link RequestExclusions}.
+         * @return this, for method chaining.
+         */
+        public Options setRequestExclusions(RequestExclusions requestExclusions) {
+            this.requestExclusions = requestExclusions;
+            return this;
+        }
+
+        /**
+         * @return The request exclusions, or null.
+         */
+        public RequestExclusions getRequestExclusions() {
+            return requestExclusions;
+        }
+    }
 }
@@ -0,0 +1,272 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp;
+
+import jakarta.servlet.ServletContext;
+
+import org.sitemesh.BaseSiteMeshContext;
+import org.sitemesh.DecoratorSelector;
+import org.sitemesh.DecoratorVersionRegistry;
+import org.sitemesh.config.PathBasedDecoratorSelector;
+import org.sitemesh.config.PathMapper;
+import org.sitemesh.content.Content;
+import org.sitemesh.content.ContentProcessor;
+import org.sitemesh.webapp.contentfilter.BasicSelector;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Warms up a {@link SiteMeshFilter} when it is initialized, so the first requests after a
+ * deploy are not the ones paying for cold caches and unoptimized code.
+ *
+ * <p>Warming up:</p>
+ * <ul>
+ *   <li>builds the path matching structures of the decorator and exclusion mappings, by
+ *       matching a sample path for every pattern;</li>
+ *   <li>resolves every decorator referenced by the mappings, and loads those its
+ *       {@link DecoratorSource} can provide (e.g. static decorators) ahead of the first request,
+ *       tracking them in the {@link DecoratorVersionRegistry} if there is one;</li>
+ *   <li>runs a number of synthetic parse and decorate cycles through the filter's
+ *       {@link ContentProcessor}, merging a sample page into each loaded decorator, so the JIT
+ *       compiles the tokenizer and tag rules.</li>
+ * </ul>
+ *
+ * <p>Decorators that are dispatched to (JSPs, controllers) cannot be rendered without a
+ * request, so they are only resolved. Warming up is best effort: failures are logged and do
+ * not stop the filter from being initialized.</p>
+ *
+ * <p>Warming up runs on the thread initializing the filter, so the filter - and with it the
+ * web application - only starts taking requests once it has {@link #isComplete() completed}.
+ * Containers initialize filters while the application starts (in Spring Boot, before the
+ * application reports that it is ready), so rolling deploys only route traffic to warm
+ * instances.</p>
+ *
+ * @see org.sitemesh.builder.BaseSiteMeshFilterBuilder#setWarmupIterations(int)
+ */
+public class SiteMeshWarmup {
+
+    /** Number of synthetic parse and decorate cycles used when none is specified. */
+    public static final int DEFAULT_ITERATIONS = 500;
+
+    /** Character encoding decorators are loaded with, matching the usual page encoding. */
+    public static final String DEFAULT_ENCODING = "UTF-8";
+
+    /** Page merged into the decorators, exercising the common tag rules. */
+    static final String SAMPLE_PAGE = "<!DOCTYPE html>\n"
+            + "<html lang=\"en\">\n"
+            + "<head>\n"
+            + "  <meta charset=\"UTF-8\">\n"
+            + "  <title>Warmup</title>\n"
+            + "  <meta name=\"description\" content=\"SiteMesh warmup page\">\n"
+            + "  <link rel=\"stylesheet\" href=\"/style.css\">\n"
+            + "  <style>body { margin: 0; }</style>\n"
+            + "  <script>var ready = 1 < 2 && 'body' != '</head>';</script>\n"
+            + "</head>\n"
+            + "<body class=\"warmup\" onload=\"init()\">\n"
+            + "  <!-- comment -->\n"
+            + "  <h1>Warmup</h1>\n"
+            + "  <p>Some <b>text</b> with <a href=\"/link?a=1&amp;b=2\">a link</a>.</p>\n"
+            + "  <content tag=\"sidebar\"><ul><li>One</li><li>Two</li></ul></content>\n"
+            + "  <table><tr><td>1</td><td>2</td></tr></table>\n"
+            + "  <![CDATA[ cdata ]]>\n"
+            + "</body>\n"
+            + "</html>\n";
+
+    /** Decorator used for the synthetic cycles when no decorator could be loaded. */
+    static final String SAMPLE_DECORATOR = "<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "<head>\n"
+            + "  <title>Site: <sitemesh:write property=\"title\"/></title>\n"
+            + "  <sitemesh:write property=\"head\"/>\n"
+            + "</head>\n"
+            + "<body>\n"
+            + "  <div id=\"sidebar\"><sitemesh:write property=\"page.sidebar\"/></div>\n"
+            + "  <div id=\"main\"><sitemesh:write property=\"body\"/></div>\n"
+            + "</body>\n"
+            + "</html>\n";
+
+    private static final String SAMPLE_DECORATOR_PATH = "/sitemesh-warmup-decorator";
+
+    private static final Logger logger = Logger.getLogger(SiteMeshWarmup.class.getName());
+
+    private final int iterations;
+    private volatile boolean complete;
+
+    /**
+     * Run {@link #DEFAULT_ITERATIONS} synthetic cycles.
+     */
+    public SiteMeshWarmup() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * @param iterations Number of synthetic parse and decorate cycles to run. 0 only builds
+     *                   the path matching structures and loads the decorators.
+     */
+    public SiteMeshWarmup(int iterations) {
+        if (iterations < 0) {
+            throw new IllegalArgumentException("iterations cannot be negative");
+        }
+        this.iterations = iterations;
+    }
+
+    /**
+     * Warm up a filter. Called by {@link SiteMeshFilter#init(jakarta.servlet.FilterConfig)}.
+     *
+     * @param filter The filter to warm up.
+     * @param servletContext The web application the filter belongs to.
+     */
+    public void warmUp(SiteMeshFilter filter, ServletContext servletContext) {
+        long start = System.nanoTime();
+        try {
+            if (filter.getSelector() instanceof BasicSelector) {
+                warmUpPaths(((BasicSelector) filter.getSelector()).getExcludesMapper());
+            }
+            Map<String, CharBuffer> decorators = loadDecorators(filter, servletContext);
+            if (decorators.isEmpty()) {
+                decorators.put(SAMPLE_DECORATOR_PATH, CharBuffer.wrap(SAMPLE_DECORATOR));
+            }
+            runCycles(filter.getContentProcessor(), decorators);
+            logger.info("SiteMesh warmed up in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                    + " ms (" + iterations + " iterations, " + decorators.size() + " decorators)");
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not warm up SiteMesh, continuing without", e);
+        } finally {
+            complete = true;
+        }
+    }
+
+    /**
+     * Resolve the decorators of every mapped pattern, loading those the
+     * {@link DecoratorSource} can provide.
+     */
+    private Map<String, CharBuffer> loadDecorators(SiteMeshFilter filter, ServletContext servletContext) {
+        Map<String, CharBuffer> decorators = new LinkedHashMap<String, CharBuffer>();
+        DecoratorSelector<WebAppContext> decoratorSelector = filter.getDecoratorSelector();
+        if (!(decoratorSelector instanceof PathBasedDecoratorSelector)) {
+            return decorators;
+        }
+        PathBasedDecoratorSelector<WebAppContext> selector = (PathBasedDecoratorSelector<WebAppContext>) decoratorSelector;
+        warmUpPaths(selector.getPathMapper());
+
+        DecoratorSource source = filter.getDecoratorSource();
+        DecoratorVersionRegistry versions = filter.getDecoratorVersionRegistry();
+        for (String pattern : selector.getPathMapper().getPatterns()) {
+            // A pattern is an exact match for itself.
+            for (String decoratorPath : selector.selectDecoratorPaths(pattern)) {
+                if (decorators.containsKey(decoratorPath)) {
+                    continue;
+                }
+                if (versions != null) {
+                    versions.track(decoratorPath);
+                }
+                CharBuffer text = null;
+                if (source != null) {
+                    try {
+                        text = source.preload(decoratorPath, servletContext, DEFAULT_ENCODING);
+                    } catch (IOException e) {
+                        logger.log(Level.FINE, "Could not preload decorator " + decoratorPath, e);
+                    }
+                }
+                if (text != null) {
+                    decorators.put(decoratorPath, text);
+                }
+            }
+        }
+        return decorators;
+    }
+
+    /**
+     * Match a sample path for every pattern, so the lazily built matcher states exist.
+     */
+    private static void warmUpPaths(PathMapper<?> mapper) {
+        for (String pattern : mapper.getPatterns()) {
+            mapper.get(samplePath(pattern));
+        }
+    }
+
+    /**
+     * @return A path matched by the pattern.
+     */
+    static String samplePath(String pattern) {
+        StringBuilder path = new StringBuilder(pattern.length() + 16);
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*') {
+                path.append("warmup");
+            } else if (c == '?') {
+                path.append('w');
+            } else {
+                path.append(c);
+            }
+        }
+        return path.toString();
+    }
+
+    private void runCycles(ContentProcessor contentProcessor, Map<String, CharBuffer> decorators)
+            throws IOException {
+        WarmupContext context = new WarmupContext(contentProcessor, decorators);
+        for (int i = 0; i < iterations; i++) {
+            for (String decoratorPath : decorators.keySet()) {
+                Content content = contentProcessor.build(CharBuffer.wrap(SAMPLE_PAGE), context);
+                context.decorate(decoratorPath, content);
+            }
+        }
+    }
+
+    /**
+     * @return The number of synthetic parse and decorate cycles run per decorator.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return Whether warming up has finished (successfully or not).
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Decorates with the loaded decorator text, without a request.
+     */
+    private static final class WarmupContext extends BaseSiteMeshContext {
+        private final Map<String, CharBuffer> decorators;
+
+        WarmupContext(ContentProcessor contentProcessor, Map<String, CharBuffer> decorators) {
+            super(contentProcessor);
+            this.decorators = decorators;
+        }
+
+        public String getPath() {
+            return "/";
+        }
+
+        @Override
+        protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
+            out.append(decorators.get(decoratorPath));
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp;
+
+import jakarta.servlet.ServletContext;
+
+import org.sitemesh.DecoratorVersionRegistry;
+import org.sitemesh.config.PathResolutionCache;
+import org.sitemesh.webapp.contentfilter.ResponseMetaData;
+import org.sitemesh.webapp.contentfilter.io.HttpContentType;
+import org.sitemesh.webapp.contentfilter.io.TextEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link DecoratorSource} that reads static decorator files (by default {@code .html} and
+ * {@code .htm}) straight from the web application with
+ * {@link ServletContext#getResourceAsStream(String)}, instead of dispatching a request to
+ * the container's default servlet for every decorated page.
+ *
+ * <p>Each decorator is read and decoded once, then served from memory. Decorators are
+ * decoded with the character encoding of the page being decorated, as the default servlet's
+ * output would have been. Paths that are not found as resources - or have another extension,
+ * such as JSPs and template names - are dispatched to as before.</p>
+ *
+ * <p>Only use this when files with these extensions are really served as-is: a servlet or
+ * controller mapped to such a path would be bypassed. To pick up changes to the files without
+ * a restart, register this source as a listener of a {@link DecoratorVersionRegistry};
+ * {@link SiteMeshFilter} does so when it is given both.</p>
+ */
+public class StaticDecoratorSource implements DecoratorSource, DecoratorVersionRegistry.Listener {
+
+    /** Extensions of the decorators read when none are specified. */
+    public static final String[] DEFAULT_EXTENSIONS = {".html", ".htm"};
+
+    /** Upper bound on the number of decorators held in memory. */
+    public static final int MAX_CACHED_DECORATORS = 256;
+
+    private static final StaticDecorator NOT_STATIC = new StaticDecorator(null, 0, null, -1);
+
+    private final String[] extensions;
+    private final PathResolutionCache<StaticDecorator> decorators
+            = new PathResolutionCache<StaticDecorator>(MAX_CACHED_DECORATORS);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Read decorators with the {@link #DEFAULT_EXTENSIONS}.
+     */
+    public StaticDecoratorSource() {
+        this(DEFAULT_EXTENSIONS);
+    }
+
+    /**
+     * @param extensions Extensions (including the dot) of the decorator paths to read directly.
+     */
+    public StaticDecoratorSource(String... extensions) {
+        this.extensions = extensions.clone();
+    }
+
+    public boolean write(String decoratorPath, WebAppContext context, Writer out) throws IOException {
+        if (!isStatic(decoratorPath)) {
+            return false;
+        }
+        String encoding = new HttpContentType(context.getResponse().getContentType()).getEncoding();
+        StaticDecorator decorator = decorators.get(decoratorPath);
+        if (decorator == null || (decorator != NOT_STATIC && !decorator.isDecodedWith(encoding))) {
+            misses.increment();
+            decorator = read(context.getServletContext(), decoratorPath, encoding);
+            decorators.put(decoratorPath, decorator);
+        } else {
+            hits.increment();
+        }
+        if (decorator == NOT_STATIC) {
+            return false;
+        }
+
+        // Account for the decorator like a dispatched response would.
+        ResponseMetaData metaData = context.getMetaData();
+        if (metaData != null) {
+            metaData.beginNewResponse();
+            if (decorator.lastModified > 0) {
+                metaData.updateLastModified(decorator.lastModified);
+            }
+        }
+        out.write(decorator.chars, 0, decorator.length);
+        return true;
+    }
+
+    /**
+     * Read a static decorator into memory ahead of the first request for it.
+     */
+    @Override
+    public CharBuffer preload(String decoratorPath, ServletContext servletContext, String encoding)
+            throws IOException {
+        if (!isStatic(decoratorPath)) {
+            return null;
+        }
+        StaticDecorator decorator = read(servletContext, decoratorPath, encoding);
+        decorators.put(decoratorPath, decorator);
+        return decorator == NOT_STATIC ? null : CharBuffer.wrap(decorator.chars, 0, decorator.length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Whether a decorator path is one this source reads directly.
+     *
+     * @param decoratorPath Path of the decorator.
+     * @return true if the path is absolute and has one of the configured extensions.
+     */
+    protected boolean isStatic(String decoratorPath) {
+        if (!decoratorPath.startsWith("/")) {
+            return false;
+        }
+        for (String extension : extensions) {
+            if (decoratorPath.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static StaticDecorator read(ServletContext servletContext, String decoratorPath, String encoding)
+            throws IOException {
+        InputStream in = servletContext.getResourceAsStream(decoratorPath);
+        if (in == null) {
+            return NOT_STATIC;
+        }
+        byte[] bytes;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            in.transferTo(buffer);
+            bytes = buffer.toByteArray();
+        } finally {
+            in.close();
+        }
+        CharBuffer decoded = TextEncoder.encode(ByteBuffer.wrap(bytes), encoding);
+        char[] chars = new char[decoded.remaining()];
+        decoded.get(chars);
+        return new StaticDecorator(chars, chars.length, encoding, lastModified(servletContext, decoratorPath));
+    }
+
+    private static long lastModified(ServletContext servletContext, String decoratorPath) {
+        String realPath = servletContext.getRealPath(decoratorPath);
+        return realPath == null ? -1 : new File(realPath).lastModified();
+    }
+
+    /**
+     * Forget the decorators whose files changed, so they are read again when next used.
+     */
+    public void decoratorsChanged(Set<String> changedPaths) {
+        for (String path : changedPaths) {
+            decorators.remove(path);
+        }
+    }
+
+    /**
+     * Forget all decorators read so far.
+     */
+    public void clear() {
+        decorators.clear();
+    }
+
+    /**
+     * @return How many times a decorator path was answered from memory (including paths
+     *         remembered as not static).
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return How many times a decorator had to be read (or looked up) as a resource.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static final class StaticDecorator {
+        final char[] chars;
+        final int length;
+        final String encoding;
+        final long lastModified;
+
+        StaticDecorator(char[] chars, int length, String encoding, long lastModified) {
+            this.chars = chars;
+            this.length = length;
+            this.encoding = encoding;
+            this.lastModified = lastModified;
+        }
+
+        boolean isDecodedWith(String encoding) {
+            return this.encoding == null ? encoding == null : this.encoding.equalsIgnoreCase(encoding);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.sitemesh.content.Content;
 import org.sitemesh.content.ContentProcessor;
 import org.sitemesh.content.ContentProperty;
 import org.sitemesh.webapp.contentfilter.BasicSelector;
+import org.sitemesh.webapp.contentfilter.DecorationPlan;
 import org.sitemesh.webapp.contentfilter.HttpServletResponseBuffer;
 import org.sitemesh.webapp.contentfilter.HttpServletRequestFilterable;
 import org.sitemesh.webapp.contentfilter.ResponseMetaData;
@@ -73,6 +74,7 @@ public class WebAppContext extends BaseSiteMeshContext {
     private final ResponseMetaData metaData;
     private final boolean includeErrorPages;
     private final DispatchMode dispatchMode;
+    private DecoratorSource decoratorSource;
 
     /** Resolved once from {@link #dispatchMode} at construction (a context is
      * per-request and single-threaded), so {@link DispatchMode#DETECT} inspects
@@ -128,6 +130,16 @@ public class WebAppContext extends BaseSiteMeshContext {
         this.useIncludeForDispatch = this.dispatchMode.useInclude(servletContext);
     }
 
+    /**
+     * Render decorators without dispatching a request to them where the source can.
+     *
+     * @param decoratorSource the source to try first; null always dispatches.
+     * @see DecoratorSource
+     */
+    public void setDecoratorSource(DecoratorSource decoratorSource) {
+        this.decoratorSource = decoratorSource;
+    }
+
     /**
      * @return The current request.
      */
@@ -149,6 +161,14 @@ public class WebAppContext extends BaseSiteMeshContext {
         return servletContext;
     }
 
+    /**
+     * @return Additional response metadata gathered while buffering, which decorators
+     *         contribute to as well.
+     */
+    public ResponseMetaData getMetaData() {
+        return metaData;
+    }
+
     /**
      * @return Content type of the response being decorated.
      */
@@ -157,10 +177,12 @@ public class WebAppContext extends BaseSiteMeshContext {
     }
 
     /**
-     * @return The request path, as determined by {@link #getRequestPath(HttpServletRequest)}.
+     * @return The request path, as determined by {@link #getRequestPath(HttpServletRequest)}, or
+     *         as already resolved in the request's {@link DecorationPlan}.
      */
     public String getPath() {
-        return getRequestPath(request);
+        DecorationPlan plan = DecorationPlan.get(request);
+        return plan != null && plan.getPath() != null ? plan.getPath() : getRequestPath(request);
     }
 
     /**
@@ -213,9 +235,15 @@ public class WebAppContext extends BaseSiteMeshContext {
      * looking them up as {@link HttpServletRequest} attributes under the keys
      * {@link #CONTENT_KEY} and
      * {@link #CONTEXT_KEY} respectively.</p>
+     *
+     * <p>If a {@link DecoratorSource} was given and can render the decorator itself, no
+     * request is dispatched.</p>
      */
     @Override
     protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
+        if (decoratorSource != null && decoratorSource.write(decoratorPath, this, out)) {
+            return;
+        }
         HttpServletRequest filterableRequest = new HttpServletRequestFilterable(request);
         // Wrap response so output gets buffered.
         HttpServletResponseBuffer responseBuffer = new HttpServletResponseBuffer(response, metaData, new BasicSelector(new PathMapper<Boolean>(), includeErrorPages) {
@@ -0,0 +1,292 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The state of one request handled by {@link AsyncDecorator}.
+ *
+ * <p>The request passed down the filter chain is wrapped (see {@link #wrap(HttpServletRequest)})
+ * so the {@link AsyncContext} handed to the application defers {@code complete()}. Post-processing
+ * starts once both the application has completed the context and the filter chain has returned
+ * (see {@link #decorateOnCompletion(Task)}), whichever happens last.</p>
+ */
+class AsyncDecoration {
+
+    /**
+     * Post-processes the buffered content and writes it to the response.
+     */
+    interface Task {
+        /**
+         * @param asyncContext The real async context. Must be completed once the response is written.
+         * @throws IOException If the response cannot be written to.
+         * @throws ServletException If post-processing fails.
+         */
+        void run(AsyncContext asyncContext) throws IOException, ServletException;
+    }
+
+    private static final int STARTED = 1;
+    private static final int COMPLETE_REQUESTED = 2;
+    private static final int ARMED = 4;
+    private static final int DECORATING = 8;
+    private static final int DISPATCHED = 16;
+    private static final int ABORTED = 32;
+
+    private static final Logger logger = Logger.getLogger(AsyncDecoration.class.getName());
+
+    private final AtomicInteger state = new AtomicInteger();
+    private final Executor executor;
+    private final HttpServletRequest request;
+    private final HttpServletResponse response;
+    private final HttpServletResponse responseBuffer;
+
+    private volatile AsyncContext asyncContext;
+    private volatile AsyncContext deferredAsyncContext;
+    private volatile Task task;
+
+    AsyncDecoration(Executor executor, HttpServletRequest request, HttpServletResponse response,
+                    HttpServletResponse responseBuffer) {
+        this.executor = executor;
+        this.request = request;
+        this.response = response;
+        this.responseBuffer = responseBuffer;
+    }
+
+    /**
+     * @param request The request to pass down the filter chain.
+     * @return The request whose async context defers completion.
+     */
+    HttpServletRequest wrap(HttpServletRequest request) {
+        return new DeferringRequest(request);
+    }
+
+    /**
+     * @return Whether the application started async processing through the wrapped request,
+     *         and has not dispatched it elsewhere.
+     */
+    boolean isDeferringCompletion() {
+        int current = state.get();
+        return (current & STARTED) != 0 && (current & (DISPATCHED | ABORTED)) == 0;
+    }
+
+    /**
+     * Post-process once the application completes the async context (or now, if it already has).
+     *
+     * @param task Post-processes the buffered content.
+     */
+    void decorateOnCompletion(Task task) {
+        this.task = task;
+        state.getAndUpdate(current -> current | ARMED);
+        startIfReady();
+    }
+
+    private void startIfReady() {
+        int current;
+        do {
+            current = state.get();
+            if ((current & (ARMED | COMPLETE_REQUESTED)) != (ARMED | COMPLETE_REQUESTED)
+                    || (current & (DECORATING | DISPATCHED | ABORTED)) != 0) {
+                return;
+            }
+        } while (!state.compareAndSet(current, current | DECORATING));
+
+        try {
+            executor.execute(this::decorate);
+        } catch (RejectedExecutionException e) {
+            // E.g. the executor was shut down with the filter. The request still deserves a response.
+            logger.fine("Async decoration executor rejected the request, decorating on the calling thread");
+            decorate();
+        }
+    }
+
+    private void decorate() {
+        try {
+            task.run(asyncContext);
+        } catch (IOException | ServletException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(Exception e) {
+        if ((state.get() & ABORTED) != 0) {
+            // The container has already answered the request (e.g. it timed out).
+            logger.log(Level.FINE, "Could not decorate async response after it was aborted", e);
+            return;
+        }
+        logger.log(Level.SEVERE, "Could not decorate async response", e);
+        try {
+            if (!response.isCommitted()) {
+                request.setAttribute(RequestDispatcher.ERROR_EXCEPTION, e);
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        } catch (IOException | IllegalStateException ignored) {
+            // Nothing more can be sent.
+        }
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException ignored) {
+            // Already completed.
+        }
+    }
+
+    /**
+     * Hands out an {@link AsyncContext} that defers completion, and makes content written
+     * through {@link AsyncContext#getResponse()} end up in the buffer.
+     */
+    private class DeferringRequest extends HttpServletRequestWrapper {
+
+        DeferringRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public AsyncContext startAsync() throws IllegalStateException {
+            return startAsync(this, responseBuffer);
+        }
+
+        @Override
+        public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse)
+                throws IllegalStateException {
+            AsyncContext realContext = super.startAsync(servletRequest, servletResponse);
+            if ((state.get() & STARTED) != 0) {
+                // Restarted after a dispatch: leave it to the container.
+                return realContext;
+            }
+            realContext.addListener(new AbortListener());
+            asyncContext = realContext;
+            deferredAsyncContext = new DeferredAsyncContext(realContext);
+            state.getAndUpdate(current -> current | STARTED);
+            return deferredAsyncContext;
+        }
+
+        @Override
+        public AsyncContext getAsyncContext() {
+            AsyncContext realContext = super.getAsyncContext();
+            return realContext == asyncContext && isDeferringCompletion() ? deferredAsyncContext : realContext;
+        }
+    }
+
+    /**
+     * Stops waiting for completion once the container gives up on the request. The container
+     * then applies its own timeout/error handling.
+     */
+    private class AbortListener implements AsyncListener {
+        public void onComplete(AsyncEvent event) {
+        }
+
+        public void onTimeout(AsyncEvent event) {
+            if ((state.getAndUpdate(current -> current | ABORTED) & DECORATING) != 0) {
+                logger.warning("Async request timed out while being decorated");
+            }
+        }
+
+        public void onError(AsyncEvent event) {
+            state.getAndUpdate(current -> current | ABORTED);
+            logger.log(Level.FINE, "Async request failed before it could be decorated", event.getThrowable());
+        }
+
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private class DeferredAsyncContext implements AsyncContext {
+
+        private final AsyncContext delegate;
+
+        DeferredAsyncContext(AsyncContext delegate) {
+            this.delegate = delegate;
+        }
+
+        public void complete() {
+            int current = state.getAndUpdate(value -> value | COMPLETE_REQUESTED);
+            if ((current & (DISPATCHED | ABORTED)) != 0) {
+                delegate.complete();
+            } else if ((current & COMPLETE_REQUESTED) == 0) {
+                startIfReady();
+            }
+        }
+
+        public void dispatch() {
+            state.getAndUpdate(current -> current | DISPATCHED);
+            delegate.dispatch();
+        }
+
+        public void dispatch(String path) {
+            state.getAndUpdate(current -> current | DISPATCHED);
+            delegate.dispatch(path);
+        }
+
+        public void dispatch(ServletContext context, String path) {
+            state.getAndUpdate(current -> current | DISPATCHED);
+            delegate.dispatch(context, path);
+        }
+
+        public ServletRequest getRequest() {
+            return delegate.getRequest();
+        }
+
+        public ServletResponse getResponse() {
+            return delegate.getResponse();
+        }
+
+        public boolean hasOriginalRequestAndResponse() {
+            return delegate.hasOriginalRequestAndResponse();
+        }
+
+        public void start(Runnable runnable) {
+            delegate.start(runnable);
+        }
+
+        public void addListener(AsyncListener listener) {
+            delegate.addListener(listener);
+        }
+
+        public void addListener(AsyncListener listener, ServletRequest servletRequest, ServletResponse servletResponse) {
+            delegate.addListener(listener, servletRequest, servletResponse);
+        }
+
+        public <T extends AsyncListener> T createListener(Class<T> listenerClass) throws ServletException {
+            return delegate.createListener(listenerClass);
+        }
+
+        public void setTimeout(long timeout) {
+            delegate.setTimeout(timeout);
+        }
+
+        public long getTimeout() {
+            return delegate.getTimeout();
+        }
+    }
+}
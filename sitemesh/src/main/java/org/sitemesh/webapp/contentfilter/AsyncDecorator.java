@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Post-processes async requests on an {@link Executor}, once the application completes
+ * the {@link jakarta.servlet.AsyncContext}.
+ *
+ * <p>Without an {@code AsyncDecorator}, {@link ContentBufferingFilter} post-processes async
+ * requests from {@link jakarta.servlet.AsyncListener#onComplete(jakarta.servlet.AsyncEvent)},
+ * on whichever container thread completes the request, after the container considers the
+ * response finished. With it, the filter intercepts {@code AsyncContext.complete()}, hands
+ * the buffered content to the executor, and only completes the real context once the
+ * post-processed response has been written. Failures are answered with a 500 error, and
+ * async timeouts are left to the container's (and the application's) own timeout handling.</p>
+ *
+ * <p>Only requests that call {@code complete()} are handled this way. Requests that call
+ * {@code AsyncContext.dispatch()} are still post-processed when they complete.</p>
+ *
+ * @see org.sitemesh.builder.BaseSiteMeshFilterBuilder#setAsyncDecoration(boolean)
+ */
+public class AsyncDecorator {
+
+    /**
+     * Number of requests the default thread pool holds per thread before it decorates on the
+     * thread completing the request instead.
+     */
+    public static final int QUEUED_REQUESTS_PER_THREAD = 64;
+
+    private final Executor executor;
+    private final boolean ownsExecutor;
+
+    /**
+     * Post-process on virtual threads where the JVM supports them (Java 21+), otherwise on the
+     * bounded pool of {@link #createThreadPool()}. The executor is shut down with the filter.
+     */
+    public AsyncDecorator() {
+        this(createDefaultExecutor(), true);
+    }
+
+    /**
+     * @param executor Runs the post-processing. Owned by the caller, so it is not shut
+     *                 down with the filter.
+     */
+    public AsyncDecorator(Executor executor) {
+        this(executor, false);
+    }
+
+    private AsyncDecorator(Executor executor, boolean ownsExecutor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Create the executor used by {@link #AsyncDecorator()}. Virtual threads are looked up
+     * reflectively, as SiteMesh itself still targets Java 17.
+     *
+     * @return A new executor.
+     */
+    protected static ExecutorService createDefaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return createThreadPool();
+        }
+    }
+
+    /**
+     * Create the pool used by {@link #createDefaultExecutor()} when virtual threads are not
+     * available: one daemon thread per available processor, as decorating is CPU bound, and a
+     * bounded queue. Once the queue is full, requests are decorated on the thread completing
+     * them, which slows the application down rather than piling up threads or memory.
+     *
+     * @return A new thread pool.
+     */
+    protected static ExecutorService createThreadPool() {
+        final AtomicInteger count = new AtomicInteger();
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * QUEUED_REQUESTS_PER_THREAD),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "sitemesh-decorator-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Prepare the post-processing of a request that may go async.
+     *
+     * @param request        The current request.
+     * @param response       The real response.
+     * @param responseBuffer The buffer the content is written to.
+     * @return The per-request state.
+     */
+    AsyncDecoration begin(HttpServletRequest request, HttpServletResponse response, HttpServletResponse responseBuffer) {
+        return new AsyncDecoration(executor, request, response, responseBuffer);
+    }
+
+    /**
+     * Shut down the executor, if it was created by this {@code AsyncDecorator}.
+     */
+    public void shutdown() {
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    /**
+     * @return The executor post-processing runs on.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+}
@@ -17,7 +17,6 @@
 package org.sitemesh.webapp.contentfilter;
 
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.DispatcherType;
 
 import org.sitemesh.config.PathMapper;
 import org.sitemesh.webapp.WebAppContext;
@@ -33,8 +32,6 @@ import org.sitemesh.webapp.WebAppContext;
  */
 public class BasicSelector implements Selector {
 
-    private static final String ALREADY_APPLIED_KEY = BasicSelector.class.getName() + ".APPLIED_ONCE";
-
     private final String[] mimeTypesToBuffer;
     private final boolean includeErrorPages;
     private final PathMapper<Boolean> excludesMapper;
@@ -104,28 +101,36 @@ public class BasicSelector implements Selector {
     }
 
     /**
-     * Checks (and records, via a request attribute) whether the filter has already been
-     * applied to this request, so that it only kicks in once per request.
+     * Checks (and records, in the request's {@link DecorationPlan}) whether the filter has
+     * already been applied to this request, so that it only kicks in once per request. Error
+     * dispatches are tracked separately, so error pages can still be decorated.
      *
      * @param request the current request.
      * @return true if the filter was already applied for this request.
      */
     protected boolean filterAlreadyAppliedForRequest(HttpServletRequest request) {
-        String appliedKey = ALREADY_APPLIED_KEY
-                + (request.getDispatcherType().equals(DispatcherType.ERROR)? ".ERROR" : "");
-
         // Prior to Servlet 2.4 spec, it was unspecified whether the filter
         // should be called again upon an include().
-        if (Boolean.TRUE.equals(request.getAttribute(appliedKey))) {
+        DecorationPlan plan = DecorationPlan.forRequest(request);
+        if (plan.isApplied()) {
             return true;
         } else {
-            request.setAttribute(appliedKey, true);
+            plan.markApplied();
             return false;
         }
     }
 
+    /**
+     * @return the mapper of request paths excluded from buffering.
+     */
+    public PathMapper<Boolean> getExcludesMapper() {
+        return excludesMapper;
+    }
+
     @Override public String excludePatternInUse(HttpServletRequest request) {
-        return excludesMapper.getPatternInUse(WebAppContext.getRequestPath(request));
+        DecorationPlan plan = DecorationPlan.get(request);
+        String path = plan != null && plan.getPath() != null ? plan.getPath() : WebAppContext.getRequestPath(request);
+        return excludesMapper.getPatternInUse(path);
     }
 
 }
@@ -0,0 +1,142 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Captures the encoded bytes of a post-processed response, so they can be stored in a
+ * {@link ResponseCache} before being sent. Headers and status are passed straight through
+ * to the wrapped response; only the body (and its length) is held back until it is
+ * sent with {@link #writeTo(HttpServletResponse, byte[])}.
+ */
+class CapturingResponse extends HttpServletResponseWrapper {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+    private PrintWriter writer;
+    private ServletOutputStream outputStream;
+
+    CapturingResponse(HttpServletResponse response) {
+        super(response);
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+            writer = new PrintWriter(new OutputStreamWriter(bytes, charset));
+        }
+        return writer;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (outputStream == null) {
+            outputStream = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    bytes.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    bytes.write(b, off, len);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    // Writes go to memory and never block: the stream is ready straight away.
+                    try {
+                        writeListener.onWritePossible();
+                    } catch (IOException e) {
+                        writeListener.onError(e);
+                    }
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // Set from the captured body in writeTo().
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        // Set from the captured body in writeTo().
+    }
+
+    @Override
+    public void flushBuffer() {
+        // Nothing reaches the wrapped response before writeTo().
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        bytes.reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        bytes.reset();
+    }
+
+    /**
+     * @return The bytes captured so far.
+     */
+    byte[] toByteArray() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Send the captured bytes to a response.
+     *
+     * @param response The response to write to.
+     * @param body The bytes to send, as returned by {@link #toByteArray()}.
+     * @throws IOException If the response cannot be written to.
+     */
+    static void writeTo(HttpServletResponse response, byte[] body) throws IOException {
+        if (response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED) {
+            return;
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        response.getOutputStream().flush();
+    }
+}
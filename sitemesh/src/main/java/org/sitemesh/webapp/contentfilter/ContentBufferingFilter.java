@@ -20,9 +20,12 @@ import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import org.sitemesh.SiteMeshMetrics;
+
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.CharBuffer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -68,13 +71,18 @@ import java.util.logging.Logger;
 public abstract class ContentBufferingFilter implements Filter {
 
     /**
-     * Request attribute set once a response has been decorated, used to guard
-     * against decorating the same request twice (e.g. when the filter is hit
-     * again on a nested dispatch).
+     * Request attribute set once a response has been decorated, for code that needs to
+     * know. Decorating the same request twice (e.g. when the filter is hit again on a
+     * nested dispatch) is guarded against by the request's {@link DecorationPlan}.
      */
     public static final String SITEMESH_DECORATED_ATTRIBUTE = "sitemesh.decorated" ;
 
     private final Selector selector;
+    private final ResponseCache responseCache;
+    private final ETagGenerator eTagGenerator;
+    private final NonBlockingWriter nonBlockingWriter;
+    private final AsyncDecorator asyncDecorator;
+    private final SiteMeshMetrics metrics;
 
     private final static Logger logger = Logger.getLogger(ContentBufferingFilter.class.getName());
 
@@ -83,10 +91,27 @@ public abstract class ContentBufferingFilter implements Filter {
      *                 specific request should be buffered. May not be null.
      */
     protected ContentBufferingFilter(Selector selector) {
+        this(selector, new Options());
+    }
+
+    /**
+     * @param selector Provides the rules for whether the response to a
+     *                 specific request should be buffered. May not be null.
+     * @param options Optional collaborators, such as a {@link ResponseCache}. May not be null.
+     */
+    protected ContentBufferingFilter(Selector selector, Options options) {
         if (selector == null) {
             throw new IllegalArgumentException("selector cannot be null");
         }
+        if (options == null) {
+            throw new IllegalArgumentException("options cannot be null");
+        }
         this.selector = selector;
+        this.responseCache = options.getResponseCache();
+        this.eTagGenerator = options.getETagGenerator();
+        this.nonBlockingWriter = options.getNonBlockingWriter();
+        this.asyncDecorator = options.getAsyncDecorator();
+        this.metrics = options.getMetrics() != null ? options.getMetrics() : SiteMeshMetrics.NONE;
     }
 
     /**
@@ -142,6 +167,9 @@ public abstract class ContentBufferingFilter implements Filter {
     }
 
     public void destroy() {
+        if (asyncDecorator != null) {
+            asyncDecorator.shutdown();
+        }
         filterConfig = null;
         containerTweaks = null;
     }
@@ -188,6 +216,9 @@ public abstract class ContentBufferingFilter implements Filter {
         if (!selector.shouldBufferForRequest(request)) {
             // Optimization: If the content doesn't need to be buffered,
             // skip the rest of this filter.
+            if (metrics.isEnabled()) {
+                metrics.recordOutcome(SiteMeshMetrics.Outcome.PASSED_THROUGH, request.getRequestURI());
+            }
             filterChain.doFilter(request, response);
             return;
         }
@@ -233,6 +264,60 @@ public abstract class ContentBufferingFilter implements Filter {
     protected void bufferAndPostProcess(FilterChain filterChain, final HttpServletRequest request,
                                         final HttpServletResponse response, Selector selector) throws IOException, ServletException {
 
+        DecorationPlan plan = DecorationPlan.forRequest(request);
+
+        // Serve from the response cache if possible. Otherwise, if an identical request
+        // is already being rendered, this waits for it rather than rendering in parallel.
+        ResponseCache.Ticket ticket = null;
+        if (responseCache != null && !plan.isDecorated()) {
+            String key = responseCache.keyFor(request);
+            if (key != null) {
+                ticket = responseCache.acquire(key);
+                if (ticket.getCachedResponse() != null) {
+                    if (metrics.isEnabled()) {
+                        metrics.recordOutcome(SiteMeshMetrics.Outcome.CACHED, plan.getPath());
+                    }
+                    responseCache.write(ticket.getCachedResponse(), request, response);
+                    return;
+                }
+            }
+        }
+
+        // A tag from a previous response that embeds the page's own validator lets the page
+        // decide whether anything changed, before any buffering or decorating happens.
+        // Not for a cache leader, which renders the page in full whatever the client has.
+        ETagGenerator.PageValidator pageValidator = null;
+        if (eTagGenerator != null && !plan.isDecorated() && (ticket == null || !ticket.isLeader())) {
+            pageValidator = eTagGenerator.findPageValidator(request);
+        }
+
+        try {
+            bufferAndPostProcess(filterChain, request, response, selector, plan,
+                    ticket != null && ticket.isLeader() ? ticket : null, pageValidator);
+        } finally {
+            if (ticket != null) {
+                // Always release requests waiting on this one, even if rendering failed. A failed
+                // render says nothing about whether the page can be cached, so later requests
+                // still coalesce. Has no effect if the response was already found (not) to be cacheable.
+                ticket.release();
+            }
+        }
+    }
+
+    /**
+     * @param ticket The cache ticket if other requests may wait on this one, or null. Completed
+     *               as soon as it is known whether the response is stored, before it is sent.
+     */
+    private void bufferAndPostProcess(FilterChain filterChain, final HttpServletRequest request,
+                                      final HttpServletResponse response, Selector selector,
+                                      DecorationPlan plan, ResponseCache.Ticket ticket,
+                                      ETagGenerator.PageValidator pageValidator)
+            throws IOException, ServletException {
+
+        // The render other requests wait on has to produce the full page for the cache: the
+        // client's own conditional is answered from the cache entry once it is stored.
+        final HttpServletRequest renderRequest = ticket != null ? new UnconditionalRequest(request) : request;
+
         // Apply next filter/servlet, writing response to buffer.
         final ResponseMetaData metaData = new ResponseMetaData();
         final HttpServletResponseBuffer responseBuffer = new HttpServletResponseBuffer(response, metaData, selector) {
@@ -240,7 +325,7 @@ public abstract class ContentBufferingFilter implements Filter {
             public void preCommit() {
                 // Ensure both content and decorators are used to generate HTTP caching headers.
                 long lastModified = metaData.getLastModified();
-                long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+                long ifModifiedSince = renderRequest.getDateHeader("If-Modified-Since");
                 if (lastModified > -1 && !response.containsHeader("Last-Modified")) {
                     if (ifModifiedSince < (lastModified / 1000 * 1000)) {
                         response.setDateHeader("Last-Modified", lastModified);
@@ -251,37 +336,80 @@ public abstract class ContentBufferingFilter implements Filter {
                 }
             }
         };
+        responseBuffer.setBufferSizeHint(plan.getBufferSizeHint());
 
-        filterChain.doFilter(wrapRequest(request), responseBuffer);
+        HttpServletRequest wrappedRequest = wrapRequest(renderRequest);
+        if (eTagGenerator != null) {
+            wrappedRequest = new PageConditionalRequest(wrappedRequest, pageValidator);
+        }
+        AsyncDecoration asyncDecoration = null;
+        if (asyncDecorator != null && request.isAsyncSupported() && !request.isAsyncStarted()
+                && !plan.isDecorated()) {
+            asyncDecoration = asyncDecorator.begin(request, response, responseBuffer);
+            wrappedRequest = asyncDecoration.wrap(wrappedRequest);
+        }
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        filterChain.doFilter(wrappedRequest, responseBuffer);
+        plan.markBuffered();
+        if (metrics.isEnabled() && responseBuffer.getBuffer() != null) {
+            // Bytes written to the output stream are only decoded when the page is processed.
+            metrics.recordPhase(SiteMeshMetrics.Phase.BUFFER, plan.getPath(), null, plan.getBufferedNanos() - start,
+                    responseBuffer.isBufferStreamBased() ? -1 : responseBuffer.getBuffer().remaining());
+        }
+        if (asyncDecoration != null && request.isAsyncStarted() && asyncDecoration.isDeferringCompletion()) {
+            if (ticket != null) {
+                ticket.complete(null); // Async responses are not stored.
+            }
+            // The application may still be writing to the buffer: look at it once it completes.
+            asyncDecoration.decorateOnCompletion(new AsyncDecoration.Task() {
+                public void run(AsyncContext asyncContext) throws IOException, ServletException {
+                    postProcessAsync(asyncContext, responseBuffer, request, response, metaData, plan);
+                }
+            });
+            return;
+        }
         if (responseBuffer.getBuffer() == null) {
+            if (metrics.isEnabled()) {
+                metrics.recordOutcome(SiteMeshMetrics.Outcome.ABORTED, plan.getPath());
+            }
+            if (pageValidator != null && response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED) {
+                // Neither the page nor the decorators changed: the client's copy is current
+                // without decorating anything. Answer with the tag the client sent.
+                response.setHeader("ETag", pageValidator.getETag());
+            }
             return;
         }
-        if (request.getAttribute(SITEMESH_DECORATED_ATTRIBUTE) != null) {
+        if (plan.isDecorated()) {
             writeOriginal(response, responseBuffer.getBuffer(), responseBuffer);
             return;
         }
+        plan.markDecorated();
         request.setAttribute(SITEMESH_DECORATED_ATTRIBUTE, true);
 
         if (request.isAsyncSupported() && request.isAsyncStarted()) {
+            if (ticket != null) {
+                ticket.complete(null); // Async responses are not stored.
+            }
             request.getAsyncContext().addListener(new AsyncListener() {
                 @Override
                 public void onComplete(AsyncEvent asyncEvent) throws IOException {
                     try {
                         processInternally(responseBuffer, request, response, metaData);
-
-                    } catch (ServletException e) {
-                        throw new RuntimeException("Could not execute request.", e);
+                    } catch (ServletException | RuntimeException e) {
+                        // The response is complete, so there is no one left to report this to.
+                        logger.log(Level.SEVERE, "Could not decorate async response", e);
                     }
                 }
 
                 @Override
                 public void onTimeout(AsyncEvent asyncEvent) throws IOException {
-                    throw new RuntimeException("Timeout during SiteMesh3 async request handling.");
+                    // Leave it to the container's (and the application's) timeout handling.
+                    logger.fine("Async request timed out before it could be decorated");
                 }
 
                 @Override
                 public void onError(AsyncEvent asyncEvent) throws IOException {
-                    throw new RuntimeException("Error during SiteMesh3 async request handling.", asyncEvent.getThrowable());
+                    logger.log(Level.FINE, "Async request failed before it could be decorated", asyncEvent.getThrowable());
                 }
 
                 @Override
@@ -289,16 +417,96 @@ public abstract class ContentBufferingFilter implements Filter {
                     // ignore
                 }
             });
+        } else if ((ticket != null || eTagGenerator != null || nonBlockingWriter != null)
+                && !responseBuffer.bufferingWasDisabled()
+                && responseBuffer.getBufferedStatus() == HttpServletResponse.SC_OK) {
+            // Capture the final bytes so they can be tagged and cached, then send them.
+            CapturingResponse capturingResponse = new CapturingResponse(response);
+            processInternally(responseBuffer, request, capturingResponse, metaData);
+            byte[] body = capturingResponse.toByteArray();
+            String eTag = null;
+            if (eTagGenerator != null && (response.getStatus() == HttpServletResponse.SC_OK
+                    || response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED)) {
+                eTag = eTagGenerator.generate(request, metaData, body);
+                response.setHeader("ETag", eTag);
+            }
+            if (ticket != null) {
+                // Release the requests waiting on this one before sending the bytes.
+                ResponseCache.CachedResponse entry
+                        = responseCache.createEntry(response, body, metaData.getLastModified(), eTag);
+                ticket.complete(entry);
+                responseCache.addVaryHeader(response);
+                if (entry != null && responseCache.isNotModified(entry, request)) {
+                    // Answer the client's own conditional, which the render did not see.
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+            if (eTag != null && ETagGenerator.matches(request, eTag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            }
+            if (nonBlockingWriter != null && response.getStatus() != HttpServletResponse.SC_NOT_MODIFIED
+                    && nonBlockingWriter.shouldWrite(request, body.length)) {
+                // Release the request thread while the bytes drain to the client.
+                nonBlockingWriter.startAsyncAndWrite(request, response, body);
+            } else {
+                CapturingResponse.writeTo(response, body);
+            }
+        } else {
+            if (ticket != null) {
+                ticket.complete(null); // Not a response that is stored.
+            }
+            processInternally(responseBuffer, request, response, metaData);
+        }
+    }
+
+    /**
+     * Post-process an async request that the application has completed, then complete it.
+     * Runs on the {@link AsyncDecorator}'s executor.
+     */
+    private void postProcessAsync(AsyncContext asyncContext, HttpServletResponseBuffer responseBuffer,
+                                  HttpServletRequest request, HttpServletResponse response, ResponseMetaData metaData,
+                                  DecorationPlan plan)
+            throws IOException, ServletException {
+        if (responseBuffer.getBuffer() == null) {
+            if (metrics.isEnabled()) {
+                metrics.recordOutcome(SiteMeshMetrics.Outcome.ABORTED, plan.getPath());
+            }
+            asyncContext.complete();
+            return;
+        }
+        if (plan.isDecorated()) {
+            writeOriginal(response, responseBuffer.getBuffer(), responseBuffer);
+            asyncContext.complete();
+            return;
+        }
+        plan.markDecorated();
+        request.setAttribute(SITEMESH_DECORATED_ATTRIBUTE, true);
+
+        if (nonBlockingWriter != null && !responseBuffer.bufferingWasDisabled()
+                && responseBuffer.getBufferedStatus() == HttpServletResponse.SC_OK) {
+            CapturingResponse capturingResponse = new CapturingResponse(response);
+            processInternally(responseBuffer, request, capturingResponse, metaData);
+            byte[] body = capturingResponse.toByteArray();
+            if (response.getStatus() != HttpServletResponse.SC_NOT_MODIFIED
+                    && body.length >= nonBlockingWriter.getMinimumLength()) {
+                // Completes the async context once the last byte is written.
+                nonBlockingWriter.write(asyncContext, response, body);
+                return;
+            }
+            CapturingResponse.writeTo(response, body);
         } else {
             processInternally(responseBuffer, request, response, metaData);
         }
+        asyncContext.complete();
     }
 
     /**
      * Post-process the buffered content (via
      * {@link #postProcess(String, CharBuffer, HttpServletRequest, HttpServletResponse, ResponseMetaData)})
      * and write the result — or the original buffer if nothing was processed — to the real response.
-     * Called either directly, or from an {@link AsyncListener} once an async request completes.
+     * Called either directly, from the {@link AsyncDecorator}'s executor, or from an
+     * {@link AsyncListener} once an async request completes.
      *
      * @param responseBuffer The buffering response wrapper the content was captured in.
      * @param request The current request.
@@ -316,8 +524,18 @@ public abstract class ContentBufferingFilter implements Filter {
 
         // If content was buffered, post-process it.
         boolean processed = false;
+        DecorationPlan plan = DecorationPlan.get(request);
         if (buffer != null && !responseBuffer.bufferingWasDisabled()) {
             processed = postProcess(responseBuffer.getContentType(), buffer, request, response, metaData);
+            if (plan != null) {
+                plan.markProcessed();
+            }
+        }
+        if (metrics.isEnabled()) {
+            metrics.recordOutcome(buffer == null || responseBuffer.bufferingWasDisabled()
+                    ? SiteMeshMetrics.Outcome.ABORTED
+                    : processed ? SiteMeshMetrics.Outcome.DECORATED : SiteMeshMetrics.Outcome.UNDECORATED,
+                    plan != null ? plan.getPath() : request.getRequestURI());
         }
 
         if (!response.isCommitted()) {
@@ -367,7 +585,143 @@ public abstract class ContentBufferingFilter implements Filter {
     /**
      * @return The {@link Selector} passed to the constructor.
      */
-    protected Selector getSelector() {
+    public Selector getSelector() {
         return selector;
     }
+
+    /**
+     * @return The {@link ResponseCache} passed to the constructor, or null if responses are not cached.
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * @return The {@link ETagGenerator} passed to the constructor, or null if no ETags are sent.
+     */
+    public ETagGenerator getETagGenerator() {
+        return eTagGenerator;
+    }
+
+    /**
+     * @return The {@link NonBlockingWriter} passed to the constructor, or null if responses
+     *         are always written with blocking IO.
+     */
+    public NonBlockingWriter getNonBlockingWriter() {
+        return nonBlockingWriter;
+    }
+
+    /**
+     * @return The {@link AsyncDecorator} passed to the constructor, or null if async requests
+     *         are post-processed once the container has completed them.
+     */
+    public AsyncDecorator getAsyncDecorator() {
+        return asyncDecorator;
+    }
+
+    /**
+     * @return The {@link SiteMeshMetrics} passed to the constructor, or {@link SiteMeshMetrics#NONE}.
+     */
+    public SiteMeshMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Optional collaborators of a {@link ContentBufferingFilter}, passed to its constructor.
+     * Anything left unset is disabled.
+     */
+    public static class Options {
+
+        private ResponseCache responseCache;
+        private ETagGenerator eTagGenerator;
+        private NonBlockingWriter nonBlockingWriter;
+        private AsyncDecorator asyncDecorator;
+        private SiteMeshMetrics metrics;
+
+        /**
+         * @param responseCache Cache of post-processed responses to serve repeated requests from,
+         *                      or null to post-process every request.
+         * @return this, for method chaining.
+         */
+        public Options setResponseCache(ResponseCache responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
+        /**
+         * @return The cache of post-processed responses, or null.
+         */
+        public ResponseCache getResponseCache() {
+            return responseCache;
+        }
+
+        /**
+         * @param eTagGenerator Generates ETags for post-processed responses and answers matching
+         *                      {@code If-None-Match} requests with 304 (Not Modified), or null to
+         *                      send no ETags.
+         * @return this, for method chaining.
+         */
+        public Options setETagGenerator(ETagGenerator eTagGenerator) {
+            this.eTagGenerator = eTagGenerator;
+            return this;
+        }
+
+        /**
+         * @return The ETag generator, or null.
+         */
+        public ETagGenerator getETagGenerator() {
+            return eTagGenerator;
+        }
+
+        /**
+         * @param nonBlockingWriter Writes post-processed responses without blocking the request
+         *                          thread where possible, or null to always use blocking IO.
+         * @return this, for method chaining.
+         */
+        public Options setNonBlockingWriter(NonBlockingWriter nonBlockingWriter) {
+            this.nonBlockingWriter = nonBlockingWriter;
+            return this;
+        }
+
+        /**
+         * @return The non-blocking writer, or null.
+         */
+        public NonBlockingWriter getNonBlockingWriter() {
+            return nonBlockingWriter;
+        }
+
+        /**
+         * @param asyncDecorator Post-processes async requests on an executor before they complete,
+         *                       or null to post-process them once the container has completed them.
+         * @return this, for method chaining.
+         */
+        public Options setAsyncDecorator(AsyncDecorator asyncDecorator) {
+            this.asyncDecorator = asyncDecorator;
+            return this;
+        }
+
+        /**
+         * @return The async decorator, or null.
+         */
+        public AsyncDecorator getAsyncDecorator() {
+            return asyncDecorator;
+        }
+
+        /**
+         * @param metrics Records how long buffering takes ({@link SiteMeshMetrics.Phase#BUFFER}),
+         *                or null to record nothing.
+         * @return this, for method chaining.
+         */
+        public Options setMetrics(SiteMeshMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @return The metrics, or null.
+         */
+        public SiteMeshMetrics getMetrics() {
+            return metrics;
+        }
+    }
 }
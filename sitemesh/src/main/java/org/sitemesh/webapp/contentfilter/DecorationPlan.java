@@ -0,0 +1,235 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.sitemesh.webapp.WebAppContext;
+
+/**
+ * Everything decided about decorating one request, worked out once and stored under a single
+ * request attribute ({@link #ATTRIBUTE}) so later stages - and nested dispatches of the same
+ * request - reuse it instead of deriving it again: the request path, whether the request is
+ * passed through, whether the filter was already applied and the page already decorated, the
+ * decorators applied, the expected buffer size and when each stage finished.
+ *
+ * <p>Forwards and includes share the plan of the request they are dispatched from, since their
+ * request path is that of the original request. Error and async dispatches get a plan of their
+ * own, linked to the plan of the original request: a page decorated before is not decorated
+ * again, but an error page can be decorated even if the filter was applied to the original
+ * request.</p>
+ *
+ * <p>A plan belongs to one request, and is not thread-safe. Requests handed over to another
+ * thread (async processing) are safely published by the container.</p>
+ */
+public class DecorationPlan {
+
+    /** Request attribute the plan of the current request is stored under. */
+    public static final String ATTRIBUTE = DecorationPlan.class.getName();
+
+    private final DecorationPlan parent;
+    private final DispatcherType dispatcherType;
+    private final long startNanos = System.nanoTime();
+
+    private String path;
+    private Boolean passThrough;
+    private boolean applied;
+    private boolean decorated;
+    private String[] decoratorPaths;
+    private int bufferSizeHint;
+    private long bufferedNanos = -1;
+    private long processedNanos = -1;
+
+    /**
+     * @param parent The plan of the request this dispatch originates from, or null.
+     * @param dispatcherType The dispatcher type the plan was created for.
+     */
+    protected DecorationPlan(DecorationPlan parent, DispatcherType dispatcherType) {
+        this.parent = parent;
+        this.dispatcherType = dispatcherType;
+    }
+
+    /**
+     * @param request The current request.
+     * @return The plan of the request, or null if it has none yet.
+     */
+    public static DecorationPlan get(ServletRequest request) {
+        return (DecorationPlan) request.getAttribute(ATTRIBUTE);
+    }
+
+    /**
+     * Get the plan of the request, creating and storing it if it has none yet or if this is
+     * the first error or async dispatch for it.
+     *
+     * @param request The current request.
+     * @return The plan of the request.
+     */
+    public static DecorationPlan forRequest(HttpServletRequest request) {
+        DecorationPlan plan = get(request);
+        DispatcherType dispatcherType = request.getDispatcherType();
+        if (plan == null || plan.dispatcherType != dispatcherType
+                && (dispatcherType == DispatcherType.ERROR || dispatcherType == DispatcherType.ASYNC)) {
+            plan = new DecorationPlan(plan, dispatcherType);
+            request.setAttribute(ATTRIBUTE, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Get the request path, as determined by {@link WebAppContext#getRequestPath(HttpServletRequest)}
+     * the first time this is called.
+     *
+     * @param request The current request.
+     * @return The request path.
+     */
+    public String resolvePath(HttpServletRequest request) {
+        if (path == null) {
+            path = WebAppContext.getRequestPath(request);
+        }
+        return path;
+    }
+
+    /**
+     * @return The request path, or null if it was not {@link #resolvePath(HttpServletRequest) resolved}.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return Whether the request is passed through without being buffered, or null if not decided yet.
+     */
+    public Boolean getPassThrough() {
+        return passThrough;
+    }
+
+    /**
+     * @param passThrough Whether the request is passed through without being buffered.
+     */
+    public void setPassThrough(boolean passThrough) {
+        this.passThrough = passThrough;
+    }
+
+    /**
+     * @return Whether the filter was already applied to this request (or, for anything but an
+     *         error dispatch, to the request it was dispatched from).
+     */
+    public boolean isApplied() {
+        return applied || parent != null && dispatcherType != DispatcherType.ERROR && parent.isApplied();
+    }
+
+    /**
+     * Record that the filter was applied to this request.
+     */
+    public void markApplied() {
+        applied = true;
+    }
+
+    /**
+     * @return Whether the response to this request (or the request it was dispatched from)
+     *         was already decorated.
+     */
+    public boolean isDecorated() {
+        return decorated || parent != null && parent.isDecorated();
+    }
+
+    /**
+     * Record that the response to this request is being decorated.
+     */
+    public void markDecorated() {
+        decorated = true;
+    }
+
+    /**
+     * @return The decorators applied to the page, in order, or null if none were selected.
+     */
+    public String[] getDecoratorPaths() {
+        return decoratorPaths;
+    }
+
+    /**
+     * @param decoratorPaths The decorators applied to the page, in order.
+     */
+    public void setDecoratorPaths(String[] decoratorPaths) {
+        this.decoratorPaths = decoratorPaths;
+    }
+
+    /**
+     * @return Expected length of the buffered page in characters, or 0 if unknown.
+     */
+    public int getBufferSizeHint() {
+        return bufferSizeHint;
+    }
+
+    /**
+     * @param bufferSizeHint Expected length of the buffered page in characters, or 0 if unknown.
+     */
+    public void setBufferSizeHint(int bufferSizeHint) {
+        this.bufferSizeHint = bufferSizeHint;
+    }
+
+    /**
+     * Record that the page was rendered into the buffer.
+     */
+    public void markBuffered() {
+        bufferedNanos = System.nanoTime();
+    }
+
+    /**
+     * Record that the buffered page was post-processed (decorated).
+     */
+    public void markProcessed() {
+        processedNanos = System.nanoTime();
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the plan was created.
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the page was rendered into the buffer, or -1.
+     */
+    public long getBufferedNanos() {
+        return bufferedNanos;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the buffered page was post-processed, or -1.
+     */
+    public long getProcessedNanos() {
+        return processedNanos;
+    }
+
+    /**
+     * @return The plan of the request this error or async dispatch originates from, or null.
+     */
+    public DecorationPlan getParent() {
+        return parent;
+    }
+
+    /**
+     * @return The dispatcher type the plan was created for.
+     */
+    public DispatcherType getDispatcherType() {
+        return dispatcherType;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.sitemesh.DecoratorVersionRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.zip.CRC32C;
+
+/**
+ * Generates the strong {@code ETag}s {@link ContentBufferingFilter} sends with
+ * post-processed responses, and recognizes them again in {@code If-None-Match}.
+ *
+ * <p>Every tag combines a validator of the page content with the current decorator
+ * version (see {@link #getDecoratorVersion(HttpServletRequest)}), so changing either
+ * changes the tag:</p>
+ * <ul>
+ * <li>If the page itself sent an {@code ETag}, or a {@code Last-Modified} date, that
+ * validator is embedded in the tag. When a client presents such a tag and the decorator
+ * version is unchanged, the page's own validator is handed down to it as
+ * {@code If-None-Match} (or {@code If-Modified-Since}). If the page answers 304
+ * (Not Modified), so does the filter - without buffering or decorating anything.</li>
+ * <li>Otherwise the tag is a hash of the final response bytes. The page is still
+ * rendered and decorated, but a matching {@code If-None-Match} is answered with 304
+ * instead of sending the body again.</li>
+ * </ul>
+ *
+ * <p>Note that the first form assumes the decorators render the same output for a given
+ * decorator version. If decorators contain dynamic content, override
+ * {@link #getDecoratorVersion(HttpServletRequest)} accordingly. Changes to decorator files
+ * can be picked up without a restart by passing a {@link DecoratorVersionRegistry}, whose
+ * generation becomes part of the decorator version.</p>
+ *
+ * @see org.sitemesh.builder.BaseSiteMeshFilterBuilder#setETagGenerator(ETagGenerator)
+ */
+public class ETagGenerator {
+
+    private static final char PAGE_ETAG = 'e';
+    private static final char PAGE_LAST_MODIFIED = 'm';
+    private static final char CONTENT_HASH = 'h';
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final String decoratorVersion;
+    private final DecoratorVersionRegistry registry;
+
+    // The decorator version for the registry generation it was last built for.
+    private volatile VersionForGeneration current;
+
+    /**
+     * Use a decorator version that changes every time the application is (re)started.
+     */
+    public ETagGenerator() {
+        this((DecoratorVersionRegistry) null);
+    }
+
+    /**
+     * Use a decorator version that changes every time the application is (re)started, or
+     * any decorator tracked by the registry changes.
+     *
+     * @param registry Tracks changes to the decorators, or null to only use the start time.
+     */
+    public ETagGenerator(DecoratorVersionRegistry registry) {
+        this(Long.toString(System.currentTimeMillis(), Character.MAX_RADIX), registry);
+    }
+
+    /**
+     * @param decoratorVersion Identifies the current version of the decorators, e.g. the
+     *                         application's build number. Must change whenever the output
+     *                         of any decorator changes.
+     */
+    public ETagGenerator(String decoratorVersion) {
+        this(decoratorVersion, null);
+    }
+
+    /**
+     * @param decoratorVersion Identifies the deployed version of the decorators, e.g. the
+     *                         application's build number.
+     * @param registry         Tracks changes to the decorators after deployment, or null if
+     *                         they only change with the decorator version.
+     */
+    public ETagGenerator(String decoratorVersion, DecoratorVersionRegistry registry) {
+        if (decoratorVersion == null) {
+            throw new IllegalArgumentException("decoratorVersion cannot be null");
+        }
+        this.decoratorVersion = decoratorVersion;
+        this.registry = registry;
+        this.current = new VersionForGeneration(0, decoratorVersion);
+    }
+
+    /**
+     * The version of the decorators that would be applied to the request. Override to
+     * track decorator changes at runtime by other means.
+     *
+     * @param request The current request.
+     * @return The decorator version.
+     */
+    public String getDecoratorVersion(HttpServletRequest request) {
+        if (registry == null) {
+            return decoratorVersion;
+        }
+        long generation = registry.getGeneration();
+        VersionForGeneration version = current;
+        if (version.generation != generation) {
+            version = new VersionForGeneration(generation, generation == 0 ? decoratorVersion
+                    : decoratorVersion + "." + Long.toString(generation, Character.MAX_RADIX));
+            current = version;
+        }
+        return version.value;
+    }
+
+    /**
+     * @return The registry tracking decorator changes, or null if there is none.
+     */
+    public DecoratorVersionRegistry getDecoratorVersionRegistry() {
+        return registry;
+    }
+
+    /**
+     * Generate the tag for a post-processed response.
+     *
+     * @param request  The current request.
+     * @param metaData Metadata gathered while buffering, providing the page's own validators.
+     * @param body     The final encoded response content.
+     * @return The quoted strong entity tag.
+     */
+    public String generate(HttpServletRequest request, ResponseMetaData metaData, byte[] body) {
+        String pageETag = metaData.getContentETag();
+        if (pageETag != null) {
+            return tag(PAGE_ETAG, encode(pageETag), request);
+        }
+        long pageLastModified = metaData.getContentLastModified();
+        if (pageLastModified > -1) {
+            return tag(PAGE_LAST_MODIFIED, Long.toString(pageLastModified / 1000, Character.MAX_RADIX), request);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body, 0, body.length);
+        return tag(CONTENT_HASH, Long.toString(crc.getValue(), Character.MAX_RADIX)
+                + "_" + Integer.toString(body.length, Character.MAX_RADIX), request);
+    }
+
+    /**
+     * Find a tag in the request's {@code If-None-Match} header that embeds a page validator
+     * and was generated for the current decorator version.
+     *
+     * @param request The current request.
+     * @return The page validator to hand down to the page, or null if there is none.
+     */
+    public PageValidator findPageValidator(HttpServletRequest request) {
+        Enumeration<String> headers = request.getHeaders("If-None-Match");
+        if (headers == null) {
+            return null;
+        }
+        String versionSuffix = "." + encode(getDecoratorVersion(request)) + "\"";
+        while (headers.hasMoreElements()) {
+            for (String candidate : headers.nextElement().split(",")) {
+                candidate = stripWeak(candidate.trim());
+                if (candidate.length() < 3 || candidate.charAt(0) != '"' || !candidate.endsWith(versionSuffix)) {
+                    continue;
+                }
+                String value = candidate.substring(2, candidate.length() - versionSuffix.length());
+                try {
+                    if (candidate.charAt(1) == PAGE_ETAG) {
+                        return new PageValidator(candidate,
+                                new String(DECODER.decode(value), StandardCharsets.UTF_8), -1);
+                    } else if (candidate.charAt(1) == PAGE_LAST_MODIFIED) {
+                        return new PageValidator(candidate, null, Long.parseLong(value, Character.MAX_RADIX) * 1000);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Not one of ours (NumberFormatException is an IllegalArgumentException too).
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the request's {@code If-None-Match} header matches a tag, using the weak
+     * comparison RFC 9110 prescribes for {@code If-None-Match}.
+     *
+     * @param request The current request.
+     * @param eTag    The tag of the current representation.
+     * @return Whether the client's copy is current.
+     */
+    public static boolean matches(HttpServletRequest request, String eTag) {
+        Enumeration<String> headers = request.getHeaders("If-None-Match");
+        if (headers == null || eTag == null) {
+            return false;
+        }
+        while (headers.hasMoreElements()) {
+            for (String candidate : headers.nextElement().split(",")) {
+                candidate = candidate.trim();
+                if (candidate.equals("*") || stripWeak(candidate).equals(eTag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String tag(char kind, String value, HttpServletRequest request) {
+        return "\"" + kind + value + "." + encode(getDecoratorVersion(request)) + "\"";
+    }
+
+    private static String encode(String value) {
+        return ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static final class VersionForGeneration {
+        final long generation;
+        final String value;
+
+        VersionForGeneration(long generation, String value) {
+            this.generation = generation;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A page validator recovered from an {@code If-None-Match} tag.
+     */
+    public static final class PageValidator {
+
+        private final String eTag;
+        private final String pageETag;
+        private final long pageLastModified;
+
+        PageValidator(String eTag, String pageETag, long pageLastModified) {
+            this.eTag = eTag;
+            this.pageETag = pageETag;
+            this.pageLastModified = pageLastModified;
+        }
+
+        /**
+         * @return The tag the client presented, to be sent back with a 304 response.
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return The page's own {@code ETag}, or null if the page validator is a date.
+         */
+        public String getPageETag() {
+            return pageETag;
+        }
+
+        /**
+         * @return The page's own {@code Last-Modified} date, or -1 if the page validator is an {@code ETag}.
+         */
+        public long getPageLastModified() {
+            return pageLastModified;
+        }
+    }
+}
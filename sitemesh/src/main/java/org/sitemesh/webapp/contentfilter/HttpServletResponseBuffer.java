@@ -18,6 +18,7 @@ package org.sitemesh.webapp.contentfilter;
 
 import org.sitemesh.webapp.contentfilter.io.Buffer;
 import org.sitemesh.webapp.contentfilter.io.RoutablePrintWriter;
+import org.sitemesh.webapp.contentfilter.io.SegmentedCharBuffer;
 import org.sitemesh.webapp.contentfilter.io.RoutableServletOutputStream;
 import org.sitemesh.webapp.contentfilter.io.HttpContentType;
 
@@ -51,6 +52,7 @@ public class HttpServletResponseBuffer extends HttpServletResponseWrapper {
     private final ResponseMetaData metaData;
 
     private Buffer buffer;
+    private int bufferSizeHint;
     private boolean bufferingWasDisabled = false;
     private Integer statusCode = null;
     private Integer explicitStatusCode = null;
@@ -174,9 +176,9 @@ public class HttpServletResponseBuffer extends HttpServletResponseWrapper {
             return; // Already buffering.
         }
         buffer = new Buffer(encoding, initialCapacity);
-        routablePrintWriter.updateDestination(new RoutablePrintWriter.DestinationFactory() {
-            public PrintWriter activateDestination() {
-                return buffer.getWriter();
+        routablePrintWriter.updateDestination(new RoutablePrintWriter.BufferFactory() {
+            public SegmentedCharBuffer activateBuffer() {
+                return buffer.getSegmentedCharBuffer();
             }
         });
         routableServletOutputStream.updateDestination(new RoutableServletOutputStream.DestinationFactory() {
@@ -186,6 +188,16 @@ public class HttpServletResponseBuffer extends HttpServletResponseWrapper {
         });
     }
 
+    /**
+     * Size the buffer created once the {@link Selector} accepts the content type for the
+     * expected response length, as for {@link #enableBuffering(String, int)}.
+     *
+     * @param bufferSizeHint Estimated response length in characters, or 0 if unknown.
+     */
+    public void setBufferSizeHint(int bufferSizeHint) {
+        this.bufferSizeHint = bufferSizeHint;
+    }
+
     /**
      * Disable buffering for this request. Subsequent content will be written to the original
      * response.
@@ -237,7 +249,7 @@ public class HttpServletResponseBuffer extends HttpServletResponseWrapper {
             lastContentTypeParsed = httpContentType;
         }
         if (selector.shouldBufferForContentType(type, httpContentType.getType(), httpContentType.getEncoding())) {
-            enableBuffering(httpContentType.getEncoding());
+            enableBuffering(httpContentType.getEncoding(), bufferSizeHint);
         } else if (type != null) {
             // Treat setContentType(null) as a transient reset, not an intent
             // to opt out of buffering. Jetty 12 ee10 and Tomcat 10 clear the
@@ -284,6 +296,9 @@ public class HttpServletResponseBuffer extends HttpServletResponseWrapper {
                 setContentType(value);
             }
         } else if (buffer == null || !lowerName.equals("content-length")) {
+            if (value != null && lowerName.equals("etag")) {
+                metaData.updateETag(value);
+            }
             super.setHeader(name, value);
         }
     }
@@ -298,6 +313,9 @@ public class HttpServletResponseBuffer extends HttpServletResponseWrapper {
                 setContentType(value);
             }
         } else if (buffer == null || !name.equalsIgnoreCase("content-length")) {
+            if (value != null && name.equalsIgnoreCase("etag")) {
+                metaData.updateETag(value);
+            }
             super.addHeader(name, value);
         }
     }
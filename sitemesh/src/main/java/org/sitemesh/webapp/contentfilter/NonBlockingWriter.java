@@ -0,0 +1,208 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes post-processed responses using Servlet non-blocking IO
+ * ({@link ServletOutputStream#setWriteListener(WriteListener)}), so the request thread
+ * is released while the bytes drain to a slow client instead of being blocked for the
+ * whole transfer.
+ *
+ * <p>This requires the request to support async processing (i.e. every filter and the
+ * servlet handling it are registered with {@code asyncSupported}). Responses shorter than
+ * the configured minimum length, and requests that do not support async processing, are
+ * written with ordinary blocking IO.</p>
+ *
+ * <p>Each write has its own async timeout. A client that has not read the whole response by
+ * then is given up on: writing stops and the failure is logged. As the full
+ * {@code Content-Length} was announced, the client sees a truncated response rather than a
+ * complete one.</p>
+ *
+ * @see org.sitemesh.builder.BaseSiteMeshFilterBuilder#setNonBlockingWriteThreshold(int)
+ */
+public class NonBlockingWriter {
+
+    /**
+     * Maximum number of bytes handed to the output stream in one go.
+     */
+    public static final int CHUNK_SIZE = 16384;
+
+    /**
+     * How long (in milliseconds) a client is given to read a response, unless specified.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    private static final Logger logger = Logger.getLogger(NonBlockingWriter.class.getName());
+
+    private final int minimumLength;
+    private final long timeoutMillis;
+
+    /**
+     * @param minimumLength Responses shorter than this (in bytes) are written with blocking IO,
+     *                      as handing them off costs more than it saves.
+     */
+    public NonBlockingWriter(int minimumLength) {
+        this(minimumLength, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param minimumLength Responses shorter than this (in bytes) are written with blocking IO,
+     *                      as handing them off costs more than it saves.
+     * @param timeoutMillis How long (in milliseconds) a client is given to read a response. Must be positive.
+     */
+    public NonBlockingWriter(int minimumLength, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMillis must be positive");
+        }
+        this.minimumLength = minimumLength;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @param request The current request.
+     * @param length  Length of the response body, in bytes.
+     * @return Whether {@link #startAsyncAndWrite(HttpServletRequest, HttpServletResponse, byte[])}
+     *         should be used for this response.
+     */
+    public boolean shouldWrite(HttpServletRequest request, int length) {
+        return length >= minimumLength && request.isAsyncSupported() && !request.isAsyncStarted();
+    }
+
+    /**
+     * Put the request into async mode and write the body without blocking. The async context
+     * is completed once the last byte is written (or writing fails), so the caller must not
+     * touch the response any more after this returns.
+     *
+     * @param request  The current request.
+     * @param response The real response.
+     * @param body     The bytes to send.
+     * @throws IOException If the response cannot be written to.
+     */
+    public void startAsyncAndWrite(HttpServletRequest request, HttpServletResponse response, byte[] body)
+            throws IOException {
+        write(request.startAsync(request, response), response, body);
+    }
+
+    /**
+     * Write the body without blocking, then complete the async context.
+     *
+     * @param asyncContext The async context of the current request.
+     * @param response     The real response.
+     * @param body         The bytes to send.
+     * @throws IOException If the response cannot be written to.
+     */
+    public void write(final AsyncContext asyncContext, HttpServletResponse response, final byte[] body)
+            throws IOException {
+        response.setContentLength(body.length);
+        final ServletOutputStream out = response.getOutputStream();
+        final Progress progress = new Progress();
+        asyncContext.setTimeout(timeoutMillis);
+        asyncContext.addListener(new AsyncListener() {
+            public void onComplete(AsyncEvent event) {
+            }
+
+            public void onTimeout(AsyncEvent event) {
+                if (progress.stop()) {
+                    logger.severe("Gave up writing decorated response after " + timeoutMillis + "ms, with "
+                            + progress.position + " of " + body.length + " bytes written");
+                    event.getAsyncContext().complete();
+                }
+            }
+
+            public void onError(AsyncEvent event) {
+                if (progress.stop()) {
+                    logger.log(Level.FINE, "Could not write decorated response to client", event.getThrowable());
+                    event.getAsyncContext().complete();
+                }
+            }
+
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        out.setWriteListener(new WriteListener() {
+            public void onWritePossible() throws IOException {
+                // Write as long as the container accepts bytes without blocking. When isReady()
+                // returns false, the container calls back once the client has caught up.
+                while (!progress.isStopped() && out.isReady()) {
+                    if (progress.position == body.length) {
+                        if (progress.stop()) {
+                            asyncContext.complete();
+                        }
+                        return;
+                    }
+                    int length = Math.min(CHUNK_SIZE, body.length - progress.position);
+                    out.write(body, progress.position, length);
+                    progress.position += length;
+                }
+            }
+
+            public void onError(Throwable t) {
+                if (progress.stop()) {
+                    logger.log(Level.FINE, "Could not write decorated response to client", t);
+                    asyncContext.complete();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return How long (in milliseconds) a client is given to read a response.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return Responses shorter than this (in bytes) are written with blocking IO.
+     */
+    public int getMinimumLength() {
+        return minimumLength;
+    }
+
+    /**
+     * How far one response got. Written by the container's write callbacks, which it does not
+     * run concurrently, and stopped from its timeout and error callbacks.
+     */
+    private static class Progress {
+        private final AtomicBoolean stopped = new AtomicBoolean();
+        volatile int position;
+
+        /**
+         * @return Whether this call stopped the write, i.e. it had not finished, failed or timed out before.
+         */
+        boolean stop() {
+            return stopped.compareAndSet(false, true);
+        }
+
+        boolean isStopped() {
+            return stopped.get();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Presents the page with its own conditional headers, instead of the ones the client sent
+ * for the decorated response. The client's {@code If-None-Match} holds SiteMesh's tags,
+ * which the page would never match, so it is replaced with the page validator recovered
+ * by {@link ETagGenerator#findPageValidator(HttpServletRequest)} - or removed, if there
+ * is none.
+ */
+class PageConditionalRequest extends HttpServletRequestWrapper {
+
+    private final ETagGenerator.PageValidator pageValidator;
+
+    /**
+     * @param request       The request to wrap.
+     * @param pageValidator The page validator to present, or null to present none.
+     */
+    PageConditionalRequest(HttpServletRequest request, ETagGenerator.PageValidator pageValidator) {
+        super(request);
+        this.pageValidator = pageValidator;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        if (name.equalsIgnoreCase("If-None-Match")) {
+            return pageValidator == null ? null : pageValidator.getPageETag();
+        } else if (name.equalsIgnoreCase("If-Modified-Since")) {
+            if (pageValidator == null || pageValidator.getPageLastModified() < 0) {
+                return super.getHeader(name);
+            }
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return format.format(new Date(pageValidator.getPageLastModified()));
+        }
+        return super.getHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        if (name.equalsIgnoreCase("If-None-Match") || name.equalsIgnoreCase("If-Modified-Since")) {
+            String value = getHeader(name);
+            return value == null ? Collections.<String>emptyEnumeration() : Collections.enumeration(Collections.singletonList(value));
+        }
+        return super.getHeaders(name);
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        if (name.equalsIgnoreCase("If-Modified-Since")
+                && pageValidator != null && pageValidator.getPageLastModified() > -1) {
+            return pageValidator.getPageLastModified();
+        }
+        return super.getDateHeader(name);
+    }
+}
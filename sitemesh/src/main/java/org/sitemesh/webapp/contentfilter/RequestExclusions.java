@@ -0,0 +1,262 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Cheap, up-front exclusion of requests that are never decorated (typically static assets),
+ * checked before the request path is computed or anything is wrapped.
+ *
+ * <p>A request is excluded if its {@link DispatcherType} is one of the excluded types, if its
+ * URI ends with one of the excluded extensions (ignoring case), or if its URI - after the
+ * context path - starts with one of the excluded prefixes. Extensions and prefixes are
+ * compiled into tries that are walked over the characters of the raw
+ * {@link HttpServletRequest#getRequestURI() request URI}, so the check allocates nothing.</p>
+ *
+ * <p>As the URI is neither decoded nor normalized, only plainly written URIs match; anything
+ * else (such as {@code /assets/%2E%2E/page}) falls through to the regular decorator and
+ * exclusion mappings. Path parameters (<code>;jsessionid=...</code>) are ignored when matching
+ * extensions. Unlike exclusions added with
+ * {@link org.sitemesh.builder.BaseSiteMeshFilterBuilder#addExcludedPath(String)}, these cannot
+ * be overridden by a more specific decorator mapping.</p>
+ *
+ * <p>Instances are immutable and safe for concurrent use.</p>
+ */
+public class RequestExclusions {
+
+    /** Extensions of common static assets (stylesheets, scripts, images, fonts and media). */
+    public static final List<String> STATIC_ASSET_EXTENSIONS = List.of(
+            ".css", ".js", ".mjs", ".map",
+            ".png", ".jpg", ".jpeg", ".gif", ".svg", ".ico", ".webp", ".avif", ".bmp",
+            ".woff", ".woff2", ".ttf", ".otf", ".eot",
+            ".mp3", ".mp4", ".webm", ".ogg", ".wav",
+            ".pdf", ".zip", ".gz");
+
+    private final Trie extensions;
+    private final Trie prefixes;
+    private final EnumSet<DispatcherType> dispatcherTypes;
+    private final List<String> extensionList;
+    private final List<String> prefixList;
+
+    /**
+     * @param extensions Extensions of excluded request URIs, with or without the leading dot
+     *                   (e.g. <code>.css</code>). Matched ignoring case.
+     * @param prefixes Prefixes of excluded request URIs, after the context path
+     *                 (e.g. <code>/assets/</code>).
+     * @param dispatcherTypes Dispatcher types that are never decorated.
+     */
+    public RequestExclusions(Collection<String> extensions, Collection<String> prefixes,
+                             Collection<DispatcherType> dispatcherTypes) {
+        this.extensionList = new ArrayList<String>();
+        for (String extension : extensions) {
+            String trimmed = extension.trim().toLowerCase(Locale.ROOT);
+            if (!trimmed.isEmpty()) {
+                extensionList.add(trimmed.startsWith(".") ? trimmed : "." + trimmed);
+            }
+        }
+        this.prefixList = new ArrayList<String>();
+        for (String prefix : prefixes) {
+            if (!prefix.trim().isEmpty()) {
+                prefixList.add(prefix.trim());
+            }
+        }
+        this.extensions = new Trie(extensionList, true);
+        this.prefixes = new Trie(prefixList, false);
+        this.dispatcherTypes = dispatcherTypes.isEmpty()
+                ? EnumSet.noneOf(DispatcherType.class) : EnumSet.copyOf(dispatcherTypes);
+    }
+
+    /**
+     * @param request The incoming request.
+     * @return true if the request must be passed through without being decorated.
+     */
+    public boolean isExcluded(HttpServletRequest request) {
+        if (!dispatcherTypes.isEmpty() && dispatcherTypes.contains(request.getDispatcherType())) {
+            return true;
+        }
+        if (extensions.isEmpty() && prefixes.isEmpty()) {
+            return false;
+        }
+        String uri = request.getRequestURI();
+        if (uri == null) {
+            return false;
+        }
+        int end = uri.indexOf(';');
+        if (end == -1) {
+            end = uri.length();
+        }
+        if (extensions.matchesSuffix(uri, end)) {
+            return true;
+        }
+        if (!prefixes.isEmpty()) {
+            String contextPath = request.getContextPath();
+            int start = contextPath == null ? 0 : contextPath.length();
+            return start <= end && (start == 0 || uri.startsWith(contextPath))
+                    && prefixes.matchesPrefix(uri, start, end);
+        }
+        return false;
+    }
+
+    /**
+     * @return true if nothing is excluded.
+     */
+    public boolean isEmpty() {
+        return dispatcherTypes.isEmpty() && extensions.isEmpty() && prefixes.isEmpty();
+    }
+
+    /**
+     * @return The excluded extensions, normalized to lower case with a leading dot.
+     */
+    public List<String> getExtensions() {
+        return List.copyOf(extensionList);
+    }
+
+    /**
+     * @return The excluded URI prefixes.
+     */
+    public List<String> getPrefixes() {
+        return List.copyOf(prefixList);
+    }
+
+    /**
+     * @return The excluded dispatcher types.
+     */
+    public Set<DispatcherType> getDispatcherTypes() {
+        return EnumSet.copyOf(dispatcherTypes);
+    }
+
+    /**
+     * A character trie over the keys, stored reversed for suffix matching. Each node keeps its
+     * outgoing characters sorted, for binary search.
+     */
+    private static final class Trie {
+        private char[][] chars = new char[1][0];
+        private int[][] targets = new int[1][0];
+        private boolean[] terminal = new boolean[1];
+        private int size = 1;
+        private final boolean reversed;
+
+        Trie(List<String> keys, boolean reversed) {
+            this.reversed = reversed;
+            for (String key : keys) {
+                add(key);
+            }
+        }
+
+        private void add(String key) {
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(reversed ? key.length() - 1 - i : i);
+                int index = Arrays.binarySearch(chars[node], c);
+                if (index >= 0) {
+                    node = targets[node][index];
+                } else {
+                    int insertAt = -index - 1;
+                    int child = newNode();
+                    chars[node] = insert(chars[node], insertAt, c);
+                    targets[node] = insert(targets[node], insertAt, child);
+                    node = child;
+                }
+            }
+            terminal[node] = true;
+        }
+
+        private int newNode() {
+            if (size == terminal.length) {
+                chars = Arrays.copyOf(chars, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+                terminal = Arrays.copyOf(terminal, size * 2);
+            }
+            chars[size] = new char[0];
+            targets[size] = new int[0];
+            return size++;
+        }
+
+        boolean isEmpty() {
+            return size == 1;
+        }
+
+        /**
+         * @return true if a key (matched ignoring ASCII case) ends the text at <code>end</code>.
+         */
+        boolean matchesSuffix(String text, int end) {
+            int node = 0;
+            for (int i = end - 1; i >= 0; i--) {
+                node = next(node, toLowerCase(text.charAt(i)));
+                if (node == -1) {
+                    return false;
+                }
+                if (terminal[node]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return true if a key starts the text at <code>start</code>, ending at or before <code>end</code>.
+         */
+        boolean matchesPrefix(String text, int start, int end) {
+            int node = 0;
+            for (int i = start; i < end; i++) {
+                node = next(node, text.charAt(i));
+                if (node == -1) {
+                    return false;
+                }
+                if (terminal[node]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int next(int node, char c) {
+            int index = Arrays.binarySearch(chars[node], c);
+            return index < 0 ? -1 : targets[node][index];
+        }
+
+        private static char toLowerCase(char c) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+
+        private static char[] insert(char[] array, int index, char value) {
+            char[] result = new char[array.length + 1];
+            System.arraycopy(array, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            return result;
+        }
+
+        private static int[] insert(int[] array, int index, int value) {
+            int[] result = new int[array.length + 1];
+            System.arraycopy(array, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            return result;
+        }
+    }
+}
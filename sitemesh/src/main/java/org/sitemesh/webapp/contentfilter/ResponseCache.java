@@ -0,0 +1,669 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Short-lived cache of fully post-processed (decorated) responses, used by
+ * {@link ContentBufferingFilter} to serve identical pages without re-rendering,
+ * re-buffering and re-decorating them.
+ *
+ * <p>Entries are keyed by scheme, host, port, request URI, query string and the values of
+ * the configured {@code Vary} request headers, and hold the final encoded bytes of the response
+ * together with its content type, last-modified date, ETag and the other headers the page
+ * set (such as {@code Cache-Control} or {@code Content-Language}). Each entry lives for a fixed
+ * time-to-live; once more than {@code maxEntries} entries are held, the least recently
+ * used one is evicted.</p>
+ *
+ * <p>Concurrent misses for the same key are coalesced: the first request renders the
+ * page while identical requests wait for its result instead of rendering it again.
+ * The waiting requests are released as soon as the first one knows whether its response
+ * can be stored. If it cannot (or the first request takes longer than
+ * {@link #setMaxCoalesceWaitMillis(long) the coalescing wait}), the waiting requests render
+ * the page themselves, and for the time-to-live later requests for that key render it
+ * straight away instead of waiting on each other. The first request renders the page without
+ * the client's {@code If-None-Match} and {@code If-Modified-Since} headers, so that a revalidating
+ * client still fills the cache; its conditional is answered from the stored entry.</p>
+ *
+ * <p>Only successful {@code GET} responses that were buffered by the filter are cached.
+ * Responses setting cookies or marked {@code Cache-Control: private}/{@code no-store}
+ * are never stored. As cached pages are shared between all requests with the same key,
+ * this is intended for anonymous traffic: requests carrying {@code Authorization} or a
+ * session id are neither served from nor stored in the cache, unless {@code Authorization}
+ * (respectively {@code Cookie}) is one of the vary headers, so that each user gets their
+ * own entries. Add whatever else identifies the user to the vary headers if pages are
+ * personalized by other means.</p>
+ *
+ * @see org.sitemesh.builder.BaseSiteMeshFilterBuilder#setResponseCache(ResponseCache)
+ */
+public class ResponseCache {
+
+    /**
+     * How long a request waits by default for a concurrent identical request to render the
+     * page before giving up and rendering it itself.
+     */
+    public static final long DEFAULT_MAX_COALESCE_WAIT_MILLIS = 1000;
+
+    /**
+     * Response headers that are not replayed from the page, because the cache sets them
+     * itself or the container does when sending the response. Lower case.
+     */
+    private static final Set<String> UNREPLAYED_HEADERS = Set.of(
+            "content-type", "content-length", "transfer-encoding", "connection", "date",
+            "etag", "last-modified", "vary", "set-cookie");
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final String[] varyHeaders;
+    private final String varyHeaderValue;
+    private final boolean varyOnAuthorization;
+    private final boolean varyOnCookie;
+
+    // Guarded by entriesLock. Access-ordered, so iteration starts at the least recently used
+    // entry (and even reads modify it). A lock rather than a monitor, so that a virtual thread
+    // holding it is never pinned to its carrier.
+    private final LinkedHashMap<String, CachedResponse> entries;
+    // Guarded by entriesLock. Keys whose last response could not be stored, with the
+    // System.nanoTime() until which requests for them are not coalesced.
+    private final LinkedHashMap<String, Long> uncacheable;
+    private final ReentrantLock entriesLock = new ReentrantLock();
+    private final ConcurrentHashMap<String, CompletableFuture<CachedResponse>> inFlight
+            = new ConcurrentHashMap<String, CompletableFuture<CachedResponse>>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile long maxCoalesceWaitMillis = DEFAULT_MAX_COALESCE_WAIT_MILLIS;
+
+    /**
+     * @param ttlMillis   How long (in milliseconds) a response is served from the cache. Must be positive.
+     * @param maxEntries  Maximum number of responses held before the least recently used
+     *                    one is evicted. Must be positive.
+     * @param varyHeaders Names of request headers whose values take part in the cache key
+     *                    (e.g. {@code Accept-Language}). Also sent back as the {@code Vary}
+     *                    response header.
+     */
+    public ResponseCache(long ttlMillis, final int maxEntries, String... varyHeaders) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttlMillis must be positive");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = maxEntries;
+        this.varyHeaders = varyHeaders == null ? new String[0] : varyHeaders.clone();
+        this.varyHeaderValue = this.varyHeaders.length == 0 ? null : String.join(", ", this.varyHeaders);
+        this.varyOnAuthorization = isVaryHeader("Authorization");
+        this.varyOnCookie = isVaryHeader("Cookie");
+        this.entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.uncacheable = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private boolean isVaryHeader(String name) {
+        for (String varyHeader : varyHeaders) {
+            if (varyHeader.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compute the cache key for a request. Requests from an identified user (carrying
+     * {@code Authorization} or a session id) get no key unless the corresponding header is
+     * one of the vary headers, as their pages may not be shared with other users.
+     *
+     * @param request The current request.
+     * @return The key, or null if responses to this request should not be cached at all.
+     */
+    public String keyFor(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return null;
+        }
+        if (!varyOnAuthorization && request.getHeader("Authorization") != null) {
+            return null;
+        }
+        if (!varyOnCookie && request.getRequestedSessionId() != null) {
+            return null;
+        }
+        // Virtual hosts served by the same application must not share entries.
+        StringBuilder key = new StringBuilder(request.getScheme()).append("://")
+                .append(request.getServerName()).append(':').append(request.getServerPort())
+                .append(request.getRequestURI());
+        String query = request.getQueryString();
+        if (query != null) {
+            key.append('?').append(query);
+        }
+        for (String varyHeader : varyHeaders) {
+            key.append('\n').append(varyHeader).append(':');
+            Enumeration<String> values = request.getHeaders(varyHeader);
+            while (values != null && values.hasMoreElements()) {
+                key.append(values.nextElement()).append(',');
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Look up a cached response, joining an in-progress render of the same key if there is one.
+     *
+     * <p>The returned {@link Ticket} either holds the cached response to serve, or tells the
+     * caller to render the page itself. If {@link Ticket#isLeader()} is true, the caller is
+     * responsible for the render other requests are waiting on, and <b>must</b> call
+     * {@link Ticket#complete(CachedResponse)} once done (with null if the response was not
+     * cacheable), or {@link Ticket#release()} if the render failed, typically in a finally block.</p>
+     *
+     * @param key Key as returned by {@link #keyFor(HttpServletRequest)}.
+     * @return A ticket for this request.
+     * @throws InterruptedIOException If interrupted while waiting for a concurrent render.
+     */
+    public Ticket acquire(String key) throws InterruptedIOException {
+        Ticket ticket = lookup(key);
+        if (ticket.getCachedResponse() != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return ticket;
+    }
+
+    private Ticket lookup(String key) throws InterruptedIOException {
+        CachedResponse cached = get(key);
+        if (cached != null) {
+            return new Ticket(key, cached, null);
+        }
+        if (isKnownUncacheable(key)) {
+            // Render straight away: waiting on another render would not produce an entry.
+            return new Ticket(key, null, null);
+        }
+        CompletableFuture<CachedResponse> flight = new CompletableFuture<CachedResponse>();
+        CompletableFuture<CachedResponse> existingFlight = inFlight.putIfAbsent(key, flight);
+        if (existingFlight == null) {
+            // Re-check: another leader may have completed between get() and putIfAbsent().
+            cached = get(key);
+            if (cached != null) {
+                inFlight.remove(key, flight);
+                flight.complete(cached);
+                return new Ticket(key, cached, null);
+            }
+            return new Ticket(key, null, flight);
+        }
+        try {
+            return new Ticket(key, existingFlight.get(maxCoalesceWaitMillis, TimeUnit.MILLISECONDS), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted whilst waiting for concurrent render of " + key);
+        } catch (ExecutionException e) {
+            return new Ticket(key, null, null);
+        } catch (TimeoutException e) {
+            return new Ticket(key, null, null);
+        }
+    }
+
+    private boolean isKnownUncacheable(String key) {
+        entriesLock.lock();
+        try {
+            Long until = uncacheable.get(key);
+            if (until != null && System.nanoTime() - until >= 0) {
+                uncacheable.remove(key);
+                return false;
+            }
+            return until != null;
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    private void markUncacheable(String key) {
+        entriesLock.lock();
+        try {
+            uncacheable.put(key, System.nanoTime() + ttlNanos);
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    /**
+     * @param key Key as returned by {@link #keyFor(HttpServletRequest)}.
+     * @return The cached response, or null if there is none or it has expired.
+     */
+    public CachedResponse get(String key) {
+        entriesLock.lock();
+        try {
+            CachedResponse cached = entries.get(key);
+            if (cached != null && cached.isExpired(System.nanoTime())) {
+                entries.remove(key);
+                return null;
+            }
+            return cached;
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    /**
+     * Store a response.
+     *
+     * @param key      Key as returned by {@link #keyFor(HttpServletRequest)}.
+     * @param response The response to store.
+     */
+    public void put(String key, CachedResponse response) {
+        entriesLock.lock();
+        try {
+            entries.put(key, response);
+            uncacheable.remove(key);
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    /**
+     * Remove all cached responses.
+     */
+    public void clear() {
+        entriesLock.lock();
+        try {
+            entries.clear();
+            uncacheable.clear();
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of responses currently held (including expired ones not yet evicted).
+     */
+    public int size() {
+        entriesLock.lock();
+        try {
+            return entries.size();
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    /**
+     * Whether a post-processed response may be stored. The default implementation only allows
+     * 200 responses that do not set cookies and are not marked as private or uncacheable
+     * through {@code Cache-Control}.
+     *
+     * @param response The real response the post-processed content is about to be written to.
+     * @return Whether the response may be stored.
+     */
+    protected boolean isCacheable(HttpServletResponse response) {
+        if (response.getStatus() != HttpServletResponse.SC_OK || response.containsHeader("Set-Cookie")) {
+            return false;
+        }
+        Collection<String> cacheControls = response.getHeaders("Cache-Control");
+        if (cacheControls != null) {
+            for (String cacheControl : cacheControls) {
+                String lower = cacheControl.toLowerCase(Locale.ROOT);
+                if (lower.contains("private") || lower.contains("no-store")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create the entry to store for a captured response, or null if it is not cacheable.
+     *
+     * @param response     The real response the content is about to be written to.
+     * @param body         The captured, encoded content.
+     * @param lastModified Last modified date of the content and its decorators, or -1 if unknown.
+     * @param eTag         The ETag sent with the response, or null.
+     * @return The entry to store, or null.
+     */
+    CachedResponse createEntry(HttpServletResponse response, byte[] body, long lastModified, String eTag) {
+        if (!isCacheable(response)) {
+            return null;
+        }
+        return new CachedResponse(body, response.getContentType(), lastModified, eTag, replayedHeaders(response),
+                System.nanoTime() + ttlNanos);
+    }
+
+    private static Map<String, List<String>> replayedHeaders(HttpServletResponse response) {
+        Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+        for (String name : response.getHeaderNames()) {
+            if (!UNREPLAYED_HEADERS.contains(name.toLowerCase(Locale.ROOT)) && !headers.containsKey(name)) {
+                headers.put(name, Collections.unmodifiableList(new ArrayList<String>(response.getHeaders(name))));
+            }
+        }
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * Add the {@code Vary} header for the configured vary headers, if any.
+     *
+     * @param response The response to add the header to.
+     */
+    void addVaryHeader(HttpServletResponse response) {
+        if (varyHeaderValue != null) {
+            response.addHeader("Vary", varyHeaderValue);
+        }
+    }
+
+    /**
+     * Serve a cached response, answering with 304 (Not Modified) if the client's copy
+     * is still current according to {@code If-None-Match} or {@code If-Modified-Since}.
+     *
+     * @param cached   The cached response.
+     * @param request  The current request.
+     * @param response The real response.
+     * @throws IOException If the response cannot be written to.
+     */
+    public void write(CachedResponse cached, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        for (Map.Entry<String, List<String>> header : cached.getHeaders().entrySet()) {
+            // Replaces a value set again by a filter in front of this one, rather than repeating it.
+            boolean first = true;
+            for (String value : header.getValue()) {
+                if (first) {
+                    response.setHeader(header.getKey(), value);
+                    first = false;
+                } else {
+                    response.addHeader(header.getKey(), value);
+                }
+            }
+        }
+        addVaryHeader(response);
+        if (cached.getETag() != null) {
+            response.setHeader("ETag", cached.getETag());
+        }
+        if (isNotModified(cached, request)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        if (cached.getLastModified() > -1) {
+            response.setDateHeader("Last-Modified", cached.getLastModified());
+        }
+        if (cached.getContentType() != null) {
+            response.setContentType(cached.getContentType());
+        }
+        byte[] body = cached.getBody();
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Whether the client's copy of a cached response is still current according to
+     * {@code If-None-Match} or {@code If-Modified-Since}.
+     *
+     * @param cached  The cached response.
+     * @param request The current request.
+     * @return Whether to answer with 304 (Not Modified).
+     */
+    boolean isNotModified(CachedResponse cached, HttpServletRequest request) {
+        if (cached.getETag() != null && ETagGenerator.matches(request, cached.getETag())) {
+            return true;
+        }
+        long lastModified = cached.getLastModified();
+        return lastModified > -1 && request.getDateHeader("If-Modified-Since") >= (lastModified / 1000 * 1000);
+    }
+
+    /**
+     * @return How many times {@link #acquire(String)} returned a cached response, including
+     *         responses rendered by a concurrent identical request.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return How many times {@link #acquire(String)} left the caller to render the page.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return How long a request waits for a concurrent identical request, in milliseconds.
+     */
+    public long getMaxCoalesceWaitMillis() {
+        return maxCoalesceWaitMillis;
+    }
+
+    /**
+     * Set how long a request waits for a concurrent identical request to render the page
+     * before rendering it itself. Defaults to {@link #DEFAULT_MAX_COALESCE_WAIT_MILLIS}.
+     *
+     * @param maxCoalesceWaitMillis The wait in milliseconds; 0 never waits, so concurrent
+     *                              misses all render the page.
+     */
+    public void setMaxCoalesceWaitMillis(long maxCoalesceWaitMillis) {
+        if (maxCoalesceWaitMillis < 0) {
+            throw new IllegalArgumentException("maxCoalesceWaitMillis must not be negative");
+        }
+        this.maxCoalesceWaitMillis = maxCoalesceWaitMillis;
+    }
+
+    /**
+     * @return The configured time-to-live, in milliseconds.
+     */
+    public long getTtlMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+    /**
+     * @return The maximum number of responses held.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return The names of the request headers that take part in the cache key.
+     */
+    public String[] getVaryHeaders() {
+        return varyHeaders.clone();
+    }
+
+    /**
+     * The outcome of {@link ResponseCache#acquire(String)} for a single request.
+     */
+    public final class Ticket {
+
+        private final String key;
+        private final CachedResponse cachedResponse;
+        private final CompletableFuture<CachedResponse> flight;
+
+        private Ticket(String key, CachedResponse cachedResponse, CompletableFuture<CachedResponse> flight) {
+            this.key = key;
+            this.cachedResponse = cachedResponse;
+            this.flight = flight;
+        }
+
+        /**
+         * @return The cache key of the request.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return The response to serve, or null if the caller has to render the page itself.
+         */
+        public CachedResponse getCachedResponse() {
+            return cachedResponse;
+        }
+
+        /**
+         * @return Whether other requests are waiting on the caller's render, in which case
+         *         {@link #complete(CachedResponse)} must be called.
+         */
+        public boolean isLeader() {
+            return flight != null;
+        }
+
+        /**
+         * Store the result of the caller's render (if any) and release requests waiting on it.
+         * Should be called as soon as the caller knows whether the response can be stored,
+         * before sending it. Has no effect for tickets that are not the leader, or that were
+         * already completed.
+         *
+         * @param response The response to store, or null if it was not cacheable.
+         */
+        public void complete(CachedResponse response) {
+            if (flight == null || flight.isDone()) {
+                return;
+            }
+            if (response != null) {
+                put(key, response);
+            } else {
+                markUncacheable(key);
+            }
+            inFlight.remove(key, flight);
+            flight.complete(response);
+        }
+
+        /**
+         * Release requests waiting on the caller's render without storing anything, for renders
+         * that failed or were cut short: unlike {@code complete(null)}, later requests for the
+         * key still wait on each other. Has no effect for tickets that are not the leader, or
+         * that were already completed.
+         */
+        public void release() {
+            if (flight == null || flight.isDone()) {
+                return;
+            }
+            inFlight.remove(key, flight);
+            flight.complete(null);
+        }
+    }
+
+    /**
+     * An immutable cached response.
+     */
+    public static final class CachedResponse {
+
+        private final byte[] body;
+        private final String contentType;
+        private final long lastModified;
+        private final String eTag;
+        private final Map<String, List<String>> headers;
+        private final long expiresAtNanos;
+
+        /**
+         * @param body           The encoded response content.
+         * @param contentType    The response content type (including charset), or null.
+         * @param lastModified   Last modified date of the response, or -1 if unknown.
+         * @param expiresAtNanos {@link System#nanoTime()} after which the entry is stale.
+         */
+        public CachedResponse(byte[] body, String contentType, long lastModified, long expiresAtNanos) {
+            this(body, contentType, lastModified, null, expiresAtNanos);
+        }
+
+        /**
+         * @param body           The encoded response content.
+         * @param contentType    The response content type (including charset), or null.
+         * @param lastModified   Last modified date of the response, or -1 if unknown.
+         * @param eTag           The ETag of the response, or null.
+         * @param expiresAtNanos {@link System#nanoTime()} after which the entry is stale.
+         */
+        public CachedResponse(byte[] body, String contentType, long lastModified, String eTag, long expiresAtNanos) {
+            this(body, contentType, lastModified, eTag, Collections.<String, List<String>>emptyMap(), expiresAtNanos);
+        }
+
+        /**
+         * @param body           The encoded response content.
+         * @param contentType    The response content type (including charset), or null.
+         * @param lastModified   Last modified date of the response, or -1 if unknown.
+         * @param eTag           The ETag of the response, or null.
+         * @param headers        Other headers of the response, replayed when it is served. Must not be modified.
+         * @param expiresAtNanos {@link System#nanoTime()} after which the entry is stale.
+         */
+        public CachedResponse(byte[] body, String contentType, long lastModified, String eTag,
+                              Map<String, List<String>> headers, long expiresAtNanos) {
+            this.body = body;
+            this.contentType = contentType;
+            this.lastModified = lastModified;
+            this.eTag = eTag;
+            this.headers = headers;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        /**
+         * @return The encoded response content. Must not be modified.
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return The response content type, or null.
+         */
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @return Last modified date of the response, or -1 if unknown.
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return The ETag of the response, or null.
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return The other headers of the response, by name. Must not be modified.
+         */
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        boolean isExpired(long nowNanos) {
+            return nowNanos - expiresAtNanos >= 0;
+        }
+    }
+}
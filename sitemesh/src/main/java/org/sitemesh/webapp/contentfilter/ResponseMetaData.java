@@ -24,6 +24,8 @@ package org.sitemesh.webapp.contentfilter;
 public class ResponseMetaData {
 
     private long lastModified = -1;
+    private long contentLastModified = -1;
+    private String contentETag;
 
     // These counts are used to verify that whether all responses that were dispatched actually updated the last-modified
     // header. If any of them skipped it, then there should be no last-modified for the entire response.
@@ -39,6 +41,21 @@ public class ResponseMetaData {
     public void updateLastModified(long lastModified) {
         lastModifiedCount++;
         this.lastModified = Math.max(this.lastModified, lastModified);
+        if (responseCount == 1) {
+            contentLastModified = lastModified;
+        }
+    }
+
+    /**
+     * Record the ETag of a dispatched response. Only the ETag of the first response
+     * (the content itself, as opposed to its decorators) is kept.
+     *
+     * @param eTag The entity tag, as sent in the ETag header.
+     */
+    public void updateETag(String eTag) {
+        if (responseCount == 1) {
+            contentETag = eTag;
+        }
     }
 
     /**
@@ -49,6 +66,21 @@ public class ResponseMetaData {
         return lastModifiedCount == responseCount ? lastModified : -1;
     }
 
+    /**
+     * @return The last-modified time (in milliseconds since the epoch) the content itself
+     *         reported, regardless of its decorators, or -1 if it did not report one.
+     */
+    public long getContentLastModified() {
+        return contentLastModified;
+    }
+
+    /**
+     * @return The ETag the content itself reported, or null if it did not report one.
+     */
+    public String getContentETag() {
+        return contentETag;
+    }
+
     /**
      * Signal that another response is about to be dispatched (e.g. the decorator).
      */
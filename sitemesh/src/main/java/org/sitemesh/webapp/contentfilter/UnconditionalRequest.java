@@ -0,0 +1,72 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Hides the client's {@code If-None-Match} and {@code If-Modified-Since} headers, so that the
+ * page renders in full. Used for the request that renders a page for the {@link ResponseCache}:
+ * the entry has to hold the complete response, whatever the client that happened to miss
+ * already has. The client's conditional is answered from the entry afterwards.
+ */
+class UnconditionalRequest extends HttpServletRequestWrapper {
+
+    /**
+     * @param request The request to wrap.
+     */
+    UnconditionalRequest(HttpServletRequest request) {
+        super(request);
+    }
+
+    private static boolean isHidden(String name) {
+        return name.equalsIgnoreCase("If-None-Match") || name.equalsIgnoreCase("If-Modified-Since");
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return isHidden(name) ? null : super.getHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        return isHidden(name) ? Collections.<String>emptyEnumeration() : super.getHeaders(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        List<String> names = new ArrayList<String>();
+        for (Enumeration<String> all = super.getHeaderNames(); all != null && all.hasMoreElements(); ) {
+            String name = all.nextElement();
+            if (!isHidden(name)) {
+                names.add(name);
+            }
+        }
+        return Collections.enumeration(names);
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        return isHidden(name) ? -1 : super.getDateHeader(name);
+    }
+}
@@ -19,7 +19,6 @@ package org.sitemesh.webapp.contentfilter.io;
 import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.WriteListener;
 
-import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.ByteBuffer;
@@ -46,27 +45,11 @@ public class Buffer {
     private final int initialCapacity;
     private static final CharBuffer EMPTY_BUFFER = CharBuffer.allocate(0);
 
-    private ExposedCharArrayWriter bufferedWriter;
+    private SegmentedCharBuffer bufferedWriter;
     private ByteBufferBuilder byteBufferBuilder;
     private PrintWriter exposedWriter;
     private ServletOutputStream exposedStream;
 
-    /**
-     * A {@link CharArrayWriter} that can hand out its backing array directly,
-     * so {@link #toCharBuffer()} can return a view over the accumulated
-     * characters instead of copying them.
-     */
-    private static final class ExposedCharArrayWriter extends CharArrayWriter {
-
-        ExposedCharArrayWriter(int initialSize) {
-            super(initialSize);
-        }
-
-        CharBuffer toCharBufferView() {
-            return CharBuffer.wrap(this.buf, 0, this.count);
-        }
-    }
-
     /**
      * Equivalent to {@link #Buffer(String, int)} with
      * {@link #DEFAULT_INITIAL_CAPACITY}.
@@ -83,9 +66,9 @@ public class Buffer {
      *                 {@link ServletOutputStream} into text.
      * @param initialCapacity initial character capacity of the underlying
      *                        buffer. Sizing this close to the eventual
-     *                        response length avoids the repeated
-     *                        grow-and-copy cycles that dominate the cost of
-     *                        buffering a large page. Values below 1 are
+     *                        response length keeps the page in a single
+     *                        segment, so it never has to be joined. Values
+     *                        below 1 are
      *                        replaced with {@link #DEFAULT_INITIAL_CAPACITY}.
      */
     public Buffer(String encoding, int initialCapacity) {
@@ -96,17 +79,37 @@ public class Buffer {
     /**
      * Expose the buffer as a {@link PrintWriter}. Must not be called after {@link #getOutputStream()}.
      *
+     * <p>The writer appends straight to the buffer, without taking the lock a plain
+     * {@link PrintWriter} takes on every write.</p>
+     *
      * @return writer that appends to this buffer.
      */
     public PrintWriter getWriter() {
+        if (exposedWriter == null) {
+            SegmentedCharBuffer buffer = getSegmentedCharBuffer();
+            RoutablePrintWriter writer = new RoutablePrintWriter(null);
+            writer.updateDestination((RoutablePrintWriter.BufferFactory) () -> buffer);
+            exposedWriter = writer;
+        }
+        return exposedWriter;
+    }
+
+    /**
+     * Expose the buffer as an unsynchronized {@link java.io.Writer}, for callers that can
+     * write to it directly rather than through a {@link PrintWriter} (see
+     * {@link RoutablePrintWriter#updateDestination(RoutablePrintWriter.BufferFactory)}).
+     * Must not be called after {@link #getOutputStream()}.
+     *
+     * @return writer that appends to this buffer.
+     */
+    public SegmentedCharBuffer getSegmentedCharBuffer() {
         if (bufferedWriter == null) {
             if (byteBufferBuilder != null) {
                 throw new IllegalStateException("response.getWriter() called after response.getOutputStream()");
             }
-            bufferedWriter = new ExposedCharArrayWriter(initialCapacity);
-            exposedWriter = new PrintWriter(bufferedWriter);
+            bufferedWriter = new SegmentedCharBuffer(initialCapacity);
         }
-        return exposedWriter;
+        return bufferedWriter;
     }
 
     /**
@@ -168,8 +171,8 @@ public class Buffer {
      *
      * <p>When the content was written through {@link #getWriter()}, the
      * returned buffer is a <em>view</em> over the accumulated characters
-     * rather than a copy — avoiding a full page-sized array allocation and
-     * copy on every buffered response. Callers must therefore treat the
+     * rather than a copy — the segments are joined at most once, and not at
+     * all if the page fit the initial capacity. Callers must therefore treat the
      * result as read-only and must not write to this {@code Buffer} again
      * while still using it; every caller in SiteMesh reads the buffer only
      * once the render that filled it has completed.</p>
@@ -179,7 +182,7 @@ public class Buffer {
      */
     public CharBuffer toCharBuffer() throws IOException {
         if (bufferedWriter != null) {
-            return bufferedWriter.toCharBufferView();
+            return bufferedWriter.toCharBuffer();
         } else if (byteBufferBuilder != null) {
             // TODO: Avoid allocating intermediate ByteBuffers.
             return TextEncoder.encode(byteBufferBuilder.toByteBuffer(), encoding);
@@ -26,12 +26,21 @@ import java.util.Locale;
  * can be changed at any point. The destination can be passed in using a factory, so it will not be created
  * until it's actually needed.
  *
+ * <p>The destination can also be a {@link SegmentedCharBuffer} (see
+ * {@link #updateDestination(BufferFactory)}). Writes are then appended to it directly, without
+ * going through another (synchronized) PrintWriter - which matters for template engines issuing
+ * many tiny writes.</p>
+ *
  * @author Joe Walnes
  */
 public class RoutablePrintWriter extends PrintWriter {
 
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
     private PrintWriter destination;
     private DestinationFactory factory;
+    private SegmentedCharBuffer buffer;
+    private BufferFactory bufferFactory;
 
     /**
      * Factory to lazily instantiate the destination.
@@ -46,6 +55,18 @@ public class RoutablePrintWriter extends PrintWriter {
         PrintWriter activateDestination() throws IOException;
     }
 
+    /**
+     * Factory to lazily instantiate a buffer destination.
+     */
+    public static interface BufferFactory {
+        /**
+         * Create the destination buffer.
+         *
+         * @return The destination buffer.
+         */
+        SegmentedCharBuffer activateBuffer();
+    }
+
     /**
      * @param factory Factory that will lazily create the initial destination.
      */
@@ -65,6 +86,16 @@ public class RoutablePrintWriter extends PrintWriter {
         return destination;
     }
 
+    /**
+     * @return The buffer to append to directly, or null if writes go to a PrintWriter.
+     */
+    private SegmentedCharBuffer getBuffer() {
+        if (buffer == null && bufferFactory != null) {
+            buffer = bufferFactory.activateBuffer();
+        }
+        return buffer;
+    }
+
     /**
      * Change the destination. Subsequent writes will go to the writer lazily
      * created by the new factory.
@@ -74,182 +105,274 @@ public class RoutablePrintWriter extends PrintWriter {
     public void updateDestination(DestinationFactory factory) {
         destination = null;
         this.factory = factory;
+        buffer = null;
+        bufferFactory = null;
+    }
+
+    /**
+     * Change the destination to a buffer. Subsequent writes will be appended
+     * directly to the buffer lazily created by the factory.
+     *
+     * @param bufferFactory Factory that will lazily create the new destination.
+     */
+    public void updateDestination(BufferFactory bufferFactory) {
+        destination = null;
+        factory = null;
+        buffer = null;
+        this.bufferFactory = bufferFactory;
     }
 
     @Override
     public void close() {
-        getDestination().close();
+        if (bufferFactory == null) {
+            getDestination().close();
+        }
     }
 
     @Override
     public void println(Object x) {
-        getDestination().println(x);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().println(x);
+        } else {
+            buffer.write(String.valueOf(x));
+            buffer.write(LINE_SEPARATOR);
+        }
     }
 
     @Override
     public void println(String x) {
-        getDestination().println(x);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().println(x);
+        } else {
+            buffer.write(String.valueOf(x));
+            buffer.write(LINE_SEPARATOR);
+        }
     }
 
     @Override
     public void println(char x[]) {
-        getDestination().println(x);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().println(x);
+        } else {
+            buffer.write(x);
+            buffer.write(LINE_SEPARATOR);
+        }
     }
 
     @Override
     public void println(double x) {
-        getDestination().println(x);
+        println(String.valueOf(x));
     }
 
     @Override
     public void println(float x) {
-        getDestination().println(x);
+        println(String.valueOf(x));
     }
 
     @Override
     public void println(long x) {
-        getDestination().println(x);
+        println(String.valueOf(x));
     }
 
     @Override
     public void println(int x) {
-        getDestination().println(x);
+        println(String.valueOf(x));
     }
 
     @Override
     public void println(char x) {
-        getDestination().println(x);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().println(x);
+        } else {
+            buffer.write(x);
+            buffer.write(LINE_SEPARATOR);
+        }
     }
 
     @Override
     public void println(boolean x) {
-        getDestination().println(x);
+        println(String.valueOf(x));
     }
 
     @Override
     public void println() {
-        getDestination().println();
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().println();
+        } else {
+            buffer.write(LINE_SEPARATOR);
+        }
     }
 
     @Override
     public void print(Object obj) {
-        getDestination().print(obj);
+        write(String.valueOf(obj));
     }
 
     @Override
     public void print(String s) {
-        getDestination().print(s);
+        write(String.valueOf(s));
     }
 
     @Override
     public void print(char s[]) {
-        getDestination().print(s);
+        write(s);
     }
 
     @Override
     public void print(double d) {
-        getDestination().print(d);
+        write(String.valueOf(d));
     }
 
     @Override
     public void print(float f) {
-        getDestination().print(f);
+        write(String.valueOf(f));
     }
 
     @Override
     public void print(long l) {
-        getDestination().print(l);
+        write(String.valueOf(l));
     }
 
     @Override
     public void print(int i) {
-        getDestination().print(i);
+        write(String.valueOf(i));
     }
 
     @Override
     public void print(char c) {
-        getDestination().print(c);
+        write(c);
     }
 
     @Override
     public void print(boolean b) {
-        getDestination().print(b);
+        write(String.valueOf(b));
     }
 
     @Override
     public void write(String s) {
-        getDestination().write(s);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().write(s);
+        } else {
+            buffer.write(s);
+        }
     }
 
     @Override
     public void write(String s, int off, int len) {
-        getDestination().write(s, off, len);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().write(s, off, len);
+        } else {
+            buffer.write(s, off, len);
+        }
     }
 
     @Override
     public void write(char buf[]) {
-        getDestination().write(buf);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().write(buf);
+        } else {
+            buffer.write(buf);
+        }
     }
 
     @Override
     public void write(char buf[], int off, int len) {
-        getDestination().write(buf, off, len);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().write(buf, off, len);
+        } else {
+            buffer.write(buf, off, len);
+        }
     }
 
     @Override
     public void write(int c) {
-        getDestination().write(c);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().write(c);
+        } else {
+            buffer.write(c);
+        }
     }
 
     @Override
     public boolean checkError() {
-        return getDestination().checkError();
+        // Appending to a buffer cannot fail.
+        return bufferFactory == null && getDestination().checkError();
     }
 
     @Override
     public void flush() {
-        getDestination().flush();
+        if (bufferFactory == null) {
+            getDestination().flush();
+        }
     }
 
     @Override
     public PrintWriter printf(String string, Object... args) {
-        getDestination().printf(string, args);
-        return this;
+        return format(string, args);
     }
 
     @Override
     public PrintWriter printf(Locale locale, String string, Object... args) {
-        getDestination().printf(locale, string, args);
-        return this;
+        return format(locale, string, args);
     }
 
     @Override
     public PrintWriter format(String string, Object... args) {
-        getDestination().format(string, args);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().format(string, args);
+        } else {
+            buffer.write(String.format(string, args));
+        }
         return this;
     }
 
     @Override
     public PrintWriter format(Locale locale, String string, Object... args) {
-        getDestination().format(locale, string, args);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().format(locale, string, args);
+        } else {
+            buffer.write(String.format(locale, string, args));
+        }
         return this;
     }
 
     @Override
     public PrintWriter append(CharSequence charSequence) {
-        getDestination().append(charSequence);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().append(charSequence);
+        } else {
+            buffer.append(charSequence);
+        }
         return this;
     }
 
     @Override
     public PrintWriter append(CharSequence charSequence, int s, int e) {
-        getDestination().append(charSequence, s, e);
+        SegmentedCharBuffer buffer = getBuffer();
+        if (buffer == null) {
+            getDestination().append(charSequence, s, e);
+        } else {
+            buffer.append(charSequence, s, e);
+        }
         return this;
     }
 
     @Override
     public PrintWriter append(char c) {
-        getDestination().append(c);
+        write(c);
         return this;
     }
 
@@ -0,0 +1,194 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter.io;
+
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An unsynchronized {@link Writer} that accumulates characters in a list of segments.
+ *
+ * <p>Unlike {@link java.io.CharArrayWriter}, no lock is taken on any write, and filling
+ * a segment starts a new one instead of copying everything written so far into a larger
+ * array. The segments are joined once, by {@link #toCharBuffer()}.</p>
+ *
+ * <p>Instances must only be used by one thread at a time - which is the case for the
+ * body of a single response.</p>
+ */
+public class SegmentedCharBuffer extends Writer {
+
+    /**
+     * Segments after the first grow geometrically up to this length, in characters.
+     */
+    public static final int MAX_SEGMENT_LENGTH = 65536;
+
+    private List<char[]> fullSegments;
+    private int fullLength;
+    private char[] current;
+    private int count;
+
+    /**
+     * @param initialCapacity Length of the first segment, in characters. Must be positive.
+     */
+    public SegmentedCharBuffer(int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("initialCapacity must be positive");
+        }
+        current = new char[initialCapacity];
+    }
+
+    private void nextSegment() {
+        if (fullSegments == null) {
+            fullSegments = new ArrayList<char[]>();
+        }
+        fullSegments.add(current);
+        fullLength += current.length;
+        current = new char[Math.min(current.length, MAX_SEGMENT_LENGTH / 2) * 2];
+        count = 0;
+    }
+
+    @Override
+    public void write(int c) {
+        if (count == current.length) {
+            nextSegment();
+        }
+        current[count++] = (char) c;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > chars.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (length > 0) {
+            if (count == current.length) {
+                nextSegment();
+            }
+            int n = Math.min(length, current.length - count);
+            System.arraycopy(chars, offset, current, count, n);
+            count += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    public void write(char[] chars) {
+        write(chars, 0, chars.length);
+    }
+
+    @Override
+    public void write(String string, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > string.length()) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (length > 0) {
+            if (count == current.length) {
+                nextSegment();
+            }
+            int n = Math.min(length, current.length - count);
+            string.getChars(offset, offset + n, current, count);
+            count += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    public void write(String string) {
+        write(string, 0, string.length());
+    }
+
+    @Override
+    public SegmentedCharBuffer append(CharSequence sequence) {
+        String string = String.valueOf(sequence);
+        write(string, 0, string.length());
+        return this;
+    }
+
+    @Override
+    public SegmentedCharBuffer append(CharSequence sequence, int start, int end) {
+        if (sequence == null) {
+            sequence = "null";
+        }
+        if (sequence instanceof String) {
+            if (start < 0 || start > end) {
+                throw new IndexOutOfBoundsException();
+            }
+            write((String) sequence, start, end - start);
+        } else {
+            String string = sequence.subSequence(start, end).toString();
+            write(string, 0, string.length());
+        }
+        return this;
+    }
+
+    @Override
+    public SegmentedCharBuffer append(char c) {
+        write(c);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return Number of characters written.
+     */
+    public int size() {
+        return fullLength + count;
+    }
+
+    /**
+     * Return the characters written so far. While everything fits in the first segment
+     * the result is a view over it; otherwise the segments are joined into one (which
+     * then replaces them, so this happens at most once per growth).
+     *
+     * <p>The result is a view: it must be treated as read-only, and is only valid
+     * until the next write.</p>
+     *
+     * @return The written characters.
+     */
+    public CharBuffer toCharBuffer() {
+        if (fullSegments != null) {
+            char[] joined = new char[size()];
+            int position = 0;
+            for (char[] segment : fullSegments) {
+                System.arraycopy(segment, 0, joined, position, segment.length);
+                position += segment.length;
+            }
+            System.arraycopy(current, 0, joined, position, count);
+            fullSegments = null;
+            fullLength = 0;
+            current = joined;
+            count = joined.length;
+        }
+        return CharBuffer.wrap(current, 0, count);
+    }
+
+    @Override
+    public String toString() {
+        return toCharBuffer().toString();
+    }
+}
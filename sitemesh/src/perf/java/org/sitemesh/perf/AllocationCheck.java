@@ -0,0 +1,234 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.perf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.sitemesh.BaseSiteMeshContext;
+import org.sitemesh.content.Content;
+import org.sitemesh.content.ContentProcessor;
+import org.sitemesh.content.tagrules.TagBasedContentProcessor;
+import org.sitemesh.content.tagrules.decorate.DecoratorTagRuleBundle;
+import org.sitemesh.content.tagrules.html.CoreHtmlTagRuleBundle;
+import org.sitemesh.webapp.contentfilter.io.Buffer;
+
+/**
+ * Counts the bytes allocated to buffer, parse and decorate each page of a fixed HTML corpus,
+ * and compares them with a checked-in baseline. Run by the {@code perfCheck} task.
+ *
+ * <p>Allocations are counted with {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}
+ * for the current thread. Unlike timings, they depend on the code and the JVM but not on the
+ * machine or its load. They do depend on the JIT, because C2's escape analysis removes
+ * allocations depending on what it inlines, so the task runs without C2. Each operation is
+ * repeated and the smallest count kept, which leaves out one-off allocations such as class
+ * initialization.</p>
+ *
+ * <p>Usage: {@code AllocationCheck <corpus dir> <baseline file> [--update]}. Every
+ * {@code *.html} file in the corpus directory is a page, decorated with
+ * {@code decorators/main.html}. With {@code --update}, the baseline is rewritten with the
+ * current counts instead of being checked.</p>
+ *
+ * <p>The baseline records the Java feature version it was counted on, since a different JDK
+ * allocates differently in its own classes. On another version the check is skipped with a
+ * warning rather than failing on counts that cannot be compared.</p>
+ */
+public final class AllocationCheck {
+
+    /** Relative change allowed when the baseline does not say. */
+    public static final double DEFAULT_TOLERANCE = 0.05;
+
+    /** Baseline key holding the Java feature version the counts were taken on. */
+    public static final String JAVA_VERSION_KEY = "java.version";
+
+    private static final String DECORATOR = "/decorators/main.html";
+    private static final int WARMUP_RUNS = 50;
+    private static final int MEASURED_RUNS = 20;
+    /** Chunk size pages are written to the buffer in, like a template engine flushing its output. */
+    private static final int WRITE_CHUNK = 1024;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final long threadId = Thread.currentThread().getId();
+    private final ContentProcessor processor =
+            new TagBasedContentProcessor(new CoreHtmlTagRuleBundle(), new DecoratorTagRuleBundle());
+    private long overhead;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: AllocationCheck <corpus dir> <baseline file> [--update]");
+            System.exit(2);
+        }
+        File corpus = new File(args[0]);
+        File baselineFile = new File(args[1]);
+        boolean update = args.length > 2 && args[2].equals("--update");
+
+        Map<String, Long> measured = new AllocationCheck().measureCorpus(corpus);
+        Properties baseline = new Properties();
+        if (baselineFile.exists()) {
+            try (InputStream in = new FileInputStream(baselineFile)) {
+                baseline.load(in);
+            }
+        }
+        double tolerance = Double.parseDouble(baseline.getProperty("tolerance", String.valueOf(DEFAULT_TOLERANCE)));
+        String javaVersion = String.valueOf(Runtime.version().feature());
+        String baselineJavaVersion = baseline.getProperty(JAVA_VERSION_KEY);
+        if (update) {
+            writeBaseline(baselineFile, tolerance, javaVersion, measured);
+            System.out.println("Wrote " + measured.size() + " allocation counts to " + baselineFile);
+        } else if (baselineJavaVersion != null && !baselineJavaVersion.equals(javaVersion)) {
+            System.out.println("WARNING: skipping the allocation check. The baseline was counted on Java "
+                    + baselineJavaVersion + " but this is Java " + javaVersion + ".");
+        } else if (!compare(baseline, tolerance, measured)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param corpus directory of pages, with the decorator in {@code decorators/main.html}
+     * @return bytes allocated per operation, keyed by {@code <operation>.<page file name>}
+     * @throws IOException if the corpus cannot be read
+     */
+    public Map<String, Long> measureCorpus(File corpus) throws IOException {
+        String decorator = read(new File(corpus, DECORATOR));
+        File[] pages = corpus.listFiles((dir, name) -> name.endsWith(".html"));
+        if (pages == null || pages.length == 0) {
+            throw new IOException("No pages in " + corpus);
+        }
+        overhead = measure(() -> { });
+
+        Map<String, Long> allocated = new TreeMap<>();
+        for (File page : pages) {
+            String html = read(page);
+            CorpusContext context = new CorpusContext(processor, page.getName(), decorator);
+            Content content = processor.build(CharBuffer.wrap(html), context);
+
+            allocated.put("buffer." + page.getName(), measure(() -> {
+                Buffer buffer = new Buffer("UTF-8");
+                PrintWriter writer = buffer.getWriter();
+                for (int i = 0; i < html.length(); i += WRITE_CHUNK) {
+                    writer.write(html, i, Math.min(WRITE_CHUNK, html.length() - i));
+                }
+                writer.flush();
+                buffer.toCharBuffer();
+            }));
+            allocated.put("parse." + page.getName(), measure(() -> processor.build(CharBuffer.wrap(html), context)));
+            allocated.put("decorate." + page.getName(), measure(() ->
+                    context.decorate(DECORATOR, content).getData().writeValueTo(Writer.nullWriter())));
+        }
+        return allocated;
+    }
+
+    private long measure(Operation operation) throws IOException {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            operation.run();
+        }
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            operation.run();
+            least = Math.min(least, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+        return Math.max(0, least - overhead);
+    }
+
+    private static boolean compare(Properties baseline, double tolerance, Map<String, Long> measured) {
+        boolean passed = true;
+        System.out.printf("%-28s %12s %12s %8s%n", "operation", "baseline", "allocated", "change");
+        for (Map.Entry<String, Long> entry : measured.entrySet()) {
+            String expectedValue = baseline.getProperty(entry.getKey());
+            if (expectedValue == null) {
+                System.out.printf("%-28s %12s %12d%n", entry.getKey(), "-", entry.getValue());
+                System.out.println("  no baseline for " + entry.getKey());
+                passed = false;
+                continue;
+            }
+            long expected = Long.parseLong(expectedValue);
+            double change = expected == 0 ? (entry.getValue() == 0 ? 0 : 1) : (double) entry.getValue() / expected - 1;
+            System.out.printf("%-28s %12d %12d %+7.1f%%%n", entry.getKey(), expected, entry.getValue(), change * 100);
+            if (change > tolerance) {
+                System.out.printf("  allocates more than the baseline plus %.0f%%%n", tolerance * 100);
+                passed = false;
+            } else if (change < -tolerance) {
+                System.out.println("  allocates less than the baseline; update it to keep the improvement");
+            }
+        }
+        if (!passed) {
+            System.out.println("Allocation check failed. If the change is intended, update the baseline with "
+                    + "./gradlew :sitemesh:perfCheck -PupdatePerfBaseline");
+        }
+        return passed;
+    }
+
+    private static void writeBaseline(File file, double tolerance, String javaVersion, Map<String, Long> measured)
+            throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Bytes allocated per operation on src/perf/corpus, counted by AllocationCheck on the");
+        lines.add("# build's Java toolchain. Update with: ./gradlew :sitemesh:perfCheck -PupdatePerfBaseline");
+        lines.add(JAVA_VERSION_KEY + "=" + javaVersion);
+        lines.add("tolerance=" + tolerance);
+        for (Map.Entry<String, Long> entry : measured.entrySet()) {
+            lines.add(entry.getKey() + "=" + entry.getValue());
+        }
+        Files.write(file.toPath(), lines, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private interface Operation {
+        void run() throws IOException;
+    }
+
+    /**
+     * Context that decorates with the corpus decorator, as it would be rendered.
+     */
+    private static final class CorpusContext extends BaseSiteMeshContext {
+
+        private final String path;
+        private final String decorator;
+
+        CorpusContext(ContentProcessor contentProcessor, String path, String decorator) {
+            super(contentProcessor);
+            this.path = path;
+            this.decorator = decorator;
+        }
+
+        @Override
+        protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
+            out.write(decorator);
+        }
+
+        public String getPath() {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.builder.SiteMeshFilterBuilder;
+import org.sitemesh.offline.directory.FileSystemDirectory;
+import org.sitemesh.webapp.contentfilter.ETagGenerator;
+
+public class DecoratorVersionRegistryTest extends TestCase {
+
+    private final Map<String, Long> stamps = new HashMap<String, Long>();
+    private final DecoratorVersionRegistry.StampSource source = new DecoratorVersionRegistry.StampSource() {
+        public long getStamp(String decoratorPath) {
+            Long stamp = stamps.get(decoratorPath);
+            return stamp == null ? -1 : stamp;
+        }
+    };
+
+    private DecoratorVersionRegistry registry;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        registry = new DecoratorVersionRegistry(0);
+        registry.start(source);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        registry.stop();
+        super.tearDown();
+    }
+
+    public void testRecordsStampsOfTrackedDecorators() {
+        stamps.put("/a.html", 100L);
+        stamps.put("/b.html", 200L);
+        registry.track("/a.html");
+        registry.track("/b.html");
+
+        assertEquals(100, registry.getStamp("/a.html"));
+        assertEquals(200, registry.getLastModified());
+        assertEquals(-1, registry.getStamp("/untracked.html"));
+        assertEquals(0, registry.getGeneration());
+    }
+
+    public void testBumpsGenerationAndNotifiesListenersOnChange() {
+        final List<Set<String>> notifications = new ArrayList<Set<String>>();
+        registry.addListener(new DecoratorVersionRegistry.Listener() {
+            public void decoratorsChanged(Set<String> changedPaths) {
+                notifications.add(changedPaths);
+            }
+        });
+        stamps.put("/a.html", 100L);
+        stamps.put("/b.html", 200L);
+        registry.track("/a.html");
+        registry.track("/b.html");
+
+        assertTrue(registry.checkNow().isEmpty());
+        assertEquals(0, notifications.size());
+
+        stamps.put("/b.html", 300L);
+        assertEquals(Set.of("/b.html"), registry.checkNow());
+        assertEquals(1, registry.getGeneration());
+        assertEquals(300, registry.getStamp("/b.html"));
+        assertEquals(List.of(Set.of("/b.html")), notifications);
+    }
+
+    public void testDoesNotTrackBeforeStart() {
+        DecoratorVersionRegistry unstarted = new DecoratorVersionRegistry(0);
+        unstarted.track("/a.html");
+        assertEquals(-1, unstarted.getStamp("/a.html"));
+        assertTrue(unstarted.checkNow().isEmpty());
+    }
+
+    public void testBuilderRejectsIntervalThatNeverChecks() {
+        try {
+            new SiteMeshFilterBuilder().setDecoratorChangeDetection(0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // Only a registry the application holds can be checked on demand.
+        }
+        assertNull(new SiteMeshFilterBuilder().setDecoratorChangeDetection(-1).getDecoratorVersionRegistry());
+    }
+
+    public void testDecoratorVersionOfETagsFollowsGeneration() {
+        ETagGenerator eTagGenerator = new ETagGenerator("build1", registry);
+        stamps.put("/a.html", 100L);
+        registry.track("/a.html");
+        assertEquals("build1", eTagGenerator.getDecoratorVersion(null));
+
+        stamps.put("/a.html", 101L);
+        registry.checkNow();
+        String changed = eTagGenerator.getDecoratorVersion(null);
+        assertFalse("build1".equals(changed));
+        assertSame(changed, eTagGenerator.getDecoratorVersion(null));
+    }
+
+    public void testReadsStampsFromDirectory() throws IOException {
+        File root = Files.createTempDirectory("sitemesh-decorators").toFile();
+        try {
+            FileSystemDirectory directory = new FileSystemDirectory(root);
+            directory.save("decorator.html", CharBuffer.wrap("<html/>"));
+            DecoratorVersionRegistry.StampSource directorySource = DecoratorVersionRegistry.forDirectory(directory);
+
+            File file = new File(root, "decorator.html");
+            assertTrue(file.setLastModified(1000000L));
+            assertEquals(1000000L, directorySource.getStamp("decorator.html"));
+            assertEquals(-1, directorySource.getStamp("missing.html"));
+        } finally {
+            new File(root, "decorator.html").delete();
+            root.delete();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.SiteMeshMetrics.Phase;
+import org.sitemesh.content.Content;
+
+public class InMemorySiteMeshMetricsTest extends TestCase {
+
+    public void testAggregatesPhases() {
+        InMemorySiteMeshMetrics metrics = new InMemorySiteMeshMetrics();
+        metrics.recordPhase(Phase.BUILD, "/a", null, 100, 40);
+        metrics.recordPhase(Phase.BUILD, "/b", null, 300, 60);
+        metrics.recordPhase(Phase.SELECT, "/a", null, 10, -1);
+
+        InMemorySiteMeshMetrics.Stats build = metrics.getStats(Phase.BUILD);
+        assertEquals(2, build.getCount());
+        assertEquals(400, build.getTotalNanos());
+        assertEquals(300, build.getMaxNanos());
+        assertEquals(200, build.getMeanNanos());
+        assertEquals(100, build.getTotalLength());
+
+        assertEquals(1, metrics.getStats(Phase.SELECT).getCount());
+        assertEquals(0, metrics.getStats(Phase.SELECT).getTotalLength());
+        assertEquals(0, metrics.getStats(Phase.WRITE).getCount());
+        assertEquals(0, metrics.getStats(Phase.WRITE).getMeanNanos());
+    }
+
+    public void testTracksDecoratorsIndividually() {
+        InMemorySiteMeshMetrics metrics = new InMemorySiteMeshMetrics();
+        metrics.recordPhase(Phase.DECORATE, "/a", "/decorators/main.html", 100, 500);
+        metrics.recordPhase(Phase.DECORATE, "/b", "/decorators/main.html", 200, 700);
+        metrics.recordPhase(Phase.DECORATE, "/c", "/decorators/print.html", 50, 100);
+        metrics.recordPhase(Phase.REPARSE, "/c", "/decorators/print.html", 20, 100);
+
+        assertEquals(Set.of("/decorators/main.html", "/decorators/print.html"), metrics.getDecoratorPaths());
+        assertEquals(2, metrics.getDecoratorStats("/decorators/main.html").getCount());
+        assertEquals(1200, metrics.getDecoratorStats("/decorators/main.html").getTotalLength());
+        assertEquals(50, metrics.getDecoratorStats("/decorators/print.html").getTotalNanos());
+        assertEquals(3, metrics.getStats(Phase.DECORATE).getCount());
+        assertNull(metrics.getDecoratorStats("/decorators/other.html"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getStats(Phase.DECORATE).getCount());
+        assertEquals(0, metrics.getStats(Phase.DECORATE).getMaxNanos());
+        assertTrue(metrics.getDecoratorPaths().isEmpty());
+    }
+
+    public void testCountsOutcomesAndKeepsHistograms() {
+        InMemorySiteMeshMetrics metrics = new InMemorySiteMeshMetrics();
+        metrics.recordOutcome(SiteMeshMetrics.Outcome.DECORATED, "/a");
+        metrics.recordOutcome(SiteMeshMetrics.Outcome.DECORATED, "/b");
+        metrics.recordOutcome(SiteMeshMetrics.Outcome.PASSED_THROUGH, "/c.css");
+        assertEquals(2, metrics.getOutcomeCount(SiteMeshMetrics.Outcome.DECORATED));
+        assertEquals(1, metrics.getOutcomeCount(SiteMeshMetrics.Outcome.PASSED_THROUGH));
+        assertEquals(0, metrics.getOutcomeCount(SiteMeshMetrics.Outcome.ABORTED));
+
+        for (int i = 1; i <= 10; i++) {
+            metrics.recordPhase(Phase.BUFFER, "/a", null, i * 1000, i * 100);
+        }
+        metrics.recordPhase(Phase.BUFFER, "/b", null, 500, -1);
+        InMemorySiteMeshMetrics.Stats buffer = metrics.getStats(Phase.BUFFER);
+        assertEquals(11, buffer.getNanosHistogram().getCount());
+        assertEquals(10, buffer.getLengthHistogram().getCount());
+        assertTrue(buffer.getNanosPercentile(0.9) >= 9000);
+        assertTrue(buffer.getNanosPercentile(0.9) < 10000 * 5 / 4);
+
+        metrics.reset();
+        assertEquals(0, metrics.getOutcomeCount(SiteMeshMetrics.Outcome.DECORATED));
+        assertEquals(0, buffer.getNanosPercentile(0.9));
+    }
+
+    public void testContextRecordsEachDecorator() throws IOException {
+        InMemorySiteMeshMetrics metrics = new InMemorySiteMeshMetrics();
+        BaseSiteMeshContext context = new BaseSiteMeshContext((data, ctx) -> null) {
+            @Override
+            protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
+                out.write("<html>" + decoratorPath + "</html>");
+            }
+
+            public String getPath() {
+                return "/page.html";
+            }
+        };
+        context.decorate("/a.html", null);
+        assertEquals(0, metrics.getStats(Phase.DECORATE).getCount());
+
+        context.setMetrics(metrics);
+        context.decorate("/a.html", null);
+        context.decorate("/b.html", null);
+        assertEquals(2, metrics.getStats(Phase.DECORATE).getCount());
+        assertEquals(2, metrics.getStats(Phase.REPARSE).getCount());
+        assertEquals("<html>/a.html</html>".length(), metrics.getDecoratorStats("/a.html").getTotalLength());
+        assertEquals(1, metrics.getDecoratorStats("/b.html").getCount());
+        assertEquals(0, metrics.getStats(Phase.BUILD).getCount());
+
+        context.setMetrics(null);
+        assertSame(SiteMeshMetrics.NONE, context.getMetrics());
+    }
+
+    public void testCountingAppendable() throws IOException {
+        StringBuilder out = new StringBuilder();
+        SiteMeshMetrics.CountingAppendable counter = new SiteMeshMetrics.CountingAppendable(out);
+        counter.append("hello").append(' ').append("a world!", 2, 7);
+        assertEquals("hello world", out.toString());
+        assertEquals(11, counter.getCount());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh;
+
+import junit.framework.TestCase;
+
+public class LogHistogramTest extends TestCase {
+
+    public void testBucketsCoverEveryValue() {
+        int previous = LogHistogram.bucketOf(0);
+        assertEquals(0, previous);
+        for (long value = 1; value < 100000; value++) {
+            int bucket = LogHistogram.bucketOf(value);
+            assertTrue(bucket == previous || bucket == previous + 1);
+            assertTrue(value <= LogHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || value > LogHistogram.upperBoundOf(bucket - 1));
+            previous = bucket;
+        }
+        assertEquals(0, LogHistogram.bucketOf(-5));
+        assertEquals(LogHistogram.BUCKETS - 1, LogHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LogHistogram.upperBoundOf(LogHistogram.BUCKETS - 1));
+    }
+
+    public void testBucketsAreWithinAQuarter() {
+        for (int bucket = 4; bucket < LogHistogram.BUCKETS; bucket++) {
+            long lower = LogHistogram.upperBoundOf(bucket - 1) + 1;
+            long upper = LogHistogram.upperBoundOf(bucket);
+            assertTrue(upper - lower + 1 <= lower / 4 + 1);
+        }
+    }
+
+    public void testPercentiles() {
+        LogHistogram histogram = new LogHistogram();
+        assertEquals(0, histogram.getPercentile(0.5));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100, histogram.getCount());
+        long p50 = histogram.getPercentile(0.5);
+        assertTrue(p50 >= 50000 && p50 <= 50000 * 5 / 4);
+        long p99 = histogram.getPercentile(0.99);
+        assertTrue(p99 >= 99000 && p99 <= 99000 * 5 / 4);
+        assertEquals(LogHistogram.upperBoundOf(LogHistogram.bucketOf(100000)), histogram.getPercentile(1));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.content.Content;
+
+public class SizeEstimateTest extends TestCase {
+
+    public void testBucketsAreWithinAnEighth() {
+        for (int length = 1; length < 1 << 20; length += 7) {
+            int upper = SizeEstimate.upperBoundOf(SizeEstimate.bucketOf(length));
+            assertTrue(upper >= length);
+            assertTrue(upper <= length + length / 8 + 1);
+        }
+        assertEquals(Integer.MAX_VALUE, SizeEstimate.upperBoundOf(SizeEstimate.bucketOf(Integer.MAX_VALUE)));
+    }
+
+    public void testEstimatesThePercentile() {
+        SizeEstimate estimate = new SizeEstimate(0.9);
+        assertEquals(0, estimate.getEstimate());
+        for (int i = 1; i <= 20; i++) {
+            estimate.record(i * 1000);
+        }
+        assertTrue(estimate.getEstimate() >= 18000);
+        assertTrue(estimate.getEstimate() < 20000);
+
+        estimate.record(0);
+        estimate.record(-1);
+        assertTrue(estimate.getEstimate() < 20000);
+    }
+
+    public void testForgetsOldLengths() {
+        SizeEstimate estimate = new SizeEstimate();
+        for (int i = 0; i < 10; i++) {
+            estimate.record(100000);
+        }
+        for (int i = 0; i < SizeEstimate.DECAY_INTERVAL * 4; i++) {
+            estimate.record(1000);
+        }
+        assertTrue(estimate.getEstimate() < 2000);
+    }
+
+    public void testFollowsShorterLengthsOnlyAtTheRecomputeInterval() {
+        SizeEstimate estimate = new SizeEstimate(0.5);
+        for (int i = 0; i < SizeEstimate.RECOMPUTE_INTERVAL; i++) {
+            estimate.record(10000);
+        }
+        int initial = estimate.getEstimate();
+        assertTrue(initial >= 10000);
+
+        for (int i = 0; i < SizeEstimate.RECOMPUTE_INTERVAL - 1; i++) {
+            estimate.record(100);
+        }
+        assertEquals(initial, estimate.getEstimate());
+        estimate.record(100);
+        assertTrue(estimate.getEstimate() < 200);
+    }
+
+    public void testStaysWithinTheLengthsSeenWhenRecordedConcurrently() throws InterruptedException {
+        final SizeEstimate estimate = new SizeEstimate();
+        final AtomicInteger largest = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    estimate.record(1000);
+                    largest.accumulateAndGet(estimate.getEstimate(), Math::max);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue("estimate reached " + largest.get(), largest.get() <= 1000 + 1000 / 8 + 1);
+    }
+
+    public void testCapsTrackedNames() {
+        SizeEstimates estimates = new SizeEstimates(0.5);
+        assertNull(estimates.get(null));
+        for (int i = 0; i < SizeEstimates.MAX_TRACKED; i++) {
+            assertNotNull(estimates.get("/decorator" + i));
+        }
+        assertNull(estimates.get("/one-too-many"));
+        assertNotNull(estimates.get("/decorator0"));
+        assertEquals(0.5, estimates.get("/decorator0").getPercentile());
+    }
+
+    public void testContextSizesDecoratorBuffersPerDecorator() throws IOException {
+        SizeEstimates estimates = new SizeEstimates();
+        BaseSiteMeshContext context = new BaseSiteMeshContext((data, ctx) -> null) {
+            @Override
+            protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
+                out.write(decoratorPath.equals("/large.html") ? "x".repeat(50000) : "small");
+            }
+
+            public String getPath() {
+                return "/page.html";
+            }
+        };
+        context.setDecoratorSizeEstimates(estimates);
+        context.decorate("/large.html", null);
+        context.decorate("/small.html", null);
+
+        assertTrue(estimates.get("/large.html").getEstimate() >= 50000);
+        assertTrue(estimates.get("/small.html").getEstimate() < 10);
+    }
+}
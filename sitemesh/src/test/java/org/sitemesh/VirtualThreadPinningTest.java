@@ -0,0 +1,410 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterConfig;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.config.ConfigurableSiteMeshFilter;
+import org.sitemesh.content.Content;
+import org.sitemesh.content.ContentProcessor;
+import org.sitemesh.content.tagrules.TagBasedContentProcessor;
+import org.sitemesh.content.tagrules.decorate.DecoratorTagRuleBundle;
+import org.sitemesh.content.tagrules.html.CoreHtmlTagRuleBundle;
+import org.sitemesh.webapp.contentfilter.ResponseCache;
+import org.sitemesh.webapp.contentfilter.io.Buffer;
+import org.sitemesh.webapp.contentfilter.io.RoutablePrintWriter;
+
+/**
+ * Runs SiteMesh's locking code on virtual threads, blocking inside it as real requests do,
+ * and checks that no virtual thread was pinned to its carrier while blocked - which is what
+ * happens when a monitor ({@code synchronized}) is held around the blocking call:
+ * <ul>
+ * <li>writing a page and a decorated page through to a client that is slow to read,</li>
+ * <li>reloading the configuration, which reads files, while requests come in,</li>
+ * <li>waiting for a concurrent render of the same page in the {@link ResponseCache}.</li>
+ * </ul>
+ *
+ * <p>Needs a JDK with virtual threads; run by the {@code virtualThreadTest} task on JDK 21,
+ * with {@code -Djdk.tracePinnedThreads=full}. On the JDK 17 the library is built with, there
+ * is nothing to check. From JDK 24, monitors no longer pin virtual threads at all.</p>
+ */
+public class VirtualThreadPinningTest extends TestCase {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int TASKS = 200;
+
+    private ExecutorService executor;
+    private Recording recording;
+    private PrintStream originalOut;
+    private ByteArrayOutputStream out;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        executor = newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            return;
+        }
+        recording = new Recording();
+        recording.enable(PINNED_EVENT).withoutThreshold().withStackTrace();
+        recording.start();
+        // -Djdk.tracePinnedThreads prints the stack of a pinned thread to System.out.
+        originalOut = System.out;
+        out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (executor != null) {
+            System.setOut(originalOut);
+            executor.shutdownNow();
+            recording.close();
+        }
+        super.tearDown();
+    }
+
+    public void testWritingToASlowClientDoesNotPin() throws Exception {
+        if (executor == null) {
+            return;
+        }
+        final ContentProcessor processor = new TagBasedContentProcessor(
+                new CoreHtmlTagRuleBundle(), new DecoratorTagRuleBundle());
+        final InMemorySiteMeshMetrics metrics = new InMemorySiteMeshMetrics();
+        final SizeEstimates estimates = new SizeEstimates();
+
+        runAll(() -> {
+            // A page that is not buffered goes straight through to the client.
+            SlowWriter client = new SlowWriter();
+            RoutablePrintWriter writer = new RoutablePrintWriter(() -> new ContainerWriter(client));
+            writer.print("<html><body>");
+            writer.write("Not decorated");
+            writer.print("</body></html>");
+            writer.flush();
+            assertEquals("<html><body>Not decorated</body></html>", client.toString());
+
+            // A buffered page, decorated by a decorator whose dispatch blocks midway, then
+            // written to the client.
+            Buffer buffer = new Buffer("UTF-8");
+            PrintWriter bufferWriter = buffer.getWriter();
+            bufferWriter.print("<html><head><title>Page</title></head><body>Hello</body></html>");
+            bufferWriter.flush();
+            BaseSiteMeshContext context = new BaseSiteMeshContext(processor) {
+                @Override
+                protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
+                    out.write("<html><body>[");
+                    SlowWriter.block();
+                    out.write("<sitemesh:write property='body'/>]</body></html>");
+                }
+
+                public String getPath() {
+                    return "/page.html";
+                }
+            };
+            context.setMetrics(metrics);
+            context.setDecoratorSizeEstimates(estimates);
+            Content content = processor.build(buffer.toCharBuffer(), context);
+            SlowWriter decorated = new SlowWriter();
+            context.decorate("/decorators/main.html", content).getData().writeValueTo(decorated);
+            return decorated.toString();
+        }, "<html><body>[Hello]</body></html>");
+
+        assertEquals(TASKS, metrics.getStats(SiteMeshMetrics.Phase.DECORATE).getCount());
+        assertNoPinning();
+    }
+
+    public void testReloadingConfigWhileServingRequestsDoesNotPin() throws Exception {
+        if (executor == null) {
+            return;
+        }
+        final ReloadingFilter filter = new ReloadingFilter();
+        filter.init(filterConfig(Map.of(
+                ConfigurableSiteMeshFilter.AUTO_RELOAD_PARAM, "true",
+                ConfigurableSiteMeshFilter.AUTO_RELOAD_INTERVAL_PARAM, "3600")));
+        final AtomicInteger served = new AtomicInteger();
+        try {
+            runAll(() -> {
+                if (served.incrementAndGet() % 4 == 0) {
+                    // Reloads read the config file, holding the config lock.
+                    filter.reload();
+                    return "reloaded";
+                }
+                filter.doFilter(null, null, (request, response) -> SlowWriter.block());
+                return "served";
+            }, null);
+        } finally {
+            filter.destroy();
+        }
+
+        assertEquals(TASKS / 4 + 1, filter.setups.get());
+        assertNoPinning();
+    }
+
+    public void testWaitingForAConcurrentRenderDoesNotPin() throws Exception {
+        if (executor == null) {
+            return;
+        }
+        final ResponseCache responseCache = new ResponseCache(60000, TASKS);
+        final AtomicInteger requests = new AtomicInteger();
+
+        runAll(() -> {
+            // Groups of requests for the same page, one of which renders it.
+            String key = "/page-" + requests.incrementAndGet() % 10;
+            ResponseCache.Ticket ticket = responseCache.acquire(key);
+            if (ticket.isLeader()) {
+                SlowWriter.block();
+                ticket.complete(new ResponseCache.CachedResponse(key.getBytes("UTF-8"), "text/html", -1,
+                        System.nanoTime() + 60000000000L));
+                return key;
+            }
+            return ticket.getCachedResponse() != null ? new String(ticket.getCachedResponse().getBody(), "UTF-8") : key;
+        }, null);
+
+        assertEquals(10, responseCache.size());
+        assertNoPinning();
+    }
+
+    public void testDetectsPinning() throws Exception {
+        if (executor == null || Runtime.version().feature() >= 24) {
+            return;
+        }
+        final Object monitor = new Object();
+        executor.submit(() -> {
+            synchronized (monitor) {
+                Thread.sleep(20);
+            }
+            return null;
+        }).get();
+
+        assertFalse("a sleep inside synchronized should be reported as pinning", pinnedEvents().isEmpty());
+    }
+
+    /**
+     * @param expected The result every task should return, or null to only check that none failed.
+     */
+    private void runAll(Callable<String> task, String expected) throws Exception {
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < TASKS; i++) {
+            results.add(executor.submit(task));
+        }
+        for (Future<String> result : results) {
+            String actual = result.get();
+            if (expected != null) {
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    private static FilterConfig filterConfig(final Map<String, String> initParams) {
+        return (FilterConfig) Proxy.newProxyInstance(
+                VirtualThreadPinningTest.class.getClassLoader(),
+                new Class<?>[]{FilterConfig.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getFilterName" -> "sitemesh";
+                    case "getInitParameterNames" -> Collections.enumeration(initParams.keySet());
+                    case "getInitParameter" -> initParams.get((String) args[0]);
+                    default -> null;
+                });
+    }
+
+    private void assertNoPinning() throws IOException {
+        List<RecordedEvent> pinned = pinnedEvents();
+        assertTrue("virtual threads were pinned: " + pinned, pinned.isEmpty());
+        assertFalse("pinned thread traced: " + out, out.toString().contains("<== monitors"));
+    }
+
+    private List<RecordedEvent> pinnedEvents() throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("sitemesh-pinning", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals(PINNED_EVENT)) {
+                    events.add(event);
+                }
+            }
+            return events;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * A client connection that is slow to take the bytes written to it.
+     */
+    private static final class SlowWriter extends Writer {
+        private final StringBuilder written = new StringBuilder();
+
+        static void block() throws IOException {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            block();
+            written.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String string, int offset, int length) throws IOException {
+            block();
+            written.append(string, offset, offset + length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            block();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return written.toString();
+        }
+    }
+
+    /**
+     * A container's response writer: like those of servlet containers, it writes through
+     * without taking {@link PrintWriter}'s monitor.
+     */
+    private static final class ContainerWriter extends PrintWriter {
+        private final Writer client;
+
+        ContainerWriter(Writer client) {
+            super(client);
+            this.client = client;
+        }
+
+        @Override
+        public void write(int c) {
+            write(String.valueOf((char) c));
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            try {
+                client.write(chars, offset, length);
+            } catch (IOException e) {
+                setError();
+            }
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            try {
+                client.write(string, offset, length);
+            } catch (IOException e) {
+                setError();
+            }
+        }
+
+        @Override
+        public void write(String string) {
+            write(string, 0, string.length());
+        }
+
+        @Override
+        public void write(char[] chars) {
+            write(chars, 0, chars.length);
+        }
+
+        @Override
+        public void print(String string) {
+            write(String.valueOf(string));
+        }
+
+        @Override
+        public void flush() {
+            try {
+                client.flush();
+            } catch (IOException e) {
+                setError();
+            }
+        }
+    }
+
+    /**
+     * Reloads on demand, with a setup that blocks like reading the config file does.
+     */
+    private static final class ReloadingFilter extends ConfigurableSiteMeshFilter {
+        private final AtomicInteger setups = new AtomicInteger();
+
+        @Override
+        protected Filter setup() {
+            try {
+                SlowWriter.block();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            setups.incrementAndGet();
+            return (request, response, chain) -> chain.doFilter(request, response);
+        }
+
+        @Override
+        protected boolean reloadRequired() {
+            return true;
+        }
+
+        void reload() throws Exception {
+            reloadIfNecessary();
+        }
+    }
+
+    /**
+     * @return An executor starting a virtual thread per task, or null if this JDK has none.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the background reloading of {@link ConfigurableSiteMeshFilter}.
+ */
+public class ConfigurableSiteMeshFilterTest extends TestCase {
+
+    private static final long WAIT_MILLIS = 10000;
+
+    private File configFile;
+    private CountingFilter filter;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        configFile = File.createTempFile("sitemesh3", ".xml");
+        writeConfig("<sitemesh><mapping path='/*' decorator='first.html'/></sitemesh>");
+        filter = new CountingFilter();
+        Map<String, String> initParams = new HashMap<String, String>();
+        initParams.put(ConfigurableSiteMeshFilter.CONFIG_FILE_PARAM, configFile.getAbsolutePath());
+        initParams.put(ConfigurableSiteMeshFilter.AUTO_RELOAD_INTERVAL_PARAM, "1");
+        filter.init(createFilterConfig(initParams));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        filter.destroy();
+        configFile.delete();
+        super.tearDown();
+    }
+
+    public void testPicksUpChangedConfigWithoutARequest() throws Exception {
+        assertDecorators("/WEB-INF/decorators/first.html");
+
+        writeConfig("<sitemesh><mapping path='/*' decorator='second.html'/></sitemesh>");
+        filter.awaitSetups(2);
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!Arrays.equals(new String[]{"/WEB-INF/decorators/second.html"}, selectDecorators())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertDecorators("/WEB-INF/decorators/second.html");
+    }
+
+    public void testKeepsPreviousFilterWhenReloadFails() throws Exception {
+        Filter deployed = filter.getDeployedFilter();
+
+        writeConfig("<sitemesh><mapping path='/*'");
+        filter.awaitSetups(2);
+
+        assertSame(deployed, filter.getDeployedFilter());
+        assertDecorators("/WEB-INF/decorators/first.html");
+    }
+
+    public void testStopsReloaderThreadOnDestroy() throws Exception {
+        Thread reloader = findReloaderThread();
+        assertNotNull(reloader);
+
+        filter.destroy();
+
+        reloader.join(WAIT_MILLIS);
+        assertFalse(reloader.isAlive());
+    }
+
+    private void writeConfig(String xml) throws IOException {
+        long previous = configFile.length() > 0 ? configFile.lastModified() : 0;
+        Files.writeString(configFile.toPath(), xml);
+        // Make sure the change shows even on file systems with a coarse timestamp resolution.
+        configFile.setLastModified(Math.max(System.currentTimeMillis(), previous + 2000));
+    }
+
+    private String[] selectDecorators() {
+        return ((PathBasedDecoratorSelector<?>) filter.getDecoratorSelector()).selectDecoratorPaths("/page.html");
+    }
+
+    private void assertDecorators(String... expected) {
+        assertEquals(Arrays.asList(expected), Arrays.asList(selectDecorators()));
+    }
+
+    private static Thread findReloaderThread() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("sitemesh-config-reloader") && thread.isAlive()) {
+                return thread;
+            }
+        }
+        return null;
+    }
+
+    private static FilterConfig createFilterConfig(final Map<String, String> initParams) {
+        final ServletContext servletContext = (ServletContext) Proxy.newProxyInstance(
+                ConfigurableSiteMeshFilterTest.class.getClassLoader(),
+                new Class<?>[]{ServletContext.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getFilterRegistrations" -> Collections.emptyMap();
+                    default -> null;
+                });
+        return (FilterConfig) Proxy.newProxyInstance(
+                ConfigurableSiteMeshFilterTest.class.getClassLoader(),
+                new Class<?>[]{FilterConfig.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getFilterName" -> "sitemesh";
+                    case "getServletContext" -> servletContext;
+                    case "getInitParameterNames" -> Collections.enumeration(initParams.keySet());
+                    case "getInitParameter" -> initParams.get((String) args[0]);
+                    default -> null;
+                });
+    }
+
+    /**
+     * Counts the filters built, whether or not they could be, and exposes the deployed one.
+     */
+    private static class CountingFilter extends ConfigurableSiteMeshFilter {
+        private final AtomicInteger setups = new AtomicInteger();
+        private volatile Filter deployedFilter;
+
+        @Override
+        protected Filter setup() throws ServletException {
+            try {
+                return super.setup();
+            } finally {
+                setups.incrementAndGet();
+            }
+        }
+
+        @Override
+        protected void deployNewFilter(Filter newFilter) throws ServletException {
+            super.deployNewFilter(newFilter);
+            deployedFilter = newFilter;
+        }
+
+        Filter getDeployedFilter() {
+            return deployedFilter;
+        }
+
+        void awaitSetups(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+            while (setups.get() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue("Expected the reloader to build the filter " + count + " times, was " + setups.get(),
+                    setups.get() >= count);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.config;
+
+import junit.framework.TestCase;
+import org.sitemesh.SiteMeshContext;
+import org.sitemesh.SiteMeshContextStub;
+import org.sitemesh.content.Content;
+import org.sitemesh.content.ContentProcessor;
+import org.sitemesh.content.memory.InMemoryContent;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+public class PathBasedContentProcessorTest extends TestCase {
+
+    private final NamedProcessor core = new NamedProcessor("core");
+    private final NamedProcessor legacy = new NamedProcessor("legacy");
+    private final NamedProcessor office = new NamedProcessor("office");
+
+    public void testSelectsProcessorBasedOnContentPath() throws IOException {
+        ContentProcessor processor = new PathBasedContentProcessor(core)
+                .put("/legacy/*", legacy)
+                .put("/legacy/office/*", office);
+
+        assertEquals("core", build(processor, "/index.html"));
+        assertEquals("legacy", build(processor, "/legacy/page.html"));
+        assertEquals("office", build(processor, "/legacy/office/report.html"));
+    }
+
+    public void testSeesProfilesAddedAfterSelection() throws IOException {
+        PathBasedContentProcessor processor = new PathBasedContentProcessor(core);
+
+        assertSame(core, processor.selectProcessor("/legacy/page.html"));
+        processor.put("/legacy/*", legacy);
+        assertSame(legacy, processor.selectProcessor("/legacy/page.html"));
+        processor.getPathMapper().put("/legacy/page.html", office);
+        assertSame(legacy, processor.selectProcessor("/legacy/page.html"));
+        processor.clearResolutionCache();
+        assertSame(office, processor.selectProcessor("/legacy/page.html"));
+    }
+
+    private String build(ContentProcessor processor, String path) throws IOException {
+        Content content = processor.build(CharBuffer.wrap(""), new SiteMeshContextStub().withPath(path));
+        return content.getExtractedProperties().getValue();
+    }
+
+    private static class NamedProcessor implements ContentProcessor {
+        private final String name;
+
+        NamedProcessor(String name) {
+            this.name = name;
+        }
+
+        public Content build(CharBuffer data, SiteMeshContext context) {
+            Content content = new InMemoryContent();
+            content.getExtractedProperties().setValue(name);
+            return content;
+        }
+    }
+}
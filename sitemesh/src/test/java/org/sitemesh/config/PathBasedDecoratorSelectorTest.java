@@ -68,6 +68,43 @@ public class PathBasedDecoratorSelectorTest extends TestCase {
                 new SiteMeshContextStub().withPath("/b/foo")).length);
     }
 
+    public void testSeesMappingsAndPrefixChangedAfterSelection() throws IOException {
+        PathBasedDecoratorSelector selector = new PathBasedDecoratorSelector()
+                .put("/*", "default");
+
+        assertEquals("default", join(selector.selectDecoratorPaths("/a/foo")));
+        selector.put("/a/*", " A ", " ");
+        assertEquals("A", join(selector.selectDecoratorPaths("/a/foo")));
+        selector.setPrefix("/decorators/");
+        assertEquals("/decorators/A", join(selector.selectDecoratorPaths("/a/foo")));
+        selector.getPathMapper().put("/a/foo", new String[] {"foo"});
+        selector.clearResolutionCache();
+        assertEquals("/decorators/foo", join(selector.selectDecoratorPaths("/a/foo")));
+    }
+
+    public void testChangingSelectedPathsDoesNotAffectLaterSelections() {
+        PathBasedDecoratorSelector selector = new PathBasedDecoratorSelector()
+                .put("/*", "default");
+
+        selector.selectDecoratorPaths("/a/foo")[0] = "changed";
+        assertEquals("default", join(selector.selectDecoratorPaths("/a/foo")));
+    }
+
+    public void testCallsOverriddenConvertPathsForEverySelection() {
+        final int[] conversions = new int[1];
+        PathBasedDecoratorSelector selector = new PathBasedDecoratorSelector() {
+            @Override
+            protected String[] convertPaths(String[] paths) {
+                conversions[0]++;
+                return super.convertPaths(paths);
+            }
+        }.put("/*", "default");
+
+        assertEquals("default", join(selector.selectDecoratorPaths("/a/foo")));
+        assertEquals("default", join(selector.selectDecoratorPaths("/a/foo")));
+        assertEquals(2, conversions[0]);
+    }
+
     private static String join(String... strings) {
         StringBuilder result = new StringBuilder();
         for (String string : strings) {
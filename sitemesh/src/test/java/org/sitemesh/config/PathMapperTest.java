@@ -16,6 +16,11 @@
 
 package org.sitemesh.config;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
 import junit.framework.TestCase;
 
 /**
@@ -120,4 +125,75 @@ public class PathMapperTest extends TestCase {
         assertEquals("default", pathMapper.get("/file_with_underscores-and-dashes.test"));
         assertEquals("default", pathMapper.get("/tuuuu*/file.with.dots.test.txt"));
     }
+
+    public void testLongestComplexKeyWins() throws Exception {
+        pathMapper = new PathMapper<String>();
+        pathMapper.put("/*", "short");
+        pathMapper.put("/admin/*", "longer");
+        pathMapper.put("/admin/*.html", "longest");
+        assertEquals("longest", pathMapper.get("/admin/users/list.html"));
+        assertEquals("longer", pathMapper.get("/admin/users/list.jsp"));
+        assertEquals("short", pathMapper.get("/public/index.html"));
+    }
+
+    public void testRecompilesAfterPatternsChange() throws Exception {
+        assertEquals("default", pathMapper.get("/reports/2026/summary.pdf"));
+        pathMapper.put("/reports/*.pdf", "reports");
+        assertEquals("reports", pathMapper.get("/reports/2026/summary.pdf"));
+    }
+
+    public void testMatchesNonAsciiCharacters() throws Exception {
+        pathMapper = new PathMapper<String>();
+        pathMapper.put("/caf\u00e9/*", "cafe");
+        pathMapper.put("/*/\u00fcber?", "uber");
+        assertEquals("cafe", pathMapper.get("/caf\u00e9/men\u00fc"));
+        assertEquals("uber", pathMapper.get("/x/\u00fcber\u4e2d"));
+        assertNull(pathMapper.get("/cafe/menu"));
+    }
+
+    public void testAgreesWithWildcardSemanticsForManyPatterns() throws Exception {
+        Random random = new Random(42);
+        String[] parts = {"/", "a", "b", "admin", ".html", ".jsp", "*", "?", "x"};
+        pathMapper = new PathMapper<String>();
+        List<String> patterns = new ArrayList<String>();
+        for (int i = 0; i < 400; i++) {
+            StringBuilder pattern = new StringBuilder("/");
+            for (int j = random.nextInt(6); j >= 0; j--) {
+                pattern.append(parts[random.nextInt(parts.length)]);
+            }
+            if (PathMapper.isComplexKey(pattern.toString()) && !patterns.contains(pattern.toString())) {
+                patterns.add(pattern.toString());
+                pathMapper.put(pattern.toString(), pattern.toString());
+            }
+        }
+        String[] pathParts = {"/", "a", "b", "admin", ".html", ".jsp", "x", "y"};
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder path = new StringBuilder("/");
+            for (int j = random.nextInt(8); j >= 0; j--) {
+                path.append(pathParts[random.nextInt(pathParts.length)]);
+            }
+            String expected = null;
+            for (String pattern : patterns) {
+                if (toRegex(pattern).matcher(path).matches()
+                        && (expected == null || pattern.length() > expected.length())) {
+                    expected = pattern;
+                }
+            }
+            assertEquals(path.toString(), expected, pathMapper.getPatternInUse(path.toString()));
+        }
+    }
+
+    private static Pattern toRegex(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : pattern.toCharArray()) {
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
 }
\ No newline at end of file
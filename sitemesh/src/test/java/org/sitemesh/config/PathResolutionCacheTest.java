@@ -0,0 +1,82 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.config;
+
+import junit.framework.TestCase;
+
+public class PathResolutionCacheTest extends TestCase {
+
+    public void testRemembersResolvedValues() {
+        PathResolutionCache<String> cache = new PathResolutionCache<String>();
+        assertNull(cache.get("/a"));
+
+        cache.put("/a", "A");
+        cache.put("/b", "B");
+        assertEquals("A", cache.get("/a"));
+        assertEquals("B", cache.get("/b"));
+        assertEquals(2, cache.size());
+    }
+
+    public void testIgnoresNullPaths() {
+        PathResolutionCache<String> cache = new PathResolutionCache<String>();
+        cache.put(null, "A");
+        assertNull(cache.get(null));
+        assertEquals(0, cache.size());
+    }
+
+    public void testStaysWithinBound() {
+        PathResolutionCache<Integer> cache = new PathResolutionCache<Integer>(64);
+        for (int i = 0; i < 10000; i++) {
+            cache.put("/page/" + i, i);
+        }
+        assertTrue(cache.size() <= 64);
+        assertEquals(Integer.valueOf(9999), cache.get("/page/9999"));
+    }
+
+    public void testEvictsLeastRecentlyUsedEntry() {
+        PathResolutionCache<String> cache = new PathResolutionCache<String>(1);
+        cache.put("/a", "A");
+        cache.put("/b", "B");
+        assertNull(cache.get("/a"));
+        assertEquals("B", cache.get("/b"));
+
+        cache = new PathResolutionCache<String>(2);
+        cache.put("/a", "A");
+        cache.put("/b", "B");
+        cache.get("/a");
+        cache.put("/c", "C");
+        assertEquals("A", cache.get("/a"));
+        assertNull(cache.get("/b"));
+        assertEquals("C", cache.get("/c"));
+    }
+
+    public void testClearRemovesAllEntries() {
+        PathResolutionCache<String> cache = new PathResolutionCache<String>();
+        cache.put("/a", "A");
+        cache.clear();
+        assertNull(cache.get("/a"));
+        assertEquals(0, cache.size());
+    }
+
+    public void testRejectsNonPositiveBound() {
+        try {
+            new PathResolutionCache<String>(0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
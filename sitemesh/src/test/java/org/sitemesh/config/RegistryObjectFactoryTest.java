@@ -0,0 +1,96 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.DecoratorSelector;
+import org.sitemesh.content.tagrules.TagRuleBundle;
+import org.sitemesh.content.tagrules.html.CoreHtmlTagRuleBundle;
+
+public class RegistryObjectFactoryTest extends TestCase {
+
+    /** Fails any attempt to fall back to another factory, i.e. to reflection. */
+    private static final ObjectFactory NO_REFLECTION = new ObjectFactory() {
+        public Object create(String name) {
+            throw new AssertionError("Fell back to reflection for " + name);
+        }
+    };
+
+    public void testCreatesEveryBuiltInWithoutReflection() {
+        RegistryObjectFactory objectFactory = new RegistryObjectFactory(NO_REFLECTION);
+        for (String name : RegistryObjectFactory.BUILT_INS.keySet()) {
+            Object object = objectFactory.create(name);
+            assertEquals(name, object.getClass().getName());
+            assertTrue(name, object instanceof TagRuleBundle || object instanceof DecoratorSelector);
+        }
+    }
+
+    public void testCreatesNewInstanceEveryTime() {
+        RegistryObjectFactory objectFactory = new RegistryObjectFactory();
+        String name = CoreHtmlTagRuleBundle.class.getName();
+        assertNotSame(objectFactory.create(name), objectFactory.create(name));
+    }
+
+    public void testRegistersApplicationClasses() {
+        RegistryObjectFactory objectFactory = new RegistryObjectFactory(NO_REFLECTION)
+                .register(StringBuilder.class, StringBuilder::new);
+        assertTrue(objectFactory.create(StringBuilder.class.getName()) instanceof StringBuilder);
+        assertTrue(objectFactory.getNames().contains(StringBuilder.class.getName()));
+    }
+
+    public void testRejectsUnregisteredNamesWithoutFallback() {
+        try {
+            new RegistryObjectFactory().create(StringBuilder.class.getName());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    public void testDefaultFactoryCreatesBuiltInsWithoutReflection() {
+        ObjectFactory objectFactory = new ObjectFactory.Default();
+        for (String name : RegistryObjectFactory.BUILT_INS.keySet()) {
+            assertEquals(name, objectFactory.create(" " + name + " ").getClass().getName());
+        }
+    }
+
+    public void testNativeImageMetadataCoversBuiltIns() throws IOException {
+        String reflectConfig = readResource("/META-INF/native-image/org.sitemesh/sitemesh/reflect-config.json");
+        for (String name : RegistryObjectFactory.BUILT_INS.keySet()) {
+            assertTrue(name, reflectConfig.contains("\"" + name + "\""));
+        }
+        assertTrue(reflectConfig.contains("\"" + ConfigurableSiteMeshFilter.class.getName() + "\""));
+    }
+
+    private static String readResource(String name) throws IOException {
+        InputStream in = RegistryObjectFactoryTest.class.getResourceAsStream(name);
+        assertNotNull(name, in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toString(StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+}
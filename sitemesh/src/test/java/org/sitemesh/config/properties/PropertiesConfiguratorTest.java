@@ -29,6 +29,7 @@ import org.sitemesh.SiteMeshContext;
 import org.sitemesh.SiteMeshContextStub;
 import org.sitemesh.DecoratorSelector;
 import org.sitemesh.config.ObjectFactory;
+import org.sitemesh.config.PathBasedContentProcessor;
 import org.sitemesh.builder.BaseSiteMeshBuilder;
 import org.sitemesh.builder.SiteMeshFilterBuilder;
 import org.sitemesh.tagprocessor.State;
@@ -114,6 +115,28 @@ public class PropertiesConfiguratorTest extends TestCase {
         }
     }
 
+    public void testAddsTagRuleBundleProfiles() {
+        properties.put(PropertiesConfigurator.TAG_RULE_BUNDLES_PARAM, MyTagRuleBundle.class.getName());
+        properties.put(PropertiesConfigurator.TAG_RULE_BUNDLE_PROFILES_PARAM,
+                "/legacy/*=" + AnotherTagRuleBundle.class.getName());
+        propertiesConfigurator.configureCommon(builder);
+
+        PathBasedContentProcessor contentProcessor = (PathBasedContentProcessor) builder.getContentProcessor();
+
+        // Other paths only get the common bundles.
+        TagRuleBundle[] ruleBundles = ((TagBasedContentProcessor) contentProcessor.selectProcessor("/page")).getTagRuleBundles();
+        assertEquals(3, ruleBundles.length);
+        assertEquals(MyTagRuleBundle.class, ruleBundles[2].getClass());
+
+        // The profile adds its bundles to the common ones.
+        ruleBundles = ((TagBasedContentProcessor) contentProcessor.selectProcessor("/legacy/page")).getTagRuleBundles();
+        assertEquals(4, ruleBundles.length);
+        assertEquals(CoreHtmlTagRuleBundle.class, ruleBundles[0].getClass());
+        assertEquals(DecoratorTagRuleBundle.class, ruleBundles[1].getClass());
+        assertEquals(MyTagRuleBundle.class, ruleBundles[2].getClass());
+        assertEquals(AnotherTagRuleBundle.class, ruleBundles[3].getClass());
+    }
+
     public void testSetsContentProcessor() throws IOException {
         properties.put(PropertiesConfigurator.CONTENT_PROCESSOR_PARAM, MyContentProcessor.class.getName());
         propertiesConfigurator.configureCommon(builder);
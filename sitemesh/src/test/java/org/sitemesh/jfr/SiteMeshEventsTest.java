@@ -0,0 +1,155 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.jfr;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.BaseSiteMeshContext;
+import org.sitemesh.SiteMeshContextStub;
+import org.sitemesh.content.Content;
+import org.sitemesh.content.ContentProcessor;
+import org.sitemesh.content.tagrules.TagBasedContentProcessor;
+import org.sitemesh.content.tagrules.decorate.DecoratorTagRuleBundle;
+import org.sitemesh.content.tagrules.html.CoreHtmlTagRuleBundle;
+
+public class SiteMeshEventsTest extends TestCase {
+
+    private Recording recording;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        recording = new Recording();
+        recording.enable(SiteMeshParseEvent.class).withoutThreshold();
+        recording.enable(SiteMeshDecoratorDispatchEvent.class).withoutThreshold();
+        recording.enable(SiteMeshDecorateEvent.class).withoutThreshold();
+        recording.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        recording.close();
+        super.tearDown();
+    }
+
+    private List<RecordedEvent> stop(String name) throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("sitemesh", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals(name)) {
+                    events.add(event);
+                }
+            }
+            return events;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testRecordsDecorating() throws IOException {
+        BaseSiteMeshContext context = new BaseSiteMeshContext((data, ctx) -> null) {
+            @Override
+            protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
+                out.write("<html>decorated</html>");
+            }
+
+            public String getPath() {
+                return "/page.html";
+            }
+        };
+        context.decorate("/decorators/main.html", null);
+
+        List<RecordedEvent> events = stop("org.sitemesh.SiteMeshDecorate");
+        assertEquals(1, events.size());
+        assertEquals("/page.html", events.get(0).getString("path"));
+        assertEquals("/decorators/main.html", events.get(0).getString("decoratorPath"));
+        assertEquals("<html>decorated</html>".length(), events.get(0).getLong("outputLength"));
+    }
+
+    public void testRecordsDecoratorDispatch() throws IOException {
+        BaseSiteMeshContext context = new BaseSiteMeshContext((data, ctx) -> null) {
+            @Override
+            protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
+                out.write("<html></html>");
+            }
+
+            public String getPath() {
+                return "/page.html";
+            }
+        };
+        context.decorate("/a.html", null);
+        context.decorate("/b.html", null);
+
+        List<RecordedEvent> events = stop("org.sitemesh.SiteMeshDecoratorDispatch");
+        assertEquals(2, events.size());
+        assertEquals("/a.html", events.get(0).getString("decoratorPath"));
+        assertEquals("/b.html", events.get(1).getString("decoratorPath"));
+        assertEquals(13, events.get(1).getLong("outputLength"));
+    }
+
+    public void testRecordsParsing() throws IOException {
+        TagBasedContentProcessor processor = new TagBasedContentProcessor(new CoreHtmlTagRuleBundle());
+        String html = "<html><head><title>Hi</title></head><body>Hello</body></html>";
+        processor.build(CharBuffer.wrap(html), new SiteMeshContextStub().withPath("/page.html"));
+
+        List<RecordedEvent> events = stop("org.sitemesh.SiteMeshParse");
+        assertEquals(1, events.size());
+        assertEquals("/page.html", events.get(0).getString("path"));
+        assertEquals(html.length(), events.get(0).getLong("inputLength"));
+        assertEquals(1, events.get(0).getInt("ruleBundleCount"));
+    }
+
+    public void testRecordsParsingOfMergedDecorator() throws IOException {
+        // Merging the page into the decorator leaves the decorator's body buffer made of
+        // several parts (a CharSequenceList), the page's body among them.
+        final ContentProcessor processor = new TagBasedContentProcessor(
+                new CoreHtmlTagRuleBundle(), new DecoratorTagRuleBundle());
+        BaseSiteMeshContext context = new BaseSiteMeshContext(processor) {
+            @Override
+            protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
+                out.write("<html><body>[<sitemesh:write property='body'/>]</body></html>");
+            }
+
+            public String getPath() {
+                return "/page.html";
+            }
+        };
+        Content content = processor.build(CharBuffer.wrap("<html><body>Hello</body></html>"), context);
+        StringBuilder merged = new StringBuilder();
+        context.decorate("/decorators/main.html", content).getData().writeValueTo(merged);
+
+        List<RecordedEvent> events = stop("org.sitemesh.SiteMeshParse");
+        assertEquals(2, events.size());
+        assertEquals("<html><body>[Hello]</body></html>", merged.toString());
+        assertEquals(merged.length(), events.get(1).getLong("outputLength"));
+    }
+}
@@ -24,6 +24,10 @@ import org.sitemesh.content.tagrules.html.CoreHtmlTagRuleBundle;
 import org.sitemesh.offline.directory.Directory;
 import org.sitemesh.offline.directory.InMemoryDirectory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import static java.nio.CharBuffer.wrap;
 
 /**
@@ -131,4 +135,24 @@ public class SiteMeshOfflineTest extends TestCase {
                         "/PAGE",
                 destinationDir.load("/hello.html").toString());
     }
+
+    public void testProcessesManyFilesAtOnceAndReportsFailuresPerFile() throws Exception {
+        sourceDir.save("/mydecorator.html", wrap("Title = <sitemesh:write property='title'/>"));
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            sourceDir.save("/page" + i + ".html", wrap("<title>Page " + i + "</title>"));
+            paths.add("/page" + i + ".html");
+        }
+        paths.add("/missing.html");
+
+        decoratorSelector.put("/*", "/mydecorator.html");
+
+        Map<String, Exception> failures = offline.processAll(paths, 4);
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get("/missing.html").getMessage().contains("/missing.html"));
+        for (int i = 0; i < 50; i++) {
+            assertEquals("Title = Page " + i, destinationDir.load("/page" + i + ".html").toString());
+        }
+    }
 }
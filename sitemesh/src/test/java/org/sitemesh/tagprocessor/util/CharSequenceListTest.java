@@ -81,4 +81,19 @@ public class CharSequenceListTest extends TestCase {
         assertEquals("hibye", charSequenceList.toString());
     }
 
+    public void testLengthIsTheSumOfTheLengthsOfItsItems() {
+        assertEquals(0, charSequenceList.length());
+
+        CharSequenceList child = new CharSequenceList();
+        child.append("hi");
+        StringBuilder referenced = new StringBuilder();
+        charSequenceList.append("<start>");
+        charSequenceList.append(child);
+        charSequenceList.append(referenced);
+        assertEquals("<start>hi".length(), charSequenceList.length());
+
+        referenced.append("later");
+        assertEquals(charSequenceList.toString().length(), charSequenceList.length());
+    }
+
 }
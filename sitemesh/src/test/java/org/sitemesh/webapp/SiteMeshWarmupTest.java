@@ -0,0 +1,98 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp;
+
+import java.io.File;
+import java.io.IOException;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.builder.SiteMeshFilterBuilder;
+
+/**
+ * Tests {@link SiteMeshWarmup} through a complete {@link WebEnvironment}.
+ */
+public class SiteMeshWarmupTest extends TestCase {
+
+    private TempDir dir;
+    private SiteMeshFilter filter;
+    private WebEnvironment web;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = new TempDir("warmup");
+        dir.write("decorators/main.html", "<html><body>Warm: <sitemesh:write property='body'/></body></html>");
+        filter = (SiteMeshFilter) new SiteMeshFilterBuilder()
+                .addDecoratorPath("/*", "/decorators/main.html")
+                .addDecoratorPath("/admin/*", "/decorators/admin")
+                .addExcludedPath("/static/*")
+                .setStaticDecorators(true)
+                .setWarmupIterations(10)
+                .create();
+        web = new WebEnvironment.Builder()
+                .setRootDir(new File(dir.getFullPath()))
+                .addServlet("/content", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        response.setContentType("text/html; charset=UTF-8");
+                        response.getWriter().write("<html><body>Content</body></html>");
+                    }
+                })
+                .addFilter("/*", filter)
+                .create();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        dir.delete();
+        super.tearDown();
+    }
+
+    public void testCompletesWhenFilterIsInitialized() throws Exception {
+        assertTrue(filter.getWarmup().isComplete());
+        assertTrue(filter.isWarmedUp());
+    }
+
+    public void testLoadsStaticDecoratorsBeforeFirstRequest() throws Exception {
+        // Only a decorator loaded during warmup can still be applied.
+        assertTrue(new File(dir.getFullPath(), "decorators/main.html").delete());
+        web.doGet("/content");
+        assertEquals(200, web.getStatus());
+        assertEquals("<html><body>Warm: Content</body></html>", web.getBody());
+    }
+
+    public void testFilterWithoutWarmupIsWarm() throws Exception {
+        SiteMeshFilter cold = (SiteMeshFilter) new SiteMeshFilterBuilder()
+                .addDecoratorPath("/*", "/decorators/main.html")
+                .create();
+        assertNull(cold.getWarmup());
+        assertTrue(cold.isWarmedUp());
+    }
+
+    public void testSamplePathMatchesPattern() throws Exception {
+        assertEquals("/admin/warmup", SiteMeshWarmup.samplePath("/admin/*"));
+        assertEquals("/page-w.html", SiteMeshWarmup.samplePath("/page-?.html"));
+        assertEquals("/exact", SiteMeshWarmup.samplePath("/exact"));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp;
+
+import java.io.File;
+import java.io.IOException;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.DecoratorVersionRegistry;
+import org.sitemesh.builder.SiteMeshFilterBuilder;
+
+/**
+ * Tests {@link StaticDecoratorSource} through a complete {@link WebEnvironment}. No default
+ * servlet is installed, so static decorators can only be applied by reading them directly.
+ */
+public class StaticDecoratorSourceTest extends TestCase {
+
+    private TempDir dir;
+    private DecoratorVersionRegistry registry;
+    private WebEnvironment web;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = new TempDir("static-decorators");
+        dir.write("decorators/main.html", "<html><body>Static: <sitemesh:write property='body'/></body></html>");
+        registry = new DecoratorVersionRegistry(0);
+        web = new WebEnvironment.Builder()
+                .setRootDir(new File(dir.getFullPath()))
+                .addServlet("/content", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        response.setContentType("text/html");
+                        response.getWriter().write("<html><body>Content</body></html>");
+                    }
+                })
+                .addServlet("/admin/content", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        response.setContentType("text/html");
+                        response.getWriter().write("<html><body>Admin</body></html>");
+                    }
+                })
+                .addServlet("/decorators/dynamic", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        response.setContentType("text/html");
+                        response.getWriter().write("<html><body>Dynamic: <sitemesh:write property='body'/></body></html>");
+                    }
+                })
+                .addFilter("/*", new SiteMeshFilterBuilder()
+                        .addDecoratorPath("/*", "/decorators/main.html")
+                        .addDecoratorPath("/admin/*", "/decorators/dynamic")
+                        .setStaticDecorators(true)
+                        .setDecoratorVersionRegistry(registry)
+                        .create())
+                .create();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        dir.delete();
+        super.tearDown();
+    }
+
+    public void testReadsStaticDecoratorsWithoutDispatching() throws Exception {
+        web.doGet("/content");
+        assertEquals(200, web.getStatus());
+        assertEquals("<html><body>Static: Content</body></html>", web.getBody());
+    }
+
+    public void testDispatchesToOtherDecorators() throws Exception {
+        web.doGet("/admin/content");
+        assertEquals("<html><body>Dynamic: Admin</body></html>", web.getBody());
+    }
+
+    public void testReadsDecoratorAgainOnceChanged() throws Exception {
+        web.doGet("/content");
+        assertEquals("<html><body>Static: Content</body></html>", web.getBody());
+
+        dir.write("decorators/main.html", "<html><body>Edited: <sitemesh:write property='body'/></body></html>");
+        web.doGet("/content");
+        assertEquals("<html><body>Static: Content</body></html>", web.getBody());
+
+        new File(dir.getFullPath(), "decorators/main.html").setLastModified(System.currentTimeMillis() + 60000);
+        registry.checkNow();
+        web.doGet("/content");
+        assertEquals("<html><body>Edited: Content</body></html>", web.getBody());
+    }
+}
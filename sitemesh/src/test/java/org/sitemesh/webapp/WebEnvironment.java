@@ -155,6 +155,7 @@ public class WebEnvironment {
         private final ServletContextHandler context;
         private ServerConnector connector;
         private EnumSet DEFAULT = EnumSet.of(DispatcherType.REQUEST);
+        private boolean asyncSupported = false;
 
         public Builder() throws IOException, URISyntaxException {
             server = new Server();
@@ -163,14 +164,25 @@ public class WebEnvironment {
             server.addConnector(connector);
         }
 
+        /**
+         * Whether Servlets and Filters added after this call support async processing.
+         */
+        public Builder setAsyncSupported(boolean asyncSupported) {
+            this.asyncSupported = asyncSupported;
+            return this;
+        }
+
         public Builder addServlet(String path, HttpServlet servlet) {
-            context.addServlet(new ServletHolder(servlet), path);
+            ServletHolder servletHolder = new ServletHolder(servlet);
+            servletHolder.setAsyncSupported(asyncSupported);
+            context.addServlet(servletHolder, path);
             return this;
         }
 
         public Builder addServlet(String path, Class<? extends HttpServlet> servletClass, Map<String,String> params) {
             ServletHolder servletHolder = new ServletHolder(servletClass);
             servletHolder.setInitParameters(params);
+            servletHolder.setAsyncSupported(asyncSupported);
             context.addServlet(servletHolder, path);
             return this;
         }
@@ -206,13 +218,16 @@ public class WebEnvironment {
         }
 
         public Builder addFilter(String path, Filter filter) {
-            context.addFilter(new FilterHolder(filter), path, DEFAULT);
+            FilterHolder filterHolder = new FilterHolder(filter);
+            filterHolder.setAsyncSupported(asyncSupported);
+            context.addFilter(filterHolder, path, DEFAULT);
             return this;
         }
 
         public Builder addFilter(String path, Class<? extends Filter> filterClass, Map<String,String> params) {
             FilterHolder filterHolder = new FilterHolder(filterClass);
             filterHolder.setInitParameters(params);
+            filterHolder.setAsyncSupported(asyncSupported);
             context.addFilter(filterHolder, path, DEFAULT);
             return this;
         }
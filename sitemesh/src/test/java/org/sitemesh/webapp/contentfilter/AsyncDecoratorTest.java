@@ -0,0 +1,165 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.builder.SiteMeshFilterBuilder;
+import org.sitemesh.webapp.WebEnvironment;
+
+/**
+ * Tests {@link AsyncDecorator} through a complete {@link WebEnvironment}.
+ */
+public class AsyncDecoratorTest extends TestCase {
+
+    private static final String DECORATED = "<html><body>Decorated: Async content</body></html>";
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private WebEnvironment createWebEnvironment(AsyncDecorator asyncDecorator, final boolean failDecorator)
+            throws Exception {
+        return new WebEnvironment.Builder()
+                .setAsyncSupported(true)
+                .addServlet("/async", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        final AsyncContext asyncContext = request.startAsync();
+                        new Thread(new Runnable() {
+                            public void run() {
+                                try {
+                                    HttpServletResponse asyncResponse = (HttpServletResponse) asyncContext.getResponse();
+                                    asyncResponse.setContentType("text/html");
+                                    asyncResponse.getWriter().write("<html><body>Async content</body></html>");
+                                } catch (IOException e) {
+                                    throw new RuntimeException(e);
+                                } finally {
+                                    asyncContext.complete();
+                                }
+                            }
+                        }).start();
+                    }
+                })
+                .addServlet("/sync", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        response.setContentType("text/html");
+                        response.getWriter().write("<html><body>Async content</body></html>");
+                    }
+                })
+                .addServlet("/WEB-INF/decorators/decorator", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        if (failDecorator) {
+                            throw new ServletException("Broken decorator");
+                        }
+                        response.setContentType("text/html");
+                        response.getWriter().write("<html><body>Decorated: <sitemesh:write property='body'/></body></html>");
+                    }
+                })
+                .addFilter("/*", new SiteMeshFilterBuilder()
+                        .addDecoratorPath("/*", "decorator")
+                        .setAsyncDecorator(asyncDecorator)
+                        .create())
+                .create();
+    }
+
+    private AsyncDecorator countingDecorator() {
+        return new AsyncDecorator(new Executor() {
+            public void execute(Runnable command) {
+                executions.incrementAndGet();
+                new Thread(command).start();
+            }
+        });
+    }
+
+    public void testDecoratesCompletedAsyncRequestsOnExecutor() throws Exception {
+        WebEnvironment web = createWebEnvironment(countingDecorator(), false);
+
+        web.doGet("/async");
+        assertEquals(200, web.getStatus());
+        assertEquals(DECORATED, web.getBody());
+        assertEquals(1, executions.get());
+    }
+
+    public void testDecoratesSynchronousRequestsInline() throws Exception {
+        WebEnvironment web = createWebEnvironment(countingDecorator(), false);
+
+        web.doGet("/sync");
+        assertEquals(DECORATED, web.getBody());
+        assertEquals(0, executions.get());
+    }
+
+    public void testUsesDefaultExecutor() throws Exception {
+        WebEnvironment web = createWebEnvironment(new AsyncDecorator(), false);
+
+        web.doGet("/async");
+        assertEquals(DECORATED, web.getBody());
+    }
+
+    public void testFallbackThreadPoolIsBounded() throws Exception {
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) AsyncDecorator.createThreadPool();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            int threads = Runtime.getRuntime().availableProcessors();
+            assertEquals(threads, pool.getMaximumPoolSize());
+            int capacity = threads * AsyncDecorator.QUEUED_REQUESTS_PER_THREAD;
+            for (int i = 0; i < threads + capacity; i++) {
+                pool.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertEquals(capacity, pool.getQueue().size());
+
+            // Full: the next task runs on the submitting thread rather than a new one.
+            final Thread[] ranOn = new Thread[1];
+            pool.execute(() -> ranOn[0] = Thread.currentThread());
+            assertSame(Thread.currentThread(), ranOn[0]);
+            assertEquals(threads, pool.getPoolSize());
+        } finally {
+            release.countDown();
+            pool.shutdown();
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    public void testAnswersDecorationFailuresWithServerError() throws Exception {
+        WebEnvironment web = createWebEnvironment(countingDecorator(), true);
+
+        web.doGet("/async");
+        assertEquals(500, web.getStatus());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+
+import junit.framework.TestCase;
+
+public class DecorationPlanTest extends TestCase {
+
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+    private DispatcherType dispatcherType = DispatcherType.REQUEST;
+    private int pathLookups;
+
+    private final HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+            DecorationPlanTest.class.getClassLoader(),
+            new Class<?>[]{HttpServletRequest.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getAttribute" -> attributes.get((String) args[0]);
+                case "setAttribute" -> attributes.put((String) args[0], args[1]);
+                case "getDispatcherType" -> dispatcherType;
+                case "getServletPath" -> {
+                    pathLookups++;
+                    yield "/page.html";
+                }
+                default -> null;
+            });
+
+    public void testIsCreatedOnceAndStoredOnTheRequest() {
+        DecorationPlan plan = DecorationPlan.forRequest(request);
+        assertSame(plan, DecorationPlan.get(request));
+        assertSame(plan, DecorationPlan.forRequest(request));
+        assertEquals(1, attributes.size());
+    }
+
+    public void testResolvesPathOnce() {
+        DecorationPlan plan = DecorationPlan.forRequest(request);
+        assertNull(plan.getPath());
+        assertEquals("/page.html", plan.resolvePath(request));
+        assertEquals("/page.html", plan.resolvePath(request));
+        assertEquals(1, pathLookups);
+    }
+
+    public void testIsSharedWithIncludesAndForwards() {
+        DecorationPlan plan = DecorationPlan.forRequest(request);
+        plan.markApplied();
+        dispatcherType = DispatcherType.INCLUDE;
+        assertSame(plan, DecorationPlan.forRequest(request));
+        dispatcherType = DispatcherType.FORWARD;
+        assertSame(plan, DecorationPlan.forRequest(request));
+    }
+
+    public void testErrorDispatchCanBeAppliedAgainButNotDecoratedTwice() {
+        DecorationPlan plan = DecorationPlan.forRequest(request);
+        plan.markApplied();
+
+        dispatcherType = DispatcherType.ERROR;
+        DecorationPlan errorPlan = DecorationPlan.forRequest(request);
+        assertNotSame(plan, errorPlan);
+        assertSame(plan, errorPlan.getParent());
+        assertFalse(errorPlan.isApplied());
+        assertFalse(errorPlan.isDecorated());
+
+        plan.markDecorated();
+        assertTrue(errorPlan.isDecorated());
+    }
+
+    public void testAsyncDispatchInheritsApplied() {
+        DecorationPlan plan = DecorationPlan.forRequest(request);
+        plan.markApplied();
+        dispatcherType = DispatcherType.ASYNC;
+        DecorationPlan asyncPlan = DecorationPlan.forRequest(request);
+        assertNotSame(plan, asyncPlan);
+        assertTrue(asyncPlan.isApplied());
+        assertSame(asyncPlan, DecorationPlan.forRequest(request));
+    }
+
+    public void testBasicSelectorAppliesOncePerRequest() {
+        BasicSelector selector = new BasicSelector("text/html");
+        assertTrue(selector.shouldBufferForRequest(request));
+        assertFalse(selector.shouldBufferForRequest(request));
+        dispatcherType = DispatcherType.ERROR;
+        assertTrue(selector.shouldBufferForRequest(request));
+        assertFalse(selector.shouldBufferForRequest(request));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.builder.SiteMeshFilterBuilder;
+import org.sitemesh.webapp.WebEnvironment;
+
+/**
+ * Tests conditional GET support ({@link ETagGenerator}) through a complete {@link WebEnvironment}.
+ */
+public class ETagGeneratorTest extends TestCase {
+
+    private static final String DECORATED = "<html><body>Decorated: Content</body></html>";
+
+    private AtomicInteger decoratorCount;
+    private AtomicInteger contentCount;
+
+    private WebEnvironment createWebEnvironment(ETagGenerator eTagGenerator) throws Exception {
+        decoratorCount = new AtomicInteger();
+        contentCount = new AtomicInteger();
+        return new WebEnvironment.Builder()
+                .addServlet("/content", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        contentCount.incrementAndGet();
+                        response.setContentType("text/html");
+                        response.getWriter().write("<html><body>Content</body></html>");
+                    }
+                })
+                .addServlet("/tagged", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        contentCount.incrementAndGet();
+                        if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+                            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                            return;
+                        }
+                        response.setHeader("ETag", "\"v1\"");
+                        response.setContentType("text/html");
+                        response.getWriter().write("<html><body>Content</body></html>");
+                    }
+                })
+                .addServlet("/WEB-INF/decorators/decorator", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        decoratorCount.incrementAndGet();
+                        response.setContentType("text/html");
+                        response.getWriter().write("<html><body>Decorated: <sitemesh:write property='body'/></body></html>");
+                    }
+                })
+                .addFilter("/*", new SiteMeshFilterBuilder()
+                        .addDecoratorPath("/*", "decorator")
+                        .setETagGenerator(eTagGenerator)
+                        .create())
+                .create();
+    }
+
+    public void testAnswersMatchingIfNoneMatchWithNotModified() throws Exception {
+        WebEnvironment web = createWebEnvironment(new ETagGenerator("1"));
+
+        web.doGet("/content");
+        assertEquals(DECORATED, web.getBody());
+        String eTag = web.getHeader("ETag");
+        assertNotNull(eTag);
+
+        web.doGet("/content", "If-None-Match", eTag);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, web.getStatus());
+        assertEquals(eTag, web.getHeader("ETag"));
+
+        web.doGet("/content", "If-None-Match", "\"something-else\"");
+        assertEquals(DECORATED, web.getBody());
+    }
+
+    public void testTagChangesWithDecoratorVersion() throws Exception {
+        WebEnvironment web = createWebEnvironment(new ETagGenerator("1"));
+        web.doGet("/content");
+        String eTag = web.getHeader("ETag");
+
+        web = createWebEnvironment(new ETagGenerator("2"));
+        web.doGet("/content", "If-None-Match", eTag);
+        assertEquals(DECORATED, web.getBody());
+        assertFalse(eTag.equals(web.getHeader("ETag")));
+    }
+
+    public void testSkipsDecorationWhenPageValidatorIsUnchanged() throws Exception {
+        WebEnvironment web = createWebEnvironment(new ETagGenerator("1"));
+
+        web.doGet("/tagged");
+        assertEquals(DECORATED, web.getBody());
+        String eTag = web.getHeader("ETag");
+        assertFalse("The page's own ETag must not be sent for the decorated page", "\"v1\"".equals(eTag));
+        assertEquals(1, decoratorCount.get());
+
+        web.doGet("/tagged", "If-None-Match", eTag);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, web.getStatus());
+        assertEquals(eTag, web.getHeader("ETag"));
+        assertEquals(2, contentCount.get());
+        assertEquals("Decorator should not be dispatched", 1, decoratorCount.get());
+    }
+
+    public void testDecoratesAgainWhenDecoratorVersionChanged() throws Exception {
+        WebEnvironment web = createWebEnvironment(new ETagGenerator("1"));
+        web.doGet("/tagged");
+        String eTag = web.getHeader("ETag");
+
+        web = createWebEnvironment(new ETagGenerator("2"));
+        web.doGet("/tagged", "If-None-Match", eTag);
+        assertEquals(DECORATED, web.getBody());
+        assertEquals(1, decoratorCount.get());
+    }
+
+    public void testSendsNoETagsByDefault() throws Exception {
+        WebEnvironment web = createWebEnvironment(null);
+        web.doGet("/content");
+        assertEquals(DECORATED, web.getBody());
+        assertNull(web.getHeader("ETag"));
+    }
+}
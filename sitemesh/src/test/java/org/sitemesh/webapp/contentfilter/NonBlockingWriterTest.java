@@ -0,0 +1,256 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.builder.SiteMeshFilterBuilder;
+import org.sitemesh.webapp.WebEnvironment;
+
+/**
+ * Tests {@link NonBlockingWriter} through a complete {@link WebEnvironment}.
+ */
+public class NonBlockingWriterTest extends TestCase {
+
+    private final StringBuilder largeContent = new StringBuilder();
+    private final RecordingFilter recorder = new RecordingFilter();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Several chunks, so the WriteListener is called back more than once.
+        while (largeContent.length() < NonBlockingWriter.CHUNK_SIZE * 5) {
+            largeContent.append("<p>Some paragraph of content.</p>\n");
+        }
+    }
+
+    private WebEnvironment createWebEnvironment(boolean asyncSupported, int threshold) throws Exception {
+        return new WebEnvironment.Builder()
+                .setAsyncSupported(asyncSupported)
+                .addServlet("/content", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        response.setContentType("text/html");
+                        response.getWriter().write("<html><body>" + largeContent + "</body></html>");
+                    }
+                })
+                .addServlet("/WEB-INF/decorators/decorator", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        response.setContentType("text/html");
+                        response.getWriter().write("<html><body>Decorated: <sitemesh:write property='body'/></body></html>");
+                    }
+                })
+                .addFilter("/*", recorder)
+                .addFilter("/*", new SiteMeshFilterBuilder()
+                        .addDecoratorPath("/*", "decorator")
+                        .setNonBlockingWriteThreshold(threshold)
+                        .create())
+                .create();
+    }
+
+    public void testWritesLargeDecoratedPagesWithoutBlocking() throws Exception {
+        WebEnvironment web = createWebEnvironment(true, 0);
+
+        web.doGet("/content");
+        assertEquals(200, web.getStatus());
+        assertEquals("<html><body>Decorated: " + largeContent + "</body></html>", web.getBody());
+        assertEquals(1, recorder.writeListeners.get());
+        assertTrue(recorder.callbackWrites.get() >= 5);
+        assertEquals(0, recorder.blockingWrites.get());
+    }
+
+    public void testFallsBackToBlockingWritesWithoutAsyncSupport() throws Exception {
+        WebEnvironment web = createWebEnvironment(false, 0);
+
+        web.doGet("/content");
+        assertEquals("<html><body>Decorated: " + largeContent + "</body></html>", web.getBody());
+        assertEquals(0, recorder.writeListeners.get());
+        assertTrue(recorder.blockingWrites.get() > 0);
+    }
+
+    public void testUsesBlockingWritesBelowThreshold() throws Exception {
+        WebEnvironment web = createWebEnvironment(true, Integer.MAX_VALUE);
+
+        web.doGet("/content");
+        assertEquals("<html><body>Decorated: " + largeContent + "</body></html>", web.getBody());
+        assertEquals(0, recorder.writeListeners.get());
+        assertTrue(recorder.blockingWrites.get() > 0);
+    }
+
+    public void testGivesUpWhenClientDoesNotReadInTime() throws Exception {
+        final List<AsyncListener> asyncListeners = new ArrayList<AsyncListener>();
+        final long[] timeout = new long[1];
+        final AtomicInteger completions = new AtomicInteger();
+        AsyncContext asyncContext = (AsyncContext) Proxy.newProxyInstance(
+                NonBlockingWriterTest.class.getClassLoader(),
+                new Class<?>[]{AsyncContext.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "addListener" -> asyncListeners.add((AsyncListener) args[0]);
+                    case "setTimeout" -> timeout[0] = (Long) args[0];
+                    case "complete" -> completions.incrementAndGet();
+                    default -> null;
+                });
+        final SlowClientOutputStream out = new SlowClientOutputStream();
+        HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(
+                NonBlockingWriterTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class},
+                (proxy, method, args) -> method.getName().equals("getOutputStream") ? out : null);
+
+        new NonBlockingWriter(0, 250).write(asyncContext, response, new byte[NonBlockingWriter.CHUNK_SIZE * 3]);
+        assertEquals(250, timeout[0]);
+
+        out.listener.onWritePossible(); // The client takes one chunk, then stops reading.
+        assertEquals(NonBlockingWriter.CHUNK_SIZE, out.written);
+        for (AsyncListener asyncListener : asyncListeners) {
+            asyncListener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        assertEquals(1, completions.get());
+
+        out.ready = true;
+        out.listener.onWritePossible();
+        assertEquals("nothing is written after the timeout", NonBlockingWriter.CHUNK_SIZE, out.written);
+        assertEquals(1, completions.get());
+    }
+
+    /**
+     * Accepts one write, then is not ready until told otherwise.
+     */
+    private static class SlowClientOutputStream extends ServletOutputStream {
+        WriteListener listener;
+        boolean ready = true;
+        int written;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            listener = writeListener;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written += len;
+            ready = false;
+        }
+    }
+
+    /**
+     * Counts the writes that reach the real response, telling apart those made from a
+     * {@link WriteListener} callback from ordinary blocking ones.
+     */
+    private static class RecordingFilter implements Filter {
+        final AtomicInteger writeListeners = new AtomicInteger();
+        final AtomicInteger callbackWrites = new AtomicInteger();
+        final AtomicInteger blockingWrites = new AtomicInteger();
+
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            chain.doFilter(request, new HttpServletResponseWrapper((HttpServletResponse) response) {
+                private ServletOutputStream out;
+
+                @Override
+                public ServletOutputStream getOutputStream() throws IOException {
+                    if (out == null) {
+                        out = new RecordingOutputStream(super.getOutputStream());
+                    }
+                    return out;
+                }
+            });
+        }
+
+        private class RecordingOutputStream extends ServletOutputStream {
+            private final ServletOutputStream delegate;
+            private volatile boolean inCallback;
+
+            RecordingOutputStream(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+                writeListeners.incrementAndGet();
+                delegate.setWriteListener(new WriteListener() {
+                    public void onWritePossible() throws IOException {
+                        inCallback = true;
+                        try {
+                            writeListener.onWritePossible();
+                        } finally {
+                            inCallback = false;
+                        }
+                    }
+
+                    public void onError(Throwable t) {
+                        writeListener.onError(t);
+                    }
+                });
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                (inCallback ? callbackWrites : blockingWrites).incrementAndGet();
+                delegate.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                delegate.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Locale;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+
+import junit.framework.TestCase;
+
+public class RequestExclusionsTest extends TestCase {
+
+    private static HttpServletRequest request(String contextPath, String uri, DispatcherType dispatcherType) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                RequestExclusionsTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getContextPath" -> contextPath;
+                    case "getRequestURI" -> uri;
+                    case "getDispatcherType" -> dispatcherType;
+                    default -> null;
+                });
+    }
+
+    private static HttpServletRequest request(String uri) {
+        return request("", uri, DispatcherType.REQUEST);
+    }
+
+    public void testExcludesExtensionsIgnoringCase() {
+        RequestExclusions exclusions = new RequestExclusions(List.of(".css", "png"), List.of(), List.of());
+        assertTrue(exclusions.isExcluded(request("/style.css")));
+        assertTrue(exclusions.isExcluded(request("/img/LOGO.PNG")));
+        assertTrue(exclusions.isExcluded(request("/style.css;jsessionid=abc")));
+        assertFalse(exclusions.isExcluded(request("/page.html")));
+        assertFalse(exclusions.isExcluded(request("/style.css/page")));
+        assertFalse(exclusions.isExcluded(request("/css")));
+    }
+
+    public void testExcludesOverlappingExtensions() {
+        RequestExclusions exclusions = new RequestExclusions(List.of(".js", ".mjs", ".map"), List.of(), List.of());
+        assertTrue(exclusions.isExcluded(request("/app.js")));
+        assertTrue(exclusions.isExcluded(request("/app.mjs")));
+        assertTrue(exclusions.isExcluded(request("/app.js.map")));
+        assertFalse(exclusions.isExcluded(request("/app.json")));
+    }
+
+    public void testExcludesPrefixesAfterContextPath() {
+        RequestExclusions exclusions = new RequestExclusions(List.of(), List.of("/assets/"), List.of());
+        assertTrue(exclusions.isExcluded(request("/shop", "/shop/assets/site.css", DispatcherType.REQUEST)));
+        assertTrue(exclusions.isExcluded(request("/assets/logo")));
+        assertFalse(exclusions.isExcluded(request("/shop", "/assets/site.css", DispatcherType.REQUEST)));
+        assertFalse(exclusions.isExcluded(request("/assets")));
+        assertFalse(exclusions.isExcluded(request("/Assets/logo")));
+        assertFalse(exclusions.isExcluded(request("/page/assets/logo")));
+    }
+
+    public void testExcludesDispatcherTypes() {
+        RequestExclusions exclusions = new RequestExclusions(List.of(), List.of(), List.of(DispatcherType.INCLUDE));
+        assertTrue(exclusions.isExcluded(request("", "/page.html", DispatcherType.INCLUDE)));
+        assertFalse(exclusions.isExcluded(request("", "/page.html", DispatcherType.REQUEST)));
+    }
+
+    public void testExcludesNothingByDefault() {
+        RequestExclusions exclusions = new RequestExclusions(List.of(" "), List.of(), List.of());
+        assertTrue(exclusions.isEmpty());
+        assertFalse(exclusions.isExcluded(request("/style.css")));
+        assertFalse(exclusions.isExcluded(request(null)));
+    }
+
+    public void testNormalizesExtensions() {
+        RequestExclusions exclusions = new RequestExclusions(List.of("CSS", ".Js"), List.of(), List.of());
+        assertEquals(List.of(".css", ".js"), exclusions.getExtensions());
+    }
+
+    public void testNormalizesExtensionsWhateverTheDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            RequestExclusions exclusions = new RequestExclusions(List.of("HTML", "GIF"), List.of(), List.of());
+            assertEquals(List.of(".html", ".gif"), exclusions.getExtensions());
+            assertTrue(exclusions.isExcluded(request("/page.html")));
+            assertTrue(exclusions.isExcluded(request("/LOGO.GIF")));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.builder.SiteMeshFilterBuilder;
+import org.sitemesh.webapp.WebEnvironment;
+
+/**
+ * Tests the {@link ResponseCache} through a complete {@link WebEnvironment}.
+ */
+public class ResponseCacheTest extends TestCase {
+
+    private static final long LAST_MODIFIED = 1700000000000L;
+
+    private CountingServlet contentServlet;
+    private CountingServlet datedServlet;
+    private CountingServlet validatedServlet;
+    private CountingServlet decoratorServlet;
+
+    private WebEnvironment createWebEnvironment(ResponseCache responseCache) throws Exception {
+        contentServlet = new CountingServlet("<html><head><title>Title</title></head><body>Content</body></html>");
+        decoratorServlet = new CountingServlet("<html><body>Decorated: <sitemesh:write property='body'/></body></html>") {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                    throws ServletException, IOException {
+                response.setDateHeader("Last-Modified", LAST_MODIFIED);
+                super.doGet(request, response);
+            }
+        };
+        datedServlet = new CountingServlet("<html><body>Dated</body></html>") {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                    throws ServletException, IOException {
+                response.setDateHeader("Last-Modified", LAST_MODIFIED);
+                super.doGet(request, response);
+            }
+        };
+        validatedServlet = new CountingServlet("<html><body>Validated</body></html>") {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                    throws ServletException, IOException {
+                if (request.getHeader("If-None-Match") != null) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+                super.doGet(request, response);
+            }
+        };
+        return new WebEnvironment.Builder()
+                .addServlet("/content", contentServlet)
+                .addServlet("/private", new CountingServlet("<html><body>Private</body></html>") {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        response.setHeader("Cache-Control", "private");
+                        super.doGet(request, response);
+                    }
+                })
+                .addServlet("/localized", new CountingServlet("<html><body>Localized</body></html>") {
+                    @Override
+                    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                            throws ServletException, IOException {
+                        response.setHeader("Cache-Control", "max-age=60");
+                        response.setHeader("Content-Language", "fr");
+                        response.addHeader("X-Page", "a");
+                        response.addHeader("X-Page", "b");
+                        super.doGet(request, response);
+                    }
+                })
+                .addServlet("/dated", datedServlet)
+                .addServlet("/validated", validatedServlet)
+                .addServlet("/WEB-INF/decorators/decorator", decoratorServlet)
+                .addFilter("/*", new SiteMeshFilterBuilder()
+                        .addDecoratorPath("/*", "decorator")
+                        .setResponseCache(responseCache)
+                        .create())
+                .create();
+    }
+
+    public void testServesRepeatedRequestsFromCache() throws Exception {
+        WebEnvironment web = createWebEnvironment(new ResponseCache(60000, 10));
+
+        web.doGet("/content");
+        assertEquals("<html><body>Decorated: Content</body></html>", web.getBody());
+        web.doGet("/content");
+        assertEquals("<html><body>Decorated: Content</body></html>", web.getBody());
+
+        assertEquals(1, contentServlet.count.get());
+        assertEquals(1, decoratorServlet.count.get());
+    }
+
+    public void testKeysOnQueryString() throws Exception {
+        WebEnvironment web = createWebEnvironment(new ResponseCache(60000, 10));
+
+        web.doGet("/content?page=1");
+        web.doGet("/content?page=2");
+        web.doGet("/content?page=1");
+
+        assertEquals(2, contentServlet.count.get());
+    }
+
+    public void testKeysOnVaryHeaders() throws Exception {
+        WebEnvironment web = createWebEnvironment(new ResponseCache(60000, 10, "Accept-Language"));
+
+        web.doGet("/content", "Accept-Language", "en");
+        assertEquals("Accept-Language", web.getHeader("Vary"));
+        web.doGet("/content", "Accept-Language", "fr");
+        web.doGet("/content", "Accept-Language", "en");
+        assertEquals("Accept-Language", web.getHeader("Vary"));
+
+        assertEquals(2, contentServlet.count.get());
+    }
+
+    public void testEvictsLeastRecentlyUsedEntries() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 2);
+        WebEnvironment web = createWebEnvironment(responseCache);
+
+        web.doGet("/content?page=1");
+        web.doGet("/content?page=2");
+        web.doGet("/content?page=1");
+        web.doGet("/content?page=3"); // Evicts page 2.
+        assertEquals(2, responseCache.size());
+        web.doGet("/content?page=1");
+        assertEquals(3, contentServlet.count.get());
+        web.doGet("/content?page=2");
+        assertEquals(4, contentServlet.count.get());
+    }
+
+    public void testKeysOnSchemeAndHost() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 10);
+
+        String key = responseCache.keyFor(request("http", "a.example.com", 80, null));
+        assertEquals(key, responseCache.keyFor(request("http", "a.example.com", 80, null)));
+        assertFalse(key.equals(responseCache.keyFor(request("http", "b.example.com", 80, null))));
+        assertFalse(key.equals(responseCache.keyFor(request("https", "a.example.com", 443, null))));
+    }
+
+    public void testDoesNotCacheRequestsFromIdentifiedUsers() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 10);
+
+        assertNull(responseCache.keyFor(request("http", "localhost", 80, null, "Authorization", "Basic dXNlcg==")));
+        assertNull(responseCache.keyFor(request("http", "localhost", 80, "session")));
+
+        WebEnvironment web = createWebEnvironment(responseCache);
+        web.doGet("/content", "Authorization", "Basic dXNlcg==");
+        web.doGet("/content", "Authorization", "Basic dXNlcg==");
+        assertEquals(2, contentServlet.count.get());
+        assertEquals(0, responseCache.size());
+    }
+
+    public void testCachesRequestsFromIdentifiedUsersWhenVaryingOnThem() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 10, "authorization", "Cookie");
+
+        assertNotNull(responseCache.keyFor(request("http", "localhost", 80, null, "Authorization", "Basic dXNlcg==")));
+        assertNotNull(responseCache.keyFor(request("http", "localhost", 80, "session", "Cookie", "JSESSIONID=session")));
+        assertFalse(responseCache.keyFor(request("http", "localhost", 80, null, "Authorization", "Basic dXNlcg=="))
+                .equals(responseCache.keyFor(request("http", "localhost", 80, null, "Authorization", "Basic b3RoZXI="))));
+    }
+
+    public void testDoesNotCachePrivateResponses() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 10);
+        WebEnvironment web = createWebEnvironment(responseCache);
+
+        web.doGet("/private");
+        assertEquals("<html><body>Decorated: Private</body></html>", web.getBody());
+        assertEquals(0, responseCache.size());
+    }
+
+    public void testReplaysHeadersSetByThePage() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 10);
+        WebEnvironment web = createWebEnvironment(responseCache);
+
+        web.doGet("/localized");
+        String rendered = web.getRawResponse();
+        web.doGet("/localized");
+
+        assertEquals(1, responseCache.getHitCount());
+        assertEquals("max-age=60", web.getHeader("Cache-Control"));
+        assertEquals("fr", web.getHeader("Content-Language"));
+        assertTrue(web.getRawResponse(), web.getRawResponse().contains("X-Page: a\nX-Page: b\n"));
+        assertEquals(rendered, web.getRawResponse());
+    }
+
+    public void testConditionalFirstRequestStillFillsTheCache() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 10);
+        WebEnvironment web = createWebEnvironment(responseCache);
+
+        web.doGet("/dated", "If-Modified-Since", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochMilli(LAST_MODIFIED).atOffset(ZoneOffset.UTC)));
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, web.getStatus());
+        assertEquals(1, responseCache.size());
+
+        web.doGet("/dated");
+        assertEquals("<html><body>Decorated: Dated</body></html>", web.getBody());
+        assertEquals(1, responseCache.getHitCount());
+        assertEquals(1, datedServlet.count.get());
+    }
+
+    public void testFirstRequestThePageWouldAnswerWithNotModifiedStillFillsTheCache() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 10);
+        WebEnvironment web = createWebEnvironment(responseCache);
+
+        web.doGet("/validated", "If-None-Match", "\"v1\"");
+        assertEquals("<html><body>Decorated: Validated</body></html>", web.getBody());
+
+        web.doGet("/validated");
+        assertEquals("<html><body>Decorated: Validated</body></html>", web.getBody());
+        assertEquals(1, responseCache.getHitCount());
+        assertEquals(1, validatedServlet.count.get());
+    }
+
+    public void testExpiresEntries() throws Exception {
+        WebEnvironment web = createWebEnvironment(new ResponseCache(1, 10));
+
+        web.doGet("/content");
+        Thread.sleep(10);
+        web.doGet("/content");
+
+        assertEquals(2, contentServlet.count.get());
+    }
+
+    public void testCoalescesConcurrentRequestsForTheSameKey() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 10);
+        String key = "/content";
+
+        ResponseCache.Ticket leader = responseCache.acquire(key);
+        assertTrue(leader.isLeader());
+
+        final ResponseCache.Ticket[] follower = new ResponseCache.Ticket[1];
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    follower[0] = responseCache.acquire(key);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+        Thread.sleep(50);
+        assertNull("Follower should wait for the leader", follower[0]);
+
+        ResponseCache.CachedResponse response
+                = new ResponseCache.CachedResponse(new byte[0], "text/html", -1, System.nanoTime() + 60000000000L);
+        leader.complete(response);
+        thread.join(5000);
+
+        assertFalse(follower[0].isLeader());
+        assertSame(response, follower[0].getCachedResponse());
+        assertSame(response, responseCache.get(key));
+
+        assertNotNull(responseCache.acquire(key).getCachedResponse());
+        assertEquals(2, responseCache.getHitCount());
+        assertEquals(1, responseCache.getMissCount());
+    }
+
+    public void testReleasesWaitingRequestsWhenResponseIsNotStored() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 10);
+        String key = "/private";
+
+        ResponseCache.Ticket leader = responseCache.acquire(key);
+        final ResponseCache.Ticket[] follower = new ResponseCache.Ticket[1];
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    follower[0] = responseCache.acquire(key);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+        Thread.sleep(50);
+
+        leader.complete(null);
+        thread.join(5000);
+        assertFalse(follower[0].isLeader());
+        assertNull(follower[0].getCachedResponse());
+
+        // Until it expires, requests for the key render straight away instead of waiting on each other.
+        ResponseCache.Ticket next = responseCache.acquire(key);
+        assertFalse(next.isLeader());
+        assertNull(next.getCachedResponse());
+        assertEquals(0, responseCache.size());
+    }
+
+    public void testKeepsCoalescingAfterAFailedRender() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 10);
+        String key = "/content";
+
+        ResponseCache.Ticket leader = responseCache.acquire(key);
+        leader.release();
+        leader.complete(null); // Already released, so this does not mark the key either.
+
+        assertTrue(responseCache.acquire(key).isLeader());
+    }
+
+    public void testStopsWaitingAfterMaxCoalesceWait() throws Exception {
+        ResponseCache responseCache = new ResponseCache(60000, 10);
+        responseCache.setMaxCoalesceWaitMillis(20);
+        String key = "/content";
+
+        ResponseCache.Ticket leader = responseCache.acquire(key);
+        assertTrue(leader.isLeader());
+        long start = System.nanoTime();
+        ResponseCache.Ticket follower = responseCache.acquire(key);
+        assertTrue(System.nanoTime() - start < 5000000000L);
+        assertFalse(follower.isLeader());
+        assertNull(follower.getCachedResponse());
+    }
+
+    private static HttpServletRequest request(String scheme, String serverName, int serverPort,
+                                              String requestedSessionId, String... headerPairs) {
+        final Map<String, String> headers = new HashMap<String, String>();
+        for (int i = 0; i < headerPairs.length; i += 2) {
+            headers.put(headerPairs[i].toLowerCase(Locale.ROOT), headerPairs[i + 1]);
+        }
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                ResponseCacheTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getMethod" -> "GET";
+                    case "getScheme" -> scheme;
+                    case "getServerName" -> serverName;
+                    case "getServerPort" -> serverPort;
+                    case "getRequestURI" -> "/content";
+                    case "getRequestedSessionId" -> requestedSessionId;
+                    case "getHeader" -> headers.get(((String) args[0]).toLowerCase(Locale.ROOT));
+                    case "getHeaders" -> headers.containsKey(((String) args[0]).toLowerCase(Locale.ROOT))
+                            ? Collections.enumeration(Collections.singletonList(headers.get(((String) args[0]).toLowerCase(Locale.ROOT))))
+                            : Collections.emptyEnumeration();
+                    default -> null;
+                });
+    }
+
+    private static class CountingServlet extends HttpServlet {
+        private final AtomicInteger count = new AtomicInteger();
+        private final String content;
+
+        CountingServlet(String content) {
+            this.content = content;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+            count.incrementAndGet();
+            response.setContentType("text/html");
+            response.getWriter().write(content);
+        }
+    }
+}
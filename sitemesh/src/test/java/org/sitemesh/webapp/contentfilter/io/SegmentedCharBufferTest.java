@@ -0,0 +1,77 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webapp.contentfilter.io;
+
+import java.io.PrintWriter;
+
+import junit.framework.TestCase;
+
+public class SegmentedCharBufferTest extends TestCase {
+
+    public void testKeepsContentInOrderAcrossSegments() {
+        SegmentedCharBuffer buffer = new SegmentedCharBuffer(4);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            buffer.write("item" + i);
+            buffer.write(',');
+            buffer.write(new char[] {'a', 'b', 'c'}, 1, 2);
+            buffer.append("xyz", 1, 3);
+            expected.append("item").append(i).append(',').append("bc").append("yz");
+        }
+        assertEquals(expected.length(), buffer.size());
+        assertEquals(expected.toString(), buffer.toCharBuffer().toString());
+
+        // Writing after the segments were joined continues where it left off.
+        buffer.write("!");
+        assertEquals(expected + "!", buffer.toString());
+    }
+
+    public void testReturnsViewWhenContentFitsFirstSegment() {
+        SegmentedCharBuffer buffer = new SegmentedCharBuffer(16);
+        buffer.write("hello");
+        assertTrue(buffer.toCharBuffer().hasArray());
+        assertEquals(16, buffer.toCharBuffer().array().length);
+        assertEquals("hello", buffer.toString());
+    }
+
+    public void testRoutablePrintWriterAppendsDirectlyToBuffer() {
+        final SegmentedCharBuffer buffer = new SegmentedCharBuffer(8);
+        RoutablePrintWriter writer = new RoutablePrintWriter(new RoutablePrintWriter.DestinationFactory() {
+            public PrintWriter activateDestination() {
+                throw new AssertionError("Should write to the buffer");
+            }
+        });
+        writer.updateDestination(new RoutablePrintWriter.BufferFactory() {
+            public SegmentedCharBuffer activateBuffer() {
+                return buffer;
+            }
+        });
+
+        writer.print("a");
+        writer.print(1);
+        writer.print(true);
+        writer.print('c');
+        writer.write("xyz", 1, 1);
+        writer.append((CharSequence) null);
+        writer.printf("%d-%s", 2, "b");
+        writer.println();
+        writer.flush();
+
+        assertFalse(writer.checkError());
+        assertEquals("a1truecynull2-b" + System.lineSeparator(), buffer.toString());
+    }
+}
@@ -17,13 +17,17 @@ package org.sitemesh.autoconfigure;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.sitemesh.SiteMeshContext;
 import org.sitemesh.config.DecoratorChains;
 import org.sitemesh.config.MetaTagBasedDecoratorSelector;
 import org.sitemesh.config.ObjectFactory;
+import org.sitemesh.config.PathBasedContentProcessor;
+import org.sitemesh.config.RegistryObjectFactory;
 import org.sitemesh.config.RequestAttributeDecoratorSelector;
 import org.sitemesh.content.ContentProcessor;
 import org.sitemesh.content.tagrules.TagBasedContentProcessor;
@@ -112,7 +116,9 @@ class DecoratorComponentsFactory {
      * a {@link TagBasedContentProcessor} over the default rule bundles
      * ({@link CoreHtmlTagRuleBundle}, {@link DecoratorTagRuleBundle},
      * {@link Sm2TagRuleBundle}) plus any classes named by
-     * {@code sitemesh.decorator.tagRuleBundles}.
+     * {@code sitemesh.decorator.tagRuleBundles}, wrapped in a
+     * {@link PathBasedContentProcessor} when
+     * {@code sitemesh.decorator.tagRuleBundleProfiles} are configured.
      */
     ContentProcessor buildContentProcessor() {
         List<TagRuleBundle> bundles = new ArrayList<>();
@@ -120,7 +126,48 @@ class DecoratorComponentsFactory {
         bundles.add(new DecoratorTagRuleBundle());
         bundles.add(new Sm2TagRuleBundle());
         bundles.addAll(createCustomTagRuleBundles());
-        return new TagBasedContentProcessor(bundles.toArray(new TagRuleBundle[0]));
+        ContentProcessor common = new TagBasedContentProcessor(bundles.toArray(new TagRuleBundle[0]));
+        Map<String, List<TagRuleBundle>> profiles = createTagRuleBundleProfiles();
+        if (profiles.isEmpty()) {
+            return common;
+        }
+        PathBasedContentProcessor processor = new PathBasedContentProcessor(common);
+        for (Map.Entry<String, List<TagRuleBundle>> profile : profiles.entrySet()) {
+            List<TagRuleBundle> profileBundles = new ArrayList<>(bundles);
+            profileBundles.addAll(profile.getValue());
+            processor.put(profile.getKey(), new TagBasedContentProcessor(profileBundles.toArray(new TagRuleBundle[0])));
+        }
+        return processor;
+    }
+
+    /**
+     * Instantiate the {@link TagRuleBundle}s of each
+     * {@code sitemesh.decorator.tagRuleBundleProfiles} entry, keyed by path.
+     * The filter integration passes these to
+     * {@code SiteMeshFilterBuilder.addTagRuleBundleProfile}.
+     */
+    Map<String, List<TagRuleBundle>> createTagRuleBundleProfiles() {
+        List<Map<String, String>> entries = decorator.getTagRuleBundleProfiles();
+        if (entries == null || entries.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, List<TagRuleBundle>> profiles = new LinkedHashMap<>();
+        for (Map<String, String> entry : entries) {
+            String path = entry.get("path");
+            String bundleNames = entry.get("bundles");
+            if (path == null || bundleNames == null) {
+                log.warn("Ignoring incomplete sitemesh.decorator.tagRuleBundleProfiles entry " + entry
+                        + " - each profile needs both a 'path' and a 'bundles' key.");
+                continue;
+            }
+            List<TagRuleBundle> bundles = profiles.computeIfAbsent(path, key -> new ArrayList<>());
+            for (String bundleName : bundleNames.split(",")) {
+                if (!bundleName.isBlank()) {
+                    bundles.add((TagRuleBundle) instantiate(bundleName.trim()));
+                }
+            }
+        }
+        return profiles;
     }
 
     /**
@@ -149,6 +196,11 @@ class DecoratorComponentsFactory {
      * living in a child or restart class loader (e.g. Spring Boot devtools).
      */
     private Object instantiate(String className) {
+        // Built-ins need no class loading, nor reflection (e.g. in a native image).
+        Supplier<?> builtIn = RegistryObjectFactory.BUILT_INS.get(className);
+        if (builtIn != null) {
+            return builtIn.get();
+        }
         try {
             return ClassUtils.forName(className, ClassUtils.getDefaultClassLoader())
                     .getDeclaredConstructor().newInstance();
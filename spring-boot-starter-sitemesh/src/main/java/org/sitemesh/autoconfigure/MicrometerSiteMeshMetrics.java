@@ -0,0 +1,161 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.autoconfigure;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.sitemesh.InMemorySiteMeshMetrics;
+import org.sitemesh.webapp.SiteMeshFilter;
+import org.sitemesh.webapp.StaticDecoratorSource;
+import org.sitemesh.webapp.contentfilter.ResponseCache;
+import org.springframework.beans.factory.ListableBeanFactory;
+
+/**
+ * {@link InMemorySiteMeshMetrics} that also publishes what it aggregates as
+ * Micrometer meters, read from the aggregates whenever the registry is
+ * scraped:
+ *
+ * <ul>
+ *     <li>{@code sitemesh.phase} (timer), {@code sitemesh.phase.max} and
+ *     {@code sitemesh.phase.percentile} (time gauges), tagged with the
+ *     {@code phase};</li>
+ *     <li>{@code sitemesh.decorator} (timer) and
+ *     {@code sitemesh.decorator.percentile}, tagged with the decorator
+ *     {@code path}, registered as decorators are first rendered;</li>
+ *     <li>{@code sitemesh.buffer.size.percentile} (gauge, in characters);</li>
+ *     <li>{@code sitemesh.requests} (counter), tagged with the
+ *     {@code outcome};</li>
+ *     <li>{@code sitemesh.cache.hits} and {@code sitemesh.cache.misses}
+ *     (counters), tagged with the {@code cache}.</li>
+ * </ul>
+ *
+ * <p>The learned render size estimates are not published, as they are keyed
+ * by view name; the {@link SiteMeshEndpoint} reports them.</p>
+ */
+public class MicrometerSiteMeshMetrics extends InMemorySiteMeshMetrics implements MeterBinder {
+
+    private final ListableBeanFactory beanFactory;
+    private volatile MeterRegistry registry;
+
+    /**
+     * Creates the metrics.
+     *
+     * @param beanFactory where to look up the SiteMesh filters whose caches
+     *                    are published, once bound to a registry
+     */
+    public MicrometerSiteMeshMetrics(ListableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Phase phase : Phase.values()) {
+            String name = phase.name().toLowerCase(Locale.ROOT);
+            FunctionTimer.builder("sitemesh.phase", this,
+                            metrics -> metrics.getStats(phase).getCount(),
+                            metrics -> metrics.getStats(phase).getTotalNanos(), TimeUnit.NANOSECONDS)
+                    .tag("phase", name)
+                    .description("Time spent in each phase of decorating a page")
+                    .register(registry);
+            TimeGauge.builder("sitemesh.phase.max", this, TimeUnit.NANOSECONDS,
+                            metrics -> metrics.getStats(phase).getMaxNanos())
+                    .tag("phase", name)
+                    .register(registry);
+            for (double percentile : SiteMeshEndpoint.PERCENTILES) {
+                TimeGauge.builder("sitemesh.phase.percentile", this, TimeUnit.NANOSECONDS,
+                                metrics -> metrics.getStats(phase).getNanosPercentile(percentile))
+                        .tags("phase", name, "percentile", String.valueOf(percentile))
+                        .register(registry);
+            }
+        }
+        for (double percentile : SiteMeshEndpoint.PERCENTILES) {
+            Gauge.builder("sitemesh.buffer.size.percentile", this,
+                            metrics -> metrics.getStats(Phase.BUFFER).getLengthHistogram().getPercentile(percentile))
+                    .tag("percentile", String.valueOf(percentile))
+                    .baseUnit("characters")
+                    .register(registry);
+        }
+        for (Outcome outcome : Outcome.values()) {
+            FunctionCounter.builder("sitemesh.requests", this, metrics -> metrics.getOutcomeCount(outcome))
+                    .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        for (SiteMeshFilter filter : SiteMeshEndpoint.filters(beanFactory)) {
+            ResponseCache responseCache = filter.getResponseCache();
+            if (responseCache != null) {
+                bindCache(registry, "response", responseCache,
+                        ResponseCache::getHitCount, ResponseCache::getMissCount);
+            }
+            if (filter.getDecoratorSource() instanceof StaticDecoratorSource staticDecorators) {
+                bindCache(registry, "static-decorators", staticDecorators,
+                        StaticDecoratorSource::getHitCount, StaticDecoratorSource::getMissCount);
+            }
+        }
+        this.registry = registry;
+        for (String decoratorPath : getDecoratorPaths()) {
+            bindDecorator(registry, decoratorPath);
+        }
+    }
+
+    @Override
+    protected void decoratorTracked(String decoratorPath) {
+        MeterRegistry registry = this.registry;
+        if (registry != null) {
+            bindDecorator(registry, decoratorPath);
+        }
+    }
+
+    private void bindDecorator(MeterRegistry registry, String decoratorPath) {
+        // Looked up on every read, as reset() replaces the decorators' aggregates.
+        FunctionTimer.builder("sitemesh.decorator", this,
+                        metrics -> decoratorValue(decoratorPath, Stats::getCount),
+                        metrics -> decoratorValue(decoratorPath, Stats::getTotalNanos), TimeUnit.NANOSECONDS)
+                .tag("path", decoratorPath)
+                .description("Time spent rendering each decorator")
+                .register(registry);
+        for (double percentile : SiteMeshEndpoint.PERCENTILES) {
+            TimeGauge.builder("sitemesh.decorator.percentile", this, TimeUnit.NANOSECONDS,
+                            metrics -> decoratorValue(decoratorPath, stats -> stats.getNanosPercentile(percentile)))
+                    .tags("path", decoratorPath, "percentile", String.valueOf(percentile))
+                    .register(registry);
+        }
+    }
+
+    private long decoratorValue(String decoratorPath, ToLongFunction<Stats> value) {
+        Stats stats = getDecoratorStats(decoratorPath);
+        return stats == null ? 0 : value.applyAsLong(stats);
+    }
+
+    private static <T> void bindCache(MeterRegistry registry, String name, T cache,
+                                      ToLongFunction<T> hits, ToLongFunction<T> misses) {
+        FunctionCounter.builder("sitemesh.cache.hits", cache, c -> hits.applyAsLong(c))
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("sitemesh.cache.misses", cache, c -> misses.applyAsLong(c))
+                .tag("cache", name)
+                .register(registry);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.autoconfigure;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.sitemesh.InMemorySiteMeshMetrics;
+import org.sitemesh.SiteMeshMetrics;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Auto-configuration that, when Spring Boot Actuator is on the classpath and
+ * {@code sitemesh.metrics.enabled=true} is set, has SiteMesh time each phase
+ * of decorating a page and reports the results through the {@code sitemesh}
+ * actuator endpoint — and as Micrometer meters when Micrometer is on the
+ * classpath too (see {@link MicrometerSiteMeshMetrics}).
+ *
+ * <p>Runs before both integrations, which pick up the {@link SiteMeshMetrics}
+ * bean it registers: the servlet filter ({@link SiteMeshAutoConfiguration})
+ * and the default delegating view resolver
+ * ({@link SiteMeshViewResolverAutoConfiguration}). The single-resolver
+ * compatibility wrap modes do not record metrics. Recording is opt-in, so
+ * that merely having Actuator on the classpath adds no cost to requests; an
+ * application-defined {@link SiteMeshMetrics} bean replaces the one
+ * registered here (the endpoint then needs it to be an
+ * {@link InMemorySiteMeshMetrics}).</p>
+ */
+@AutoConfiguration(before = { SiteMeshAutoConfiguration.class, SiteMeshViewResolverAutoConfiguration.class })
+@ConditionalOnClass(Endpoint.class)
+@ConditionalOnProperty(name = "sitemesh.metrics.enabled", havingValue = "true", matchIfMissing = false)
+public class SiteMeshActuatorAutoConfiguration {
+
+    /**
+     * Registers metrics that aggregate in memory, when Micrometer is not
+     * available.
+     *
+     * @return the metrics SiteMesh records to
+     */
+    @Bean
+    @ConditionalOnMissingBean(SiteMeshMetrics.class)
+    public InMemorySiteMeshMetrics siteMeshMetrics() {
+        return new InMemorySiteMeshMetrics();
+    }
+
+    /**
+     * Registers the {@code sitemesh} actuator endpoint.
+     *
+     * @param metrics the metrics SiteMesh records to
+     * @param beanFactory where the endpoint looks up SiteMesh filters and view resolvers
+     * @return the endpoint
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(InMemorySiteMeshMetrics.class)
+    @ConditionalOnAvailableEndpoint
+    public SiteMeshEndpoint siteMeshEndpoint(InMemorySiteMeshMetrics metrics, ListableBeanFactory beanFactory) {
+        return new SiteMeshEndpoint(metrics, beanFactory);
+    }
+
+    /**
+     * Publishes the metrics to Micrometer as well. Processed before the
+     * enclosing configuration's beans, so this metrics bean wins when
+     * Micrometer is on the classpath.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    static class MicrometerConfiguration {
+
+        /**
+         * Registers metrics that aggregate in memory and are published as
+         * Micrometer meters.
+         *
+         * @param beanFactory where to look up the SiteMesh filters whose caches are published
+         * @return the metrics SiteMesh records to
+         */
+        @Bean
+        @ConditionalOnMissingBean(SiteMeshMetrics.class)
+        MicrometerSiteMeshMetrics siteMeshMetrics(ListableBeanFactory beanFactory) {
+            return new MicrometerSiteMeshMetrics(beanFactory);
+        }
+    }
+}
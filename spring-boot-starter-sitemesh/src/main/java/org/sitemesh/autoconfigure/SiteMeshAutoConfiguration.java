@@ -18,18 +18,21 @@ package org.sitemesh.autoconfigure;
 
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
+import org.sitemesh.SiteMeshMetrics;
 import org.sitemesh.builder.SiteMeshFilterBuilder;
 import org.sitemesh.config.MetaTagBasedDecoratorSelector;
 import org.sitemesh.content.tagrules.TagRuleBundle;
 import org.sitemesh.webapp.DispatchMode;
 import org.sitemesh.webapp.WebAppContext;
 import org.sitemesh.webapp.contentfilter.Selector;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 import java.util.*;
 
@@ -52,6 +55,7 @@ import java.util.*;
 @AutoConfiguration
 @ConditionalOnProperty(name = "sitemesh.integration", havingValue = "filter")
 @EnableConfigurationProperties(SiteMeshProperties.class)
+@ImportRuntimeHints(SiteMeshRuntimeHints.class)
 public class SiteMeshAutoConfiguration {
 
     private final SiteMeshProperties properties;
@@ -112,11 +116,12 @@ public class SiteMeshAutoConfiguration {
         decorator.setMappings(mappings == null ? null : new ArrayList<Map<String, String>>(mappings));
         decorator.setTagRuleBundles(bundles);
         decorator.setExclusions(exclusions);
-        return makeFilter(decorator, includeErrorPages, alwaysApply, dispatchMode);
+        return makeFilter(decorator, includeErrorPages, alwaysApply, dispatchMode, null, null);
     }
 
     static Filter makeFilter(SiteMeshProperties.Decorator decorator, boolean includeErrorPages,
-                             boolean alwaysApply, DispatchMode dispatchMode) {
+                             boolean alwaysApply, DispatchMode dispatchMode, SiteMeshProperties.Filter filter,
+                             SiteMeshMetrics metrics) {
         DecoratorComponentsFactory factory = new DecoratorComponentsFactory(decorator);
         SiteMeshFilterBuilder builder = new SiteMeshFilterBuilder();
         MetaTagBasedDecoratorSelector<WebAppContext> decoratorSelector = factory.buildDecoratorSelector(false);
@@ -129,8 +134,37 @@ public class SiteMeshAutoConfiguration {
         for (TagRuleBundle bundle : factory.createCustomTagRuleBundles()) {
             builder.addTagRuleBundle(bundle);
         }
+        for (Map.Entry<String, List<TagRuleBundle>> profile : factory.createTagRuleBundleProfiles().entrySet()) {
+            builder.addTagRuleBundleProfile(profile.getKey(), profile.getValue());
+        }
         builder.setIncludeErrorPages(includeErrorPages);
         builder.setDispatchMode(dispatchMode);
+        builder.setMetrics(metrics);
+        if (filter != null && filter.getCache().isEnabled()) {
+            SiteMeshProperties.Cache cache = filter.getCache();
+            List<String> vary = cache.getVary() == null ? List.of() : cache.getVary();
+            builder.setResponseCache(cache.getTtl().toMillis(), cache.getMaxEntries(), vary.toArray(String[]::new));
+        }
+        if (filter != null) {
+            builder.setETags(filter.isEtags());
+            builder.setNonBlockingWriteThreshold(filter.getNonBlockingWriteThreshold());
+            builder.setAsyncDecoration(filter.isAsyncDecoration());
+            builder.setStaticDecorators(filter.isStaticDecorators());
+            if (filter.getDecoratorCheckInterval() != null) {
+                builder.setDecoratorChangeDetection(filter.getDecoratorCheckInterval().toMillis());
+            }
+            if (filter.getWarmupIterations() != null) {
+                builder.setWarmupIterations(filter.getWarmupIterations());
+            }
+            if (filter.getExcludedExtensions() != null) {
+                builder.addExcludedExtensions(filter.getExcludedExtensions());
+            }
+            if (filter.getExcludedPrefixes() != null) {
+                for (String prefix : filter.getExcludedPrefixes()) {
+                    builder.addExcludedPrefix(prefix);
+                }
+            }
+        }
         if (alwaysApply) {
             Selector basicSelector = builder.getSelector();
             builder.setCustomSelector(new Selector() {
@@ -164,14 +198,17 @@ public class SiteMeshAutoConfiguration {
      * registration also covers {@code ERROR} dispatches so container error
      * pages are decorated.
      *
+     * @param metrics the metrics the filter records to, if there is a
+     *                {@link SiteMeshMetrics} bean (see
+     *                {@link SiteMeshActuatorAutoConfiguration})
      * @return the SiteMesh filter registration
      */
     @Bean
     @ConditionalOnMissingBean(name = "sitemesh")
-    public FilterRegistrationBean<Filter> sitemesh() {
+    public FilterRegistrationBean<Filter> sitemesh(ObjectProvider<SiteMeshMetrics> metrics) {
         FilterRegistrationBean<Filter> registrationBean = new FilterRegistrationBean<>();
         registrationBean.setFilter(makeFilter(properties.getDecorator(), properties.isIncludeErrorPages(),
-                false, properties.getDispatchMode()));
+                false, properties.getDispatchMode(), properties.getFilter(), metrics.getIfAvailable()));
         registrationBean.addUrlPatterns("/*");
         if (properties.isIncludeErrorPages()) {
             registrationBean.setDispatcherTypes(EnumSet.of(DispatcherType.REQUEST, DispatcherType.ERROR));
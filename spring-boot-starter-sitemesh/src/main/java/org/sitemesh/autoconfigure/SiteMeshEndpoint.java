@@ -0,0 +1,230 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.autoconfigure;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jakarta.servlet.Filter;
+
+import org.sitemesh.InMemorySiteMeshMetrics;
+import org.sitemesh.LogHistogram;
+import org.sitemesh.SiteMeshMetrics;
+import org.sitemesh.SizeEstimate;
+import org.sitemesh.SizeEstimates;
+import org.sitemesh.webapp.SiteMeshFilter;
+import org.sitemesh.webapp.StaticDecoratorSource;
+import org.sitemesh.webapp.contentfilter.ResponseCache;
+import org.sitemesh.webmvc.RenderSizeEstimate;
+import org.sitemesh.webmvc.SiteMeshViewResolver;
+import org.sitemesh.webmvc.StaticDecoratorViews;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+
+/**
+ * Actuator endpoint ({@code /actuator/sitemesh}) reporting what SiteMesh has
+ * recorded in the {@link InMemorySiteMeshMetrics} bean: per-phase and
+ * per-decorator counts and latency percentiles, a histogram of buffered page
+ * sizes, how many requests were decorated, passed through or aborted, the
+ * {@link RenderSizeEstimate}s learned per view and the buffer size estimates
+ * per decorator, and the hit ratios of the filter's response cache and static
+ * decorator cache and of the view resolver's static decorator views.
+ *
+ * <p>Percentiles come from logarithmic histograms, so they are upper bounds
+ * that overestimate by at most 25%. Times are reported in milliseconds and
+ * lengths in characters.</p>
+ */
+@Endpoint(id = "sitemesh")
+public class SiteMeshEndpoint {
+
+    /** Percentiles reported for every phase and decorator. */
+    static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    private final InMemorySiteMeshMetrics metrics;
+    private final ListableBeanFactory beanFactory;
+
+    /**
+     * Creates the endpoint.
+     *
+     * @param metrics the metrics SiteMesh records to
+     * @param beanFactory where to look up the SiteMesh filters and view
+     *                    resolvers whose caches and estimates are reported
+     */
+    public SiteMeshEndpoint(InMemorySiteMeshMetrics metrics, ListableBeanFactory beanFactory) {
+        this.metrics = metrics;
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * Reports everything recorded so far.
+     *
+     * @return the report, ready to be serialized as JSON
+     */
+    @ReadOperation
+    public Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+
+        Map<String, Object> outcomes = new LinkedHashMap<>();
+        for (SiteMeshMetrics.Outcome outcome : SiteMeshMetrics.Outcome.values()) {
+            outcomes.put(name(outcome), metrics.getOutcomeCount(outcome));
+        }
+        report.put("outcomes", outcomes);
+
+        Map<String, Object> phases = new LinkedHashMap<>();
+        for (SiteMeshMetrics.Phase phase : SiteMeshMetrics.Phase.values()) {
+            phases.put(name(phase), describe(metrics.getStats(phase)));
+        }
+        report.put("phases", phases);
+
+        Map<String, Object> decorators = new TreeMap<>();
+        for (String decoratorPath : metrics.getDecoratorPaths()) {
+            InMemorySiteMeshMetrics.Stats stats = metrics.getDecoratorStats(decoratorPath);
+            if (stats != null) {
+                decorators.put(decoratorPath, describe(stats));
+            }
+        }
+        report.put("decorators", decorators);
+
+        report.put("bufferSizes", describe(metrics.getStats(SiteMeshMetrics.Phase.BUFFER).getLengthHistogram()));
+
+        Map<String, Object> sizeEstimates = new TreeMap<>();
+        Map<String, Object> decoratorSizeEstimates = new TreeMap<>();
+        for (SiteMeshViewResolver resolver : viewResolvers(beanFactory)) {
+            for (Map.Entry<String, RenderSizeEstimate> entry : resolver.getSizeEstimates().entrySet()) {
+                Map<String, Object> estimate = new LinkedHashMap<>();
+                estimate.put("contentLength", entry.getValue().getContentLength());
+                estimate.put("decoratedLength", entry.getValue().getDecoratedLength());
+                sizeEstimates.put(entry.getKey(), estimate);
+            }
+            putEstimates(decoratorSizeEstimates, resolver.getDecoratorSizeEstimates());
+        }
+        for (SiteMeshFilter filter : filters(beanFactory)) {
+            putEstimates(decoratorSizeEstimates, filter.getDecoratorSizeEstimates());
+        }
+        report.put("sizeEstimates", sizeEstimates);
+        report.put("decoratorSizeEstimates", decoratorSizeEstimates);
+
+        Map<String, Object> caches = new LinkedHashMap<>();
+        for (SiteMeshFilter filter : filters(beanFactory)) {
+            ResponseCache responseCache = filter.getResponseCache();
+            if (responseCache != null) {
+                Map<String, Object> cache = describe(responseCache.getHitCount(), responseCache.getMissCount());
+                cache.put("size", responseCache.size());
+                caches.put("response", cache);
+            }
+            if (filter.getDecoratorSource() instanceof StaticDecoratorSource staticDecorators) {
+                caches.put("staticDecorators", describe(staticDecorators.getHitCount(), staticDecorators.getMissCount()));
+            }
+        }
+        for (SiteMeshViewResolver resolver : viewResolvers(beanFactory)) {
+            StaticDecoratorViews staticViews = resolver.getStaticDecoratorViews();
+            if (staticViews != null) {
+                Map<String, Object> cache = describe(staticViews.getHitCount(), staticViews.getMissCount());
+                cache.put("size", staticViews.size());
+                caches.put("staticDecoratorViews", cache);
+            }
+        }
+        report.put("caches", caches);
+        return report;
+    }
+
+    private static void putEstimates(Map<String, Object> report, SizeEstimates estimates) {
+        for (Map.Entry<String, SizeEstimate> entry : estimates.asMap().entrySet()) {
+            report.put(entry.getKey(), entry.getValue().getEstimate());
+        }
+    }
+
+    private static Map<String, Object> describe(InMemorySiteMeshMetrics.Stats stats) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("count", stats.getCount());
+        description.put("totalMillis", millis(stats.getTotalNanos()));
+        description.put("meanMillis", millis(stats.getMeanNanos()));
+        description.put("maxMillis", millis(stats.getMaxNanos()));
+        for (double percentile : PERCENTILES) {
+            description.put(percentileName(percentile) + "Millis", millis(stats.getNanosPercentile(percentile)));
+        }
+        description.put("totalLength", stats.getTotalLength());
+        return description;
+    }
+
+    private static List<Map<String, Object>> describe(LogHistogram histogram) {
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (int i = 0; i < LogHistogram.BUCKETS; i++) {
+            long count = histogram.getCount(i);
+            if (count > 0) {
+                Map<String, Object> bucket = new LinkedHashMap<>();
+                bucket.put("le", LogHistogram.upperBoundOf(i));
+                bucket.put("count", count);
+                buckets.add(bucket);
+            }
+        }
+        return buckets;
+    }
+
+    private static Map<String, Object> describe(long hits, long misses) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("hits", hits);
+        description.put("misses", misses);
+        description.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return description;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static String name(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return {@code p50} for 0.5, {@code p99} for 0.99 and so on.
+     */
+    static String percentileName(double percentile) {
+        return "p" + Math.round(percentile * 100);
+    }
+
+    /**
+     * The SiteMesh filters in the context, whether registered directly or
+     * through a {@link FilterRegistrationBean}.
+     */
+    static List<SiteMeshFilter> filters(ListableBeanFactory beanFactory) {
+        List<SiteMeshFilter> filters = new ArrayList<>(
+                beanFactory.getBeansOfType(SiteMeshFilter.class, false, false).values());
+        for (FilterRegistrationBean<?> registration
+                : beanFactory.getBeansOfType(FilterRegistrationBean.class, false, false).values()) {
+            Filter filter = registration.getFilter();
+            if (filter instanceof SiteMeshFilter siteMeshFilter && !filters.contains(siteMeshFilter)) {
+                filters.add(siteMeshFilter);
+            }
+        }
+        return filters;
+    }
+
+    /**
+     * The SiteMesh view resolvers in the context, if Spring MVC is in use.
+     */
+    static List<SiteMeshViewResolver> viewResolvers(ListableBeanFactory beanFactory) {
+        return new ArrayList<>(beanFactory.getBeansOfType(SiteMeshViewResolver.class, false, false).values());
+    }
+}
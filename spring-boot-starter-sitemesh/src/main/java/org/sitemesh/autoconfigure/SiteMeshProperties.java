@@ -15,6 +15,7 @@
  */
 package org.sitemesh.autoconfigure;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -72,6 +73,12 @@ public class SiteMeshProperties {
      */
     private final Filter filter = new Filter();
 
+    /**
+     * Properties of the metrics reported by the "sitemesh" actuator endpoint
+     * and published to Micrometer.
+     */
+    private final Metrics metrics = new Metrics();
+
     /**
      * The active SiteMesh integration.
      *
@@ -153,6 +160,15 @@ public class SiteMeshProperties {
         return filter;
     }
 
+    /**
+     * The {@code sitemesh.metrics.*} property group.
+     *
+     * @return the metrics properties (never null)
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * The {@code sitemesh.decorator.*} property group: how decorators are
      * located and which content they apply to.
@@ -203,6 +219,15 @@ public class SiteMeshProperties {
          */
         private List<String> tagRuleBundles = new ArrayList<>();
 
+        /**
+         * Extra TagRuleBundles installed only for some paths, on top of the
+         * other bundles. Each entry is a map with a "path" key (e.g.
+         * "/legacy/*") and a "bundles" key holding a comma-separated list of
+         * class names. If several paths match a page, only the most specific
+         * entry applies.
+         */
+        private List<Map<String, String>> tagRuleBundleProfiles = new ArrayList<>();
+
         /**
          * Paths that are never decorated (e.g. "/assets/*"). Applies to the
          * filter integration only: the view-resolver integration decides
@@ -322,6 +347,25 @@ public class SiteMeshProperties {
             this.tagRuleBundles = tagRuleBundles;
         }
 
+        /**
+         * The TagRuleBundles installed only for some paths.
+         *
+         * @return the profiles, each with a "path" and a "bundles" key, empty by default
+         */
+        public List<Map<String, String>> getTagRuleBundleProfiles() {
+            return tagRuleBundleProfiles;
+        }
+
+        /**
+         * Sets the TagRuleBundles installed only for some paths.
+         *
+         * @param tagRuleBundleProfiles the profiles, each with a "path" key and a
+         *                              "bundles" key of comma-separated class names
+         */
+        public void setTagRuleBundleProfiles(List<Map<String, String>> tagRuleBundleProfiles) {
+            this.tagRuleBundleProfiles = tagRuleBundleProfiles;
+        }
+
         /**
          * The paths that are never decorated (filter integration only).
          *
@@ -375,6 +419,21 @@ public class SiteMeshProperties {
          */
         private List<String> decoratableMediaTypes = List.of("text/html", "application/xhtml+xml");
 
+        /**
+         * Share of recent renders (of each view, and of each decorator) that
+         * buffers are sized for without growing: 0.9 sizes for nine renders
+         * in ten. Higher values trade memory for fewer buffer copies.
+         */
+        private double sizeEstimatePercentile = 0.9;
+
+        /**
+         * Logical names (without a leading slash) of decorator views that do
+         * not depend on the model or request, rendered once per locale and
+         * reused for every page instead of being rendered on each request.
+         * Empty by default.
+         */
+        private List<String> staticDecoratorViews = List.of();
+
         /**
          * The bean name of the ViewResolver to wrap in the single-target modes.
          *
@@ -429,6 +488,42 @@ public class SiteMeshProperties {
         public void setDecoratableMediaTypes(List<String> decoratableMediaTypes) {
             this.decoratableMediaTypes = decoratableMediaTypes;
         }
+
+        /**
+         * Share of recent renders that buffers are sized for.
+         *
+         * @return the percentile, 0.9 by default
+         */
+        public double getSizeEstimatePercentile() {
+            return sizeEstimatePercentile;
+        }
+
+        /**
+         * Sets the share of recent renders that buffers are sized for.
+         *
+         * @param sizeEstimatePercentile greater than 0 and at most 1
+         */
+        public void setSizeEstimatePercentile(double sizeEstimatePercentile) {
+            this.sizeEstimatePercentile = sizeEstimatePercentile;
+        }
+
+        /**
+         * The decorator views rendered only once.
+         *
+         * @return the logical decorator names, empty by default
+         */
+        public List<String> getStaticDecoratorViews() {
+            return staticDecoratorViews;
+        }
+
+        /**
+         * Sets the decorator views rendered only once.
+         *
+         * @param staticDecoratorViews logical decorator names
+         */
+        public void setStaticDecoratorViews(List<String> staticDecoratorViews) {
+            this.staticDecoratorViews = staticDecoratorViews;
+        }
     }
 
     /**
@@ -443,6 +538,69 @@ public class SiteMeshProperties {
          */
         private int order = OrderedFilter.REQUEST_WRAPPER_FILTER_MAX_ORDER + 29;
 
+        /**
+         * Whether decorated pages are sent with strong ETags, so conditional
+         * requests (If-None-Match) can be answered with 304 Not Modified. When
+         * a page sends its own ETag or Last-Modified, unchanged pages are not
+         * even decorated.
+         */
+        private boolean etags = false;
+
+        /**
+         * Decorated pages of at least this many bytes are written with
+         * Servlet non-blocking IO, releasing the request thread while the
+         * bytes drain to slow clients. A negative value (the default) always
+         * uses blocking IO.
+         */
+        private int nonBlockingWriteThreshold = -1;
+
+        /**
+         * Decorate async requests on a separate executor (virtual threads where
+         * available) once the application completes them, instead of after the
+         * container has completed them.
+         */
+        private boolean asyncDecoration = false;
+
+        /**
+         * How often decorator files are checked for changes. When one changes,
+         * ETags change with it and the decorated-page cache is cleared, without
+         * a restart. Must be positive. Unset (the default) disables the checks.
+         */
+        private Duration decoratorCheckInterval;
+
+        /**
+         * Read static decorator files (.html, .htm) directly from the web
+         * application, once, instead of dispatching a request to them for
+         * every decorated page.
+         */
+        private boolean staticDecorators = false;
+
+        /**
+         * Number of synthetic parse and decorate cycles run to warm up the
+         * filter when the web server starts, before the application reports
+         * that it is ready. Unset (the default) disables warmup.
+         */
+        private Integer warmupIterations;
+
+        /**
+         * Extensions of request URIs (such as .css or .png) passed straight
+         * through, before the request path is computed or the response is
+         * wrapped. Empty by default.
+         */
+        private List<String> excludedExtensions = new ArrayList<>();
+
+        /**
+         * Prefixes of request URIs, after the context path (such as /assets/),
+         * passed straight through, before the request path is computed or the
+         * response is wrapped. Empty by default.
+         */
+        private List<String> excludedPrefixes = new ArrayList<>();
+
+        /**
+         * Short-lived cache of decorated pages.
+         */
+        private final Cache cache = new Cache();
+
         /**
          * The order of the SiteMesh filter registration in the filter chain.
          *
@@ -460,6 +618,297 @@ public class SiteMeshProperties {
         public void setOrder(int order) {
             this.order = order;
         }
+
+        /**
+         * Whether decorated pages are sent with strong ETags.
+         *
+         * @return {@code false} (the default) if no ETags are sent
+         */
+        public boolean isEtags() {
+            return etags;
+        }
+
+        /**
+         * Sets whether decorated pages are sent with strong ETags.
+         *
+         * @param etags {@code true} to send ETags
+         */
+        public void setEtags(boolean etags) {
+            this.etags = etags;
+        }
+
+        /**
+         * The minimum decorated page length written with non-blocking IO.
+         *
+         * @return the threshold in bytes, negative (the default) for always blocking IO
+         */
+        public int getNonBlockingWriteThreshold() {
+            return nonBlockingWriteThreshold;
+        }
+
+        /**
+         * Sets the minimum decorated page length written with non-blocking IO.
+         *
+         * @param nonBlockingWriteThreshold the threshold in bytes, negative to always use blocking IO
+         */
+        public void setNonBlockingWriteThreshold(int nonBlockingWriteThreshold) {
+            this.nonBlockingWriteThreshold = nonBlockingWriteThreshold;
+        }
+
+        /**
+         * Whether async requests are decorated on a separate executor.
+         *
+         * @return true to decorate async requests on an executor, false (the default) otherwise
+         */
+        public boolean isAsyncDecoration() {
+            return asyncDecoration;
+        }
+
+        /**
+         * Sets whether async requests are decorated on a separate executor.
+         *
+         * @param asyncDecoration true to decorate async requests on an executor
+         */
+        public void setAsyncDecoration(boolean asyncDecoration) {
+            this.asyncDecoration = asyncDecoration;
+        }
+
+        /**
+         * How often decorator files are checked for changes.
+         *
+         * @return the interval, or null (the default) if decorator changes are not detected
+         */
+        public Duration getDecoratorCheckInterval() {
+            return decoratorCheckInterval;
+        }
+
+        /**
+         * Sets how often decorator files are checked for changes.
+         *
+         * @param decoratorCheckInterval the interval, or null to not detect decorator changes
+         */
+        public void setDecoratorCheckInterval(Duration decoratorCheckInterval) {
+            this.decoratorCheckInterval = decoratorCheckInterval;
+        }
+
+        /**
+         * Whether static decorator files are read directly instead of dispatched to.
+         *
+         * @return true to read static decorators directly, false (the default) otherwise
+         */
+        public boolean isStaticDecorators() {
+            return staticDecorators;
+        }
+
+        /**
+         * Sets whether static decorator files are read directly instead of dispatched to.
+         *
+         * @param staticDecorators true to read static decorators directly
+         */
+        public void setStaticDecorators(boolean staticDecorators) {
+            this.staticDecorators = staticDecorators;
+        }
+
+        /**
+         * Number of synthetic cycles run to warm up the filter when it is initialized.
+         *
+         * @return the number of cycles, or null (the default) if the filter is not warmed up
+         */
+        public Integer getWarmupIterations() {
+            return warmupIterations;
+        }
+
+        /**
+         * Sets the number of synthetic cycles run to warm up the filter when it is initialized.
+         *
+         * @param warmupIterations the number of cycles, or null to not warm up the filter
+         */
+        public void setWarmupIterations(Integer warmupIterations) {
+            this.warmupIterations = warmupIterations;
+        }
+
+        /**
+         * Extensions of request URIs passed through without any SiteMesh processing.
+         *
+         * @return the excluded extensions, empty by default
+         */
+        public List<String> getExcludedExtensions() {
+            return excludedExtensions;
+        }
+
+        /**
+         * Sets the extensions of request URIs passed through without any SiteMesh processing.
+         *
+         * @param excludedExtensions the excluded extensions, such as {@code .css}
+         */
+        public void setExcludedExtensions(List<String> excludedExtensions) {
+            this.excludedExtensions = excludedExtensions;
+        }
+
+        /**
+         * Prefixes of request URIs passed through without any SiteMesh processing.
+         *
+         * @return the excluded prefixes, empty by default
+         */
+        public List<String> getExcludedPrefixes() {
+            return excludedPrefixes;
+        }
+
+        /**
+         * Sets the prefixes of request URIs passed through without any SiteMesh processing.
+         *
+         * @param excludedPrefixes the excluded prefixes, such as {@code /assets/}
+         */
+        public void setExcludedPrefixes(List<String> excludedPrefixes) {
+            this.excludedPrefixes = excludedPrefixes;
+        }
+
+        /**
+         * The {@code sitemesh.filter.cache.*} property group.
+         *
+         * @return the decorated-page cache properties (never null)
+         */
+        public Cache getCache() {
+            return cache;
+        }
+    }
+
+    /**
+     * The {@code sitemesh.filter.cache.*} property group: an optional cache
+     * of decorated pages, serving repeated requests for the same path, query
+     * and vary headers without re-rendering or re-decorating them. Only
+     * suitable for pages that are the same for every visitor sharing a cache
+     * key, typically anonymous traffic.
+     */
+    public static class Cache {
+
+        /**
+         * Whether decorated pages are cached.
+         */
+        private boolean enabled = false;
+
+        /**
+         * How long a decorated page is served from the cache.
+         */
+        private Duration ttl = Duration.ofSeconds(60);
+
+        /**
+         * Maximum number of decorated pages held before the least recently
+         * used one is evicted.
+         */
+        private int maxEntries = 1000;
+
+        /**
+         * Request headers whose values the decorated page depends on (e.g.
+         * "Accept-Language"). They become part of the cache key and are sent
+         * back as the Vary response header.
+         */
+        private List<String> vary = new ArrayList<>();
+
+        /**
+         * Whether decorated pages are cached.
+         *
+         * @return {@code false} (the default) if every request is decorated
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Sets whether decorated pages are cached.
+         *
+         * @param enabled {@code true} to cache decorated pages
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * How long a decorated page is served from the cache.
+         *
+         * @return the time-to-live, 60 seconds by default
+         */
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        /**
+         * Sets how long a decorated page is served from the cache.
+         *
+         * @param ttl the time-to-live
+         */
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        /**
+         * The maximum number of decorated pages held.
+         *
+         * @return the maximum number of entries, 1000 by default
+         */
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        /**
+         * Sets the maximum number of decorated pages held.
+         *
+         * @param maxEntries the maximum number of entries
+         */
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * The request headers the decorated page depends on.
+         *
+         * @return the vary header names, empty by default
+         */
+        public List<String> getVary() {
+            return vary;
+        }
+
+        /**
+         * Sets the request headers the decorated page depends on.
+         *
+         * @param vary the vary header names
+         */
+        public void setVary(List<String> vary) {
+            this.vary = vary;
+        }
+    }
+
+    /**
+     * The {@code sitemesh.metrics.*} property group: whether SiteMesh times
+     * each phase of decorating a page when Spring Boot Actuator is on the
+     * classpath, for the "sitemesh" endpoint and Micrometer.
+     */
+    public static class Metrics {
+
+        /**
+         * Whether each phase of decorating a page is timed and recorded
+         * (only when Spring Boot Actuator is on the classpath). Off by
+         * default, as recording costs time on every request.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Whether SiteMesh records metrics.
+         *
+         * @return {@code true} if phases are timed ({@code false} by default)
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Sets whether SiteMesh records metrics.
+         *
+         * @param enabled {@code true} to time each phase
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
     }
 
     /**
@@ -0,0 +1,40 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.sitemesh.autoconfigure;
+
+import org.sitemesh.config.RegistryObjectFactory;
+import org.sitemesh.webmvc.SiteMeshViewResolver;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Native-image hints for the reflection the starter still relies on, turned into
+ * {@code reflect-config.json} by Spring AOT when the application is compiled ahead of time.
+ * The metadata of the core library ships in its jar, under {@code META-INF/native-image}.
+ *
+ * <p>Built-in tag rule bundles named in {@code sitemesh.decorator.tagRuleBundles} are created
+ * without reflection (see {@link RegistryObjectFactory#BUILT_INS}). Application bundles named
+ * there are still loaded by name, so they need hints of their own.</p>
+ */
+class SiteMeshRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // SiteMeshViewResolverBeanPostProcessor wraps resolvers through a public constructor.
+        hints.reflection().registerType(SiteMeshViewResolver.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+    }
+}
@@ -19,12 +19,14 @@ import jakarta.servlet.ServletContext;
 
 import org.sitemesh.DecoratorSelector;
 import org.sitemesh.SiteMeshContext;
+import org.sitemesh.SiteMeshMetrics;
 import org.sitemesh.content.ContentProcessor;
 import org.sitemesh.webmvc.SiteMeshDelegatingViewResolver;
 import org.sitemesh.webmvc.SiteMeshView;
 import org.sitemesh.webmvc.SiteMeshViewResolver;
 import org.sitemesh.webmvc.SiteMeshViewResolverBeanPostProcessor;
 import org.sitemesh.webmvc.SiteMeshViewResolverPostProcessor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -32,6 +34,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.core.env.Environment;
 import org.springframework.web.servlet.ViewResolver;
 
@@ -84,6 +87,7 @@ import org.springframework.web.servlet.ViewResolver;
 @ConditionalOnProperty(name = "sitemesh.integration", havingValue = "view-resolver", matchIfMissing = true)
 @ConditionalOnClass({ ViewResolver.class, SiteMeshView.class })
 @EnableConfigurationProperties(SiteMeshProperties.class)
+@ImportRuntimeHints(SiteMeshRuntimeHints.class)
 public class SiteMeshViewResolverAutoConfiguration {
 
     // Note on lifecycle: the post-processor @Bean methods below are static and
@@ -160,6 +164,9 @@ public class SiteMeshViewResolverAutoConfiguration {
      * @param decoratorSelector the decorator selector the resolver's views
      *                          pick decorators with
      * @param servletContext the current servlet context
+     * @param metrics the metrics the decorated views record to, if there is
+     *                a {@link SiteMeshMetrics} bean (see
+     *                {@link SiteMeshActuatorAutoConfiguration})
      * @return the delegating view resolver
      */
     @Bean
@@ -171,12 +178,16 @@ public class SiteMeshViewResolverAutoConfiguration {
     public SiteMeshDelegatingViewResolver siteMeshDelegatingViewResolver(
             ContentProcessor contentProcessor,
             DecoratorSelector<SiteMeshContext> decoratorSelector,
-            ServletContext servletContext) {
+            ServletContext servletContext,
+            ObjectProvider<SiteMeshMetrics> metrics) {
         SiteMeshDelegatingViewResolver resolver =
                 new SiteMeshDelegatingViewResolver(contentProcessor, decoratorSelector, servletContext);
+        resolver.setMetrics(metrics.getIfAvailable());
         resolver.setDispatchMode(properties.getDispatchMode());
         resolver.setIncludeErrorPages(properties.isIncludeErrorPages());
         resolver.setDecoratableMediaTypes(properties.getViewResolver().getDecoratableMediaTypes());
+        resolver.setSizeEstimatePercentile(properties.getViewResolver().getSizeEstimatePercentile());
+        resolver.setStaticDecoratorViews(properties.getViewResolver().getStaticDecoratorViews());
         return resolver;
     }
 
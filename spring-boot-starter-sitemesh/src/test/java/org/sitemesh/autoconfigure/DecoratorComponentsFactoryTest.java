@@ -14,6 +14,10 @@ import java.util.Map;
 
 import junit.framework.TestCase;
 import org.sitemesh.config.MetaTagBasedDecoratorSelector;
+import org.sitemesh.config.PathBasedContentProcessor;
+import org.sitemesh.content.ContentProcessor;
+import org.sitemesh.content.tagrules.TagBasedContentProcessor;
+import org.sitemesh.content.tagrules.html.DivExtractingTagRuleBundle;
 
 /**
  * @see DecoratorComponentsFactory
@@ -79,6 +83,25 @@ public class DecoratorComponentsFactoryTest extends TestCase {
         assertNull(selector.getPathMapper().get("/admin/users"));
     }
 
+    public void testContentProcessorWithoutProfilesIsNotPathBased() {
+        ContentProcessor processor = new DecoratorComponentsFactory(decorator).buildContentProcessor();
+
+        assertTrue(processor instanceof TagBasedContentProcessor);
+    }
+
+    public void testTagRuleBundleProfileAddsBundlesForMatchingPathsOnly() {
+        decorator.setTagRuleBundleProfiles(List.of(Map.of("path", "/legacy/*",
+                "bundles", DivExtractingTagRuleBundle.class.getName())));
+
+        PathBasedContentProcessor processor =
+                (PathBasedContentProcessor) new DecoratorComponentsFactory(decorator).buildContentProcessor();
+
+        assertEquals(3, ((TagBasedContentProcessor) processor.selectProcessor("/page")).getTagRuleBundles().length);
+        TagBasedContentProcessor legacy = (TagBasedContentProcessor) processor.selectProcessor("/legacy/page");
+        assertEquals(4, legacy.getTagRuleBundles().length);
+        assertTrue(legacy.getTagRuleBundles()[3] instanceof DivExtractingTagRuleBundle);
+    }
+
     private void assertDecorators(MetaTagBasedDecoratorSelector<?> selector, String path, String... expected) {
         String[] actual = selector.getPathMapper().get(path);
         assertNotNull("no decorators mapped for " + path, actual);
@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.sitemesh.autoconfigure;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.sitemesh.InMemorySiteMeshMetrics;
+import org.sitemesh.SiteMeshMetrics;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+/**
+ * Tests the {@code sitemesh} actuator endpoint's report and the Micrometer
+ * meters published from the same aggregates.
+ */
+public class SiteMeshEndpointTest extends TestCase {
+
+    @SuppressWarnings("unchecked")
+    public void testReportsPhasesDecoratorsAndOutcomes() {
+        InMemorySiteMeshMetrics metrics = new InMemorySiteMeshMetrics();
+        metrics.recordPhase(SiteMeshMetrics.Phase.BUFFER, "/a", null, 2_000_000, 1000);
+        metrics.recordPhase(SiteMeshMetrics.Phase.DECORATE, "/a", "/decorators/main.html", 4_000_000, 3000);
+        metrics.recordOutcome(SiteMeshMetrics.Outcome.DECORATED, "/a");
+        metrics.recordOutcome(SiteMeshMetrics.Outcome.PASSED_THROUGH, "/a.css");
+
+        Map<String, Object> report = new SiteMeshEndpoint(metrics, new DefaultListableBeanFactory()).report();
+
+        Map<String, Object> outcomes = (Map<String, Object>) report.get("outcomes");
+        assertEquals(1L, outcomes.get("decorated"));
+        assertEquals(1L, outcomes.get("passed_through"));
+        assertEquals(0L, outcomes.get("aborted"));
+
+        Map<String, Object> buffer = (Map<String, Object>) ((Map<String, Object>) report.get("phases")).get("buffer");
+        assertEquals(1L, buffer.get("count"));
+        assertEquals(2.0, buffer.get("meanMillis"));
+        assertTrue((Double) buffer.get("p99Millis") >= 2.0);
+
+        Map<String, Object> decorator = (Map<String, Object>) ((Map<String, Object>) report.get("decorators"))
+                .get("/decorators/main.html");
+        assertEquals(3000L, decorator.get("totalLength"));
+
+        List<Map<String, Object>> bufferSizes = (List<Map<String, Object>>) report.get("bufferSizes");
+        assertEquals(1, bufferSizes.size());
+        assertEquals(1L, bufferSizes.get(0).get("count"));
+        assertTrue((Long) bufferSizes.get(0).get("le") >= 1000);
+
+        assertTrue(((Map<String, Object>) report.get("sizeEstimates")).isEmpty());
+        assertTrue(((Map<String, Object>) report.get("caches")).isEmpty());
+    }
+
+    public void testPublishesMeters() {
+        MicrometerSiteMeshMetrics metrics = new MicrometerSiteMeshMetrics(new DefaultListableBeanFactory());
+        metrics.recordPhase(SiteMeshMetrics.Phase.DECORATE, "/a", "/decorators/main.html", 1000, 10);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+        metrics.recordPhase(SiteMeshMetrics.Phase.DECORATE, "/b", "/decorators/print.html", 3000, 10);
+        metrics.recordOutcome(SiteMeshMetrics.Outcome.ABORTED, "/c");
+
+        FunctionTimer decorate = registry.get("sitemesh.phase").tag("phase", "decorate").functionTimer();
+        assertEquals(2.0, decorate.count());
+        assertEquals(4000.0, decorate.totalTime(TimeUnit.NANOSECONDS));
+        assertEquals(1.0, registry.get("sitemesh.decorator").tag("path", "/decorators/main.html").functionTimer().count());
+        assertEquals(1.0, registry.get("sitemesh.decorator").tag("path", "/decorators/print.html").functionTimer().count());
+        FunctionCounter aborted = registry.get("sitemesh.requests").tag("outcome", "aborted").functionCounter();
+        assertEquals(1.0, aborted.count());
+
+        metrics.reset();
+        assertEquals(0.0, registry.get("sitemesh.decorator").tag("path", "/decorators/print.html").functionTimer().count());
+    }
+}
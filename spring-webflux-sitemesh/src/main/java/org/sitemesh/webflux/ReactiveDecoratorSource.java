@@ -0,0 +1,66 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webflux;
+
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+import org.springframework.web.server.ServerWebExchange;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Loads the unprocessed text of decorators without blocking, for {@link SiteMeshWebFilter}.
+ *
+ * <p>The decorators selected for a page are all loaded before the page is merged into them,
+ * so decoration itself never waits for I/O. Implementations that read from a blocking
+ * source must move the read off the calling thread (for example with
+ * {@code subscribeOn(Schedulers.boundedElastic())}), since it is usually an event-loop
+ * thread.</p>
+ *
+ * @see ResourceDecoratorSource
+ */
+@FunctionalInterface
+public interface ReactiveDecoratorSource {
+
+    /**
+     * Load a decorator.
+     *
+     * @param decoratorPath Path of the decorator, as returned by the
+     *                      {@link org.sitemesh.DecoratorSelector}.
+     * @param charset Character set of the page being decorated.
+     * @param exchange The exchange being decorated.
+     * @return The unprocessed decorator text, or an empty {@link Mono} if there is no such
+     *         decorator.
+     */
+    Mono<CharBuffer> load(String decoratorPath, Charset charset, ServerWebExchange exchange);
+
+    /**
+     * A decorator this source has already loaded, for decorators that are only asked for in
+     * the middle of decoration (such as by an inline {@code <sitemesh:decorate>} tag), where
+     * there is no waiting for a load.
+     *
+     * <p>This implementation has none.</p>
+     *
+     * @param decoratorPath Path of the decorator.
+     * @param charset Character set of the page being decorated.
+     * @return The unprocessed decorator text, or null if it is not in memory.
+     */
+    default CharBuffer getLoaded(String decoratorPath, Charset charset) {
+        return null;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webflux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.web.server.ServerWebExchange;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * {@link ReactiveDecoratorSource} that reads decorators as Spring {@link Resource}s under a
+ * base location, such as {@code classpath:/static} for decorators packaged with the
+ * application's static files.
+ *
+ * <p>Each decorator is read once per character set, on the bounded elastic scheduler so that
+ * no event-loop thread waits for the read, and then served from memory. Decorators that do
+ * not exist are remembered as such. Call {@link #clear()} to pick up changed files.</p>
+ */
+public class ResourceDecoratorSource implements ReactiveDecoratorSource {
+
+    /** Upper bound on the number of decorators held in memory. */
+    public static final int MAX_CACHED_DECORATORS = 256;
+
+    private static final char[] NOT_FOUND = new char[0];
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final Map<Key, char[]> decorators = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param resourceLoader Loader to resolve the decorators with.
+     * @param location Location the decorator paths are relative to, e.g.
+     *                 {@code classpath:/static}.
+     */
+    public ResourceDecoratorSource(ResourceLoader resourceLoader, String location) {
+        this.resourceLoader = resourceLoader;
+        this.location = location.endsWith("/") ? location.substring(0, location.length() - 1) : location;
+    }
+
+    public Mono<CharBuffer> load(String decoratorPath, Charset charset, ServerWebExchange exchange) {
+        Key key = new Key(decoratorPath, charset);
+        char[] decorator = decorators.get(key);
+        if (decorator != null) {
+            hits.increment();
+            return decorator == NOT_FOUND ? Mono.empty() : Mono.just(wrap(decorator));
+        }
+        misses.increment();
+        return Mono.fromCallable(() -> read(decoratorPath, charset))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(read -> {
+                    if (decorators.size() < MAX_CACHED_DECORATORS) {
+                        decorators.put(key, read);
+                    }
+                    return read == NOT_FOUND ? Mono.empty() : Mono.just(wrap(read));
+                });
+    }
+
+    @Override
+    public CharBuffer getLoaded(String decoratorPath, Charset charset) {
+        char[] decorator = decorators.get(new Key(decoratorPath, charset));
+        return decorator == null || decorator == NOT_FOUND ? null : wrap(decorator);
+    }
+
+    private char[] read(String decoratorPath, Charset charset) throws IOException {
+        String path = decoratorPath.startsWith("/") ? decoratorPath : "/" + decoratorPath;
+        Resource resource = resourceLoader.getResource(location + path);
+        if (!resource.exists()) {
+            return NOT_FOUND;
+        }
+        byte[] bytes;
+        try (InputStream in = resource.getInputStream()) {
+            bytes = in.readAllBytes();
+        }
+        CharBuffer decoded = charset.decode(ByteBuffer.wrap(bytes));
+        char[] chars = new char[decoded.remaining()];
+        decoded.get(chars);
+        return chars;
+    }
+
+    private static CharBuffer wrap(char[] decorator) {
+        return CharBuffer.wrap(decorator).asReadOnlyBuffer();
+    }
+
+    /**
+     * Forget all decorators read so far, so they are read again when next used.
+     */
+    public void clear() {
+        decorators.clear();
+    }
+
+    /**
+     * @return How many times a decorator was answered from memory (including decorators
+     *         remembered as not found).
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return How many times a decorator had to be read.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private record Key(String path, Charset charset) {
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webflux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.reactivestreams.Publisher;
+
+import org.sitemesh.DecoratorSelector;
+import org.sitemesh.SiteMeshContext;
+import org.sitemesh.SiteMeshMetrics;
+import org.sitemesh.content.Content;
+import org.sitemesh.content.ContentProcessor;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Spring WebFlux {@link WebFilter} that decorates HTML responses, the reactive counterpart
+ * of {@link org.sitemesh.webapp.SiteMeshFilter}.
+ *
+ * <p>The response is wrapped in a {@link ServerHttpResponseDecorator}. When the page is
+ * written with {@link ServerHttpResponse#writeWith(Publisher)} and has a decoratable content
+ * type, its {@link DataBuffer}s are joined as they arrive, the page is parsed with the
+ * {@link ContentProcessor}, the decorators chosen by the {@link DecoratorSelector} are loaded
+ * from the {@link ReactiveDecoratorSource}, and the decorated page is written as a single
+ * buffer. Nothing in this blocks: waiting for the page and for the decorators is left to
+ * the publishers. The parsing and merging in between is plain computation, done on the
+ * thread that delivered the page, except for pages of at least
+ * {@link #setOffloadThreshold(int) the offload threshold}, which are parsed and merged on
+ * {@link Schedulers#boundedElastic()} so they do not hold up the event loop.</p>
+ *
+ * <p>The page's <code>ETag</code> and <code>Last-Modified</code> headers describe the page,
+ * not the decorated response, so they are removed from decorated responses.</p>
+ *
+ * <p>As with the servlet filter, only successful (2xx) responses are decorated, and error
+ * responses (status 400 and above) too if {@link #setIncludeErrorPages(boolean) enabled}.
+ * Pages longer than {@link #setMaxBufferSize(int) the maximum buffer size} are passed through
+ * undecorated once that many bytes have arrived, so a large response cannot exhaust memory.
+ * Streamed responses ({@link ServerHttpResponse#writeAndFlushWith(Publisher)}, as used for
+ * server-sent events), responses with another content type, responses without a body and
+ * responses that are already content-encoded are passed through untouched.</p>
+ */
+public class SiteMeshWebFilter implements WebFilter, Ordered {
+
+    /** Media types decorated when none are specified. */
+    public static final Set<String> DEFAULT_DECORATABLE_MEDIA_TYPES = Set.of("text/html", "application/xhtml+xml");
+
+    /** Length, in bytes, from which pages are parsed and merged off the event loop by default. */
+    public static final int DEFAULT_OFFLOAD_THRESHOLD = 64 * 1024;
+
+    /** Length, in bytes, up to which pages are buffered and decorated by default. */
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    private static final String[] NO_DECORATORS = new String[0];
+
+    private final ContentProcessor contentProcessor;
+    private final DecoratorSelector<SiteMeshContext> decoratorSelector;
+    private final ReactiveDecoratorSource decoratorSource;
+
+    private Set<String> decoratableMediaTypes = DEFAULT_DECORATABLE_MEDIA_TYPES;
+    private int order;
+    private int offloadThreshold = DEFAULT_OFFLOAD_THRESHOLD;
+    private int maxBufferSize = DEFAULT_MAX_BUFFER_SIZE;
+    private boolean includeErrorPages;
+    private SiteMeshMetrics metrics = SiteMeshMetrics.NONE;
+
+    /**
+     * @param contentProcessor parses pages and decorators
+     * @param decoratorSelector selects the decorator path(s) for a page
+     * @param decoratorSource loads the selected decorators
+     */
+    public SiteMeshWebFilter(ContentProcessor contentProcessor,
+                             DecoratorSelector<SiteMeshContext> decoratorSelector,
+                             ReactiveDecoratorSource decoratorSource) {
+        this.contentProcessor = contentProcessor;
+        this.decoratorSelector = decoratorSelector;
+        this.decoratorSource = decoratorSource;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpResponse response = new DecoratingResponse(exchange);
+        return chain.filter(exchange.mutate().response(response).build());
+    }
+
+    /**
+     * Create the context a page is decorated in. Can be overridden to provide a custom
+     * context.
+     *
+     * @param exchange the exchange being decorated
+     * @param charset the character set of the response
+     * @return the context, with this filter's metrics set
+     */
+    protected WebFluxContext createContext(ServerWebExchange exchange, Charset charset) {
+        WebFluxContext context = new WebFluxContext(contentProcessor, exchange, charset, decoratorSource);
+        context.setMetrics(metrics);
+        return context;
+    }
+
+    /**
+     * Whether a response with the given status and content type is decorated.
+     *
+     * @param status the status of the response, or null if none was set (meaning 200)
+     * @param contentType the content type of the response, or null if none was set
+     * @param headers the headers of the response
+     * @return true if the response is buffered and decorated
+     */
+    protected boolean shouldDecorate(HttpStatusCode status, MediaType contentType, HttpHeaders headers) {
+        if (contentType == null || headers.getFirst(HttpHeaders.CONTENT_ENCODING) != null) {
+            return false;
+        }
+        if (status != null && !(status.is2xxSuccessful() && status.value() != 204
+                || includeErrorPages && status.value() >= 400)) {
+            return false;
+        }
+        String mediaType = contentType.getType() + "/" + contentType.getSubtype();
+        return decoratableMediaTypes.contains(mediaType.toLowerCase(Locale.ROOT));
+    }
+
+    private Mono<DataBuffer> decorate(ServerWebExchange exchange, DataBuffer page, Charset charset) {
+        byte[] bytes = new byte[page.readableByteCount()];
+        page.read(bytes);
+        DataBufferUtils.release(page);
+
+        Scheduler scheduler = offloadThreshold >= 0 && bytes.length >= offloadThreshold
+                ? Schedulers.boundedElastic() : null;
+        WebFluxContext context = createContext(exchange, charset);
+        return on(scheduler, Mono.fromCallable(() -> {
+            Content content = contentProcessor.build(charset.decode(ByteBuffer.wrap(bytes)), context);
+            return new Parsed(content,
+                    content != null ? decoratorSelector.selectDecoratorPaths(content, context) : NO_DECORATORS);
+        })).flatMap(parsed -> {
+            if (parsed.decoratorPaths.length == 0) {
+                record(SiteMeshMetrics.Outcome.UNDECORATED, context);
+                return Mono.just(exchange.getResponse().bufferFactory().wrap(bytes));
+            }
+            return Flux.fromArray(parsed.decoratorPaths)
+                    .distinct()
+                    .concatMap(decoratorPath -> decoratorSource.load(decoratorPath, charset, exchange)
+                            .doOnNext(decorator -> context.putDecorator(decoratorPath, decorator)))
+                    .then(on(scheduler, Mono.fromCallable(() -> {
+                        byte[] decorated = merge(parsed.content, parsed.decoratorPaths, context, charset);
+                        record(decorated != null ? SiteMeshMetrics.Outcome.DECORATED
+                                : SiteMeshMetrics.Outcome.UNDECORATED, context);
+                        if (decorated == null) {
+                            return exchange.getResponse().bufferFactory().wrap(bytes);
+                        }
+                        // They describe the page, so would let clients and caches keep a stale decoration.
+                        HttpHeaders headers = exchange.getResponse().getHeaders();
+                        headers.remove(HttpHeaders.ETAG);
+                        headers.remove(HttpHeaders.LAST_MODIFIED);
+                        return exchange.getResponse().bufferFactory().wrap(decorated);
+                    })));
+        });
+    }
+
+    private static <T> Mono<T> on(Scheduler scheduler, Mono<T> work) {
+        return scheduler != null ? work.subscribeOn(scheduler) : work;
+    }
+
+    private static byte[] merge(Content content, String[] decoratorPaths, WebFluxContext context, Charset charset)
+            throws IOException {
+        for (String decoratorPath : decoratorPaths) {
+            content = context.decorate(decoratorPath, content);
+            if (content == null) {
+                return null;
+            }
+        }
+        StringBuilder out = new StringBuilder(context.getLastDecoratedLength());
+        content.getData().writeValueTo(out);
+        ByteBuffer encoded = charset.encode(CharBuffer.wrap(out));
+        byte[] decorated = new byte[encoded.remaining()];
+        encoded.get(decorated);
+        return decorated;
+    }
+
+    private void record(SiteMeshMetrics.Outcome outcome, WebFluxContext context) {
+        if (metrics.isEnabled()) {
+            metrics.recordOutcome(outcome, context.getPath());
+        }
+    }
+
+    /**
+     * The media types (without parameters) of the responses that are decorated.
+     *
+     * @return the media types, {@link #DEFAULT_DECORATABLE_MEDIA_TYPES} by default
+     */
+    public Set<String> getDecoratableMediaTypes() {
+        return decoratableMediaTypes;
+    }
+
+    /**
+     * Set the media types of the responses that are decorated.
+     *
+     * @param decoratableMediaTypes media types without parameters, case-insensitive
+     */
+    public void setDecoratableMediaTypes(Collection<String> decoratableMediaTypes) {
+        this.decoratableMediaTypes = decoratableMediaTypes.stream()
+                .map(mediaType -> mediaType.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * @return the metrics this filter records to, never {@code null}
+     */
+    public SiteMeshMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Record how long decorating takes, and what happened to each page.
+     *
+     * @param metrics the metrics to record to; {@code null} records nothing
+     */
+    public void setMetrics(SiteMeshMetrics metrics) {
+        this.metrics = metrics != null ? metrics : SiteMeshMetrics.NONE;
+    }
+
+    /**
+     * The length from which pages are parsed and merged on {@link Schedulers#boundedElastic()}.
+     *
+     * @return the length in bytes, or -1 if pages are never moved off the event loop
+     */
+    public int getOffloadThreshold() {
+        return offloadThreshold;
+    }
+
+    /**
+     * Set the length from which pages are parsed and merged on {@link Schedulers#boundedElastic()}
+     * rather than on the thread that delivered them. Smaller pages are processed in place,
+     * which avoids the thread hop.
+     *
+     * @param offloadThreshold length in bytes, {@link #DEFAULT_OFFLOAD_THRESHOLD} by default;
+     *                         0 moves every page, -1 none
+     */
+    public void setOffloadThreshold(int offloadThreshold) {
+        this.offloadThreshold = offloadThreshold;
+    }
+
+    /**
+     * The length up to which pages are buffered and decorated.
+     *
+     * @return the length in bytes, or -1 if pages of any length are buffered
+     */
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * Set the length up to which pages are buffered and decorated. Once a page grows past it,
+     * what was buffered so far and the rest of the page are written as they are.
+     *
+     * @param maxBufferSize length in bytes, {@link #DEFAULT_MAX_BUFFER_SIZE} by default;
+     *                      -1 buffers pages of any length
+     */
+    public void setMaxBufferSize(int maxBufferSize) {
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /**
+     * @return whether error responses (status 400 and above) are decorated
+     */
+    public boolean isIncludeErrorPages() {
+        return includeErrorPages;
+    }
+
+    /**
+     * Set whether error responses (status 400 and above) are decorated, like the servlet
+     * filter's {@code includeErrorPages}.
+     *
+     * @param includeErrorPages true to decorate error responses, false (the default) to pass
+     *                          them through
+     */
+    public void setIncludeErrorPages(boolean includeErrorPages) {
+        this.includeErrorPages = includeErrorPages;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Set the order of this filter among the other {@link WebFilter}s.
+     *
+     * @param order the order, 0 by default
+     */
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    /**
+     * A parsed page and the decorators selected for it.
+     */
+    private static final class Parsed {
+        private final Content content;
+        private final String[] decoratorPaths;
+
+        Parsed(Content content, String[] decoratorPaths) {
+            this.content = content;
+            this.decoratorPaths = decoratorPaths;
+        }
+    }
+
+    /**
+     * Buffers and decorates the page written to it, or passes it through.
+     */
+    private class DecoratingResponse extends ServerHttpResponseDecorator {
+
+        private final ServerWebExchange exchange;
+
+        DecoratingResponse(ServerWebExchange exchange) {
+            super(exchange.getResponse());
+            this.exchange = exchange;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            MediaType contentType = getHeaders().getContentType();
+            if (!shouldDecorate(getStatusCode(), contentType, getHeaders())) {
+                if (metrics.isEnabled()) {
+                    metrics.recordOutcome(SiteMeshMetrics.Outcome.PASSED_THROUGH,
+                            exchange.getRequest().getPath().pathWithinApplication().value());
+                }
+                return getDelegate().writeWith(body);
+            }
+            Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+            if (maxBufferSize < 0) {
+                return getDelegate().writeWith(DataBufferUtils.join(body)
+                        .flatMap(page -> decorate(exchange, page, charset))
+                        .doOnNext(this::setContentLength));
+            }
+            return getDelegate().writeWith(Flux.defer(() -> {
+                long[] length = {0};
+                // One list holding the whole page, or, once it grows too long, what arrived so far
+                // followed by a list for each further buffer.
+                return Flux.from(body)
+                        .bufferUntil(buffer -> (length[0] += buffer.readableByteCount()) > maxBufferSize)
+                        .switchOnFirst((first, pages) -> {
+                            if (first.hasValue() && length[0] <= maxBufferSize) {
+                                return pages.next()
+                                        .map(buffers -> bufferFactory().join(buffers))
+                                        .flatMap(page -> decorate(exchange, page, charset))
+                                        .doOnNext(this::setContentLength);
+                            }
+                            if (first.hasValue() && metrics.isEnabled()) {
+                                metrics.recordOutcome(SiteMeshMetrics.Outcome.PASSED_THROUGH,
+                                        exchange.getRequest().getPath().pathWithinApplication().value());
+                            }
+                            return pages.concatMapIterable(buffers -> buffers);
+                        })
+                        .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+            }));
+        }
+
+        private void setContentLength(DataBuffer decorated) {
+            // Before the delegate commits the headers on receiving the buffer.
+            getHeaders().setContentLength(decorated.readableByteCount());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webflux;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sitemesh.BaseSiteMeshContext;
+import org.sitemesh.content.Content;
+import org.sitemesh.content.ContentProcessor;
+
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * SiteMesh {@link org.sitemesh.SiteMeshContext} for a Spring WebFlux
+ * {@link ServerWebExchange}.
+ *
+ * <p>Decorating cannot wait for a decorator to be loaded, so
+ * {@link SiteMeshWebFilter} loads the selected decorators through its
+ * {@link ReactiveDecoratorSource} first and {@linkplain #putDecorator hands them}
+ * to the context. A decorator that was not handed over (one named by an inline
+ * {@code <sitemesh:decorate>} tag) is taken from what the source already has in
+ * memory.</p>
+ */
+public class WebFluxContext extends BaseSiteMeshContext {
+
+    private final ServerWebExchange exchange;
+    private final Charset charset;
+    private final ReactiveDecoratorSource decoratorSource;
+    private final Map<String, CharBuffer> decorators = new HashMap<>();
+
+    /**
+     * @param contentProcessor parses pages and decorators
+     * @param exchange the exchange being decorated
+     * @param charset the character set of the response
+     * @param decoratorSource where decorators not handed over come from
+     */
+    public WebFluxContext(ContentProcessor contentProcessor, ServerWebExchange exchange, Charset charset,
+                          ReactiveDecoratorSource decoratorSource) {
+        super(contentProcessor);
+        this.exchange = exchange;
+        this.charset = charset;
+        this.decoratorSource = decoratorSource;
+    }
+
+    /**
+     * @return the path of the request within the application
+     */
+    public String getPath() {
+        return exchange.getRequest().getPath().pathWithinApplication().value();
+    }
+
+    /**
+     * @return the exchange being decorated
+     */
+    public ServerWebExchange getExchange() {
+        return exchange;
+    }
+
+    /**
+     * @return the character set of the response
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Hand over a decorator loaded ahead of decoration.
+     *
+     * @param decoratorPath path of the decorator
+     * @param decorator the unprocessed decorator text
+     */
+    public void putDecorator(String decoratorPath, CharBuffer decorator) {
+        decorators.put(decoratorPath, decorator);
+    }
+
+    @Override
+    protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
+        CharBuffer decorator = decorators.get(decoratorPath);
+        if (decorator == null) {
+            decorator = decoratorSource.getLoaded(decoratorPath, charset);
+        }
+        if (decorator == null) {
+            throw new IOException("Decorator not loaded: " + decoratorPath);
+        }
+        out.append(decorator.duplicate());
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.sitemesh.webflux;
+
+import java.io.File;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.sitemesh.DecoratorSelector;
+import org.sitemesh.InMemorySiteMeshMetrics;
+import org.sitemesh.SiteMeshContext;
+import org.sitemesh.SiteMeshMetrics;
+import org.sitemesh.content.ContentProcessor;
+import org.sitemesh.content.tagrules.TagBasedContentProcessor;
+import org.sitemesh.content.tagrules.decorate.DecoratorTagRuleBundle;
+import org.sitemesh.content.tagrules.html.CoreHtmlTagRuleBundle;
+
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Tests for {@link SiteMeshWebFilter}.
+ */
+public class SiteMeshWebFilterTest extends TestCase {
+
+    private static final String DECORATOR = "<html><head><title>[<sitemesh:write property='title'/>]</title></head>"
+            + "<body>[<sitemesh:write property='body'/>]</body></html>";
+    private static final String PAGE = "<html><head><title>Page</title></head><body>Hello</body></html>";
+
+    private ContentProcessor contentProcessor;
+    private DecoratorSelector<SiteMeshContext> decoratorSelector;
+    private List<String> loaded;
+    private ReactiveDecoratorSource decoratorSource;
+
+    @Override
+    protected void setUp() {
+        contentProcessor = new TagBasedContentProcessor(new CoreHtmlTagRuleBundle(), new DecoratorTagRuleBundle());
+        decoratorSelector = (content, context) -> new String[] {"/decorators/main.html"};
+        loaded = new ArrayList<>();
+        decoratorSource = (path, charset, exchange) -> {
+            loaded.add(path);
+            return Mono.just(CharBuffer.wrap(DECORATOR));
+        };
+    }
+
+    public void testDecoratesHtml() {
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor, decoratorSelector, decoratorSource);
+        MockServerWebExchange exchange = exchange();
+
+        filter.filter(exchange, write(MediaType.TEXT_HTML, PAGE)).block();
+
+        String body = exchange.getResponse().getBodyAsString().block();
+        assertEquals("<html><head><title>[Page]</title></head><body>[Hello]</body></html>", body);
+        assertEquals(body.getBytes(StandardCharsets.UTF_8).length,
+                exchange.getResponse().getHeaders().getContentLength());
+        assertEquals(List.of("/decorators/main.html"), loaded);
+    }
+
+    public void testDecoratesPageWrittenInSeveralBuffers() {
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor, decoratorSelector, decoratorSource);
+        MockServerWebExchange exchange = exchange();
+        WebFilterChain chain = ex -> {
+            ServerHttpResponse response = ex.getResponse();
+            response.getHeaders().setContentType(MediaType.parseMediaType("text/html;charset=ISO-8859-1"));
+            return response.writeWith(Flux.just("<html><body>Gr", "üße</body></html>")
+                    .map(part -> response.bufferFactory().wrap(part.getBytes(StandardCharsets.ISO_8859_1))));
+        };
+
+        filter.filter(exchange, chain).block();
+
+        String body = exchange.getResponse().getBodyAsString().block();
+        assertEquals("<html><head><title>[]</title></head><body>[Grüße]</body></html>", body);
+    }
+
+    public void testDropsValidatorsOfThePageWhenDecorating() {
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor, decoratorSelector, decoratorSource);
+        MockServerWebExchange exchange = exchange();
+        WebFilterChain chain = ex -> {
+            ex.getResponse().getHeaders().setETag("\"page\"");
+            ex.getResponse().getHeaders().setLastModified(1000000000000L);
+            return write(MediaType.TEXT_HTML, PAGE).filter(ex);
+        };
+
+        filter.filter(exchange, chain).block();
+
+        assertNull(exchange.getResponse().getHeaders().getETag());
+        assertEquals(-1, exchange.getResponse().getHeaders().getLastModified());
+    }
+
+    public void testKeepsValidatorsOfUndecoratedPages() {
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor,
+                (content, context) -> new String[0], decoratorSource);
+        MockServerWebExchange exchange = exchange();
+        WebFilterChain chain = ex -> {
+            ex.getResponse().getHeaders().setETag("\"page\"");
+            return write(MediaType.TEXT_HTML, PAGE).filter(ex);
+        };
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals("\"page\"", exchange.getResponse().getHeaders().getETag());
+    }
+
+    public void testDecoratesLargePagesOffTheCallingThread() {
+        List<String> threads = new ArrayList<>();
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor, (content, context) -> {
+            threads.add(Thread.currentThread().getName());
+            return new String[] {"/decorators/main.html"};
+        }, decoratorSource);
+        filter.setOffloadThreshold(PAGE.length());
+        MockServerWebExchange small = exchange();
+        MockServerWebExchange large = exchange();
+
+        filter.filter(small, write(MediaType.TEXT_HTML, "<html><body>Hi</body></html>")).block();
+        filter.filter(large, write(MediaType.TEXT_HTML, PAGE)).block();
+
+        assertEquals(Thread.currentThread().getName(), threads.get(0));
+        assertTrue(threads.get(1), threads.get(1).startsWith("boundedElastic"));
+        assertEquals("<html><head><title>[Page]</title></head><body>[Hello]</body></html>",
+                large.getResponse().getBodyAsString().block());
+    }
+
+    public void testPassesThroughOtherContentTypes() {
+        InMemorySiteMeshMetrics metrics = new InMemorySiteMeshMetrics();
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor, decoratorSelector, decoratorSource);
+        filter.setMetrics(metrics);
+        MockServerWebExchange exchange = exchange();
+
+        filter.filter(exchange, write(MediaType.APPLICATION_JSON, "{\"body\":1}")).block();
+
+        assertEquals("{\"body\":1}", exchange.getResponse().getBodyAsString().block());
+        assertTrue(loaded.isEmpty());
+        assertEquals(1, metrics.getOutcomeCount(SiteMeshMetrics.Outcome.PASSED_THROUGH));
+    }
+
+    public void testPassesThroughRedirects() {
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor, decoratorSelector, decoratorSource);
+        MockServerWebExchange exchange = exchange();
+        WebFilterChain chain = ex -> {
+            ex.getResponse().setStatusCode(HttpStatus.FOUND);
+            return write(MediaType.TEXT_HTML, PAGE).filter(ex);
+        };
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(PAGE, exchange.getResponse().getBodyAsString().block());
+    }
+
+    public void testPassesThroughErrorResponses() {
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor, decoratorSelector, decoratorSource);
+        MockServerWebExchange exchange = exchange();
+        WebFilterChain chain = ex -> {
+            ex.getResponse().setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
+            return write(MediaType.TEXT_HTML, PAGE).filter(ex);
+        };
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(PAGE, exchange.getResponse().getBodyAsString().block());
+        assertTrue(loaded.isEmpty());
+    }
+
+    public void testDecoratesErrorResponsesWhenIncluded() {
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor, decoratorSelector, decoratorSource);
+        filter.setIncludeErrorPages(true);
+        MockServerWebExchange exchange = exchange();
+        WebFilterChain chain = ex -> {
+            ex.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+            return write(MediaType.TEXT_HTML, PAGE).filter(ex);
+        };
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals("<html><head><title>[Page]</title></head><body>[Hello]</body></html>",
+                exchange.getResponse().getBodyAsString().block());
+    }
+
+    public void testPassesThroughPagesLongerThanTheMaxBufferSize() {
+        InMemorySiteMeshMetrics metrics = new InMemorySiteMeshMetrics();
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor, decoratorSelector, decoratorSource);
+        filter.setMetrics(metrics);
+        filter.setMaxBufferSize(PAGE.length() - 10);
+        MockServerWebExchange exchange = exchange();
+        WebFilterChain chain = ex -> {
+            ServerHttpResponse response = ex.getResponse();
+            response.getHeaders().setContentType(MediaType.TEXT_HTML);
+            return response.writeWith(Flux.just(PAGE.substring(0, 20), PAGE.substring(20, 40), PAGE.substring(40))
+                    .map(part -> response.bufferFactory().wrap(part.getBytes(StandardCharsets.UTF_8))));
+        };
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(PAGE, exchange.getResponse().getBodyAsString().block());
+        assertTrue(loaded.isEmpty());
+        assertEquals(1, metrics.getOutcomeCount(SiteMeshMetrics.Outcome.PASSED_THROUGH));
+
+        filter.setMaxBufferSize(PAGE.length());
+        exchange = exchange();
+        filter.filter(exchange, chain).block();
+        assertEquals("<html><head><title>[Page]</title></head><body>[Hello]</body></html>",
+                exchange.getResponse().getBodyAsString().block());
+    }
+
+    public void testWritesPageWhenNoDecoratorIsSelected() {
+        InMemorySiteMeshMetrics metrics = new InMemorySiteMeshMetrics();
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor,
+                (content, context) -> new String[0], decoratorSource);
+        filter.setMetrics(metrics);
+        MockServerWebExchange exchange = exchange();
+
+        filter.filter(exchange, write(MediaType.TEXT_HTML, PAGE)).block();
+
+        assertEquals(PAGE, exchange.getResponse().getBodyAsString().block());
+        assertEquals(1, metrics.getOutcomeCount(SiteMeshMetrics.Outcome.UNDECORATED));
+    }
+
+    public void testFailsForMissingDecorator() {
+        SiteMeshWebFilter filter = new SiteMeshWebFilter(contentProcessor, decoratorSelector,
+                (path, charset, exchange) -> Mono.empty());
+        try {
+            filter.filter(exchange(), write(MediaType.TEXT_HTML, PAGE)).block();
+            fail("Expected the missing decorator to fail the response");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("/decorators/main.html"));
+        }
+    }
+
+    public void testResourceDecoratorSourceReadsOnce() throws Exception {
+        File dir = Files.createTempDirectory("sitemesh-webflux").toFile();
+        File decorators = new File(dir, "decorators");
+        assertTrue(decorators.mkdir());
+        Files.writeString(new File(decorators, "main.html").toPath(), DECORATOR);
+        ResourceDecoratorSource source = new ResourceDecoratorSource(new DefaultResourceLoader(), dir.toURI().toString());
+
+        assertEquals(DECORATOR, source.load("/decorators/main.html", StandardCharsets.UTF_8, exchange()).block().toString());
+        assertEquals(DECORATOR, source.getLoaded("/decorators/main.html", StandardCharsets.UTF_8).toString());
+        assertEquals(DECORATOR, source.load("/decorators/main.html", StandardCharsets.UTF_8, exchange()).block().toString());
+        assertNull(source.load("/decorators/missing.html", StandardCharsets.UTF_8, exchange()).block());
+        assertEquals(1, source.getHitCount());
+        assertEquals(2, source.getMissCount());
+
+        source.clear();
+        assertNull(source.getLoaded("/decorators/main.html", StandardCharsets.UTF_8));
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/page"));
+    }
+
+    private static WebFilterChain write(MediaType contentType, String body) {
+        return exchange -> {
+            ServerHttpResponse response = exchange.getResponse();
+            response.getHeaders().setContentType(contentType);
+            DataBuffer buffer = response.bufferFactory().wrap(body.getBytes(StandardCharsets.UTF_8));
+            return response.writeWith(Mono.just(buffer));
+        };
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.sitemesh.webmvc;
 
+import org.sitemesh.SizeEstimate;
 import org.sitemesh.webapp.contentfilter.io.Buffer;
 
 /**
@@ -23,32 +24,55 @@ import org.sitemesh.webapp.contentfilter.io.Buffer;
  *
  * <p>Buffering a response into a buffer that starts small and doubles costs a
  * chain of allocate-and-copy cycles totalling roughly twice the page length,
- * on every request. Sizing the buffer to the length the same view produced
- * last time reduces that to a single allocation.</p>
+ * on every request. Sizing the buffer to what the same view produced before
+ * reduces that to a single allocation.</p>
  *
  * <p>An estimate is shared by every render of one view, so it must outlive the
  * {@link SiteMeshView} instances that consult it —
  * {@link SiteMeshViewResolver} keeps one per view name and hands it to each
  * wrapper it creates.</p>
  *
- * <p>This is purely a performance hint. Too small a value costs the growth it
- * would have cost anyway; too large a value over-allocates a single array.
- * Both estimates are plain {@code volatile} rather than atomics: concurrent
- * renders may race and lose an update, which costs at most one buffer
- * resize.</p>
+ * <p>Both lengths are tracked as a {@link SizeEstimate}: a small histogram of
+ * recent renders, read at a percentile (by default the 90th). A view whose
+ * length varies a lot — a paginated list, search results — is then sized for
+ * its long renders rather than for whichever render came last, and an
+ * occasional empty result does not shrink the estimate. This is purely a
+ * performance hint: too small a value costs the growth it would have cost
+ * anyway; too large a value over-allocates a single array.</p>
  */
 public class RenderSizeEstimate {
 
-    private volatile int contentLength = Buffer.DEFAULT_INITIAL_CAPACITY;
+    private final SizeEstimate contentLength;
 
-    private volatile int decoratedLength;
+    private final SizeEstimate decoratedLength;
+
+    /**
+     * Creates an estimate sized at the
+     * {@linkplain SizeEstimate#DEFAULT_PERCENTILE default percentile}.
+     */
+    public RenderSizeEstimate() {
+        this(SizeEstimate.DEFAULT_PERCENTILE);
+    }
+
+    /**
+     * Creates an estimate sized at the given percentile of recent renders.
+     *
+     * @param percentile share of renders the buffers should be large enough
+     *                   for, greater than 0 and at most 1 (e.g. 0.9)
+     */
+    public RenderSizeEstimate(double percentile) {
+        this.contentLength = new SizeEstimate(percentile);
+        this.decoratedLength = new SizeEstimate(percentile);
+    }
 
     /**
      * @return estimated length, in characters, of the view's own output before
-     *         decoration. Never less than 1.
+     *         decoration; {@link Buffer#DEFAULT_INITIAL_CAPACITY} until a
+     *         render has completed. Never less than 1.
      */
     public int getContentLength() {
-        return contentLength;
+        int estimate = contentLength.getEstimate();
+        return estimate > 0 ? estimate : Buffer.DEFAULT_INITIAL_CAPACITY;
     }
 
     /**
@@ -58,7 +82,7 @@ public class RenderSizeEstimate {
      *         until a decorated render has completed.
      */
     public int getDecoratedLength() {
-        return decoratedLength;
+        return decoratedLength.getEstimate();
     }
 
     /**
@@ -68,8 +92,15 @@ public class RenderSizeEstimate {
      *         order of magnitude.
      */
     public int getDecoratedLengthOrContentLength() {
-        int decorated = decoratedLength;
-        return decorated > 0 ? decorated : contentLength;
+        int decorated = getDecoratedLength();
+        return decorated > 0 ? decorated : getContentLength();
+    }
+
+    /**
+     * @return the percentile of recent renders the estimates are taken at.
+     */
+    public double getPercentile() {
+        return contentLength.getPercentile();
     }
 
     /**
@@ -78,7 +109,7 @@ public class RenderSizeEstimate {
      * @param actual characters produced; ignored if not positive
      */
     public void recordContentLength(int actual) {
-        contentLength = growEagerlyShrinkSlowly(contentLength, actual);
+        contentLength.record(actual);
     }
 
     /**
@@ -87,27 +118,6 @@ public class RenderSizeEstimate {
      * @param actual characters produced; ignored if not positive
      */
     public void recordDecoratedLength(int actual) {
-        decoratedLength = growEagerlyShrinkSlowly(decoratedLength, actual);
-    }
-
-    /**
-     * Jump straight to a new high-water mark — plus a small margin, so a page
-     * that creeps up by a few characters does not trigger a resize — but decay
-     * towards a smaller one only gradually. A view that is usually large but
-     * occasionally renders an empty result should keep sizing for the large
-     * case; paying one oversized allocation is cheaper than paying the growth
-     * cycle on every subsequent large render.
-     *
-     * @param current the running estimate
-     * @param actual the length just observed; ignored if not positive
-     * @return the updated estimate
-     */
-    static int growEagerlyShrinkSlowly(int current, int actual) {
-        if (actual <= 0) {
-            return current;
-        }
-        return actual > current
-                ? actual + (actual >> 4)
-                : current - ((current - actual) >> 3);
+        decoratedLength.record(actual);
     }
 }
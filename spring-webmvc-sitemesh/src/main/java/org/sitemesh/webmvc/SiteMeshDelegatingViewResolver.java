@@ -22,6 +22,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 import jakarta.servlet.ServletContext;
 
@@ -259,6 +260,9 @@ public class SiteMeshDelegatingViewResolver extends SiteMeshViewResolver impleme
 
         private ApplicationContext applicationContext;
         private volatile List<ViewResolver> delegates;
+        // Collecting the delegates calls into the bean factory; a lock rather than a
+        // monitor, so a virtual thread waiting on it there is never pinned to its carrier.
+        private final ReentrantLock delegatesLock = new ReentrantLock();
 
         @Override
         public View resolveViewName(String viewName, Locale locale) throws Exception {
@@ -274,12 +278,15 @@ public class SiteMeshDelegatingViewResolver extends SiteMeshViewResolver impleme
         private List<ViewResolver> delegates() {
             List<ViewResolver> resolved = delegates;
             if (resolved == null) {
-                synchronized (this) {
+                delegatesLock.lock();
+                try {
                     resolved = delegates;
                     if (resolved == null) {
                         resolved = collectDelegates();
                         delegates = resolved;
                     }
+                } finally {
+                    delegatesLock.unlock();
                 }
             }
             return resolved;
@@ -15,6 +15,7 @@
  */
 package org.sitemesh.webmvc;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Map;
 
@@ -25,9 +26,12 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import org.sitemesh.DecoratorSelector;
 import org.sitemesh.SiteMeshContext;
+import org.sitemesh.SiteMeshMetrics;
+import org.sitemesh.SizeEstimates;
 import org.sitemesh.config.PathMapper;
 import org.sitemesh.content.Content;
 import org.sitemesh.content.ContentProcessor;
+import org.sitemesh.jfr.SiteMeshWriteEvent;
 import org.sitemesh.webapp.DispatchMode;
 import org.sitemesh.webapp.contentfilter.BasicSelector;
 import org.sitemesh.webapp.contentfilter.HttpServletResponseBuffer;
@@ -77,6 +81,12 @@ public class SiteMeshView implements View {
      */
     private volatile RenderSizeEstimate sizeEstimate = new RenderSizeEstimate();
 
+    private volatile SiteMeshMetrics metrics = SiteMeshMetrics.NONE;
+
+    private volatile SizeEstimates decoratorSizeEstimates;
+
+    private volatile StaticDecoratorViews staticDecoratorViews;
+
     /**
      * Equivalent to the {@link DispatchMode}-taking constructor with
      * {@link DispatchMode#DETECT}.
@@ -194,6 +204,66 @@ public class SiteMeshView implements View {
         return sizeEstimate;
     }
 
+    /**
+     * Size the buffer each decorator renders into from what the same
+     * decorator produced before. Like the {@link RenderSizeEstimate}, the
+     * estimates must outlive the wrapper; {@link SiteMeshViewResolver} shares
+     * one set across all the views it wraps.
+     *
+     * @param decoratorSizeEstimates estimates by decorator path; {@code null}
+     *                               sizes decorator buffers from this view's
+     *                               estimate alone
+     */
+    public void setDecoratorSizeEstimates(SizeEstimates decoratorSizeEstimates) {
+        this.decoratorSizeEstimates = decoratorSizeEstimates;
+    }
+
+    /**
+     * @return the estimates decorator buffers are sized from, or {@code null}
+     * @see #setDecoratorSizeEstimates(SizeEstimates)
+     */
+    public SizeEstimates getDecoratorSizeEstimates() {
+        return decoratorSizeEstimates;
+    }
+
+    /**
+     * Render the decorator views named in {@code staticDecoratorViews} only
+     * once, rather than once per render of this view. The renderings must
+     * outlive the wrapper; {@link SiteMeshViewResolver} shares one set across
+     * all the views it wraps.
+     *
+     * @param staticDecoratorViews the renderings to reuse; {@code null}
+     *                             renders every decorator each time
+     */
+    public void setStaticDecoratorViews(StaticDecoratorViews staticDecoratorViews) {
+        this.staticDecoratorViews = staticDecoratorViews;
+    }
+
+    /**
+     * @return the renderings of static decorator views, or {@code null}
+     * @see #setStaticDecoratorViews(StaticDecoratorViews)
+     */
+    public StaticDecoratorViews getStaticDecoratorViews() {
+        return staticDecoratorViews;
+    }
+
+    /**
+     * Record how long each phase of rendering and decorating this view takes.
+     *
+     * @param metrics the metrics to record to; {@code null} records nothing
+     */
+    public void setMetrics(SiteMeshMetrics metrics) {
+        this.metrics = metrics != null ? metrics : SiteMeshMetrics.NONE;
+    }
+
+    /**
+     * @return the metrics this view records to, never {@code null}
+     * @see #setMetrics(SiteMeshMetrics)
+     */
+    public SiteMeshMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Returns the wrapped inner view. Useful for callers that need to
      * unwrap (for example to apply further view-layer logic without
@@ -352,7 +422,11 @@ public class SiteMeshView implements View {
         RenderSizeEstimate estimate = sizeEstimate;
         buffer.enableBuffering(new HttpContentType(contentType).getEncoding(), estimate.getContentLength());
 
+        SiteMeshMetrics metrics = this.metrics;
+        boolean timed = metrics.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
         innerView.render(model, request, buffer);
+        long bufferNanos = timed ? System.nanoTime() - start : 0;
 
         restoreExplicitStatus(buffer, response);
 
@@ -371,6 +445,9 @@ public class SiteMeshView implements View {
             // non-HTML content type or bad status). Nothing more to do —
             // the inner view already wrote straight to the real response,
             // and any status it set was restored above.
+            if (timed) {
+                metrics.recordOutcome(SiteMeshMetrics.Outcome.ABORTED, request.getRequestURI());
+            }
             return;
         }
 
@@ -388,9 +465,23 @@ public class SiteMeshView implements View {
         // render has completed this falls back to the content length — the
         // right order of magnitude, and still far better than the default.
         context.setSizeHint(estimate.getDecoratedLengthOrContentLength());
-
+        context.setMetrics(metrics);
+        context.setDecoratorSizeEstimates(decoratorSizeEstimates);
+        context.setStaticDecoratorViews(staticDecoratorViews);
+
+        int pageLength = rawBuffer.remaining();
+        if (timed) {
+            metrics.recordPhase(SiteMeshMetrics.Phase.BUFFER, context.getPath(), null, bufferNanos, pageLength);
+            start = System.nanoTime();
+        }
         Content content = contentProcessor.build(rawBuffer, context);
+        if (timed) {
+            start = record(metrics, SiteMeshMetrics.Phase.BUILD, context, start, pageLength);
+        }
         if (content == null) {
+            if (timed) {
+                metrics.recordOutcome(SiteMeshMetrics.Outcome.UNDECORATED, context.getPath());
+            }
             response.getWriter().append(rawBuffer);
             return;
         }
@@ -401,6 +492,9 @@ public class SiteMeshView implements View {
         if (type == DispatcherType.REQUEST || type == DispatcherType.FORWARD
                 || type == DispatcherType.ERROR || type == DispatcherType.ASYNC) {
             String[] paths = decoratorSelector.selectDecoratorPaths(content, context);
+            if (timed) {
+                record(metrics, SiteMeshMetrics.Phase.SELECT, context, start, -1);
+            }
             if (paths != null && paths.length > 0) {
                 Content decorated = content;
                 for (String path : paths) {
@@ -414,23 +508,58 @@ public class SiteMeshView implements View {
                 }
                 if (decorated != null) {
                     estimate.recordDecoratedLength(context.getLastDecoratedLength());
-                    PrintWriter writer = response.getWriter();
-                    decorated.getData().writeValueTo(writer);
-                    if (!response.isCommitted()) {
-                        writer.flush();
+                    if (timed) {
+                        metrics.recordOutcome(SiteMeshMetrics.Outcome.DECORATED, context.getPath());
                     }
+                    write(decorated, response, context);
                     return;
                 }
             }
         }
 
+        if (timed) {
+            metrics.recordOutcome(SiteMeshMetrics.Outcome.UNDECORATED, context.getPath());
+        }
+        write(content, response, context);
+    }
+
+    private void write(Content content, HttpServletResponse response, SiteMeshViewContext context)
+            throws IOException {
+        SiteMeshMetrics metrics = context.getMetrics();
+        SiteMeshWriteEvent writeEvent = new SiteMeshWriteEvent();
+        writeEvent.begin();
         PrintWriter writer = response.getWriter();
-        content.getData().writeValueTo(writer);
+        if (metrics.isEnabled() || writeEvent.isEnabled()) {
+            long start = System.nanoTime();
+            SiteMeshMetrics.CountingAppendable counter = new SiteMeshMetrics.CountingAppendable(writer);
+            content.getData().writeValueTo(counter);
+            if (metrics.isEnabled()) {
+                record(metrics, SiteMeshMetrics.Phase.WRITE, context, start, counter.getCount());
+            }
+            if (writeEvent.shouldCommit()) {
+                writeEvent.path = context.getPath();
+                writeEvent.outputLength = counter.getCount();
+                writeEvent.commit();
+            }
+        } else {
+            content.getData().writeValueTo(writer);
+        }
         if (!response.isCommitted()) {
             writer.flush();
         }
     }
 
+    /**
+     * Record a phase that started at {@code start} and ended now, returning
+     * when it ended.
+     */
+    private static long record(SiteMeshMetrics metrics, SiteMeshMetrics.Phase phase, SiteMeshContext context,
+                               long start, long length) {
+        long end = System.nanoTime();
+        metrics.recordPhase(phase, context.getPath(), null, end - start, length);
+        return end;
+    }
+
     /**
      * Re-apply a status code the inner render set through the buffering
      * wrapper ({@code setStatus}/{@code sendError}) to the underlying
@@ -16,6 +16,8 @@
 package org.sitemesh.webmvc;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
 import java.util.Collections;
 import java.util.Locale;
 
@@ -24,10 +26,14 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import org.sitemesh.content.Content;
 import org.sitemesh.content.ContentProcessor;
 import org.sitemesh.webapp.DispatchMode;
 import org.sitemesh.webapp.WebAppContext;
+import org.sitemesh.webapp.contentfilter.HttpServletResponseBuffer;
 import org.sitemesh.webapp.contentfilter.ResponseMetaData;
+import org.sitemesh.webapp.contentfilter.io.HttpContentType;
+import org.sitemesh.webapp.contentfilter.io.SegmentedCharBuffer;
 
 import org.springframework.web.servlet.View;
 import org.springframework.web.servlet.ViewResolver;
@@ -42,12 +48,23 @@ import org.springframework.web.servlet.ViewResolver;
  * <p>Intended as a drop-in replacement for {@link WebAppContext} when the
  * application is integrating SiteMesh at the Spring MVC {@link View} level
  * (see {@link SiteMeshView} / {@link SiteMeshViewResolver}).</p>
+ *
+ * <p>Decorator views named in a {@link StaticDecoratorViews} are rendered
+ * once per locale and encoding and then written from memory.</p>
  */
 public class SiteMeshViewContext extends WebAppContext {
 
     private final ViewResolver viewResolver;
     private final Locale locale;
 
+    private StaticDecoratorViews staticDecoratorViews;
+
+    /** The view {@link #decorate} already resolved for the decorator being
+     * dispatched to, so {@link #dispatch} does not resolve it again. */
+    private View decoratorView;
+    /** Status the last decorator view rendered with, if rendered into a buffer. */
+    private int decoratorStatus;
+
     /**
      * Equivalent to the {@link DispatchMode}-taking constructor with
      * {@link DispatchMode#DETECT}.
@@ -130,6 +147,76 @@ public class SiteMeshViewContext extends WebAppContext {
         return locale;
     }
 
+    /**
+     * Render the decorator views named in {@code staticDecoratorViews} only
+     * once, and write them from memory afterwards.
+     *
+     * @param staticDecoratorViews the renderings shared by every request;
+     *                             {@code null} renders every decorator
+     */
+    public void setStaticDecoratorViews(StaticDecoratorViews staticDecoratorViews) {
+        this.staticDecoratorViews = staticDecoratorViews;
+    }
+
+    /**
+     * @return the renderings of static decorator views, or {@code null}
+     * @see #setStaticDecoratorViews(StaticDecoratorViews)
+     */
+    public StaticDecoratorViews getStaticDecoratorViews() {
+        return staticDecoratorViews;
+    }
+
+    /**
+     * Writes a {@linkplain StaticDecoratorViews static decorator view} from
+     * memory when it was already rendered from the view its name resolves to
+     * now, and otherwise renders it as usual, keeping the output for next time
+     * unless the render set an error status.
+     */
+    @Override
+    protected void decorate(String decoratorPath, Content content, Writer out) throws IOException {
+        StaticDecoratorViews staticViews = staticDecoratorViews;
+        if (staticViews == null || !staticViews.isStatic(decoratorPath)) {
+            super.decorate(decoratorPath, content, out);
+            return;
+        }
+        View view;
+        try {
+            view = resolveDecoratorView(decoratorPath);
+        } catch (ServletException e) {
+            throw new IOException("Could not dispatch to decorator", e);
+        }
+        if (view == null) {
+            super.decorate(decoratorPath, content, out);
+            return;
+        }
+        String encoding = new HttpContentType(getResponse().getContentType()).getEncoding();
+        char[] rendered = staticViews.get(decoratorPath, locale, encoding, view);
+        if (rendered != null) {
+            // Account for the decorator like a rendered one would.
+            ResponseMetaData metaData = getMetaData();
+            if (metaData != null) {
+                metaData.beginNewResponse();
+            }
+            out.write(rendered);
+            return;
+        }
+        SegmentedCharBuffer buffer = new SegmentedCharBuffer(getSizeHint());
+        decoratorView = view;
+        decoratorStatus = HttpServletResponse.SC_OK;
+        try {
+            super.decorate(decoratorPath, content, buffer);
+        } finally {
+            decoratorView = null;
+        }
+        CharBuffer output = buffer.toCharBuffer();
+        if (decoratorStatus == HttpServletResponse.SC_OK) {
+            char[] kept = new char[output.remaining()];
+            output.duplicate().get(kept);
+            staticViews.put(decoratorPath, locale, encoding, view, kept);
+        }
+        out.append(output);
+    }
+
     @Override
     public void dispatch(HttpServletRequest request, HttpServletResponse response, String path)
             throws ServletException, IOException {
@@ -155,17 +242,13 @@ public class SiteMeshViewContext extends WebAppContext {
         // should use slash-prefixed paths (RequestDispatcher dispatch,
         // which honors DispatchMode) or an include-configured resolver.
         if (path != null && !path.startsWith("/")) {
-            View view;
-            try {
-                view = viewResolver.resolveViewName(path, locale);
-            } catch (IOException | ServletException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new ServletException("Failed to resolve decorator view: " + path, e);
-            }
+            View view = decoratorView != null ? decoratorView : resolveDecoratorView(path);
             if (view != null) {
                 try {
                     view.render(Collections.emptyMap(), request, response);
+                    if (response instanceof HttpServletResponseBuffer buffer) {
+                        decoratorStatus = buffer.getBufferedStatus();
+                    }
                     return;
                 } catch (IOException | ServletException e) {
                     throw e;
@@ -178,4 +261,14 @@ public class SiteMeshViewContext extends WebAppContext {
         // from {@link org.sitemesh.webapp.WebAppContext#dispatch}).
         super.dispatch(request, response, path);
     }
+
+    private View resolveDecoratorView(String name) throws ServletException, IOException {
+        try {
+            return viewResolver.resolveViewName(name, locale);
+        } catch (IOException | ServletException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServletException("Failed to resolve decorator view: " + name, e);
+        }
+    }
 }
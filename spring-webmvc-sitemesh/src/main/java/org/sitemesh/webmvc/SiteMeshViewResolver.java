@@ -15,6 +15,8 @@
  */
 package org.sitemesh.webmvc;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -23,6 +25,8 @@ import jakarta.servlet.ServletContext;
 
 import org.sitemesh.DecoratorSelector;
 import org.sitemesh.SiteMeshContext;
+import org.sitemesh.SiteMeshMetrics;
+import org.sitemesh.SizeEstimates;
 import org.sitemesh.content.ContentProcessor;
 import org.sitemesh.webapp.DispatchMode;
 
@@ -54,16 +58,22 @@ public class SiteMeshViewResolver implements ViewResolver, Ordered, ServletConte
      * View names come from a fixed set in every normal application, so this is
      * never reached; it only stops an application that synthesises unbounded
      * view names from growing the map without limit. Beyond the cap, views
-     * still render — they just size their buffers from the default.
+     * still render — they just size their buffers from the default. The
+     * per-decorator estimates are capped the same way.
      */
-    private static final int MAX_TRACKED_VIEWS = 2048;
+    private static final int MAX_TRACKED_VIEWS = SizeEstimates.MAX_TRACKED;
 
     private final Map<String, RenderSizeEstimate> sizeEstimates = new ConcurrentHashMap<>();
 
+    private volatile SizeEstimates decoratorSizeEstimates = new SizeEstimates();
+
+    private StaticDecoratorViews staticDecoratorViews;
+
     private String layoutPathPrefix = DEFAULT_LAYOUT_PATH_PREFIX;
     private int order;
     private DispatchMode dispatchMode = DispatchMode.DETECT;
     private boolean includeErrorPages = true;
+    private SiteMeshMetrics metrics = SiteMeshMetrics.NONE;
 
     /**
      * Creates a resolver that wraps {@code innerViewResolver} and decorates
@@ -187,6 +197,9 @@ public class SiteMeshViewResolver implements ViewResolver, Ordered, ServletConte
         prepareForBufferedRender(view);
         SiteMeshView decorated = createSiteMeshView(view);
         decorated.setSizeEstimate(sizeEstimateFor(viewName));
+        decorated.setDecoratorSizeEstimates(decoratorSizeEstimates);
+        decorated.setStaticDecoratorViews(staticDecoratorViews);
+        decorated.setMetrics(metrics);
         return decorated;
     }
 
@@ -209,7 +222,8 @@ public class SiteMeshViewResolver implements ViewResolver, Ordered, ServletConte
         if (sizeEstimates.size() >= MAX_TRACKED_VIEWS) {
             return null;
         }
-        return sizeEstimates.computeIfAbsent(viewName, name -> new RenderSizeEstimate());
+        double percentile = decoratorSizeEstimates.getPercentile();
+        return sizeEstimates.computeIfAbsent(viewName, name -> new RenderSizeEstimate(percentile));
     }
 
     /**
@@ -363,6 +377,96 @@ public class SiteMeshViewResolver implements ViewResolver, Ordered, ServletConte
         this.includeErrorPages = includeErrorPages;
     }
 
+    /**
+     * The metrics views this resolver wraps record to. See
+     * {@link #setMetrics(SiteMeshMetrics)}.
+     *
+     * @return the metrics, never {@code null}
+     */
+    public SiteMeshMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Record how long each phase of rendering and decorating the views this
+     * resolver wraps takes. Nothing is recorded by default.
+     *
+     * @param metrics the metrics to record to, or {@code null} to record nothing
+     */
+    public void setMetrics(SiteMeshMetrics metrics) {
+        this.metrics = metrics != null ? metrics : SiteMeshMetrics.NONE;
+    }
+
+    /**
+     * The render size estimates learned so far, by view name. At most a fixed
+     * number of views are tracked; views beyond that are missing here.
+     *
+     * @return a read-only, live view of the estimates
+     */
+    public Map<String, RenderSizeEstimate> getSizeEstimates() {
+        return Collections.unmodifiableMap(sizeEstimates);
+    }
+
+    /**
+     * The estimates, by decorator path, of how long each decorator's output
+     * is, used to size the buffer it renders into.
+     *
+     * @return the decorator estimates
+     */
+    public SizeEstimates getDecoratorSizeEstimates() {
+        return decoratorSizeEstimates;
+    }
+
+    /**
+     * The percentile of recent renders buffers are sized for. See
+     * {@link #setSizeEstimatePercentile(double)}.
+     *
+     * @return the percentile, {@code 0.9} by default
+     */
+    public double getSizeEstimatePercentile() {
+        return decoratorSizeEstimates.getPercentile();
+    }
+
+    /**
+     * Size the buffers of each view, and of each decorator, for the given
+     * share of their recent renders: at {@code 0.9}, the default, a buffer
+     * is large enough for nine renders in ten without growing. Higher values
+     * trade memory for fewer buffer copies. Discards what was learned so far,
+     * so set it before the resolver is used.
+     *
+     * @param sizeEstimatePercentile greater than 0 and at most 1
+     */
+    public void setSizeEstimatePercentile(double sizeEstimatePercentile) {
+        this.decoratorSizeEstimates = new SizeEstimates(sizeEstimatePercentile);
+        sizeEstimates.clear();
+    }
+
+    /**
+     * The renderings of the decorator views rendered only once. See
+     * {@link #setStaticDecoratorViews(Collection)}.
+     *
+     * @return the renderings, or {@code null} when every decorator is
+     *         rendered on each request (the default)
+     */
+    public StaticDecoratorViews getStaticDecoratorViews() {
+        return staticDecoratorViews;
+    }
+
+    /**
+     * Render the decorator views with the given logical names (decorator
+     * paths without a leading {@code /}) once per locale and encoding, and
+     * reuse that output for every page they decorate instead of resolving
+     * and rendering them each time. Only suitable for decorators that use
+     * nothing from the model or request; see {@link StaticDecoratorViews}
+     * for how the renderings are invalidated.
+     *
+     * @param names logical decorator names; {@code null} or empty renders
+     *              every decorator on each request
+     */
+    public void setStaticDecoratorViews(Collection<String> names) {
+        this.staticDecoratorViews = names == null || names.isEmpty() ? null : new StaticDecoratorViews(names);
+    }
+
     /**
      * The prefix under which decorator/layout views live. See
      * {@link #setLayoutPathPrefix(String)}.
@@ -0,0 +1,158 @@
+/*
+ *    Copyright 2009-2026 SiteMesh authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sitemesh.webmvc;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.web.servlet.View;
+
+/**
+ * Rendered output of decorator views that do not depend on the request, kept so that
+ * {@link SiteMeshViewContext} renders each of them once per locale and character encoding
+ * instead of on every decorated page.
+ *
+ * <p>Only the logical decorator names (without a leading {@code /}) given at construction are
+ * kept, and only use this for decorators whose output depends on nothing but the locale: no
+ * model attributes, request attributes, CSRF tokens or the page's own content other than
+ * through {@code <sitemesh:write>} tags, which are merged in after the decorator is rendered
+ * and so still apply to every page.</p>
+ *
+ * <p>Decorator names are still resolved through the {@link org.springframework.web.servlet.ViewResolver}
+ * chain on every render, which a caching resolver answers from memory. A rendering is only
+ * reused while the resolver returns the same {@link View} instance it was rendered from, so
+ * clearing the resolver's view cache (for example
+ * {@link org.springframework.web.servlet.view.AbstractCachingViewResolver#clearCache()}, or a
+ * resolver with caching turned off during development) renders the decorator again. For
+ * template engines that keep their own cache beneath the view, call {@link #clear()} when
+ * clearing it.</p>
+ */
+public class StaticDecoratorViews {
+
+    /** Upper bound on the number of renderings held in memory. */
+    public static final int MAX_CACHED_RENDERINGS = 256;
+
+    private final Set<String> names;
+    private final Map<Key, Rendering> renderings = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param names Logical names of the decorator views to render only once.
+     */
+    public StaticDecoratorViews(Collection<String> names) {
+        this.names = Set.copyOf(names);
+    }
+
+    /**
+     * Whether a decorator is rendered once and then reused.
+     *
+     * @param decoratorPath Path or logical name of the decorator.
+     * @return true if it is one of the configured logical names.
+     */
+    public boolean isStatic(String decoratorPath) {
+        return decoratorPath != null && !decoratorPath.startsWith("/") && names.contains(decoratorPath);
+    }
+
+    /**
+     * @return The logical names of the decorator views rendered only once.
+     */
+    public Set<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Look up an earlier rendering of a decorator view.
+     *
+     * @param name Logical name of the decorator.
+     * @param locale Locale the view was resolved with.
+     * @param encoding Character encoding of the page being decorated.
+     * @param view View the name resolves to now.
+     * @return The rendered output, or null if the decorator has not been rendered for this
+     *         locale and encoding, or was rendered from another view.
+     */
+    public char[] get(String name, Locale locale, String encoding, View view) {
+        Rendering rendering = renderings.get(key(name, locale, encoding));
+        if (rendering == null || rendering.view != view) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return rendering.chars;
+    }
+
+    /**
+     * Keep the rendering of a decorator view, unless {@link #MAX_CACHED_RENDERINGS} are kept
+     * already.
+     *
+     * @param name Logical name of the decorator.
+     * @param locale Locale the view was resolved with.
+     * @param encoding Character encoding of the page being decorated.
+     * @param view View that was rendered.
+     * @param chars The rendered output, which must not be modified afterwards.
+     */
+    public void put(String name, Locale locale, String encoding, View view, char[] chars) {
+        Key key = key(name, locale, encoding);
+        if (renderings.size() >= MAX_CACHED_RENDERINGS && !renderings.containsKey(key)) {
+            return;
+        }
+        renderings.put(key, new Rendering(view, chars));
+    }
+
+    /**
+     * Forget all renderings, so every decorator is rendered again when next used.
+     */
+    public void clear() {
+        renderings.clear();
+    }
+
+    /**
+     * @return How many renderings are kept.
+     */
+    public int size() {
+        return renderings.size();
+    }
+
+    /**
+     * @return How many times a decorator was answered from memory.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return How many times a decorator had to be rendered.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static Key key(String name, Locale locale, String encoding) {
+        // Charset names are case-insensitive; a page declaring "utf-8" can reuse "UTF-8".
+        return new Key(name, locale, encoding == null ? null : encoding.toLowerCase(Locale.ROOT));
+    }
+
+    private record Key(String name, Locale locale, String encoding) {
+    }
+
+    private record Rendering(View view, char[] chars) {
+    }
+}
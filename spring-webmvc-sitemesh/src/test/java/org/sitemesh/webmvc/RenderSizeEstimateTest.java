@@ -33,13 +33,14 @@ public class RenderSizeEstimateTest extends TestCase {
     public void testJumpsStraightToALargerObservedLength() {
         estimate.recordContentLength(50000);
 
-        // Adopts the new high-water mark plus a small margin, so a page that
-        // creeps up by a few characters does not force a resize.
+        // Adopts the new length, rounded up to the top of its histogram
+        // bucket, so a page that creeps up by a few characters does not
+        // force a resize.
         assertTrue(estimate.getContentLength() >= 50000);
         assertTrue(estimate.getContentLength() <= 50000 + (50000 / 8));
     }
 
-    public void testDecaysTowardsASmallerObservedLengthGradually() {
+    public void testAnOccasionalSmallRenderDoesNotShrinkTheEstimate() {
         estimate.recordContentLength(50000);
         int high = estimate.getContentLength();
 
@@ -48,8 +49,36 @@ public class RenderSizeEstimateTest extends TestCase {
         // One small render must not undo the estimate: a view that is usually
         // large but occasionally renders an empty result should keep sizing
         // for the large case.
-        assertTrue(estimate.getContentLength() < high);
-        assertTrue(estimate.getContentLength() > high / 2);
+        assertEquals(high, estimate.getContentLength());
+    }
+
+    public void testSizesForTheConfiguredPercentileOfAVaryingView() {
+        RenderSizeEstimate p90 = new RenderSizeEstimate(0.9);
+        RenderSizeEstimate p50 = new RenderSizeEstimate(0.5);
+        // A paginated list: mostly short pages, one long page in five.
+        for (int i = 0; i < 50; i++) {
+            int length = i % 5 == 0 ? 40000 : 2000;
+            p90.recordContentLength(length);
+            p50.recordContentLength(length);
+        }
+
+        assertTrue(p90.getContentLength() >= 40000);
+        assertTrue(p50.getContentLength() >= 2000);
+        assertTrue(p50.getContentLength() < 40000);
+        assertEquals(0.9, p90.getPercentile());
+    }
+
+    public void testRejectsPercentilesOutOfRange() {
+        try {
+            new RenderSizeEstimate(0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new RenderSizeEstimate(1.5);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
     }
 
     public void testRepeatedSmallRendersEventuallyShrinkTheEstimate() {
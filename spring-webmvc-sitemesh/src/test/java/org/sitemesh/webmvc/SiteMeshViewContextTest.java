@@ -9,9 +9,11 @@
  */
 package org.sitemesh.webmvc;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
@@ -20,6 +22,7 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import junit.framework.TestCase;
 
+import org.sitemesh.content.Content;
 import org.sitemesh.content.ContentProcessor;
 import org.sitemesh.content.tagrules.TagBasedContentProcessor;
 import org.sitemesh.content.tagrules.html.CoreHtmlTagRuleBundle;
@@ -168,4 +171,78 @@ public class SiteMeshViewContextTest extends TestCase {
             fail("Expected ServletException, got " + e);
         }
     }
+
+    public void testStaticDecoratorViewIsRenderedOnce() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        View view = countingView(renders, HttpServletResponse.SC_OK);
+        ViewResolver resolver = (name, loc) -> view;
+        StaticDecoratorViews staticViews = new StaticDecoratorViews(List.of("layout"));
+
+        assertEquals("<html><body>layout</body></html>", decorate(resolver, staticViews, "layout", Locale.ENGLISH));
+        assertEquals("<html><body>layout</body></html>", decorate(resolver, staticViews, "layout", Locale.ENGLISH));
+        assertEquals(1, renders.get());
+        assertEquals(1, staticViews.getHitCount());
+        assertEquals(1, staticViews.getMissCount());
+
+        decorate(resolver, staticViews, "layout", Locale.FRENCH);
+        assertEquals("Each locale is rendered once", 2, renders.get());
+        assertEquals(2, staticViews.size());
+
+        decorate(resolver, staticViews, "other", Locale.ENGLISH);
+        decorate(resolver, staticViews, "other", Locale.ENGLISH);
+        assertEquals("Decorators not named are rendered every time", 4, renders.get());
+    }
+
+    public void testStaticDecoratorViewIsRenderedAgainForNewView() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        View[] current = {countingView(renders, HttpServletResponse.SC_OK)};
+        ViewResolver resolver = (name, loc) -> current[0];
+        StaticDecoratorViews staticViews = new StaticDecoratorViews(List.of("layout"));
+
+        decorate(resolver, staticViews, "layout", Locale.ENGLISH);
+        decorate(resolver, staticViews, "layout", Locale.ENGLISH);
+        assertEquals(1, renders.get());
+
+        // What a caching ViewResolver does once its cache is cleared.
+        current[0] = countingView(renders, HttpServletResponse.SC_OK);
+        decorate(resolver, staticViews, "layout", Locale.ENGLISH);
+        decorate(resolver, staticViews, "layout", Locale.ENGLISH);
+        assertEquals(2, renders.get());
+
+        staticViews.clear();
+        decorate(resolver, staticViews, "layout", Locale.ENGLISH);
+        assertEquals(3, renders.get());
+    }
+
+    public void testStaticDecoratorViewIsNotKeptAfterError() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        View view = countingView(renders, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        ViewResolver resolver = (name, loc) -> view;
+        StaticDecoratorViews staticViews = new StaticDecoratorViews(List.of("layout"));
+
+        decorate(resolver, staticViews, "layout", Locale.ENGLISH);
+        decorate(resolver, staticViews, "layout", Locale.ENGLISH);
+        assertEquals(2, renders.get());
+        assertEquals(0, staticViews.size());
+    }
+
+    private String decorate(ViewResolver resolver, StaticDecoratorViews staticViews, String name, Locale locale)
+            throws Exception {
+        SiteMeshViewContext ctx = new SiteMeshViewContext("text/html", request, response, servletContext,
+                contentProcessor, metaData, true, resolver, locale);
+        ctx.setStaticDecoratorViews(staticViews);
+        Content decorated = ctx.decorate(name, null);
+        return decorated.getData().getValue();
+    }
+
+    private static View countingView(AtomicInteger renders, int status) {
+        return new View() {
+            public String getContentType() { return "text/html"; }
+            public void render(Map<String, ?> m, HttpServletRequest r, HttpServletResponse s) throws Exception {
+                renders.incrementAndGet();
+                s.setStatus(status);
+                s.getWriter().write("<html><body>layout</body></html>");
+            }
+        };
+    }
 }
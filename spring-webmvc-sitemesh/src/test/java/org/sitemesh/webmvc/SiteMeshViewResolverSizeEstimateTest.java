@@ -95,6 +95,19 @@ public class SiteMeshViewResolverSizeEstimateTest extends TestCase {
                 small.getSizeEstimate().getContentLength() < 50000);
     }
 
+    public void testViewsShareTheDecoratorEstimates() throws Exception {
+        SiteMeshViewResolver resolver = newResolver();
+        resolver.setSizeEstimatePercentile(0.99);
+
+        SiteMeshView first = (SiteMeshView) resolver.resolveViewName("first/view", Locale.ENGLISH);
+        SiteMeshView second = (SiteMeshView) resolver.resolveViewName("second/view", Locale.ENGLISH);
+
+        assertSame(resolver.getDecoratorSizeEstimates(), first.getDecoratorSizeEstimates());
+        assertSame(first.getDecoratorSizeEstimates(), second.getDecoratorSizeEstimates());
+        assertEquals(0.99, resolver.getDecoratorSizeEstimates().getPercentile());
+        assertEquals(0.99, first.getSizeEstimate().getPercentile());
+    }
+
     public void testUnnamedViewStillGetsAWorkingEstimate() {
         SiteMeshViewResolver resolver = newResolver();
 